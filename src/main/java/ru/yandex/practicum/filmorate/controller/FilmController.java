@@ -1,17 +1,36 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.CacheStats;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
+import ru.yandex.practicum.filmorate.dto.ImportReport;
+import ru.yandex.practicum.filmorate.dto.Suggestion;
+import ru.yandex.practicum.filmorate.enums.FilmField;
+import ru.yandex.practicum.filmorate.enums.SearchSort;
 import ru.yandex.practicum.filmorate.enums.SortingFilms;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmImportService;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.util.CursorUtils;
 
-import java.time.LocalDate;
-import java.util.Collection;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @RestController
@@ -19,8 +38,10 @@ import java.util.List;
 @RequiredArgsConstructor
 public class FilmController {
 
-    private static final LocalDate AFTER_DATE = LocalDate.of(1895, 12, 28);
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
     private final FilmService filmService;
+    private final FilmImportService filmImportService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -33,20 +54,19 @@ public class FilmController {
 
     public static void validateFilm(Film film) {
         try {
-            if (film.getName() == null || film.getName().trim().isEmpty())
-                throw new ValidationException("Название не может быть пустым");
-            if (film.getDescription() != null && film.getDescription().trim().length() > 200)
-                throw new ValidationException("Максимальная длина описания — 200 символов");
-            if (film.getReleaseDate() == null || film.getReleaseDate().isBefore(AFTER_DATE))
-                throw new ValidationException("дата релиза — не раньше " + AFTER_DATE);
-            if (film.getDuration() != null && film.getDuration() < 1)
-                throw new ValidationException("продолжительность фильма должна быть положительной");
+            FilmService.checkFilm(film);
         } catch (Exception e) {
             log.warn("validation error", e);
             throw e;
         }
     }
 
+    @PostMapping("/import")
+    public ImportReport importFilms(HttpServletRequest request) throws IOException {
+        log.info("Запрос на импорт фильмов, размер {} байт", request.getContentLengthLong());
+        return filmImportService.importFilms(request.getInputStream());
+    }
+
     @PutMapping
     public Film editFilm(@RequestBody Film film) {
         log.info("Запрос на обновление фильма {}", film);
@@ -55,9 +75,57 @@ public class FilmController {
     }
 
     @GetMapping
-    public Collection<Film> getAll() {
-        log.info("Запрос на получение всех фильмов");
-        return filmService.getAll();
+    public ResponseEntity<List<Object>> getAll(@RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) String after,
+                                               @RequestParam(required = false) List<String> fields) {
+        log.info("Запрос на получение фильмов limit={} after={} fields={}", limit, after, fields);
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        CursorPage<Film> page = filmService.getPage(limit, after, FilmField.orAll(filmFields));
+        return CursorUtils.toResponse(new CursorPage<>(view(page.getItems(), filmFields), page.getNextCursor()));
+    }
+
+    private List<Object> view(List<Film> films, Set<FilmField> fields) {
+        if (fields == null)
+            return Collections.unmodifiableList(films);
+        return Collections.unmodifiableList(filmService.project(films, fields));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAll(@RequestParam(defaultValue = "ndjson") String format) {
+        log.info("Запрос на потоковую выгрузку фильмов в формате {}", format);
+        boolean ndjson;
+        if ("ndjson".equalsIgnoreCase(format))
+            ndjson = true;
+        else if ("json".equalsIgnoreCase(format))
+            ndjson = false;
+        else
+            throw new ValidationException("Неизвестный формат выгрузки %s", format);
+        ObjectWriter writer = objectMapper.writerFor(Film.class);
+        StreamingResponseBody body = outputStream -> {
+            try (SequenceWriter sequenceWriter = ndjson
+                    ? writer.withRootValueSeparator("\n").writeValues(outputStream)
+                    : writer.writeValuesAsArray(outputStream)) {
+                filmService.exportAll(films -> {
+                    try {
+                        for (Film film : films) {
+                            sequenceWriter.write(film);
+                        }
+                        sequenceWriter.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @GetMapping("/cache/stats")
+    public CacheStats getCacheStats() {
+        log.info("Запрос статистики кэша фильмов");
+        return filmService.getCacheStats();
     }
 
     @GetMapping("{filmId}")
@@ -79,16 +147,27 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public List<Film> getPopularFilms(@RequestParam(value = "count", defaultValue = "10") Integer count,
-                                      @RequestParam(value = "genreId", defaultValue = "0") Integer genreId,
-                                      @RequestParam(value = "year", defaultValue = "0") Integer year) {
+    public List<?> getPopularFilms(@RequestParam(value = "count", defaultValue = "10") Integer count,
+                                   @RequestParam(value = "genreId", defaultValue = "0") Integer genreId,
+                                   @RequestParam(value = "year", defaultValue = "0") Integer year,
+                                   @RequestParam(required = false) List<String> fields) {
         log.info("Запрос на получение списка популярных фильмов count={} по году и жанру", count);
-        return filmService.getPopularFilms(count, genreId, year);
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        return view(filmService.getPopularFilms(count, genreId, year, FilmField.orAll(filmFields)), filmFields);
+    }
+
+    @GetMapping("/likes/count")
+    public Map<Integer, Integer> getLikesCount(@RequestParam List<Integer> ids) {
+        log.info("Запрос на получение количества лайков фильмов {}", ids);
+        return filmService.getLikesCount(ids);
     }
 
     @GetMapping("/director/{directorId}")
-    public Collection<Film> getFilmsByDirector(@PathVariable int directorId,
-                                               @RequestParam String sortBy) {
+    public List<?> getFilmsByDirector(@PathVariable int directorId,
+                                      @RequestParam String sortBy,
+                                      @RequestParam(required = false) Integer limit,
+                                      @RequestParam(defaultValue = "0") int offset,
+                                      @RequestParam(required = false) List<String> fields) {
         SortingFilms sort;
         try {
             sort = SortingFilms.valueOf(sortBy.toUpperCase().trim());
@@ -96,13 +175,29 @@ public class FilmController {
             throw new ValidationException("Неверно указан параметр");
         }
         log.info("запрос на получение сортированного списка фильмов по {} ", sortBy);
-        return filmService.getSortDirectorsOfFilms(directorId, sort);
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        return view(filmService.getSortDirectorsOfFilms(directorId, sort, limit, offset, FilmField.orAll(filmFields)),
+                filmFields);
     }
 
+    /**
+     * Общие фильмы пользователя и друга (userId и friendId) или группы пользователей (userIds=1,2,3)
+     */
     @GetMapping("/common")
-    public Collection<Film> moviesSharedWithFriend(@RequestParam int userId, @RequestParam int friendId) {
-        log.info("запрос на получение общих фильмов с другом");
-        return filmService.moviesSharedWithFriend(userId, friendId);
+    public List<?> getCommonFilms(@RequestParam(required = false) Integer userId,
+                                  @RequestParam(required = false) Integer friendId,
+                                  @RequestParam(required = false) List<Integer> userIds,
+                                  @RequestParam(required = false) List<String> fields) {
+        List<Integer> ids = new ArrayList<>();
+        if (userId != null)
+            ids.add(userId);
+        if (friendId != null)
+            ids.add(friendId);
+        if (userIds != null)
+            ids.addAll(userIds);
+        log.info("запрос на получение общих фильмов пользователей {}", ids);
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        return view(filmService.getCommonFilms(ids, FilmField.orAll(filmFields)), filmFields);
     }
 
     @DeleteMapping("/{filmId}")
@@ -112,8 +207,49 @@ public class FilmController {
     }
 
     @GetMapping("/search")
-    public Collection<Film> getSearchResults(@RequestParam String query,
-                                             @RequestParam(defaultValue = "title") List<String> by) {
-        return filmService.searchMovieByTitleAndDirector(query, by);
+    public List<?> getSearchResults(@RequestParam String query,
+                                    @RequestParam(defaultValue = "title") List<String> by,
+                                    @RequestParam(defaultValue = "likes") String sort,
+                                    @RequestParam(required = false) Integer limit,
+                                    @RequestParam(defaultValue = "0") int offset,
+                                    @RequestParam(required = false) List<String> fields) {
+        SearchSort searchSort;
+        try {
+            searchSort = SearchSort.valueOf(sort.toUpperCase().trim());
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Неверно указан параметр sort");
+        }
+        log.info("Поиск фильмов query={} by={} sort={} limit={} offset={}", query, by, sort, limit, offset);
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        return view(filmService.searchMovieByTitleAndDirector(query, by, searchSort, limit, offset,
+                FilmField.orAll(filmFields)), filmFields);
+    }
+
+    @GetMapping("/{id}/similar")
+    public List<?> getSimilarFilms(@PathVariable int id,
+                                   @RequestParam(defaultValue = "10") int count,
+                                   @RequestParam(required = false) List<String> fields) {
+        log.info("Запрос на получение {} фильмов, похожих на фильм {}", count, id);
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        return view(filmService.getSimilarFilms(id, count, FilmField.orAll(filmFields)), filmFields);
+    }
+
+    @PostMapping("/similar/rebuild")
+    public void rebuildSimilarFilms() {
+        log.info("Запрос на перестроение индекса похожих фильмов");
+        filmService.rebuildSimilarFilms();
+    }
+
+    @GetMapping("/suggest")
+    public List<Suggestion> suggest(@RequestParam String prefix,
+                                    @RequestParam(defaultValue = "10") int limit) {
+        log.info("Запрос на получение {} подсказок по префиксу {}", limit, prefix);
+        return filmService.suggest(prefix, limit);
+    }
+
+    @PostMapping("/search/reindex")
+    public void rebuildSearchIndex() {
+        log.info("Запрос на перестроение поискового индекса");
+        filmService.rebuildSearchIndex();
     }
 }
@@ -3,12 +3,20 @@ package ru.yandex.practicum.filmorate.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.dto.FeedStreamStats;
+import ru.yandex.practicum.filmorate.dto.RecommendationJobStats;
+import ru.yandex.practicum.filmorate.enums.FilmField;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.util.CursorUtils;
 
 import javax.validation.Valid;
 import java.time.LocalDate;
@@ -23,6 +31,7 @@ import java.util.Set;
 public class UserController {
 
     private final UserService userService;
+    private final FilmService filmService;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -64,9 +73,10 @@ public class UserController {
     }
 
     @GetMapping
-    public Collection<User> getAll() {
-        log.info("Запрос на получение списка пользователей");
-        return userService.getAll();
+    public ResponseEntity<List<User>> getAll(@RequestParam(required = false) Integer limit,
+                                             @RequestParam(required = false) String after) {
+        log.info("Запрос на получение списка пользователей limit={} after={}", limit, after);
+        return CursorUtils.toResponse(userService.getPage(limit, after));
     }
 
     @PutMapping("{id}/friends/{friendId}")
@@ -93,12 +103,33 @@ public class UserController {
         return userService.getCommonFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable int id, @RequestParam(defaultValue = "10") int count) {
+        log.info("Запрос на получение предложений друзей для пользователя {} count={}", id, count);
+        return userService.getFriendSuggestions(id, count);
+    }
+
     @GetMapping("/{id}/recommendations")
-    public List<Film> getRecommendations(@PathVariable int id) {
+    public List<?> getRecommendations(@PathVariable int id,
+                                      @RequestParam(required = false) List<String> fields) {
         log.info("Запрос на получение рекомендации по фильмам для пользователя {}", id);
-        List<Film> recommendations = userService.getRecommendations(id);
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        List<Film> recommendations = userService.getRecommendations(id, FilmField.orAll(filmFields));
         log.info("Рекомендовано {} фильмов", recommendations.size());
-        return recommendations;
+        if (filmFields == null)
+            return recommendations;
+        return filmService.project(recommendations, filmFields);
+    }
+
+    @GetMapping("/recommendations/stats")
+    public RecommendationJobStats getRecommendationJobStats() {
+        return userService.getRecommendationJobStats();
+    }
+
+    @PostMapping("/recommendations/recompute")
+    public RecommendationJobStats recomputeRecommendations(@RequestParam(defaultValue = "false") boolean full) {
+        log.info("Запрос на пересчет рекомендаций full={}", full);
+        return userService.recomputeRecommendations(full);
     }
 
     @DeleteMapping("/{userId}")
@@ -108,8 +139,30 @@ public class UserController {
     }
 
     @GetMapping("/{id}/feed")
-    public Set<Feed> getFeeds(@PathVariable int id) {
-        log.info("Запрос на ленту событий пользователя {}", id);
-        return userService.getFeeds(id);
+    public ResponseEntity<List<Feed>> getFeeds(@PathVariable int id,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) String before) {
+        log.info("Запрос на ленту событий пользователя {} limit={} before={}", id, limit, before);
+        return CursorUtils.toResponse(userService.getFeeds(id, limit, before));
+    }
+
+    @GetMapping("/{id}/feed/friends")
+    public ResponseEntity<List<Feed>> getFriendsFeed(@PathVariable int id,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     @RequestParam(required = false) String before) {
+        log.info("Запрос на ленту событий друзей пользователя {} limit={} before={}", id, limit, before);
+        return CursorUtils.toResponse(userService.getFriendsFeed(id, limit, before));
+    }
+
+    @GetMapping(value = "/{id}/feed/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamFeed(@PathVariable int id,
+                                 @RequestHeader(value = "Last-Event-ID", required = false) Integer lastEventId) {
+        log.info("Подключение к живой ленте пользователя {} Last-Event-ID={}", id, lastEventId);
+        return userService.streamFeed(id, lastEventId);
+    }
+
+    @GetMapping("/feed/stream/stats")
+    public FeedStreamStats getFeedStreamStats() {
+        return userService.getFeedStreamStats();
     }
 }
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class FeedStreamStats {
+    private final int connections;
+    private final int maxConnections;
+    private final long connectionsTotal;
+    private final long slowConsumerDrops;
+    private final long sendErrors;
+    private final long stalledSends;
+    private final long eventsSent;
+    private final long bufferedEvents;
+    private final int maxBufferedEvents;
+    private final long lastLagMs;
+    private final long maxLagMs;
+}
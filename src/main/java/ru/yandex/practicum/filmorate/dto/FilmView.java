@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Getter;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MotionPictureAssociation;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Сокращенное представление фильма для параметра fields: незапрошенные поля не сериализуются,
+ * вместо списка оценивших пользователей возвращается количество лайков
+ */
+@Getter
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FilmView {
+    private final Integer id;
+    private final String name;
+    private final String description;
+    private final LocalDate releaseDate;
+    private final Integer duration;
+    private final MotionPictureAssociation mpa;
+    private final List<Genre> genres;
+    private final List<Director> directors;
+    private final Integer likes;
+    private final Set<Integer> appraisers;
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Итог массового импорта: количество обработанных записей, скорость и ошибки по строкам
+ */
+@Getter
+@Builder
+public class ImportReport {
+    private final long total;
+    private final long imported;
+    private final long failed;
+    private final long durationMs;
+    private final double filmsPerSecond;
+    private final List<ImportError> errors;
+    private final boolean errorsTruncated;
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Рекомендации пользователя вместе с соседями, по которым они посчитаны
+ */
+@Getter
+@RequiredArgsConstructor
+public class Recommendation {
+    private final int userId;
+    private final int[] neighbourIds;
+    private final List<Integer> filmIds;
+    private final double[] scores;
+}
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@Builder
+public class RecommendationJobStats {
+    private final boolean running;
+    private final String mode;
+    private final long usersTotal;
+    private final long usersProcessed;
+    private final int partitionsTotal;
+    private final int partitionsDone;
+    private final int partitionsFailed;
+    private final Instant lastStartedAt;
+    private final Instant lastFinishedAt;
+    private final Long lastDurationMs;
+    private final Double usersPerSecond;
+    private final long runs;
+    private final long skippedLocked;
+    private final String lastError;
+}
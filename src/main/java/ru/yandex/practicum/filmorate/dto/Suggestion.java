@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.enums.SuggestionType;
+
+@Getter
+@RequiredArgsConstructor
+public class Suggestion {
+    private final SuggestionType type;
+    private final int id;
+    private final String name;
+    private final int likes;
+}
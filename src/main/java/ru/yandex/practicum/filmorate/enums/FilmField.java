@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.enums;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Поля фильма, которые можно запросить параметром fields.
+ * Жанры, режиссеры и оценившие пользователи загружаются отдельными запросами только если запрошены.
+ */
+public enum FilmField {
+    NAME("name"),
+    DESCRIPTION("description"),
+    RELEASE_DATE("releaseDate"),
+    DURATION("duration"),
+    MPA("mpa"),
+    GENRES("genres"),
+    DIRECTORS("directors"),
+    LIKES("likes"),
+    APPRAISERS("appraisers");
+
+    public static final Set<FilmField> ALL = Collections.unmodifiableSet(EnumSet.allOf(FilmField.class));
+
+    private final String jsonName;
+
+    FilmField(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    /**
+     * Разбор параметра fields
+     * @param names - имена полей в том виде, в котором они сериализуются в JSON
+     * @return набор полей или null, если параметр не передан и нужен полный фильм
+     */
+    public static Set<FilmField> parse(Collection<String> names) {
+        if (names == null || names.isEmpty())
+            return null;
+        Set<FilmField> fields = EnumSet.noneOf(FilmField.class);
+        for (String name : names) {
+            // id возвращается всегда
+            if (!"id".equalsIgnoreCase(name.trim()))
+                fields.add(byJsonName(name.trim()));
+        }
+        return fields;
+    }
+
+    public static Set<FilmField> orAll(Set<FilmField> fields) {
+        return fields == null ? ALL : fields;
+    }
+
+    private static FilmField byJsonName(String name) {
+        for (FilmField field : values()) {
+            if (field.jsonName.equalsIgnoreCase(name))
+                return field;
+        }
+        throw new ValidationException("Неизвестное поле фильма %s", name);
+    }
+}
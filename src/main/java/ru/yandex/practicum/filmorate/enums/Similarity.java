@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.enums;
+
+public enum Similarity {
+    OVERLAP,
+    JACCARD,
+    COSINE
+}
@@ -0,0 +1,6 @@
+package ru.yandex.practicum.filmorate.enums;
+
+public enum SuggestionType {
+    FILM,
+    DIRECTOR
+}
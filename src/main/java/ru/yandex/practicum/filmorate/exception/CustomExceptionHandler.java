@@ -46,6 +46,12 @@ public class CustomExceptionHandler {
         return new ResponseDTO<>(e.getMessage());
     }
 
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(UnavailableException.class)
+    public ResponseDTO<String> handle(UnavailableException e) {
+        return new ResponseDTO<>(e.getMessage());
+    }
+
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     @ExceptionHandler(Exception.class)
     public ResponseDTO<String> handle(Exception e) {
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.exception;
+
+public class UnavailableException extends APIException {
+    public UnavailableException(String message, Object... args) {
+        super(message, args);
+    }
+}
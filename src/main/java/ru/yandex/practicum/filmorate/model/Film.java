@@ -3,9 +3,9 @@ package ru.yandex.practicum.filmorate.model;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.SuperBuilder;
+import ru.yandex.practicum.filmorate.util.RoaringIntSet;
 
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -19,7 +19,7 @@ public class Film {
     private String description;
     private LocalDate releaseDate;
     private Integer duration;
-    private Set<Integer> appraisers = new HashSet<>();
+    private Set<Integer> appraisers = new RoaringIntSet();
     private List<Genre> genres = new LinkedList<>();
     private MotionPictureAssociation mpa;
     private List<Director> directors = new LinkedList<>();
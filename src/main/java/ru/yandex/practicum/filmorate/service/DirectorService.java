@@ -5,6 +5,10 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCache;
+import ru.yandex.practicum.filmorate.storage.index.DirectorFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSuggestIndex;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -16,6 +20,14 @@ public class DirectorService {
     @Qualifier("directorDbStorage")
     private final DirectorStorage storage;
 
+    private final FilmCache filmCache;
+
+    private final FilmSearchIndex filmSearchIndex;
+
+    private final FilmSuggestIndex filmSuggestIndex;
+
+    private final DirectorFilmsIndex directorFilmsIndex;
+
     public List<Director> getAll() {
         return new ArrayList<>(storage.getAll());
     }
@@ -25,15 +37,31 @@ public class DirectorService {
     }
 
     public Director create(Director data) {
-        return storage.create(data);
+        Director director = storage.create(data);
+        filmSearchIndex.putDirector(director.getId(), director.getName());
+        filmSuggestIndex.putDirector(director.getId(), director.getName());
+        return director;
     }
 
     public Director update(Director data) {
-        return storage.update(data);
+        Director director = storage.update(data);
+        invalidateFilms(director.getId());
+        filmSearchIndex.putDirector(director.getId(), director.getName());
+        filmSuggestIndex.putDirector(director.getId(), director.getName());
+        return director;
     }
 
     public void delete(int id) {
         storage.delete(id);
+        invalidateFilms(id);
+        filmSearchIndex.removeDirector(id);
+        filmSuggestIndex.removeDirector(id);
+        directorFilmsIndex.removeDirector(id);
+    }
+
+    private void invalidateFilms(int directorId) {
+        filmCache.invalidateIf(film -> film.getDirectors() != null && film.getDirectors().stream()
+                .anyMatch(director -> director.getId() == directorId));
     }
 
 }
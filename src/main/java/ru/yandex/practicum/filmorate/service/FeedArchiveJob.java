@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.archive.FeedArchive;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Перенос старых событий ленты из FEEDS в архив {@link FeedArchive}, чтобы таблица не росла бесконечно.
+ * События старше max-age-days переносятся по диапазонам user-range-size пользователей: каждый диапазон,
+ * где накопилось не меньше min-segment-rows таких событий, записывается в новый сегмент,
+ * и только после этого строки удаляются из таблицы. Граница переноса (times < cutoff, feed_id <= max)
+ * сохраняется в сегменте, поэтому после сбоя между записью и удалением удаление повторяется при следующем запуске.
+ * Лента читается через {@link FeedStorage} как раньше, архив подмешивается при чтении.
+ * Архив лежит на локальном диске, поэтому перенос рассчитан на один экземпляр приложения.
+ */
+@Slf4j
+@Service
+public class FeedArchiveJob {
+
+    private final FeedStorage feedStorage;
+    private final FeedArchive feedArchive;
+    private final boolean enabled;
+    private final long maxAgeMs;
+    private final int userRangeSize;
+    private final int minSegmentRows;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean recovered;
+
+    public FeedArchiveJob(FeedStorage feedStorage,
+                          FeedArchive feedArchive,
+                          @Value("${filmorate.feed.archive.enabled:false}") boolean enabled,
+                          @Value("${filmorate.feed.archive.max-age-days:90}") int maxAgeDays,
+                          @Value("${filmorate.feed.archive.user-range-size:10000}") int userRangeSize,
+                          @Value("${filmorate.feed.archive.min-segment-rows:1000}") int minSegmentRows) {
+        this.feedStorage = feedStorage;
+        this.feedArchive = feedArchive;
+        this.enabled = enabled;
+        this.maxAgeMs = TimeUnit.DAYS.toMillis(maxAgeDays);
+        this.userRangeSize = userRangeSize;
+        this.minSegmentRows = minSegmentRows;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.feed.archive.interval-ms:3600000}",
+            initialDelayString = "${filmorate.feed.archive.initial-delay-ms:60000}")
+    public void scheduledRun() {
+        if (enabled)
+            run(System.currentTimeMillis() - maxAgeMs);
+    }
+
+    /**
+     * Перенос событий с times < cutoff
+     * @return количество перенесенных событий
+     */
+    public long run(long cutoff) {
+        if (!running.compareAndSet(false, true))
+            return 0;
+        try {
+            if (!recovered) {
+                feedArchive.forEachSegment(feedStorage::deleteFeedsBefore);
+                recovered = true;
+            }
+            int maxFeedId = feedStorage.getMaxFeedId();
+            long archived = 0;
+            for (Map.Entry<Integer, Integer> range : feedStorage.countFeedsByUserRange(cutoff, maxFeedId,
+                    userRangeSize).entrySet()) {
+                if (range.getValue() < minSegmentRows)
+                    continue;
+                int userFrom = range.getKey() * userRangeSize;
+                int userTo = userFrom + userRangeSize - 1;
+                long written = feedArchive.write(userFrom, userTo, cutoff, maxFeedId,
+                        consumer -> feedStorage.forEachFeedBefore(userFrom, userTo, cutoff, maxFeedId, consumer));
+                if (written == 0)
+                    continue;
+                int deleted = feedStorage.deleteFeedsBefore(userFrom, userTo, cutoff, maxFeedId);
+                if (deleted != written)
+                    log.warn("В архив ленты пользователей {}-{} записано {} событий, из таблицы удалено {}",
+                            userFrom, userTo, written, deleted);
+                archived += written;
+            }
+            if (archived > 0)
+                log.info("В архив ленты перенесено {} событий старше {}", archived, cutoff);
+            return archived;
+        } finally {
+            running.set(false);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.dto.FeedStreamStats;
+import ru.yandex.practicum.filmorate.exception.UnavailableException;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.FeedListener;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Живая лента пользователя по Server-Sent Events.
+ * Сохраненные события приходят как {@link FeedListener} после фиксации транзакции и раскладываются
+ * по ограниченным буферам подписок пользователя (buffer-size событий). Сами отправки выполняют
+ * sender-threads потоков, поэтому медленный клиент не задерживает запись ленты: если его буфер переполнен,
+ * соединение закрывается, и клиент переподключается с Last-Event-ID, получая пропущенное из базы.
+ * Запись в сокет блокирующая, поэтому у отправки есть бюджет send-timeout-ms: зависшее на нем соединение
+ * закрывается, а поток отправки прерывается и возвращается к остальным подпискам.
+ * Подписки хранятся массивами, которые заменяются целиком, публикация читает их без блокировок.
+ */
+@Slf4j
+@Service
+public class FeedStreamService implements FeedListener {
+
+    private static final String EVENT_NAME = "feed";
+
+    private final long timeoutMs;
+    private final long sendTimeoutMs;
+    private final int bufferSize;
+    private final int maxConnections;
+    @Getter
+    private final int replayLimit;
+    private final ExecutorService sender;
+
+    private final ConcurrentHashMap<Integer, Subscription[]> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong connectionsTotal = new AtomicLong();
+    private final AtomicLong slowConsumerDrops = new AtomicLong();
+    private final AtomicLong sendErrors = new AtomicLong();
+    private final AtomicLong stalledSends = new AtomicLong();
+    private final AtomicLong eventsSent = new AtomicLong();
+    private final AtomicLong lastLagMs = new AtomicLong();
+    private final LongAccumulator maxLagMs = new LongAccumulator(Long::max, 0);
+
+    public FeedStreamService(@Value("${filmorate.feed.stream.timeout-ms:1800000}") long timeoutMs,
+                             @Value("${filmorate.feed.stream.buffer-size:256}") int bufferSize,
+                             @Value("${filmorate.feed.stream.max-connections:10000}") int maxConnections,
+                             @Value("${filmorate.feed.stream.replay-limit:1000}") int replayLimit,
+                             @Value("${filmorate.feed.stream.sender-threads:2}") int senderThreads,
+                             @Value("${filmorate.feed.stream.send-timeout-ms:5000}") long sendTimeoutMs) {
+        this.timeoutMs = timeoutMs;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.bufferSize = bufferSize;
+        this.maxConnections = maxConnections;
+        this.replayLimit = replayLimit;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "feed-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Новая подписка на события пользователя. События, сохраненные после вызова, копятся в ее буфере
+     * и начинают отправляться после {@link #start}
+     */
+    public Subscription subscribe(int userId) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            throw new UnavailableException("Превышено число подключений к ленте: %d", maxConnections);
+        }
+        connectionsTotal.incrementAndGet();
+        Subscription subscription = new Subscription(userId, createEmitter(timeoutMs), bufferSize);
+        subscription.emitter.onCompletion(() -> unsubscribe(subscription));
+        subscription.emitter.onTimeout(() -> unsubscribe(subscription));
+        subscription.emitter.onError(e -> unsubscribe(subscription));
+        subscribers.compute(userId, (id, current) -> {
+            if (current == null)
+                return new Subscription[]{subscription};
+            Subscription[] result = Arrays.copyOf(current, current.length + 1);
+            result[current.length] = subscription;
+            return result;
+        });
+        log.debug("Подключение к ленте пользователя {}, всего подключений {}", userId, connections.get());
+        return subscription;
+    }
+
+    /**
+     * Запуск отправки: сначала пропущенные клиентом события, затем накопленные в буфере
+     * @param replay - события после Last-Event-ID по возрастанию feed_id
+     * @param incomplete - пропущено больше событий, чем в replay: после них соединение закрывается,
+     *                   и клиент переподключается с Last-Event-ID последнего полученного
+     */
+    public SseEmitter start(Subscription subscription, List<Feed> replay, boolean incomplete) {
+        subscription.replay = replay;
+        subscription.incomplete = incomplete;
+        for (Feed feed : replay) {
+            subscription.replayed.add(feed.getEventId());
+        }
+        subscription.started = true;
+        schedule(subscription);
+        return subscription.emitter;
+    }
+
+    public void unsubscribe(Subscription subscription) {
+        if (!subscription.closed.compareAndSet(false, true))
+            return;
+        connections.decrementAndGet();
+        subscribers.computeIfPresent(subscription.userId, (id, current) -> {
+            if (current.length == 1 && current[0] == subscription)
+                return null;
+            return Arrays.stream(current).filter(s -> s != subscription).toArray(Subscription[]::new);
+        });
+        subscription.buffer.clear();
+    }
+
+    /**
+     * Закрытие всех подключений пользователя, например, после его удаления
+     */
+    public void disconnect(int userId) {
+        Subscription[] current = subscribers.get(userId);
+        if (current == null)
+            return;
+        for (Subscription subscription : current) {
+            close(subscription);
+        }
+    }
+
+    @Override
+    public void onFeeds(List<Feed> feeds) {
+        for (Feed feed : feeds) {
+            Subscription[] current = subscribers.get(feed.getUserId());
+            if (current == null)
+                continue;
+            for (Subscription subscription : current) {
+                if (subscription.buffer.offer(feed)) {
+                    schedule(subscription);
+                } else {
+                    slowConsumerDrops.incrementAndGet();
+                    log.warn("Клиент ленты пользователя {} не успевает получать события, соединение закрыто",
+                            subscription.userId);
+                    close(subscription);
+                }
+            }
+        }
+    }
+
+    /**
+     * Пустое сообщение всем подключениям, чтобы прокси не закрывали их и обрыв со стороны клиента обнаруживался
+     */
+    @Scheduled(fixedDelayString = "${filmorate.feed.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscription[] current : subscribers.values()) {
+            for (Subscription subscription : current) {
+                subscription.heartbeat = true;
+                schedule(subscription);
+            }
+        }
+    }
+
+    /**
+     * Закрытие соединений, отправка в которые идет дольше send-timeout-ms. Поток отправки прерывается,
+     * а контейнер закрывает соединение, так что блокирующая запись завершается ошибкой
+     */
+    @Scheduled(fixedDelayString = "${filmorate.feed.stream.send-check-ms:1000}")
+    public void closeStalled() {
+        long now = System.currentTimeMillis();
+        for (Subscription[] current : subscribers.values()) {
+            for (Subscription subscription : current) {
+                synchronized (subscription) {
+                    if (subscription.sendingThread == null || now - subscription.sendStartedAt <= sendTimeoutMs)
+                        continue;
+                    unsubscribe(subscription);
+                    subscription.sendingThread.interrupt();
+                }
+                stalledSends.incrementAndGet();
+                log.warn("Отправка события ленты пользователю {} идет дольше {} мс, соединение закрыто",
+                        subscription.userId, sendTimeoutMs);
+                try {
+                    subscription.emitter.completeWithError(new IOException("Превышено время отправки"));
+                } catch (RuntimeException e) {
+                    log.debug("Соединение ленты пользователя {} уже закрыто", subscription.userId, e);
+                }
+            }
+        }
+    }
+
+    public FeedStreamStats getStats() {
+        long buffered = 0;
+        int maxBuffered = 0;
+        for (Subscription[] current : subscribers.values()) {
+            for (Subscription subscription : current) {
+                int size = subscription.buffer.size();
+                buffered += size;
+                maxBuffered = Math.max(maxBuffered, size);
+            }
+        }
+        return FeedStreamStats.builder()
+                .connections(connections.get())
+                .maxConnections(maxConnections)
+                .connectionsTotal(connectionsTotal.get())
+                .slowConsumerDrops(slowConsumerDrops.get())
+                .sendErrors(sendErrors.get())
+                .stalledSends(stalledSends.get())
+                .eventsSent(eventsSent.get())
+                .bufferedEvents(buffered)
+                .maxBufferedEvents(maxBuffered)
+                .lastLagMs(lastLagMs.get())
+                .maxLagMs(maxLagMs.get())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        for (Subscription[] current : subscribers.values()) {
+            for (Subscription subscription : current) {
+                close(subscription);
+            }
+        }
+    }
+
+    /**
+     * Соединение новой подписки
+     */
+    protected SseEmitter createEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    private void close(Subscription subscription) {
+        unsubscribe(subscription);
+        try {
+            subscription.emitter.complete();
+        } catch (RuntimeException e) {
+            log.debug("Соединение ленты пользователя {} уже закрыто", subscription.userId, e);
+        }
+    }
+
+    /**
+     * Постановка подписки в очередь отправки, одну подписку одновременно обслуживает не больше одного потока
+     */
+    private void schedule(Subscription subscription) {
+        if (!subscription.started || subscription.closed.get() || !subscription.scheduled.compareAndSet(false, true))
+            return;
+        try {
+            sender.execute(() -> drain(subscription));
+        } catch (RejectedExecutionException e) {
+            subscription.scheduled.set(false);
+        }
+    }
+
+    private void drain(Subscription subscription) {
+        try {
+            if (subscription.replay != null) {
+                for (Feed feed : subscription.replay) {
+                    send(subscription, feed);
+                }
+                subscription.replay = null;
+                if (subscription.incomplete) {
+                    close(subscription);
+                    return;
+                }
+            }
+            if (subscription.heartbeat) {
+                subscription.heartbeat = false;
+                send(subscription, SseEmitter.event().comment(""));
+            }
+            Feed feed;
+            while (!subscription.closed.get() && (feed = subscription.buffer.poll()) != null) {
+                // Событие могло быть и в replay, и прийти после фиксации
+                if (subscription.replayed.contains(feed.getEventId()))
+                    continue;
+                send(subscription, feed);
+                long lag = Math.max(0, System.currentTimeMillis() - feed.getTimestamp());
+                lastLagMs.set(lag);
+                maxLagMs.accumulate(lag);
+            }
+        } catch (IOException | IllegalStateException e) {
+            sendErrors.incrementAndGet();
+            log.debug("Не удалось отправить событие ленты пользователю {}", subscription.userId, e);
+            unsubscribe(subscription);
+            try {
+                subscription.emitter.completeWithError(e);
+            } catch (RuntimeException ignored) {
+                // Соединение уже закрыто контейнером
+            }
+        } finally {
+            subscription.scheduled.set(false);
+        }
+        if (!subscription.buffer.isEmpty() || subscription.heartbeat)
+            schedule(subscription);
+    }
+
+    private void send(Subscription subscription, Feed feed) throws IOException {
+        send(subscription, SseEmitter.event()
+                .id(String.valueOf(feed.getEventId()))
+                .name(EVENT_NAME)
+                .data(feed, MediaType.APPLICATION_JSON));
+        eventsSent.incrementAndGet();
+    }
+
+    /**
+     * Отправка с отметкой начала, по которой {@link #closeStalled} находит зависшие соединения
+     */
+    private void send(Subscription subscription, SseEmitter.SseEventBuilder event) throws IOException {
+        synchronized (subscription) {
+            subscription.sendStartedAt = System.currentTimeMillis();
+            subscription.sendingThread = Thread.currentThread();
+        }
+        try {
+            subscription.emitter.send(event);
+        } finally {
+            synchronized (subscription) {
+                subscription.sendingThread = null;
+                // Прерывание, пришедшее после завершения записи, не должно сорвать отправку другой подписке
+                if (subscription.closed.get())
+                    Thread.interrupted();
+            }
+        }
+    }
+
+    public static class Subscription {
+        private final int userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Feed> buffer;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // Заполняется до start и дальше читается только потоком отправки
+        private final Set<Integer> replayed = new HashSet<>();
+        private volatile List<Feed> replay;
+        private volatile boolean incomplete;
+        private volatile boolean started;
+        private volatile boolean heartbeat;
+        // Поток, выполняющий отправку, и время ее начала, меняются под блокировкой подписки
+        private Thread sendingThread;
+        private long sendStartedAt;
+
+        private Subscription(int userId, SseEmitter emitter, int bufferSize) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
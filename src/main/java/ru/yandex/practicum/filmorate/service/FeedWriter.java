@@ -0,0 +1,258 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.enums.Operation;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Асинхронная запись событий ленты с групповой фиксацией.
+ * Запросы кладут события в ограниченную очередь, один поток забирает их и сохраняет многострочными insert:
+ * пачка уходит в базу, когда набралось batch-size событий или прошло max-delay-ms с первого события пачки.
+ * При заполненной очереди пишущий поток ждет до offer-timeout-ms, затем сохраняет событие сам,
+ * так что нагрузка сдерживается, а события не теряются.
+ * Чтение ленты вызывает {@link #flush(int)}, чтобы пользователь видел свои только что созданные события:
+ * ждут только читатели, у которых есть события в очереди, и только эти события.
+ * Для записи в одной транзакции с действием есть синхронный {@link #createFeedSync}.
+ */
+@Slf4j
+@Service
+public class FeedWriter {
+
+    private static final long POLL_MS = 100;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final FeedStorage feedStorage;
+    private final boolean async;
+    private final int batchSize;
+    private final long maxDelayMs;
+    private final long offerTimeoutMs;
+    private final long flushTimeoutMs;
+
+    private final BlockingQueue<Feed> queue;
+    private final Thread drainer;
+    // Количество незаписанных событий по пользователям, пользователи без таких событий не хранятся
+    private final Map<Integer, Integer> pending = new ConcurrentHashMap<>();
+    // Постановка в очередь под чтением, остановка под записью: после нее в очередь никто не положит событие
+    private final ReadWriteLock enqueueLock = new ReentrantReadWriteLock();
+    private final Object progress = new Object();
+    private long written;
+    private volatile boolean running = true;
+
+    public FeedWriter(FeedStorage feedStorage,
+                      @Value("${filmorate.feed.writer.async:true}") boolean async,
+                      @Value("${filmorate.feed.writer.queue-capacity:10000}") int queueCapacity,
+                      @Value("${filmorate.feed.writer.batch-size:500}") int batchSize,
+                      @Value("${filmorate.feed.writer.max-delay-ms:20}") long maxDelayMs,
+                      @Value("${filmorate.feed.writer.offer-timeout-ms:1000}") long offerTimeoutMs,
+                      @Value("${filmorate.feed.writer.flush-timeout-ms:5000}") long flushTimeoutMs) {
+        this.feedStorage = feedStorage;
+        this.async = async;
+        this.batchSize = batchSize;
+        this.maxDelayMs = maxDelayMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.flushTimeoutMs = flushTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.drainer = new Thread(this::drain, "feed-writer");
+        if (async) {
+            drainer.setDaemon(true);
+            drainer.start();
+        }
+    }
+
+    /**
+     * Асинхронная запись события
+     */
+    public void createFeed(int userId, int entityId, EventType eventType, Operation operation, long timeStamp) {
+        Feed feed = Feed.builder()
+                .userId(userId)
+                .entityId(entityId)
+                .eventType(eventType)
+                .operation(operation)
+                .timestamp(timeStamp)
+                .build();
+        if (!async || !enqueue(feed)) {
+            if (async && running)
+                log.warn("Очередь событий ленты заполнена, событие пользователя {} сохраняется синхронно", userId);
+            feedStorage.createFeeds(Collections.singletonList(feed));
+        }
+    }
+
+    private boolean enqueue(Feed feed) {
+        enqueueLock.readLock().lock();
+        try {
+            if (!running)
+                return false;
+            pending.merge(feed.getUserId(), 1, Integer::sum);
+            boolean offered = false;
+            try {
+                offered = queue.offer(feed, offerTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!offered)
+                release(feed.getUserId(), 1);
+            return offered;
+        } finally {
+            enqueueLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Синхронная запись события в текущей транзакции
+     */
+    public void createFeedSync(int userId, int entityId, EventType eventType, Operation operation, long timeStamp) {
+        feedStorage.createFeed(userId, entityId, eventType, operation, timeStamp);
+    }
+
+    /**
+     * Ожидание записи событий пользователя, стоящих в очереди, но не дольше flush-timeout-ms.
+     * Без таких событий возвращается сразу, иначе ждет не дольше обычной пачки - max-delay-ms и запись
+     */
+    public void flush(int userId) {
+        if (!async || !pending.containsKey(userId))
+            return;
+        long deadline = System.currentTimeMillis() + flushTimeoutMs;
+        try {
+            synchronized (progress) {
+                long wait;
+                while (pending.containsKey(userId) && (wait = deadline - System.currentTimeMillis()) > 0) {
+                    progress.wait(wait);
+                }
+            }
+            if (pending.containsKey(userId))
+                log.warn("События ленты пользователя {} не записаны за {} мс, в очереди {}",
+                        userId, flushTimeoutMs, queue.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Остановка: после нее события в очередь не попадают, поток дописывает очередь до конца,
+     * остаток после его завершения сохраняется здесь же
+     */
+    @PreDestroy
+    public void shutdown() {
+        enqueueLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            enqueueLock.writeLock().unlock();
+        }
+        if (!async)
+            return;
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Feed> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty())
+            write(rest);
+        log.info("Запись событий ленты остановлена, из очереди записано {}", written);
+    }
+
+    private void drain() {
+        List<Feed> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Feed first = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + maxDelayMs;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.currentTimeMillis();
+                    // Пачка не ждет добора, если приложение останавливается
+                    if (batch.size() >= batchSize || wait <= 0 || !running)
+                        break;
+                    Feed next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Поток завершается только по running, очередь должна быть дописана
+                Thread.interrupted();
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Запись пачки с повторами. Если пачка так и не записалась (например, пользователь удален
+     * и нарушен внешний ключ), события пишутся по одному, и теряются только некорректные
+     */
+    private void write(List<Feed> batch) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                feedStorage.createFeeds(batch);
+                advance(batch);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                break;
+            } catch (DataAccessException e) {
+                log.warn("Не удалось записать {} событий ленты, попытка {}", batch.size(), attempt, e);
+                sleep(attempt * POLL_MS);
+            }
+        }
+        for (Feed feed : batch) {
+            try {
+                feedStorage.createFeeds(Collections.singletonList(feed));
+            } catch (DataAccessException e) {
+                log.error("Событие ленты {} не записано", feed, e);
+            }
+        }
+        advance(batch);
+    }
+
+    private void advance(List<Feed> batch) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        batch.forEach(feed -> counts.merge(feed.getUserId(), 1, Integer::sum));
+        synchronized (progress) {
+            counts.forEach(this::release);
+            written += batch.size();
+            progress.notifyAll();
+        }
+    }
+
+    private void release(int userId, int count) {
+        pending.computeIfPresent(userId, (id, value) -> value > count ? value - count : null);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
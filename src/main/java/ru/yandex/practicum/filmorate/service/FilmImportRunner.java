@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.ImportError;
+import ru.yandex.practicum.filmorate.dto.ImportReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Импорт фильмов при запуске: java -jar filmorate.jar --import-films=films.ndjson [--import-films=...]
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmImportRunner implements ApplicationRunner {
+
+    private static final String IMPORT_OPTION = "import-films";
+
+    private final FilmImportService filmImportService;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!args.containsOption(IMPORT_OPTION))
+            return;
+        for (String file : args.getOptionValues(IMPORT_OPTION)) {
+            log.info("Импорт фильмов из файла {}", file);
+            ImportReport report;
+            try (InputStream inputStream = Files.newInputStream(Path.of(file))) {
+                report = filmImportService.importFilms(inputStream);
+            }
+            for (ImportError error : report.getErrors()) {
+                log.warn("{}:{} {}", file, error.getLine(), error.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.ImportError;
+import ru.yandex.practicum.filmorate.dto.ImportReport;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MotionPictureAssociation;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Массовый импорт фильмов из NDJSON (один фильм в строке).
+ * Строки читаются порциями, следующая порция разбирается и проверяется параллельно,
+ * пока предыдущая сохраняется пакетными insert в отдельной транзакции.
+ * Если порция не сохранилась, она сохраняется по половинам, пока ошибка не сведется к отдельным строкам,
+ * так что в отчет попадают только строки, которые база не приняла.
+ * Проверка MPA, жанров и режиссеров выполняется по справочникам в памяти без запросов к базе.
+ */
+@Slf4j
+@Service
+public class FilmImportService {
+
+    private static final int MAX_NAME_LENGTH = 150;
+
+    private final FilmStorage filmStorage;
+
+    private final FilmService filmService;
+
+    private final ReferenceDataRegistry referenceDataRegistry;
+
+    private final ObjectMapper objectMapper;
+
+    private final int batchSize;
+
+    private final int parseThreads;
+
+    private final int maxErrors;
+
+    // Общий для всех импортов пул разбора строк
+    private final ExecutorService parsers;
+
+    public FilmImportService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                             FilmService filmService,
+                             ReferenceDataRegistry referenceDataRegistry,
+                             ObjectMapper objectMapper,
+                             @Value("${filmorate.import.batch-size:5000}") int batchSize,
+                             @Value("${filmorate.import.parse-threads:4}") int parseThreads,
+                             @Value("${filmorate.import.max-errors:1000}") int maxErrors) {
+        this.filmStorage = filmStorage;
+        this.filmService = filmService;
+        this.referenceDataRegistry = referenceDataRegistry;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.parseThreads = parseThreads;
+        this.maxErrors = maxErrors;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.parsers = Executors.newFixedThreadPool(parseThreads, runnable -> {
+            Thread thread = new Thread(runnable, "film-import-parser-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public ImportReport importFilms(InputStream inputStream) throws IOException {
+        long started = System.nanoTime();
+        ImportState state = new ImportState();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            CompletableFuture<List<ParsedLine>> pending = null;
+            long lineNumber = 0;
+            List<String> lines;
+            while (!(lines = readBatch(reader)).isEmpty()) {
+                CompletableFuture<List<ParsedLine>> parsed = parseAsync(lines, lineNumber + 1);
+                lineNumber += lines.size();
+                if (pending != null)
+                    save(pending.join(), state);
+                pending = parsed;
+            }
+            if (pending != null)
+                save(pending.join(), state);
+        }
+        long durationMs = (System.nanoTime() - started) / 1_000_000;
+        ImportReport report = ImportReport.builder()
+                .total(state.total)
+                .imported(state.imported)
+                .failed(state.failed)
+                .durationMs(durationMs)
+                .filmsPerSecond(durationMs == 0 ? state.imported : state.imported * 1000.0 / durationMs)
+                .errors(state.errors)
+                .errorsTruncated(state.failed > state.errors.size())
+                .build();
+        log.info("Импорт фильмов завершен: {} из {} за {} мс ({} фильмов/с), ошибок {}",
+                report.getImported(), report.getTotal(), durationMs, Math.round(report.getFilmsPerSecond()),
+                report.getFailed());
+        return report;
+    }
+
+    private List<String> readBatch(BufferedReader reader) throws IOException {
+        List<String> lines = new ArrayList<>(batchSize);
+        String line;
+        while (lines.size() < batchSize && (line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private CompletableFuture<List<ParsedLine>> parseAsync(List<String> lines, long firstLine) {
+        int sliceSize = Math.max(1, (lines.size() + parseThreads - 1) / parseThreads);
+        List<CompletableFuture<List<ParsedLine>>> slices = new ArrayList<>();
+        for (int from = 0; from < lines.size(); from += sliceSize) {
+            int start = from;
+            int end = Math.min(from + sliceSize, lines.size());
+            slices.add(CompletableFuture.supplyAsync(() -> {
+                List<ParsedLine> parsed = new ArrayList<>(end - start);
+                for (int i = start; i < end; i++) {
+                    if (!lines.get(i).isBlank())
+                        parsed.add(parse(lines.get(i), firstLine + i));
+                }
+                return parsed;
+            }, parsers));
+        }
+        return CompletableFuture.allOf(slices.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> slices.stream()
+                        .flatMap(slice -> slice.join().stream())
+                        .collect(Collectors.toList()));
+    }
+
+    private ParsedLine parse(String line, long lineNumber) {
+        try {
+            Film film = objectMapper.readValue(line, Film.class);
+            validate(film);
+            return new ParsedLine(lineNumber, film, null);
+        } catch (JsonProcessingException e) {
+            return new ParsedLine(lineNumber, null, "Некорректный JSON: " + e.getOriginalMessage());
+        } catch (RuntimeException e) {
+            return new ParsedLine(lineNumber, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Проверка фильма, включая все обязательные в базе поля, и замена ссылок на справочники их значениями
+     */
+    private void validate(Film film) {
+        FilmService.checkFilm(film);
+        film.setId(null);
+        if (film.getName().length() > MAX_NAME_LENGTH)
+            throw new ValidationException("Максимальная длина названия — %s символов", MAX_NAME_LENGTH);
+        if (film.getDescription() == null)
+            throw new ValidationException("Не указано описание");
+        if (film.getDuration() == null)
+            throw new ValidationException("Не указана продолжительность");
+        if (film.getMpa() == null || film.getMpa().getId() == null)
+            throw new ValidationException("Не указан рейтинг MPA");
+        MotionPictureAssociation mpa = referenceDataRegistry.getMpa(film.getMpa().getId());
+        if (mpa == null)
+            throw new ValidationException("MPA с id %s не существует", film.getMpa().getId());
+        film.setMpa(mpa);
+
+        Map<Integer, Genre> genres = new LinkedHashMap<>();
+        for (Genre genre : Optional.ofNullable(film.getGenres()).orElse(Collections.emptyList())) {
+            Genre known = genre.getId() == null ? null : referenceDataRegistry.getGenre(genre.getId());
+            if (known == null)
+                throw new ValidationException("Жанр с id %s не существует", genre.getId());
+            genres.putIfAbsent(known.getId(), known);
+        }
+        film.setGenres(new ArrayList<>(genres.values()));
+
+        Map<Integer, Director> directors = new LinkedHashMap<>();
+        for (Director director : Optional.ofNullable(film.getDirectors()).orElse(Collections.emptyList())) {
+            Director known = director.getId() == null ? null : referenceDataRegistry.getDirector(director.getId());
+            if (known == null)
+                throw new ValidationException("Режиссер с id %s не существует", director.getId());
+            directors.putIfAbsent(known.getId(), known);
+        }
+        film.setDirectors(new ArrayList<>(directors.values()));
+    }
+
+    private void save(List<ParsedLine> batch, ImportState state) {
+        List<ParsedLine> valid = new ArrayList<>(batch.size());
+        for (ParsedLine parsed : batch) {
+            state.total++;
+            if (parsed.film != null)
+                valid.add(parsed);
+            else
+                state.fail(parsed.lineNumber, parsed.error);
+        }
+        if (!valid.isEmpty())
+            saveValid(valid, state);
+    }
+
+    /**
+     * Сохранение проверенных строк одной транзакцией, при ошибке - по половинам до отдельных строк
+     */
+    private void saveValid(List<ParsedLine> lines, ImportState state) {
+        List<Film> films = lines.stream().map(parsed -> parsed.film).collect(Collectors.toList());
+        try {
+            filmStorage.addFilms(films);
+        } catch (DataAccessException e) {
+            // Транзакция откачена, id из нее недействительны
+            films.forEach(film -> film.setId(null));
+            if (lines.size() == 1) {
+                log.debug("Фильм из строки {} не сохранен", lines.get(0).lineNumber, e);
+                state.fail(lines.get(0).lineNumber, "Ошибка сохранения: " + e.getMostSpecificCause().getMessage());
+                return;
+            }
+            log.debug("Не удалось сохранить порцию из {} фильм(ов), сохраняется по частям", lines.size(), e);
+            int middle = lines.size() / 2;
+            saveValid(lines.subList(0, middle), state);
+            saveValid(lines.subList(middle, lines.size()), state);
+            return;
+        }
+        state.imported += films.size();
+        filmService.indexFilms(films);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parsers.shutdown();
+    }
+
+    private class ImportState {
+        private long total;
+        private long imported;
+        private long failed;
+        private final List<ImportError> errors = new ArrayList<>();
+
+        private void fail(long lineNumber, String message) {
+            failed++;
+            if (errors.size() < maxErrors)
+                errors.add(new ImportError(lineNumber, message));
+        }
+    }
+
+    private static class ParsedLine {
+        private final long lineNumber;
+        private final Film film;
+        private final String error;
+
+        ParsedLine(long lineNumber, Film film, String error) {
+            this.lineNumber = lineNumber;
+            this.film = film;
+            this.error = error;
+        }
+    }
+}
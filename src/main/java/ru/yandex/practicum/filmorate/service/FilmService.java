@@ -2,29 +2,56 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.CacheStats;
+import ru.yandex.practicum.filmorate.dto.Suggestion;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
+import ru.yandex.practicum.filmorate.dto.FilmView;
 import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.enums.FilmField;
 import ru.yandex.practicum.filmorate.enums.Operation;
+import ru.yandex.practicum.filmorate.enums.SearchSort;
 import ru.yandex.practicum.filmorate.enums.SortingFilms;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MotionPictureAssociation;
 import ru.yandex.practicum.filmorate.storage.*;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCache;
+import ru.yandex.practicum.filmorate.storage.index.DirectorFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.util.CursorUtils;
 
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class FilmService {
+    private static final LocalDate AFTER_DATE = LocalDate.of(1895, 12, 28);
+
     @Qualifier("filmDbStorage")
     private final FilmStorage filmStorage;
 
-    private final FeedStorage feedStorage;
+    private final FeedWriter feedWriter;
 
     private final GenreStorage genreStorage;
     private final MotionPictureAssociationStorage motionPictureAssociationStorage;
@@ -32,10 +59,81 @@ public class FilmService {
     @Qualifier("directorDbStorage")
     private final DirectorStorage directorStorage;
 
+    private final PopularFilmsIndex popularFilmsIndex;
+
+    private final FilmCache filmCache;
+
+    private final FilmSearchIndex filmSearchIndex;
+
+    private final FilmSuggestIndex filmSuggestIndex;
+
+    private final DirectorFilmsIndex directorFilmsIndex;
+
+    private final LikesMatrix likesMatrix;
+
+    private final RecommendationStorage recommendationStorage;
+
+    private final FilmSimilarityIndex filmSimilarityIndex;
+
+    @Value("${filmorate.popular-films.use-index:true}")
+    private final boolean usePopularFilmsIndex;
+
+    @Value("${filmorate.director-films.use-index:true}")
+    private final boolean useDirectorFilmsIndex;
+
+    @Value("${filmorate.common-films.use-index:true}")
+    private final boolean useCommonFilmsIndex;
+
+    @Value("${filmorate.search.use-index:true}")
+    private final boolean useSearchIndex;
+
+    @Value("${filmorate.pagination.allow-unpaged:false}")
+    private final boolean allowUnpaged;
+
+    @Value("${filmorate.pagination.default-limit:100}")
+    private final int defaultPageLimit;
+
+    @Value("${filmorate.export.chunk-size:500}")
+    private final int exportChunkSize;
+
+    /**
+     * Проверка полей фильма без логирования, используется контроллером и массовым импортом
+     */
+    public static void checkFilm(Film film) {
+        if (film.getName() == null || film.getName().trim().isEmpty())
+            throw new ValidationException("Название не может быть пустым");
+        if (film.getDescription() != null && film.getDescription().trim().length() > 200)
+            throw new ValidationException("Максимальная длина описания — 200 символов");
+        if (film.getReleaseDate() == null || film.getReleaseDate().isBefore(AFTER_DATE))
+            throw new ValidationException("дата релиза — не раньше " + AFTER_DATE);
+        if (film.getDuration() != null && film.getDuration() < 1)
+            throw new ValidationException("продолжительность фильма должна быть положительной");
+    }
+
     public void addFilm(Film film) {
         setMPA(film);
         setGenres(film);
+        setDirectors(film);
         filmStorage.addFilm(film);
+        indexFilm(film);
+    }
+
+    /**
+     * Добавление в индексы фильмов, сохраненных в обход addFilm, например при импорте
+     */
+    public void indexFilms(Collection<Film> films) {
+        films.forEach(this::indexFilm);
+    }
+
+    private void indexFilm(Film film) {
+        List<Integer> genreIds = film.getGenres() == null ? Collections.emptyList()
+                : film.getGenres().stream().map(Genre::getId).collect(Collectors.toList());
+        popularFilmsIndex.put(film.getId(), film.getReleaseDate().getYear(), genreIds);
+        List<Integer> directorIds = film.getDirectors() == null ? Collections.emptyList()
+                : film.getDirectors().stream().map(Director::getId).collect(Collectors.toList());
+        filmSearchIndex.putFilm(film.getId(), film.getName(), directorIds);
+        filmSuggestIndex.putFilm(film.getId(), film.getName(), directorIds);
+        directorFilmsIndex.put(film.getId(), film.getReleaseDate(), directorIds);
     }
 
     private void setMPA(Film film) {
@@ -46,19 +144,29 @@ public class FilmService {
         }
     }
 
+    /**
+     * Изменение фильма без предварительной загрузки: существование проверяется по результату update,
+     * справочники - по данным в памяти. Возвращается фильм, перечитанный после изменения
+     */
     public Film editFilm(Film film) {
-        Film filmFromDB = getFilmById(film.getId());
         setMPA(film);
-        filmFromDB.setMpa(film.getMpa());
-        filmFromDB.setDuration(film.getDuration());
-        filmFromDB.setName(film.getName());
-        filmFromDB.setDescription(film.getDescription());
-        filmFromDB.setReleaseDate(film.getReleaseDate());
         setGenres(film);
-        filmFromDB.setGenres(film.getGenres());
-        filmFromDB.setDirectors(film.getDirectors());
-        filmStorage.editFilm(filmFromDB);
-        return filmFromDB;
+        setDirectors(film);
+        filmStorage.editFilm(film);
+        filmCache.invalidate(film.getId());
+        indexFilm(film);
+        return getFilmById(film.getId());
+    }
+
+    private void setDirectors(Film film) {
+        if (film.getDirectors() == null || film.getDirectors().isEmpty())
+            return;
+        film.setDirectors(film.getDirectors().stream()
+                .map(Director::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .map(directorStorage::get)
+                .collect(Collectors.toList()));
     }
 
     private void setGenres(Film film) {
@@ -72,48 +180,218 @@ public class FilmService {
         return filmStorage.getAll();
     }
 
+    /**
+     * Постраничная выдача фильмов. Без параметров возвращает весь каталог,
+     * если это разрешено настройкой filmorate.pagination.allow-unpaged, иначе первую страницу
+     */
+    public CursorPage<Film> getPage(Integer limit, String after, Set<FilmField> fields) {
+        if (limit == null && after == null && allowUnpaged)
+            return new CursorPage<>(new ArrayList<>(filmStorage.getAll(fields)), null);
+        int pageLimit = limit == null ? defaultPageLimit : limit;
+        CursorUtils.validateLimit(pageLimit);
+        int afterId = after == null ? 0 : (int) CursorUtils.decode(after, 1)[0];
+        return CursorUtils.toPage(filmStorage.getPage(afterId, pageLimit + 1, fields), pageLimit,
+                film -> new long[]{film.getId()});
+    }
+
+    /**
+     * Выгрузка всего каталога порциями фиксированного размера без загрузки его в память целиком.
+     * Каждая порция читается отдельным запросом по ключу (film_id > последнего выданного),
+     * поэтому соединение с базой не удерживается, пока порция пишется медленному клиенту
+     */
+    public void exportAll(Consumer<List<Film>> consumer) {
+        int afterId = 0;
+        List<Film> chunk;
+        do {
+            chunk = filmStorage.getPage(afterId, exportChunkSize);
+            if (chunk.isEmpty())
+                break;
+            consumer.accept(chunk);
+            afterId = chunk.get(chunk.size() - 1).getId();
+        } while (chunk.size() == exportChunkSize);
+    }
+
     public Film getFilmById(int filmId) {
-        Film film = filmStorage.getById(filmId);
+        Film film = filmCache.get(filmId, filmStorage::getById);
         if (film == null)
             throw new NotFoundException("Фильм с id %s не найден", filmId);
-        film.setDirectors(directorStorage.getDirectorsForFilmId(filmId));
         return film;
     }
 
     public void likeFilm(int id, int userId) {
-        filmStorage.addAppraiser(id, userId);
-        feedStorage.createFeed(userId, id, EventType.LIKE, Operation.ADD, Instant.now().toEpochMilli());
+        if (filmStorage.addAppraiser(id, userId)) {
+            popularFilmsIndex.changeLikes(id, 1);
+            filmSuggestIndex.changeLikes(id, 1);
+            directorFilmsIndex.changeLikes(id, 1);
+            filmSimilarityIndex.addLike(userId, id);
+            recommendationStorage.markDirty(userId);
+            filmCache.update(id, film -> film.getAppraisers().add(userId));
+        }
+        feedWriter.createFeed(userId, id, EventType.LIKE, Operation.ADD, Instant.now().toEpochMilli());
     }
 
     public void unLikeFilm(int id, int userId) {
         if (!filmStorage.isFilmHasAppraiser(id, userId))
             throw new NotFoundException("Пользователь %s еще не оценивал фильм %s", userId, id);
-        filmStorage.removeAppraiser(id, userId);
-        feedStorage.createFeed(userId, id, EventType.LIKE, Operation.REMOVE, Instant.now().toEpochMilli());
+        if (filmStorage.removeAppraiser(id, userId)) {
+            popularFilmsIndex.changeLikes(id, -1);
+            filmSuggestIndex.changeLikes(id, -1);
+            directorFilmsIndex.changeLikes(id, -1);
+            filmSimilarityIndex.removeLike(userId, id);
+            recommendationStorage.markDirty(userId);
+            filmCache.update(id, film -> film.getAppraisers().remove(userId));
+        }
+        feedWriter.createFeed(userId, id, EventType.LIKE, Operation.REMOVE, Instant.now().toEpochMilli());
 
     }
 
-    public List<Film> getSortDirectorsOfFilms(int directorId, SortingFilms sort) {
+    /**
+     * Фильмы режиссера по индексу в памяти, при filmorate.director-films.use-index = false - прежним SQL-запросом
+     * @param limit - размер страницы, null - все фильмы режиссера
+     */
+    public List<Film> getSortDirectorsOfFilms(int directorId, SortingFilms sort, Integer limit, int offset,
+                                              Set<FilmField> fields) {
         directorStorage.get(directorId);
-        return filmStorage.getSortDirectorsOfFilms(directorId, sort);
+        if (limit != null)
+            CursorUtils.validateLimit(limit);
+        if (offset < 0)
+            throw new ValidationException("Смещение не может быть отрицательным");
+        int pageLimit = limit == null ? Integer.MAX_VALUE : limit;
+        if (!useDirectorFilmsIndex) {
+            List<Film> films = filmStorage.getSortDirectorsOfFilms(directorId, sort, fields);
+            return films.stream().skip(offset).limit(pageLimit).collect(Collectors.toList());
+        }
+        return loadFilms(directorFilmsIndex.getFilms(directorId, sort, offset, pageLimit), fields);
     }
 
-    public Collection<Film> searchMovieByTitleAndDirector(String query, List<String> by) {
-        return filmStorage.searchMovieByTitleAndDirector(query, by);
+    /**
+     * Поиск по названию и режиссеру через поисковый индекс,
+     * при filmorate.search.use-index = false - прежним SQL-запросом
+     * @param limit - размер страницы, null - все найденные фильмы
+     */
+    public List<Film> searchMovieByTitleAndDirector(String query, List<String> by, SearchSort sort,
+                                                    Integer limit, int offset, Set<FilmField> fields) {
+        boolean byTitle = by.contains("title");
+        boolean byDirector = by.contains("director");
+        if (!byTitle && !byDirector)
+            throw new NotFoundException("не верно заданы параметры поиска");
+        if (limit != null)
+            CursorUtils.validateLimit(limit);
+        if (offset < 0)
+            throw new ValidationException("Смещение не может быть отрицательным");
+        int pageLimit = limit == null ? Integer.MAX_VALUE : limit;
+        if (!useSearchIndex) {
+            List<Film> films = filmStorage.searchMovieByTitleAndDirector(query, by, fields);
+            return films.stream().skip(offset).limit(pageLimit).collect(Collectors.toList());
+        }
+        return loadFilms(filmSearchIndex.search(query, byTitle, byDirector, sort, offset, pageLimit), fields);
+    }
+
+    /**
+     * Фильмы, которые чаще всего лайкают вместе с данным
+     */
+    public List<Film> getSimilarFilms(int filmId, int count, Set<FilmField> fields) {
+        getFilmById(filmId);
+        if (count < 1 || count > filmSimilarityIndex.getCapacity())
+            throw new ValidationException("Количество фильмов должно быть от 1 до %s", filmSimilarityIndex.getCapacity());
+        return loadFilms(filmSimilarityIndex.getSimilar(filmId, count), fields);
     }
 
-    public List<Film> moviesSharedWithFriend(int userId, int friendId) {
-        return filmStorage.moviesSharedWithFriend(userId, friendId);
+    public void rebuildSimilarFilms() {
+        filmSimilarityIndex.rebuild();
+    }
+
+    public void rebuildSearchIndex() {
+        filmSearchIndex.rebuild();
+        filmSuggestIndex.rebuild();
+    }
+
+    /**
+     * Подсказки для строки поиска по началу слов в названиях фильмов и именах режиссеров
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        if (limit < 1 || limit > filmSuggestIndex.getTopSize())
+            throw new ValidationException("Количество подсказок должно быть от 1 до %s", filmSuggestIndex.getTopSize());
+        return filmSuggestIndex.suggest(prefix, limit);
+    }
+
+    /**
+     * Фильмы, понравившиеся всем пользователям, по убыванию количества лайков, затем по id
+     * @param userIds - id пользователей, не меньше двух различных
+     */
+    public List<Film> getCommonFilms(Collection<Integer> userIds, Set<FilmField> fields) {
+        List<Integer> distinctIds = userIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        if (distinctIds.size() < 2)
+            throw new ValidationException("Нужно указать хотя бы двух различных пользователей");
+        if (!useCommonFilmsIndex)
+            return filmStorage.getCommonFilms(distinctIds, fields);
+        int[] filmIds = likesMatrix.getCommonFilms(distinctIds.stream().mapToInt(Integer::intValue).toArray());
+        List<Integer> ordered = Arrays.stream(filmIds).boxed()
+                .sorted(Comparator.comparingInt((Integer filmId) -> -popularFilmsIndex.getLikes(filmId))
+                        .thenComparingInt(filmId -> filmId))
+                .collect(Collectors.toList());
+        return loadFilms(ordered, fields);
     }
 
     public void deleteFilmById(int id) {
-        if (filmStorage.getById(id) == null)
+        if (filmCache.get(id, filmStorage::getById) == null)
             throw new NotFoundException("Фильм %s не существует, удаление невозможно", id);
         filmStorage.deleteFilmById(id);
+        popularFilmsIndex.remove(id);
+        filmSearchIndex.removeFilm(id);
+        filmSuggestIndex.removeFilm(id);
+        directorFilmsIndex.remove(id);
+        // Соседи и рекомендации поставивших лайк посчитаны с этим фильмом, плановый пересчет берет только помеченных
+        for (int userId : likesMatrix.getUsers(id)) {
+            recommendationStorage.markDirty(userId);
+        }
+        filmSimilarityIndex.removeFilm(id);
+        filmCache.invalidate(id);
+    }
+
+    public List<Film> getPopularFilms(int count, int genreId, int year, Set<FilmField> fields) {
+        if (!usePopularFilmsIndex)
+            return filmStorage.getPopularFilms(count, genreId, year, fields);
+        if (genreId != 0 && genreStorage.findById(genreId).isEmpty())
+            throw new NotFoundException("Жанра с ID = %s не существует", genreId);
+        return loadFilms(popularFilmsIndex.getTop(count, genreId, year), fields);
+    }
+
+    /**
+     * Загрузка фильмов по id в заданном порядке. Полностью заполненные фильмы берутся из кэша
+     */
+    private List<Film> loadFilms(List<Integer> filmIds, Set<FilmField> fields) {
+        if (fields.containsAll(FilmField.ALL))
+            return filmCache.getAll(filmIds, filmStorage::getByIds);
+        return filmStorage.getByIds(filmIds, fields);
+    }
+
+    /**
+     * Сокращенное представление фильмов только с запрошенными полями
+     */
+    public List<FilmView> project(List<Film> films, Set<FilmField> fields) {
+        return films.stream()
+                .map(film -> FilmView.builder()
+                        .id(film.getId())
+                        .name(fields.contains(FilmField.NAME) ? film.getName() : null)
+                        .description(fields.contains(FilmField.DESCRIPTION) ? film.getDescription() : null)
+                        .releaseDate(fields.contains(FilmField.RELEASE_DATE) ? film.getReleaseDate() : null)
+                        .duration(fields.contains(FilmField.DURATION) ? film.getDuration() : null)
+                        .mpa(fields.contains(FilmField.MPA) ? film.getMpa() : null)
+                        .genres(fields.contains(FilmField.GENRES) ? film.getGenres() : null)
+                        .directors(fields.contains(FilmField.DIRECTORS) ? film.getDirectors() : null)
+                        .likes(fields.contains(FilmField.LIKES) ? popularFilmsIndex.getLikes(film.getId()) : null)
+                        .appraisers(fields.contains(FilmField.APPRAISERS) ? film.getAppraisers() : null)
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    public CacheStats getCacheStats() {
+        return filmCache.getStats();
     }
 
-    public List<Film> getPopularFilms(int count, int genreId, int year) {
-        return filmStorage.getPopularFilms(count, genreId, year);
+    public Map<Integer, Integer> getLikesCount(Collection<Integer> filmIds) {
+        return filmStorage.getLikesCount(filmIds);
     }
 
 }
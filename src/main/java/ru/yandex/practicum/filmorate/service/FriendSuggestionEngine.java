@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.util.IntCounter;
+
+import java.util.*;
+
+/**
+ * Предложения друзей по графу {@link FriendshipGraph}: пользователи второго уровня,
+ * упорядоченные по количеству общих друзей, затем по id.
+ * Общие друзья считаются так же, как в /users/{id}/friends/common: пользователи, которых добавили в друзья оба.
+ * Обход ограничен: учитываются не больше max-friends друзей пользователя и не больше max-fanout
+ * добавивших каждого из них, поэтому популярные пользователи не разворачивают обход на весь граф.
+ * Уже связанные с пользователем (в любом направлении) не предлагаются.
+ * Результаты кэшируются по пользователю (LRU) и сбрасываются при изменении дружбы.
+ */
+@Service
+public class FriendSuggestionEngine {
+
+    private final FriendshipGraph friendshipGraph;
+    @Getter
+    private final int maxCount;
+    private final int maxFriends;
+    private final int maxFanout;
+    private final int cacheSize;
+
+    private final LinkedHashMap<Integer, int[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    // Пока идут вычисления, для каждого затронутого сбросом пользователя запоминается номер сброса:
+    // результат, начатый до сброса своего пользователя, в кэш не попадает, остальные сохраняются
+    private final Map<Integer, Long> invalidatedAt = new HashMap<>();
+    private long invalidations;
+    private long clearedAt;
+    private int computing;
+
+    public FriendSuggestionEngine(FriendshipGraph friendshipGraph,
+                                  @Value("${filmorate.friend-suggestions.max-count:100}") int maxCount,
+                                  @Value("${filmorate.friend-suggestions.max-friends:1000}") int maxFriends,
+                                  @Value("${filmorate.friend-suggestions.max-fanout:1000}") int maxFanout,
+                                  @Value("${filmorate.friend-suggestions.cache-size:10000}") int cacheSize) {
+        this.friendshipGraph = friendshipGraph;
+        this.maxCount = maxCount;
+        this.maxFriends = maxFriends;
+        this.maxFanout = maxFanout;
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * id предложенных пользователей, не больше count (и не больше max-count)
+     */
+    public List<Integer> suggest(int userId, int count) {
+        int[] suggestions;
+        long startedAt;
+        synchronized (this) {
+            suggestions = cache.get(userId);
+            if (suggestions == null)
+                computing++;
+            startedAt = invalidations;
+        }
+        if (suggestions == null) {
+            try {
+                suggestions = compute(userId);
+            } finally {
+                store(userId, suggestions, startedAt);
+            }
+        }
+        List<Integer> result = new ArrayList<>(Math.min(count, suggestions.length));
+        for (int i = 0; i < suggestions.length && i < count; i++) {
+            result.add(suggestions[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Сброс после добавления или удаления заявки userId -> friendId: меняются предложения самих пользователей
+     * и всех, кто добавил friendId в друзья (у них меняется число общих друзей с userId)
+     */
+    public synchronized void invalidate(int userId, int friendId) {
+        invalidations++;
+        remove(userId);
+        remove(friendId);
+        for (int followerId : friendshipGraph.getFollowers(friendId)) {
+            remove(followerId);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        clearedAt = ++invalidations;
+        cache.clear();
+    }
+
+    private void remove(int userId) {
+        cache.remove(userId);
+        if (computing > 0)
+            invalidatedAt.put(userId, invalidations);
+    }
+
+    private synchronized void store(int userId, int[] suggestions, long startedAt) {
+        if (suggestions != null && startedAt >= clearedAt
+                && invalidatedAt.getOrDefault(userId, 0L) <= startedAt) {
+            cache.put(userId, suggestions);
+            if (cache.size() > cacheSize)
+                cache.remove(cache.keySet().iterator().next());
+        }
+        if (--computing == 0)
+            invalidatedAt.clear();
+    }
+
+    private int[] compute(int userId) {
+        int[] friends = friendshipGraph.getFriends(userId);
+        int[] followers = friendshipGraph.getFollowers(userId);
+        IntCounter mutual = new IntCounter(Math.min(friends.length, maxFriends) * 16);
+        for (int i = 0; i < friends.length && i < maxFriends; i++) {
+            int[] candidates = friendshipGraph.getFollowers(friends[i]);
+            for (int j = 0; j < candidates.length && j < maxFanout; j++) {
+                if (candidates[j] != userId)
+                    mutual.increment(candidates[j]);
+            }
+        }
+
+        // Ограниченная куча из maxCount лучших: оценка - число общих друзей, при равенстве выше меньший id
+        PriorityQueue<Long> top = new PriorityQueue<>(maxCount + 1);
+        mutual.forEach((candidateId, count) -> {
+            if (Arrays.binarySearch(friends, candidateId) >= 0 || Arrays.binarySearch(followers, candidateId) >= 0)
+                return;
+            long score = ((long) count << 32) | (Integer.MAX_VALUE - candidateId);
+            if (top.size() < maxCount) {
+                top.add(score);
+            } else if (score > top.peek()) {
+                top.poll();
+                top.add(score);
+            }
+        });
+        int[] result = new int[top.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = Integer.MAX_VALUE - (int) (top.poll() & 0xFFFFFFFFL);
+        }
+        return result;
+    }
+}
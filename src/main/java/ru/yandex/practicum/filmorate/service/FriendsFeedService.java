@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.cache.FriendsTimelineCache;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Лента событий друзей с гибридной рассылкой.
+ * События друзей с небольшим числом подписчиков уже разложены в ленту пользователя
+ * ({@link FriendsTimelineCache}), события популярных друзей читаются при запросе по каждому из них.
+ * Источники упорядочены по убыванию (timestamp, eventId) и сливаются кучей по курсорам источников.
+ */
+@Service
+@RequiredArgsConstructor
+public class FriendsFeedService {
+
+    private static final Comparator<Feed> NEWEST_FIRST = Comparator.comparingLong(Feed::getTimestamp)
+            .thenComparingInt(Feed::getEventId)
+            .reversed();
+
+    private final FriendshipGraph friendshipGraph;
+
+    private final FriendsTimelineCache friendsTimelineCache;
+
+    private final FeedStorage feedStorage;
+
+    /**
+     * Не больше limit событий друзей пользователя старше before по убыванию (timestamp, eventId)
+     * @param before - ключ (timestamp, eventId) последнего выданного события, null - с самого нового
+     */
+    public List<Feed> getFeedsBefore(int userId, long[] before, int limit) {
+        List<Integer> pushed = new ArrayList<>();
+        List<Integer> pulled = new ArrayList<>();
+        for (int friendId : friendshipGraph.getFriends(userId)) {
+            if (friendsTimelineCache.isPushed(friendId))
+                pushed.add(friendId);
+            else
+                pulled.add(friendId);
+        }
+
+        List<List<Feed>> sources = new ArrayList<>(pulled.size() + 1);
+        if (!pushed.isEmpty()) {
+            List<Feed> timeline = friendsTimelineCache.getTimeline(userId, before, limit,
+                    count -> feedStorage.getFeedsBefore(pushed, null, count));
+            sources.add(timeline != null ? timeline : feedStorage.getFeedsBefore(pushed, before, limit));
+        }
+        for (int friendId : pulled) {
+            sources.add(feedStorage.getFeedsBefore(friendId, before, limit));
+        }
+        return merge(sources, limit);
+    }
+
+    /**
+     * Слияние упорядоченных по убыванию списков, событие из нескольких источников попадает один раз
+     */
+    static List<Feed> merge(List<List<Feed>> sources, int limit) {
+        if (sources.size() == 1)
+            return sources.get(0).size() <= limit ? sources.get(0) : sources.get(0).subList(0, limit);
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, sources.size()),
+                (first, second) -> NEWEST_FIRST.compare(first.current(), second.current()));
+        for (List<Feed> source : sources) {
+            if (!source.isEmpty())
+                heap.add(new Cursor(source));
+        }
+        List<Feed> result = new ArrayList<>(limit);
+        while (!heap.isEmpty() && result.size() < limit) {
+            Cursor cursor = heap.poll();
+            Feed feed = cursor.current();
+            // Одинаковые события имеют одинаковый ключ и выходят из кучи подряд
+            if (result.isEmpty() || result.get(result.size() - 1).getEventId() != feed.getEventId())
+                result.add(feed);
+            if (cursor.advance())
+                heap.add(cursor);
+        }
+        return result;
+    }
+
+    private static class Cursor {
+        private final List<Feed> feeds;
+        private int position;
+
+        Cursor(List<Feed> feeds) {
+            this.feeds = feeds;
+        }
+
+        Feed current() {
+            return feeds.get(position);
+        }
+
+        boolean advance() {
+            return ++position < feeds.size();
+        }
+    }
+}
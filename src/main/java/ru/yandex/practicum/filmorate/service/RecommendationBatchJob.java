@@ -0,0 +1,230 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.Recommendation;
+import ru.yandex.practicum.filmorate.dto.RecommendationJobStats;
+import ru.yandex.practicum.filmorate.storage.RecommendationStorage;
+import ru.yandex.practicum.filmorate.storage.SchedulerLockStorage;
+import ru.yandex.practicum.filmorate.storage.index.LikesMatrix;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновый пересчет рекомендаций в таблицу USER_RECOMMENDATIONS.
+ * Первый запуск пересчитывает всех пользователей с лайками, следующие - только помеченных в RECOMMENDATION_DIRTY
+ * (изменились их лайки) и тех, у кого помеченные пользователи были среди соседей.
+ * Пользователи делятся на порции, порции считаются параллельно и сохраняются каждая в своей транзакции.
+ * Запуск защищен блокировкой в SCHEDULER_LOCKS, поэтому на нескольких узлах пересчет идет только на одном.
+ */
+@Slf4j
+@Service
+public class RecommendationBatchJob {
+
+    static final String LOCK_NAME = "recommendations";
+
+    private final RecommendationEngine recommendationEngine;
+    private final RecommendationStorage recommendationStorage;
+    private final SchedulerLockStorage schedulerLockStorage;
+    private final LikesMatrix likesMatrix;
+    private final boolean enabled;
+    private final int partitionSize;
+    private final Duration lockAtMostFor;
+    private final ExecutorService executor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong usersProcessed = new AtomicLong();
+    private final AtomicInteger partitionsDone = new AtomicInteger();
+    private final AtomicInteger partitionsFailed = new AtomicInteger();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong skippedLocked = new AtomicLong();
+    private volatile String mode;
+    private volatile long usersTotal;
+    private volatile int partitionsTotal;
+    private volatile Instant lastStartedAt;
+    private volatile Instant lastFinishedAt;
+    private volatile Long lastDurationMs;
+    private volatile String lastError;
+    private volatile boolean completedOnce;
+
+    public RecommendationBatchJob(RecommendationEngine recommendationEngine,
+                                  RecommendationStorage recommendationStorage,
+                                  SchedulerLockStorage schedulerLockStorage,
+                                  LikesMatrix likesMatrix,
+                                  @Value("${filmorate.recommendations.batch.enabled:true}") boolean enabled,
+                                  @Value("${filmorate.recommendations.batch.partition-size:500}") int partitionSize,
+                                  @Value("${filmorate.recommendations.batch.threads:4}") int threads,
+                                  @Value("${filmorate.recommendations.batch.lock-minutes:30}") int lockMinutes) {
+        this.recommendationEngine = recommendationEngine;
+        this.recommendationStorage = recommendationStorage;
+        this.schedulerLockStorage = schedulerLockStorage;
+        this.likesMatrix = likesMatrix;
+        this.enabled = enabled;
+        this.partitionSize = partitionSize;
+        this.lockAtMostFor = Duration.ofMinutes(lockMinutes);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "recommendations-batch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.batch.interval-ms:300000}",
+            initialDelayString = "${filmorate.recommendations.batch.initial-delay-ms:30000}")
+    public void scheduledRun() {
+        if (enabled)
+            run(false);
+    }
+
+    /**
+     * Можно ли отдать пользователю сохраненные рекомендации: пересчет хотя бы раз завершился
+     * и лайки пользователя не менялись после последнего расчета
+     */
+    public boolean hasFreshRecommendations(int userId) {
+        if (!enabled)
+            return false;
+        if (!completedOnce)
+            completedOnce = schedulerLockStorage.getLastCompleted(LOCK_NAME).isPresent();
+        return completedOnce && !recommendationStorage.isDirty(userId);
+    }
+
+    /**
+     * Запуск пересчета
+     * @param full - пересчитать всех пользователей, а не только измененных
+     */
+    public RecommendationJobStats run(boolean full) {
+        if (!running.compareAndSet(false, true))
+            return getStats();
+        try {
+            if (!schedulerLockStorage.tryLock(LOCK_NAME, lockAtMostFor)) {
+                skippedLocked.incrementAndGet();
+                log.debug("Пересчет рекомендаций выполняется на другом узле");
+                return getStats();
+            }
+            boolean completed = false;
+            try {
+                completed = recompute(full || schedulerLockStorage.getLastCompleted(LOCK_NAME).isEmpty());
+            } catch (RuntimeException e) {
+                lastError = e.getMessage();
+                log.error("Ошибка пересчета рекомендаций", e);
+            } finally {
+                schedulerLockStorage.unlock(LOCK_NAME, completed);
+            }
+            if (completed)
+                completedOnce = true;
+        } finally {
+            running.set(false);
+        }
+        return getStats();
+    }
+
+    private boolean recompute(boolean full) {
+        long started = System.nanoTime();
+        lastStartedAt = Instant.now();
+        runs.incrementAndGet();
+        lastError = null;
+        mode = full ? "FULL" : "INCREMENTAL";
+
+        Map<Integer, Long> dirty = recommendationStorage.getDirtyUsers();
+        // Лайки помеченных пользователей могли измениться на другом узле
+        recommendationStorage.getLikes(dirty.keySet()).forEach(likesMatrix::replaceUser);
+        Set<Integer> userIds = new TreeSet<>(dirty.keySet());
+        if (full) {
+            Arrays.stream(likesMatrix.getUserIds()).forEach(userIds::add);
+        } else if (!dirty.isEmpty()) {
+            userIds.addAll(recommendationStorage.getUsersWithNeighbours(dirty.keySet()));
+        }
+
+        List<List<Integer>> partitions = new ArrayList<>();
+        List<Integer> partition = new ArrayList<>(partitionSize);
+        for (Integer userId : userIds) {
+            partition.add(userId);
+            if (partition.size() == partitionSize) {
+                partitions.add(partition);
+                partition = new ArrayList<>(partitionSize);
+            }
+        }
+        if (!partition.isEmpty())
+            partitions.add(partition);
+
+        usersTotal = userIds.size();
+        partitionsTotal = partitions.size();
+        usersProcessed.set(0);
+        partitionsDone.set(0);
+        partitionsFailed.set(0);
+
+        List<Future<?>> futures = new ArrayList<>(partitions.size());
+        for (List<Integer> users : partitions) {
+            futures.add(executor.submit(() -> process(users, dirty)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Пересчет рекомендаций прерван", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        lastFinishedAt = Instant.now();
+        lastDurationMs = (System.nanoTime() - started) / 1_000_000;
+        log.info("Пересчет рекомендаций ({}) завершен: {} пользовател(ей) за {} мс, ошибок в порциях {}",
+                mode, usersProcessed.get(), lastDurationMs, partitionsFailed.get());
+        return partitionsFailed.get() == 0;
+    }
+
+    private void process(List<Integer> userIds, Map<Integer, Long> dirty) {
+        try {
+            List<Recommendation> recommendations = new ArrayList<>(userIds.size());
+            for (int userId : userIds) {
+                recommendations.add(recommendationEngine.compute(userId, false));
+            }
+            recommendationStorage.saveRecommendations(recommendations, dirty);
+            usersProcessed.addAndGet(userIds.size());
+            partitionsDone.incrementAndGet();
+        } catch (RuntimeException e) {
+            // Пометки пользователей порции остаются, они будут пересчитаны при следующем запуске
+            partitionsFailed.incrementAndGet();
+            lastError = e.getMessage();
+            log.warn("Не удалось пересчитать рекомендации для {} пользовател(ей)", userIds.size(), e);
+        }
+    }
+
+    public RecommendationJobStats getStats() {
+        Long durationMs = lastDurationMs;
+        return RecommendationJobStats.builder()
+                .running(running.get())
+                .mode(mode)
+                .usersTotal(usersTotal)
+                .usersProcessed(usersProcessed.get())
+                .partitionsTotal(partitionsTotal)
+                .partitionsDone(partitionsDone.get())
+                .partitionsFailed(partitionsFailed.get())
+                .lastStartedAt(lastStartedAt)
+                .lastFinishedAt(lastFinishedAt)
+                .lastDurationMs(durationMs)
+                .usersPerSecond(durationMs == null ? null
+                        : durationMs == 0 ? usersProcessed.get() : usersProcessed.get() * 1000.0 / durationMs)
+                .runs(runs.get())
+                .skippedLocked(skippedLocked.get())
+                .lastError(lastError)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,228 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.Recommendation;
+import ru.yandex.practicum.filmorate.enums.Similarity;
+import ru.yandex.practicum.filmorate.storage.index.LikesMatrix;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Рекомендации фильмов по схожести пользователей (user-based collaborative filtering) над {@link LikesMatrix}.
+ * Кандидаты в соседи - пользователи, лайкнувшие хотя бы один фильм пользователя.
+ * Для каждого кандидата пересечение лайков считается слиянием отсортированных массивов,
+ * отбираются k самых похожих, фильмы соседей, которые пользователь еще не лайкнул,
+ * получают сумму схожести соседей. Оценка кандидатов выполняется параллельно в отдельном ForkJoinPool.
+ * При k = 1 и схожести OVERLAP результат совпадает с прежним SQL-запросом:
+ * все фильмы одного пользователя с наибольшим числом общих лайков.
+ */
+@Slf4j
+@Service
+public class RecommendationEngine {
+
+    private static final Comparator<Neighbour> NEIGHBOUR_ORDER = Comparator.comparingDouble((Neighbour n) -> n.score)
+            .thenComparingInt(n -> -n.userId);
+
+    private final LikesMatrix likesMatrix;
+    private final int neighbours;
+    private final Similarity similarity;
+    private final ForkJoinPool pool;
+
+    public RecommendationEngine(LikesMatrix likesMatrix,
+                                @Value("${filmorate.recommendations.neighbours:1}") int neighbours,
+                                @Value("${filmorate.recommendations.similarity:overlap}") String similarity,
+                                @Value("${filmorate.recommendations.parallelism:4}") int parallelism) {
+        this.likesMatrix = likesMatrix;
+        this.neighbours = neighbours;
+        this.similarity = Similarity.valueOf(similarity.toUpperCase().trim());
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * id рекомендованных фильмов в порядке убывания оценки, при равной оценке - по возрастанию id
+     */
+    public List<Integer> recommend(int userId) {
+        return compute(userId, neighbours, similarity, true).getFilmIds();
+    }
+
+    public List<Integer> recommend(int userId, int k, Similarity similarity) {
+        return compute(userId, k, similarity, true).getFilmIds();
+    }
+
+    /**
+     * Расчет с настройками из конфигурации
+     * @param parallel - оценивать кандидатов в пуле; пакетный пересчет распараллеливает по пользователям
+     */
+    public Recommendation compute(int userId, boolean parallel) {
+        return compute(userId, neighbours, similarity, parallel);
+    }
+
+    private Recommendation compute(int userId, int k, Similarity similarity, boolean parallel) {
+        int[] own = likesMatrix.getFilms(userId);
+        if (own.length == 0)
+            return empty(userId);
+
+        BitSet seen = new BitSet();
+        for (int filmId : own) {
+            for (int otherId : likesMatrix.getUsers(filmId)) {
+                seen.set(otherId);
+            }
+        }
+        seen.clear(userId);
+        int[] candidates = seen.stream().toArray();
+        if (candidates.length == 0)
+            return empty(userId);
+
+        TopNeighbours top = parallel
+                ? pool.submit(() -> findNeighbours(own, candidates, k, similarity, true)).join()
+                : findNeighbours(own, candidates, k, similarity, false);
+
+        Map<Integer, Double> scores = new HashMap<>();
+        for (Neighbour neighbour : top.heap) {
+            forEachMissing(likesMatrix.getFilms(neighbour.userId), own,
+                    filmId -> scores.merge(filmId, neighbour.score, Double::sum));
+        }
+        List<Map.Entry<Integer, Double>> ordered = scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .collect(Collectors.toList());
+        return new Recommendation(userId,
+                top.heap.stream().mapToInt(neighbour -> neighbour.userId).sorted().toArray(),
+                ordered.stream().map(Map.Entry::getKey).collect(Collectors.toList()),
+                ordered.stream().mapToDouble(Map.Entry::getValue).toArray());
+    }
+
+    private TopNeighbours findNeighbours(int[] own, int[] candidates, int k, Similarity similarity, boolean parallel) {
+        IntStream stream = Arrays.stream(candidates);
+        return (parallel ? stream.parallel() : stream)
+                .collect(() -> new TopNeighbours(k),
+                        (heap, otherId) -> heap.offer(score(own, otherId, similarity)),
+                        TopNeighbours::merge);
+    }
+
+    private static Recommendation empty(int userId) {
+        return new Recommendation(userId, new int[0], Collections.emptyList(), new double[0]);
+    }
+
+    private Neighbour score(int[] own, int otherId, Similarity similarity) {
+        int[] other = likesMatrix.getFilms(otherId);
+        int overlap = intersectionSize(own, other);
+        double score;
+        switch (similarity) {
+            case JACCARD:
+                score = (double) overlap / (own.length + other.length - overlap);
+                break;
+            case COSINE:
+                score = overlap / Math.sqrt((double) own.length * other.length);
+                break;
+            default:
+                score = overlap;
+        }
+        return new Neighbour(otherId, score);
+    }
+
+    /**
+     * Размер пересечения отсортированных массивов: слиянием при близких размерах,
+     * иначе двоичным поиском элементов меньшего массива в большем
+     */
+    private static int intersectionSize(int[] first, int[] second) {
+        int[] small = first.length <= second.length ? first : second;
+        int[] large = small == first ? second : first;
+        if (small.length == 0)
+            return 0;
+        int count = 0;
+        if (large.length / small.length > 16) {
+            int from = 0;
+            for (int value : small) {
+                int index = Arrays.binarySearch(large, from, large.length, value);
+                if (index >= 0) {
+                    count++;
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+                if (from == large.length)
+                    break;
+            }
+            return count;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < small.length && j < large.length) {
+            if (small[i] < large[j]) {
+                i++;
+            } else if (small[i] > large[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Обход элементов отсортированного массива source, которых нет в отсортированном массиве excluded
+     */
+    private static void forEachMissing(int[] source, int[] excluded, IntConsumer consumer) {
+        int j = 0;
+        for (int value : source) {
+            while (j < excluded.length && excluded[j] < value) {
+                j++;
+            }
+            if (j == excluded.length || excluded[j] != value)
+                consumer.accept(value);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static class Neighbour {
+        private final int userId;
+        private final double score;
+
+        Neighbour(int userId, double score) {
+            this.userId = userId;
+            this.score = score;
+        }
+    }
+
+    /**
+     * k лучших соседей: куча с наименее похожим в вершине
+     */
+    private static class TopNeighbours {
+        private final int k;
+        private final PriorityQueue<Neighbour> heap;
+
+        TopNeighbours(int k) {
+            this.k = k;
+            this.heap = new PriorityQueue<>(k + 1, NEIGHBOUR_ORDER);
+        }
+
+        void offer(Neighbour neighbour) {
+            if (neighbour.score <= 0)
+                return;
+            if (heap.size() < k) {
+                heap.add(neighbour);
+            } else if (NEIGHBOUR_ORDER.compare(neighbour, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(neighbour);
+            }
+        }
+
+        void merge(TopNeighbours other) {
+            other.heap.forEach(this::offer);
+        }
+    }
+}
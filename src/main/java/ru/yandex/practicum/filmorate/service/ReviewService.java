@@ -9,7 +9,6 @@ import ru.yandex.practicum.filmorate.enums.Operation;
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Review;
-import ru.yandex.practicum.filmorate.storage.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
 
 import java.time.Instant;
@@ -21,14 +20,14 @@ public class ReviewService {
 
     private final ReviewStorage reviewStorage;
 
-    private final FeedStorage feedStorage;
+    private final FeedWriter feedWriter;
 
     @Transactional
     public Review addReview(Review review) {
         review.setReviewId(null);
         try {
             Review createdReview = reviewStorage.save(review);
-            feedStorage.createFeed(review.getUserId(), review.getReviewId(), EventType.REVIEW,
+            feedWriter.createFeedSync(review.getUserId(), review.getReviewId(), EventType.REVIEW,
                     Operation.ADD, Instant.now().toEpochMilli());
             return createdReview;
         } catch (DataIntegrityViolationException e) {
@@ -40,7 +39,7 @@ public class ReviewService {
     public Review editReview(Review review) {
         try {
             Review savedReview = reviewStorage.save(review);
-            feedStorage.createFeed(savedReview.getUserId(), savedReview.getReviewId(), EventType.REVIEW,
+            feedWriter.createFeedSync(savedReview.getUserId(), savedReview.getReviewId(), EventType.REVIEW,
                     Operation.UPDATE, Instant.now().toEpochMilli());
             return savedReview;
         } catch (DataIntegrityViolationException e) {
@@ -54,7 +53,7 @@ public class ReviewService {
         Review review = reviewStorage.findById(reviewId)
                 .orElseThrow(() -> new NotFoundException("Отзыва %s не существует, удаление невозможно", reviewId));
         reviewStorage.deleteById(reviewId);
-        feedStorage.createFeed(review.getUserId(), reviewId, EventType.REVIEW, Operation.REMOVE, Instant.now().toEpochMilli());
+        feedWriter.createFeedSync(review.getUserId(), reviewId, EventType.REVIEW, Operation.REMOVE, Instant.now().toEpochMilli());
     }
 
     @Transactional(readOnly = true)
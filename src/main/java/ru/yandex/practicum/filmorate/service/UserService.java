@@ -2,20 +2,38 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
+import ru.yandex.practicum.filmorate.dto.FeedStreamStats;
+import ru.yandex.practicum.filmorate.dto.RecommendationJobStats;
 import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.enums.FilmField;
 import ru.yandex.practicum.filmorate.enums.Operation;
 import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.UserFriend;
 import ru.yandex.practicum.filmorate.storage.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.RecommendationStorage;
 import ru.yandex.practicum.filmorate.storage.UserFriendStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCache;
+import ru.yandex.practicum.filmorate.storage.cache.FriendsTimelineCache;
+import ru.yandex.practicum.filmorate.storage.cache.RecentFeedBuffer;
+import ru.yandex.practicum.filmorate.storage.index.DirectorFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.util.CursorUtils;
+import ru.yandex.practicum.filmorate.util.RoaringIntSet;
 
 import java.time.Instant;
 import java.util.*;
@@ -31,13 +49,63 @@ public class UserService {
 
     private final FeedStorage feedStorage;
 
+    private final FeedWriter feedWriter;
+
     @Qualifier("filmDbStorage")
     private final FilmStorage filmStorage;
 
+    private final PopularFilmsIndex popularFilmsIndex;
+
+    private final FilmCache filmCache;
+
+    private final FilmSuggestIndex filmSuggestIndex;
+
+    private final DirectorFilmsIndex directorFilmsIndex;
+
+    private final FriendshipGraph friendshipGraph;
+
+    private final FilmSimilarityIndex filmSimilarityIndex;
+
+    private final RecommendationEngine recommendationEngine;
+
+    private final FriendSuggestionEngine friendSuggestionEngine;
+
+    private final FriendsFeedService friendsFeedService;
+
+    private final FriendsTimelineCache friendsTimelineCache;
+
+    private final RecentFeedBuffer recentFeedBuffer;
+
+    private final FeedStreamService feedStreamService;
+
+    private final RecommendationBatchJob recommendationBatchJob;
+
+    private final RecommendationStorage recommendationStorage;
+
+    @Value("${filmorate.pagination.allow-unpaged:false}")
+    private final boolean allowUnpaged;
+
+    @Value("${filmorate.pagination.default-limit:100}")
+    private final int defaultPageLimit;
+
     public Collection<User> getAll() {
         return userStorage.getAll();
     }
 
+    /**
+     * Постраничная выдача пользователей. Без параметров возвращает всех пользователей,
+     * если это разрешено настройкой filmorate.pagination.allow-unpaged, иначе первую страницу
+     */
+    public CursorPage<User> getPage(Integer limit, String after) {
+        if (limit == null && after == null && allowUnpaged)
+            return new CursorPage<>(new ArrayList<>(getAll()), null);
+        int pageLimit = limit == null ? defaultPageLimit : limit;
+        CursorUtils.validateLimit(pageLimit);
+        int afterId = after == null ? 0 : (int) CursorUtils.decode(after, 1)[0];
+        return CursorUtils.toPage(userStorage.getPage(afterId, pageLimit + 1), pageLimit,
+                user -> new long[]{user.getId()});
+    }
+
     public void editUser(User user) {
         User userFromDB = userStorage.getById(user.getId())
                 .orElseThrow(() -> new NotFoundException("Пользователь с id %s не найден", user.getId()));
@@ -50,105 +118,209 @@ public class UserService {
 
     public void addUser(User user) {
         userStorage.addUser(user);
+        friendshipGraph.addUser(user.getId());
     }
 
     public User getUserById(int userId) {
         User user = userStorage.getById(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь с id %s не найден", userId));
-        Collection<UserFriend> friends = userFriendStorage.findAllByUser(user);
-        user.setFriends(friends);
+        friendshipGraph.addUser(userId);
+        user.setFriends(Arrays.stream(friendshipGraph.getFriends(userId))
+                .mapToObj(friendId -> new UserFriend(userId, friendId))
+                .collect(Collectors.toList()));
         return user;
     }
 
+    /**
+     * Проверка существования пользователя по графу дружбы. Пользователь, созданный на другом узле,
+     * проверяется в базе и добавляется в граф
+     */
+    private void checkUser(int userId) {
+        if (friendshipGraph.containsUser(userId))
+            return;
+        userStorage.getById(userId)
+                .orElseThrow(() -> new NotFoundException("Пользователь с id %s не найден", userId));
+        friendshipGraph.addUser(userId);
+    }
+
     public void addFriend(int id, int friendId) {
-        userStorage.getById(id)
-                .orElseThrow(() -> new NotFoundException("Пользователь с id %s не найден", id));
-        userStorage.getById(friendId)
-                .orElseThrow(() -> new NotFoundException("Пользователь с id %s не найден", friendId));
+        checkUser(id);
+        checkUser(friendId);
 
         if (id == friendId)
             throw new ConflictException("Нельзя добавить себя в друзья");
-        if (userFriendStorage.findByUserAndFriend(id, friendId).isPresent())
+        if (friendshipGraph.hasFriend(id, friendId) || friendshipGraph.hasFriend(friendId, id))
             throw new ConflictException("Пользователь %s уже дружит с %s", id, friendId);
 
         UserFriend userFriend = new UserFriend();
         userFriend.setUserId(id);
         userFriend.setFriendId(friendId);
         userFriend.setStatus(0);
-        feedStorage.createFeed(id, friendId, EventType.FRIEND, Operation.ADD, Instant.now().toEpochMilli());
+        feedWriter.createFeed(id, friendId, EventType.FRIEND, Operation.ADD, Instant.now().toEpochMilli());
         try {
             userFriendStorage.save(userFriend);
         } catch (DataIntegrityViolationException e) {
             throw new NotFoundException("Один из указанных пользователей не существует [%s, %s]", id, friendId);
         }
+        friendSuggestionEngine.invalidate(id, friendId);
+        friendsTimelineCache.onFriendAdded(id, friendId);
     }
 
     public void deleteFriend(int id, int friendId) {
         if (id == friendId)
             throw new ConflictException("Нельзя удалить себя из друзья");
-        Optional<UserFriend> userFriendOptional = userFriendStorage.findByUserAndFriend(id, friendId);
+        // Заявка удаляется в том направлении, в котором она была отправлена.
+        // Если в графе ее нет, она могла быть создана на другом узле и ищется в базе
+        UserFriend userFriend;
+        if (friendshipGraph.hasFriend(id, friendId))
+            userFriend = new UserFriend(id, friendId);
+        else if (friendshipGraph.hasFriend(friendId, id))
+            userFriend = new UserFriend(friendId, id);
+        else
+            userFriend = userFriendStorage.findByUserAndFriend(id, friendId)
+                    .orElseThrow(() -> new ConflictException("Запрос в друзья не найден"));
 
-        if (userFriendOptional.isEmpty())
-            throw new ConflictException("Запрос в друзья не найден");
-
-        userFriendStorage.delete(userFriendOptional.get());
-        feedStorage.createFeed(id, friendId, EventType.FRIEND, Operation.REMOVE, Instant.now().toEpochMilli());
+        userFriendStorage.delete(userFriend);
+        friendSuggestionEngine.invalidate(userFriend.getUserId(), userFriend.getFriendId());
+        friendsTimelineCache.onFriendRemoved(userFriend.getUserId(), userFriend.getFriendId());
+        feedWriter.createFeed(id, friendId, EventType.FRIEND, Operation.REMOVE, Instant.now().toEpochMilli());
     }
 
     public Collection<User> getFriends(int id) {
-        User user = getUserById(id);
-        return userStorage.getUsersById(
-                userFriendStorage.findAllByUser(user).stream()
-                        .map(userFriend -> mapToUser(userFriend, user)).collect(Collectors.toList())
-        );
+        checkUser(id);
+        return userStorage.getUsersById(toList(friendshipGraph.getFriends(id)));
     }
 
     public Collection<User> getCommonFriends(int id, int otherId) {
-        User user = getUserById(id);
-        Collection<UserFriend> userFriends = userFriendStorage.findAllByUser(user);
+        checkUser(id);
         if (id == otherId)
-            return userStorage.getUsersById(
-                    userFriends.stream().map(userFriend -> mapToUser(userFriend, user)).collect(Collectors.toList())
-            );
-
-        User otherUser = getUserById(otherId);
-        Collection<UserFriend> otherUserFriends = userFriendStorage.findAllByUser(otherUser);
-        Set<Integer> commonFriends = userFriends.stream().map(UserFriend::getFriendId).collect(Collectors.toSet());
-        commonFriends.retainAll(otherUserFriends.stream().map(UserFriend::getFriendId).collect(Collectors.toSet()));
-
-        if (commonFriends.isEmpty())
-            return Collections.emptyList();
+            return userStorage.getUsersById(toList(friendshipGraph.getFriends(id)));
+        checkUser(otherId);
+        return userStorage.getUsersById(toList(friendshipGraph.getCommonFriends(id, otherId)));
+    }
 
-        return userStorage.getUsersById(commonFriends);
+    /**
+     * Предложения друзей по числу общих друзей, см. {@link FriendSuggestionEngine}
+     */
+    public List<User> getFriendSuggestions(int id, int count) {
+        checkUser(id);
+        if (count < 1 || count > friendSuggestionEngine.getMaxCount())
+            throw new ValidationException("Количество пользователей должно быть от 1 до %s",
+                    friendSuggestionEngine.getMaxCount());
+        List<Integer> userIds = friendSuggestionEngine.suggest(id, count);
+        Map<Integer, User> users = userStorage.getUsersById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, user -> user));
+        return userIds.stream().map(users::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
-    public List<Film> getRecommendations(int userId) {
+    public List<Film> getRecommendations(int userId, Set<FilmField> fields) {
         userStorage.getById(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь с id %s не найден", userId));
 
-        List<Film> films = filmStorage.getRecommendations(userId);
+        // Пока лайки пользователя не пересчитаны фоновой задачей, рекомендации считаются на лету
+        if (recommendationBatchJob.hasFreshRecommendations(userId))
+            return filmStorage.getRecommendations(userId, fields);
 
-        if (films.isEmpty())
-            return Collections.emptyList();
+        List<Integer> filmIds = recommendationEngine.recommend(userId);
+        if (fields.containsAll(FilmField.ALL))
+            return filmCache.getAll(filmIds, filmStorage::getByIds);
+        return filmStorage.getByIds(filmIds, fields);
+    }
 
-        return films;
+    public RecommendationJobStats getRecommendationJobStats() {
+        return recommendationBatchJob.getStats();
+    }
+
+    public RecommendationJobStats recomputeRecommendations(boolean full) {
+        return recommendationBatchJob.run(full);
     }
 
     public void deleteUserById(int id) {
         userStorage.getById(id)
                 .orElseThrow(() -> new NotFoundException("Пользователя %s не существует, удаление невозможно", id));
+        RoaringIntSet likedFilmIds = filmStorage.getFilmIdsLikedByUser(id);
+        // Соседи удаляются каскадно вместе с пользователем, поэтому тех, у кого он был соседом,
+        // нужно пометить для пересчета до удаления
+        recommendationStorage.getUsersWithNeighbours(List.of(id)).forEach(recommendationStorage::markDirty);
         userStorage.deleteUserById(id);
+        filmSimilarityIndex.removeUser(id);
+        friendshipGraph.removeUser(id);
+        friendSuggestionEngine.invalidateAll();
+        friendsTimelineCache.clear();
+        recentFeedBuffer.remove(id);
+        feedStreamService.disconnect(id);
+        likedFilmIds.forEachInt(filmId -> {
+            popularFilmsIndex.changeLikes(filmId, -1);
+            filmSuggestIndex.changeLikes(filmId, -1);
+            directorFilmsIndex.changeLikes(filmId, -1);
+            filmCache.update(filmId, film -> film.getAppraisers().remove(id));
+        });
     }
 
-    public Set<Feed> getFeeds(int id) {
-        userStorage.getById(id)
-                .orElseThrow(() -> new NotFoundException("Пользователя %s не существует", id));
-        return feedStorage.getFeeds(id);
+    /**
+     * Постраничная лента событий пользователя. Без параметров возвращает всю ленту,
+     * если это разрешено настройкой filmorate.pagination.allow-unpaged, иначе последнюю страницу.
+     * Страница - последние limit событий до курсора before в порядке возрастания,
+     * курсор следующей страницы указывает на более старые события
+     */
+    public CursorPage<Feed> getFeeds(int id, Integer limit, String before) {
+        checkUser(id);
+        feedWriter.flush(id);
+        if (limit == null && before == null && allowUnpaged)
+            return new CursorPage<>(feedStorage.getFeeds(id), null);
+        int pageLimit = limit == null ? defaultPageLimit : limit;
+        CursorUtils.validateLimit(pageLimit);
+        long[] beforeKey = before == null ? null : CursorUtils.decode(before, 2);
+        return toFeedPage(feedStorage.getFeedsBefore(id, beforeKey, pageLimit + 1), pageLimit);
+    }
+
+    /**
+     * Постраничная лента событий друзей пользователя, страницы устроены так же, как в {@link #getFeeds}
+     */
+    public CursorPage<Feed> getFriendsFeed(int id, Integer limit, String before) {
+        checkUser(id);
+        // События друзей не ждут записи из очереди и появляются в ленте не позже чем через max-delay-ms
+        int pageLimit = limit == null ? defaultPageLimit : limit;
+        CursorUtils.validateLimit(pageLimit);
+        long[] beforeKey = before == null ? null : CursorUtils.decode(before, 2);
+        return toFeedPage(friendsFeedService.getFeedsBefore(id, beforeKey, pageLimit + 1), pageLimit);
+    }
+
+    /**
+     * Подписка на новые события пользователя.
+     * С lastEventId сначала отправляются пропущенные события с feed_id больше него (не больше replay-limit)
+     */
+    public SseEmitter streamFeed(int id, Integer lastEventId) {
+        checkUser(id);
+        // Подписка до чтения пропущенных событий, чтобы сохраненные между ними попали в ее буфер
+        FeedStreamService.Subscription subscription = feedStreamService.subscribe(id);
+        if (lastEventId == null)
+            return feedStreamService.start(subscription, Collections.emptyList(), false);
+        try {
+            List<Feed> replay = feedStorage.getFeedsAfter(id, lastEventId, feedStreamService.getReplayLimit());
+            return feedStreamService.start(subscription, replay, replay.size() == feedStreamService.getReplayLimit());
+        } catch (RuntimeException e) {
+            feedStreamService.unsubscribe(subscription);
+            throw e;
+        }
+    }
+
+    public FeedStreamStats getFeedStreamStats() {
+        return feedStreamService.getStats();
+    }
+
+    /**
+     * Страница из выборки limit + 1 событий по убыванию: события выдаются по возрастанию
+     */
+    private static CursorPage<Feed> toFeedPage(List<Feed> newestFirst, int limit) {
+        CursorPage<Feed> page = CursorUtils.toPage(newestFirst, limit,
+                feed -> new long[]{feed.getTimestamp(), feed.getEventId()});
+        List<Feed> items = new ArrayList<>(page.getItems());
+        Collections.reverse(items);
+        return new CursorPage<>(items, page.getNextCursor());
     }
 
-    private static Integer mapToUser(UserFriend userFriend, User user) {
-        if (userFriend.getUserId().equals(user.getId()))
-            return userFriend.getFriendId();
-        return userFriend.getUserId();
+    private static List<Integer> toList(int[] ids) {
+        return Arrays.stream(ids).boxed().collect(Collectors.toList());
     }
 }
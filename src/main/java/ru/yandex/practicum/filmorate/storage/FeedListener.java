@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.util.List;
+
+/**
+ * Получатель сохраненных событий ленты. Вызывается после фиксации транзакции, eventId уже заполнен
+ */
+public interface FeedListener {
+    void onFeeds(List<Feed> feeds);
+}
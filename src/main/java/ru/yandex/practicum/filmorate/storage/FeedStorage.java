@@ -4,10 +4,53 @@ import ru.yandex.practicum.filmorate.enums.EventType;
 import ru.yandex.practicum.filmorate.enums.Operation;
 import ru.yandex.practicum.filmorate.model.Feed;
 
-import java.util.Set;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface FeedStorage {
-    Set<Feed> getFeeds(int id);
+    /**
+     * Все события пользователя по возрастанию (timestamp, eventId)
+     */
+    List<Feed> getFeeds(int id);
+
+    /**
+     * Не больше limit событий пользователя старше before по убыванию (timestamp, eventId)
+     * @param before - ключ (timestamp, eventId) последнего выданного события, null - с самого нового
+     */
+    List<Feed> getFeedsBefore(int id, long[] before, int limit);
+
+    /**
+     * Не больше limit событий нескольких пользователей старше before по убыванию (timestamp, eventId)
+     */
+    List<Feed> getFeedsBefore(Collection<Integer> ids, long[] before, int limit);
+
+    /**
+     * Не больше limit событий пользователя с feed_id больше afterEventId по возрастанию feed_id
+     */
+    List<Feed> getFeedsAfter(int id, int afterEventId, int limit);
+
+    int getMaxFeedId();
+
+    /**
+     * Количество событий с times < before и feed_id <= maxFeedId по диапазонам пользователей
+     * user_id / rangeSize, по возрастанию номера диапазона
+     */
+    Map<Integer, Integer> countFeedsByUserRange(long before, int maxFeedId, int rangeSize);
+
+    /**
+     * Обход событий пользователей userFrom..userTo с times < before и feed_id <= maxFeedId
+     * по возрастанию (user_id, times, feed_id) без загрузки всех строк в память
+     */
+    void forEachFeedBefore(int userFrom, int userTo, long before, int maxFeedId, Consumer<Feed> consumer);
+
+    int deleteFeedsBefore(int userFrom, int userTo, long before, int maxFeedId);
 
     void createFeed(int userId, int entityId, EventType eventType, Operation operation, long timeStamp);
+
+    /**
+     * Пакетное сохранение событий, eventId заполняется сгенерированными значениями
+     */
+    void createFeeds(List<Feed> feeds);
 }
@@ -1,36 +1,119 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.enums.FilmField;
 import ru.yandex.practicum.filmorate.enums.SortingFilms;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.util.RoaringIntSet;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface FilmStorage {
     void addFilm(Film film);
 
+    /**
+     * Пакетное добавление фильмов вместе с жанрами и режиссерами, id проставляются в переданные объекты
+     */
+    default void addFilms(List<Film> films) {
+        films.forEach(this::addFilm);
+    }
+
     void editFilm(Film film);
 
-    Collection<Film> getAll();
+    default Collection<Film> getAll() {
+        return getAll(FilmField.ALL);
+    }
 
-    Film getById(int filmId);
+    /**
+     * Все фильмы
+     * @param fields - поля, которые нужно заполнить, связанные таблицы для остальных полей не читаются
+     */
+    Collection<Film> getAll(Set<FilmField> fields);
+
+    default List<Film> getPage(int afterId, int limit) {
+        return getPage(afterId, limit, FilmField.ALL);
+    }
 
-    List<Film> getPopularFilms(int count, int genreId, int year);
+    /**
+     * Страница фильмов в порядке возрастания id
+     * @param afterId - id последнего фильма предыдущей страницы, 0 - с начала
+     * @param limit - размер страницы
+     * @param fields - поля, которые нужно заполнить
+     */
+    List<Film> getPage(int afterId, int limit, Set<FilmField> fields);
+
+    Film getById(int filmId);
 
-    void addAppraiser(int filmId, int userId);
+    default List<Film> getByIds(List<Integer> filmIds) {
+        return getByIds(filmIds, FilmField.ALL);
+    }
+
+    /**
+     * Загрузка фильмов по списку id
+     * @param filmIds - id фильмов
+     * @param fields - поля, которые нужно заполнить
+     * @return фильмы в порядке переданных id, несуществующие фильмы пропускаются
+     */
+    List<Film> getByIds(List<Integer> filmIds, Set<FilmField> fields);
+
+    default List<Film> getPopularFilms(int count, int genreId, int year) {
+        return getPopularFilms(count, genreId, year, FilmField.ALL);
+    }
+
+    List<Film> getPopularFilms(int count, int genreId, int year, Set<FilmField> fields);
+
+    /**
+     * Количество лайков у фильмов без загрузки списка оценивших
+     * @param filmIds - id фильмов
+     * @return id фильма -> количество лайков, несуществующие фильмы в результат не попадают
+     */
+    Map<Integer, Integer> getLikesCount(Collection<Integer> filmIds);
+
+    /**
+     * Добавление лайка
+     * @return true, если лайк добавлен, false, если пользователь уже оценил фильм
+     */
+    boolean addAppraiser(int filmId, int userId);
 
     boolean isFilmHasAppraiser(int filmId, int userId);
 
-    void removeAppraiser(int filmId, int userId);
+    /**
+     * Удаление лайка
+     * @return true, если лайк был удален
+     */
+    boolean removeAppraiser(int filmId, int userId);
 
-    List<Film> getSortDirectorsOfFilms(int directorId, SortingFilms sort);
+    /**
+     * id фильмов, которым пользователь поставил лайк
+     */
+    RoaringIntSet getFilmIdsLikedByUser(int userId);
 
-    Collection<Film> searchMovieByTitleAndDirector(String query, List<String> by);
+    default List<Film> getSortDirectorsOfFilms(int directorId, SortingFilms sort) {
+        return getSortDirectorsOfFilms(directorId, sort, FilmField.ALL);
+    }
 
-    List<Film> moviesSharedWithFriend(int userId, int friendId);
+    List<Film> getSortDirectorsOfFilms(int directorId, SortingFilms sort, Set<FilmField> fields);
+
+    default List<Film> searchMovieByTitleAndDirector(String query, List<String> by) {
+        return searchMovieByTitleAndDirector(query, by, FilmField.ALL);
+    }
+
+    List<Film> searchMovieByTitleAndDirector(String query, List<String> by, Set<FilmField> fields);
+
+    /**
+     * Фильмы, понравившиеся всем указанным пользователям, по убыванию популярности
+     * @param userIds - различные id пользователей
+     */
+    List<Film> getCommonFilms(Collection<Integer> userIds, Set<FilmField> fields);
 
     void deleteFilmById(int id);
 
-    List<Film> getRecommendations(int userId);
+    default List<Film> getRecommendations(int userId) {
+        return getRecommendations(userId, FilmField.ALL);
+    }
+
+    List<Film> getRecommendations(int userId, Set<FilmField> fields);
 
 }
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.dto.Recommendation;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface RecommendationStorage {
+
+    /**
+     * Пометка, что лайки пользователя изменились и его рекомендации нужно пересчитать
+     */
+    void markDirty(int userId);
+
+    boolean isDirty(int userId);
+
+    /**
+     * Пользователи, ожидающие пересчета, и версии их пометок
+     */
+    Map<Integer, Long> getDirtyUsers();
+
+    /**
+     * Пользователи, у которых среди соседей есть кто-то из neighbourIds
+     */
+    Set<Integer> getUsersWithNeighbours(Collection<Integer> neighbourIds);
+
+    /**
+     * Текущие лайки пользователей, для пользователей без лайков - пустой массив
+     */
+    Map<Integer, int[]> getLikes(Collection<Integer> userIds);
+
+    /**
+     * Замена рекомендаций и соседей пользователей и снятие пометок тех версий, по которым они посчитаны
+     */
+    void saveRecommendations(List<Recommendation> recommendations, Map<Integer, Long> dirtyVersions);
+}
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Блокировки фоновых задач в базе: задача с одним именем выполняется только на одном узле
+ */
+public interface SchedulerLockStorage {
+
+    /**
+     * Захват блокировки, если она свободна или истек срок предыдущего захвата
+     * @param lockAtMostFor - срок, после которого блокировку упавшего узла может захватить другой
+     */
+    boolean tryLock(String name, Duration lockAtMostFor);
+
+    /**
+     * Освобождение блокировки
+     * @param completed - задача выполнена успешно, запоминается время завершения
+     */
+    void unlock(String name, boolean completed);
+
+    Optional<Instant> getLastCompleted(String name);
+}
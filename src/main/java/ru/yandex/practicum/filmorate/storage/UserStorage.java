@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserStorage {
@@ -12,6 +13,13 @@ public interface UserStorage {
 
     Collection<User> getAll();
 
+    /**
+     * Страница пользователей в порядке возрастания id
+     * @param afterId - id последнего пользователя предыдущей страницы, 0 - с начала
+     * @param limit - размер страницы
+     */
+    List<User> getPage(int afterId, int limit);
+
     Optional<User> getById(int id);
 
     Collection<User> getUsersById(Collection<Integer> ids);
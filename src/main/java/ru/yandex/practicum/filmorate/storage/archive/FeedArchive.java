@@ -0,0 +1,209 @@
+package ru.yandex.practicum.filmorate.storage.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Холодный архив ленты: старые события из FEEDS, перенесенные в неизменяемые сжатые сегменты на диске.
+ * Сегмент содержит события диапазона пользователей, упорядоченные по (user_id, times, feed_id),
+ * и читается через отображение в память ({@link FeedSegment}).
+ * Каталог архива принадлежит базе: при clear-on-start (база в памяти создается заново при каждом запуске)
+ * сегменты прошлого запуска удаляются, иначе загружаются, даже если перенос выключен
+ */
+@Slf4j
+@Component
+public class FeedArchive {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final Comparator<Feed> OLDEST_FIRST = Comparator.comparingLong(Feed::getTimestamp)
+            .thenComparingInt(Feed::getEventId);
+
+    private final Path dir;
+    private final boolean enabled;
+    private final boolean clearOnStart;
+    private final int blockSize;
+
+    // Список заменяется целиком при добавлении сегмента, чтение идет без блокировок
+    private volatile List<FeedSegment> segments = Collections.emptyList();
+
+    public FeedArchive(@Value("${filmorate.feed.archive.dir:./data/feed-archive}") String dir,
+                       @Value("${filmorate.feed.archive.enabled:false}") boolean enabled,
+                       @Value("${filmorate.feed.archive.clear-on-start:true}") boolean clearOnStart,
+                       @Value("${filmorate.feed.archive.block-size:256}") int blockSize) {
+        this.dir = Paths.get(dir);
+        this.enabled = enabled;
+        this.clearOnStart = clearOnStart;
+        this.blockSize = blockSize;
+    }
+
+    @PostConstruct
+    public synchronized void load() {
+        if (!Files.isDirectory(dir) || clearOnStart && !enabled)
+            return;
+        List<FeedSegment> loaded = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX) || clearOnStart && name.endsWith(SEGMENT_SUFFIX))
+                    Files.delete(file);
+                else if (name.endsWith(SEGMENT_SUFFIX))
+                    loaded.add(FeedSegment.open(file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось загрузить архив ленты из " + dir, e);
+        }
+        segments = Collections.unmodifiableList(loaded);
+        log.info("Загружено {} сегментов архива ленты из {}", loaded.size(), dir);
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    public boolean contains(int userId) {
+        for (FeedSegment segment : segments) {
+            if (segment.covers(userId))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Наибольший times среди событий архива, Long.MIN_VALUE для пустого архива
+     */
+    public long getMaxTimes() {
+        long result = Long.MIN_VALUE;
+        for (FeedSegment segment : segments) {
+            result = Math.max(result, segment.maxTimes);
+        }
+        return result;
+    }
+
+    public int getMaxFeedId() {
+        int result = 0;
+        for (FeedSegment segment : segments) {
+            result = Math.max(result, segment.maxFeedId);
+        }
+        return result;
+    }
+
+    /**
+     * Все события пользователя в архиве по возрастанию (timestamp, eventId)
+     */
+    public List<Feed> getFeeds(int userId) {
+        List<Feed> result = new ArrayList<>();
+        for (FeedSegment segment : segments) {
+            if (segment.covers(userId))
+                result.addAll(segment.getFeeds(userId));
+        }
+        result.sort(OLDEST_FIRST);
+        return result;
+    }
+
+    /**
+     * Не больше limit событий пользователя в архиве старше before по убыванию (timestamp, eventId)
+     */
+    public List<Feed> getFeedsBefore(int userId, long[] before, int limit) {
+        List<Feed> result = new ArrayList<>();
+        for (FeedSegment segment : segments) {
+            if (segment.covers(userId))
+                result.addAll(segment.getFeedsBefore(userId, before, limit));
+        }
+        result.sort(OLDEST_FIRST.reversed());
+        return result.size() <= limit ? result : new ArrayList<>(result.subList(0, limit));
+    }
+
+    /**
+     * Не больше limit событий пользователя в архиве с feed_id больше afterEventId по возрастанию feed_id
+     */
+    public List<Feed> getFeedsAfter(int userId, int afterEventId, int limit) {
+        List<Feed> result = new ArrayList<>();
+        for (FeedSegment segment : segments) {
+            if (!segment.covers(userId) || segment.maxFeedId <= afterEventId)
+                continue;
+            for (Feed feed : segment.getFeeds(userId)) {
+                if (feed.getEventId() > afterEventId)
+                    result.add(feed);
+            }
+        }
+        result.sort(Comparator.comparingInt(Feed::getEventId));
+        return result.size() <= limit ? result : new ArrayList<>(result.subList(0, limit));
+    }
+
+    /**
+     * Обход границ сегментов: каждый содержит все события пользователей userFrom..userTo
+     * с times < cutoff и feed_id <= maxFeedId
+     */
+    public void forEachSegment(SegmentVisitor visitor) {
+        for (FeedSegment segment : segments) {
+            visitor.visit(segment.userFrom, segment.userTo, segment.cutoff, segment.maxFeedId);
+        }
+    }
+
+    /**
+     * Запись нового сегмента. Сегмент становится видимым для чтения только после полной записи на диск.
+     * Имя сегмента содержит диапазон пользователей и границу переноса, существующий сегмент не заменяется:
+     * повторная запись с той же границей завершается ошибкой
+     * @param source - передает события сегмента по возрастанию (user_id, times, feed_id)
+     * @return количество событий в сегменте, 0 - сегмент не создан
+     */
+    public synchronized long write(int userFrom, int userTo, long cutoff, int maxFeedId,
+                                   Consumer<Consumer<Feed>> source) {
+        String name = String.format("feeds-%d-%d-%d-%d", userFrom, userTo, cutoff, maxFeedId);
+        Path temp = dir.resolve(name + TEMP_SUFFIX);
+        Path target = dir.resolve(name + SEGMENT_SUFFIX);
+        FeedSegmentWriter writer = null;
+        try {
+            Files.createDirectories(dir);
+            if (Files.exists(target))
+                throw new FileAlreadyExistsException(target.toString());
+            writer = new FeedSegmentWriter(temp, blockSize);
+            FeedSegmentWriter segmentWriter = writer;
+            source.accept(feed -> {
+                try {
+                    segmentWriter.append(feed);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (writer.getRecords() == 0)
+                return 0;
+            writer.finish(userFrom, userTo, cutoff, maxFeedId);
+            writer = null;
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            List<FeedSegment> updated = new ArrayList<>(segments);
+            FeedSegment segment = FeedSegment.open(target);
+            updated.add(segment);
+            segments = Collections.unmodifiableList(updated);
+            return segment.records;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать сегмент архива ленты " + target, e);
+        } finally {
+            if (writer != null)
+                writer.abort();
+        }
+    }
+
+    public interface SegmentVisitor {
+        void visit(int userFrom, int userTo, long cutoff, int maxFeedId);
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.storage.archive;
+
+import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.enums.Operation;
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Кодирование блока событий, упорядоченных по (user_id, times, feed_id), до сжатия.
+ * Каждое поле - varint: user_id как разность с предыдущим событием, times - разность внутри пользователя
+ * и полное значение при смене пользователя, feed_id - разность со знаком (zigzag), тип события и операция -
+ * один байт. Первое событие блока кодируется полностью, поэтому блоки читаются независимо
+ */
+final class FeedBlockCodec {
+
+    private static final EventType[] EVENT_TYPES = EventType.values();
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private FeedBlockCodec() {
+    }
+
+    static byte[] encode(List<Feed> feeds) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(feeds.size() * 8);
+        int previousUser = 0;
+        long previousTimes = 0;
+        int previousFeedId = 0;
+        for (int i = 0; i < feeds.size(); i++) {
+            Feed feed = feeds.get(i);
+            boolean newUser = i == 0 || feed.getUserId() != previousUser;
+            writeVarLong(out, i == 0 ? zigZag(feed.getUserId()) : feed.getUserId() - previousUser);
+            writeVarLong(out, newUser ? zigZag(feed.getTimestamp()) : feed.getTimestamp() - previousTimes);
+            writeVarLong(out, zigZag((long) feed.getEventId() - previousFeedId));
+            writeVarLong(out, zigZag(feed.getEntityId()));
+            out.write(feed.getEventType().ordinal() << 4 | feed.getOperation().ordinal());
+            previousUser = feed.getUserId();
+            previousTimes = feed.getTimestamp();
+            previousFeedId = feed.getEventId();
+        }
+        return out.toByteArray();
+    }
+
+    static List<Feed> decode(byte[] data, int count) {
+        List<Feed> feeds = new ArrayList<>(count);
+        int[] position = {0};
+        int user = 0;
+        long times = 0;
+        int feedId = 0;
+        for (int i = 0; i < count; i++) {
+            long userValue = readVarLong(data, position);
+            int nextUser = i == 0 ? (int) unZigZag(userValue) : user + (int) userValue;
+            long timesValue = readVarLong(data, position);
+            times = i == 0 || nextUser != user ? unZigZag(timesValue) : times + timesValue;
+            user = nextUser;
+            feedId += (int) unZigZag(readVarLong(data, position));
+            int entityId = (int) unZigZag(readVarLong(data, position));
+            int kind = data[position[0]++] & 0xFF;
+            feeds.add(Feed.builder()
+                    .eventId(feedId)
+                    .userId(user)
+                    .entityId(entityId)
+                    .eventType(EVENT_TYPES[kind >>> 4])
+                    .operation(OPERATIONS[kind & 0x0F])
+                    .timestamp(times)
+                    .build());
+        }
+        return feeds;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] data, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
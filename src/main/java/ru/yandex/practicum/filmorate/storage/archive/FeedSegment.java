@@ -0,0 +1,168 @@
+package ru.yandex.practicum.filmorate.storage.archive;
+
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Неизменяемый сегмент архива ленты, отображенный в память (формат - {@link FeedSegmentWriter}).
+ * Разреженный индекс (ключ первого события каждого блока) находится в куче, поиск по нему двоичный,
+ * распаковываются только блоки с событиями нужного пользователя
+ */
+final class FeedSegment {
+
+    final Path path;
+    final int userFrom;
+    final int userTo;
+    final long cutoff;
+    final int maxFeedId;
+    final long maxTimes;
+    final long records;
+
+    private final ByteBuffer data;
+    private final int[] firstUser;
+    private final long[] firstTimes;
+    private final int[] firstFeedId;
+    private final int[] offset;
+    private final int[] length;
+    private final int[] rawLength;
+    private final int[] count;
+
+    private FeedSegment(Path path, ByteBuffer data) throws IOException {
+        this.path = path;
+        this.data = data;
+        int footer = data.capacity() - FeedSegmentWriter.FOOTER_SIZE;
+        if (footer < 0 || data.getInt(footer + FeedSegmentWriter.FOOTER_SIZE - 4) != FeedSegmentWriter.MAGIC)
+            throw new IOException("Файл " + path + " не является сегментом архива ленты");
+        if (data.getInt(footer + FeedSegmentWriter.FOOTER_SIZE - 8) != FeedSegmentWriter.VERSION)
+            throw new IOException("Неизвестная версия сегмента архива ленты " + path);
+        userFrom = data.getInt(footer);
+        userTo = data.getInt(footer + 4);
+        cutoff = data.getLong(footer + 8);
+        maxFeedId = data.getInt(footer + 16);
+        maxTimes = data.getLong(footer + 20);
+        records = data.getLong(footer + 28);
+        int blocks = data.getInt(footer + 36);
+        int indexOffset = (int) data.getLong(footer + 40);
+
+        firstUser = new int[blocks];
+        firstTimes = new long[blocks];
+        firstFeedId = new int[blocks];
+        offset = new int[blocks];
+        length = new int[blocks];
+        rawLength = new int[blocks];
+        count = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            int entry = indexOffset + i * FeedSegmentWriter.INDEX_ENTRY_SIZE;
+            firstUser[i] = data.getInt(entry);
+            firstTimes[i] = data.getLong(entry + 4);
+            firstFeedId[i] = data.getInt(entry + 12);
+            offset[i] = data.getInt(entry + 16);
+            length[i] = data.getInt(entry + 20);
+            rawLength[i] = data.getInt(entry + 24);
+            count[i] = data.getInt(entry + 28);
+        }
+    }
+
+    static FeedSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Отображение остается действительным после закрытия канала
+            return new FeedSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    boolean covers(int userId) {
+        return userFrom <= userId && userId <= userTo;
+    }
+
+    /**
+     * Все события пользователя по возрастанию (times, feed_id)
+     */
+    List<Feed> getFeeds(int userId) {
+        List<Feed> result = new ArrayList<>();
+        for (int block = Math.max(0, lastBlockAtOrBefore(userId, Long.MIN_VALUE, Integer.MIN_VALUE));
+             block < firstUser.length && firstUser[block] <= userId; block++) {
+            for (Feed feed : readBlock(block)) {
+                if (feed.getUserId() == userId)
+                    result.add(feed);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Не больше limit событий пользователя старше before по убыванию (times, feed_id):
+     * блоки читаются назад от блока, в который попадает before
+     */
+    List<Feed> getFeedsBefore(int userId, long[] before, int limit) {
+        long times = before == null ? Long.MAX_VALUE : before[0];
+        int feedId = before == null ? Integer.MAX_VALUE : (int) before[1];
+        List<Feed> result = new ArrayList<>(limit);
+        for (int block = lastBlockAtOrBefore(userId, times, feedId); block >= 0 && result.size() < limit; block--) {
+            List<Feed> feeds = readBlock(block);
+            for (int i = feeds.size() - 1; i >= 0 && result.size() < limit; i--) {
+                Feed feed = feeds.get(i);
+                if (feed.getUserId() == userId && (feed.getTimestamp() < times
+                        || feed.getTimestamp() == times && feed.getEventId() < feedId))
+                    result.add(feed);
+            }
+            if (firstUser[block] < userId)
+                break;
+        }
+        return result;
+    }
+
+    private List<Feed> readBlock(int block) {
+        ByteBuffer compressed = data.duplicate();
+        compressed.position(offset[block]).limit(offset[block] + length[block]);
+        byte[] raw = new byte[rawLength[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < raw.length) {
+                int inflated = inflater.inflate(raw, read, raw.length - read);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput()))
+                    throw new IllegalStateException("Поврежден блок " + block + " сегмента архива ленты " + path);
+                read += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Поврежден блок " + block + " сегмента архива ленты " + path, e);
+        } finally {
+            inflater.end();
+        }
+        return FeedBlockCodec.decode(raw, count[block]);
+    }
+
+    /**
+     * Последний блок, первое событие которого не больше ключа, или -1
+     */
+    private int lastBlockAtOrBefore(int userId, long times, int feedId) {
+        int low = 0;
+        int high = firstUser.length - 1;
+        int result = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = Integer.compare(firstUser[middle], userId);
+            if (compare == 0)
+                compare = Long.compare(firstTimes[middle], times);
+            if (compare == 0)
+                compare = Integer.compare(firstFeedId[middle], feedId);
+            if (compare <= 0) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return result;
+    }
+}
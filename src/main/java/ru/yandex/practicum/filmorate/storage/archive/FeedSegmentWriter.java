@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.storage.archive;
+
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Запись сегмента архива ленты. Формат файла:
+ * <pre>
+ * блоки    - сжатые Deflater закодированные {@link FeedBlockCodec} события, block-size событий в блоке
+ * индекс   - для каждого блока: ключ первого события (user_id, times, feed_id), смещение, длина,
+ *            длина до сжатия и количество событий
+ * хвост    - user_from, user_to, cutoff, max_feed_id, max_times, records, blocks, index_offset, версия, MAGIC
+ * </pre>
+ * События должны передаваться по возрастанию (user_id, times, feed_id)
+ */
+final class FeedSegmentWriter {
+
+    static final int MAGIC = 0x46534547;
+    static final int VERSION = 1;
+    static final int INDEX_ENTRY_SIZE = 4 + 8 + 4 + 4 + 4 + 4 + 4;
+    static final int FOOTER_SIZE = 4 + 4 + 8 + 4 + 8 + 8 + 4 + 8 + 4 + 4;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int blockSize;
+    private final List<Feed> block;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+    private final DataOutputStream index = new DataOutputStream(indexBytes);
+    private long offset;
+    private int blocks;
+    private long records;
+    private long maxTimes = Long.MIN_VALUE;
+    private Feed last;
+
+    FeedSegmentWriter(Path path, int blockSize) throws IOException {
+        this.path = path;
+        this.blockSize = blockSize;
+        this.block = new ArrayList<>(blockSize);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    void append(Feed feed) throws IOException {
+        if (last != null && compare(last, feed) >= 0)
+            throw new IllegalStateException("События сегмента должны идти по возрастанию (user_id, times, feed_id)");
+        last = feed;
+        block.add(feed);
+        records++;
+        maxTimes = Math.max(maxTimes, feed.getTimestamp());
+        if (block.size() == blockSize)
+            writeBlock();
+    }
+
+    long getRecords() {
+        return records;
+    }
+
+    /**
+     * Запись индекса и хвоста, файл сбрасывается на диск и закрывается
+     * @param cutoff, maxFeedId - сегмент содержит все события пользователей userFrom..userTo
+     *                с times < cutoff и feed_id <= maxFeedId
+     */
+    void finish(int userFrom, int userTo, long cutoff, int maxFeedId) throws IOException {
+        try {
+            writeBlock();
+            index.flush();
+            long indexOffset = offset;
+            write(ByteBuffer.wrap(indexBytes.toByteArray()));
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            footer.putInt(userFrom)
+                    .putInt(userTo)
+                    .putLong(cutoff)
+                    .putInt(maxFeedId)
+                    .putLong(maxTimes)
+                    .putLong(records)
+                    .putInt(blocks)
+                    .putLong(indexOffset)
+                    .putInt(VERSION)
+                    .putInt(MAGIC);
+            footer.flip();
+            write(footer);
+            channel.force(true);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Отмена записи, недописанный файл удаляется
+     */
+    void abort() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Временный файл будет удален при следующем запуске
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (block.isEmpty())
+            return;
+        byte[] raw = FeedBlockCodec.encode(block);
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 16);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        if (offset + compressed.size() > Integer.MAX_VALUE)
+            throw new IOException("Сегмент архива ленты больше 2 ГБ, уменьшите filmorate.feed.archive.user-range-size");
+        Feed first = block.get(0);
+        index.writeInt(first.getUserId());
+        index.writeLong(first.getTimestamp());
+        index.writeInt(first.getEventId());
+        index.writeInt((int) offset);
+        index.writeInt(compressed.size());
+        index.writeInt(raw.length);
+        index.writeInt(block.size());
+        write(ByteBuffer.wrap(compressed.toByteArray()));
+        blocks++;
+        block.clear();
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer);
+        }
+    }
+
+    private void close() {
+        deflater.end();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Закрытие после ошибки записи
+        }
+    }
+
+    static int compare(Feed first, Feed second) {
+        int result = Integer.compare(first.getUserId(), second.getUserId());
+        if (result == 0)
+            result = Long.compare(first.getTimestamp(), second.getTimestamp());
+        if (result == 0)
+            result = Integer.compare(first.getEventId(), second.getEventId());
+        return result;
+    }
+}
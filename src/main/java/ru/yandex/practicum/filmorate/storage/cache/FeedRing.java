@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Кольцевой буфер последних событий по возрастанию (timestamp, eventId) ограниченной емкости.
+ * Доступ синхронизирует владелец буфера
+ */
+class FeedRing {
+    private final Feed[] events;
+    private int start;
+    private int size;
+    // Буфер заполнен из базы, до этого новые события в него не добавляются
+    boolean loaded;
+    // Часть событий не поместилась или была вытеснена: более старые, чем хранимые, могут существовать
+    private boolean truncated;
+
+    FeedRing(int capacity) {
+        events = new Feed[capacity];
+    }
+
+    /**
+     * Заполнение последними событиями из базы
+     * @param newest - не больше емкости событий по убыванию
+     */
+    void load(List<Feed> newest) {
+        for (int i = newest.size() - 1; i >= 0; i--) {
+            add(newest.get(i));
+        }
+        truncated |= newest.size() >= events.length;
+        loaded = true;
+    }
+
+    /**
+     * Вставка с сохранением порядка: обычно событие новее всех и записывается в конец,
+     * при заполненном буфере вытесняя самое старое. Повторно добавленное событие пропускается
+     */
+    void add(Feed feed) {
+        int position = size;
+        while (position > 0 && compare(get(position - 1), feed) >= 0) {
+            if (get(position - 1).getEventId() == feed.getEventId())
+                return;
+            position--;
+        }
+        if (size == events.length) {
+            truncated = true;
+            if (position == 0)
+                return;
+            events[start] = null;
+            start = (start + 1) % events.length;
+            size--;
+            position--;
+        }
+        for (int i = size; i > position; i--) {
+            set(i, get(i - 1));
+        }
+        set(position, feed);
+        size++;
+    }
+
+    /**
+     * Не больше limit событий старше before по убыванию или null, если буфер не может ответить:
+     * в нем меньше limit таких событий, а более старые были вытеснены
+     * @param before - ключ (timestamp, eventId), null - с самого нового
+     */
+    List<Feed> newest(long[] before, int limit) {
+        List<Feed> result = new ArrayList<>(Math.min(limit, size));
+        for (int i = size - 1; i >= 0 && result.size() < limit; i--) {
+            Feed feed = get(i);
+            if (before == null || compare(feed, before) < 0)
+                result.add(feed);
+        }
+        if (result.size() < limit && truncated)
+            return null;
+        return result;
+    }
+
+    private Feed get(int index) {
+        return events[(start + index) % events.length];
+    }
+
+    private void set(int index, Feed feed) {
+        events[(start + index) % events.length] = feed;
+    }
+
+    static int compare(Feed first, Feed second) {
+        int result = Long.compare(first.getTimestamp(), second.getTimestamp());
+        return result != 0 ? result : Integer.compare(first.getEventId(), second.getEventId());
+    }
+
+    static int compare(Feed feed, long[] key) {
+        int result = Long.compare(feed.getTimestamp(), key[0]);
+        return result != 0 ? result : Long.compare(feed.getEventId(), key[1]);
+    }
+}
@@ -0,0 +1,271 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.CacheStats;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.util.RoaringIntSet;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Кэш полностью заполненных фильмов перед FilmStorage.getById.
+ * Ограничен количеством записей и суммарным весом (1 + оценившие + жанры + режиссеры),
+ * при переполнении вытесняются давно не читавшиеся записи (LRU).
+ * Наружу всегда отдаются копии, поэтому изменения фильма вызывающим кодом не портят кэш.
+ */
+@Component
+public class FilmCache {
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long maxWeight;
+
+    private final LinkedHashMap<Integer, CachedFilm> films = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    // Загрузка не кладет фильм в кэш, если он изменился после ее начала: version растет при каждом изменении,
+    // changedAt хранит версию последнего изменения фильма, пока есть незавершенные загрузки,
+    // clearedAt - версию последнего сброса, затрагивающего любые фильмы
+    private final Map<Integer, Long> changedAt = new HashMap<>();
+    private long version;
+    private long clearedAt;
+    private int loading;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public FilmCache(@Value("${filmorate.film-cache.enabled:true}") boolean enabled,
+                     @Value("${filmorate.film-cache.max-size:10000}") int maxSize,
+                     @Value("${filmorate.film-cache.max-weight:1000000}") long maxWeight) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Фильм из кэша или загруженный через loader. Отсутствующий фильм (null) не кэшируется
+     */
+    public Film get(int filmId, IntFunction<Film> loader) {
+        if (!enabled)
+            return loader.apply(filmId);
+        long loadVersion;
+        synchronized (this) {
+            CachedFilm cached = films.get(filmId);
+            if (cached != null) {
+                hits++;
+                return copy(cached.film);
+            }
+            misses++;
+            loadVersion = startLoad();
+        }
+        Film film = null;
+        try {
+            film = loader.apply(filmId);
+            return film;
+        } finally {
+            finishLoad(film == null ? Collections.emptyList() : List.of(film), loadVersion);
+        }
+    }
+
+    /**
+     * Пакетное получение фильмов: отсутствующие в кэше загружаются одним вызовом loader.
+     * Порядок результата совпадает с порядком ids, ненайденные фильмы пропускаются
+     */
+    public List<Film> getAll(List<Integer> ids, Function<List<Integer>, List<Film>> loader) {
+        if (!enabled)
+            return loader.apply(ids);
+        Map<Integer, Film> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        long loadVersion = 0;
+        synchronized (this) {
+            for (Integer id : ids) {
+                CachedFilm cached = films.get(id);
+                if (cached != null) {
+                    hits++;
+                    found.put(id, copy(cached.film));
+                } else {
+                    misses++;
+                    missing.add(id);
+                }
+            }
+            if (!missing.isEmpty())
+                loadVersion = startLoad();
+        }
+        if (!missing.isEmpty()) {
+            List<Film> loaded = Collections.emptyList();
+            try {
+                loaded = loader.apply(missing);
+            } finally {
+                finishLoad(loaded, loadVersion);
+            }
+            for (Film film : loaded) {
+                found.put(film.getId(), film);
+            }
+        }
+        List<Film> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Film film = found.get(id);
+            if (film != null)
+                result.add(film);
+        }
+        return result;
+    }
+
+    /**
+     * Изменение закэшированного фильма на месте, например при добавлении лайка
+     */
+    public synchronized void update(int filmId, Consumer<Film> mutation) {
+        changed(filmId);
+        CachedFilm cached = films.get(filmId);
+        if (cached == null)
+            return;
+        mutation.accept(cached.film);
+        long newWeight = weigh(cached.film);
+        weight += newWeight - cached.weight;
+        cached.weight = newWeight;
+        evict();
+    }
+
+    public synchronized void invalidate(int filmId) {
+        changed(filmId);
+        CachedFilm removed = films.remove(filmId);
+        if (removed != null) {
+            weight -= removed.weight;
+            invalidations++;
+        }
+    }
+
+    /**
+     * Удаление всех фильмов, удовлетворяющих условию, например ссылающихся на измененного режиссера
+     */
+    public synchronized void invalidateIf(Predicate<Film> predicate) {
+        // Условие нельзя проверить для фильма, который еще загружается, поэтому сброс затрагивает все загрузки
+        clearedAt = ++version;
+        Iterator<CachedFilm> iterator = films.values().iterator();
+        while (iterator.hasNext()) {
+            CachedFilm cached = iterator.next();
+            if (predicate.test(cached.film)) {
+                iterator.remove();
+                weight -= cached.weight;
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        clearedAt = ++version;
+        invalidations += films.size();
+        films.clear();
+        weight = 0;
+    }
+
+    public synchronized CacheStats getStats() {
+        long requests = hits + misses;
+        return CacheStats.builder()
+                .size(films.size())
+                .maxSize(maxSize)
+                .weight(weight)
+                .maxWeight(maxWeight)
+                .hits(hits)
+                .misses(misses)
+                .hitRate(requests == 0 ? 0 : (double) hits / requests)
+                .evictions(evictions)
+                .invalidations(invalidations)
+                .build();
+    }
+
+    private void changed(int filmId) {
+        version++;
+        if (loading > 0)
+            changedAt.put(filmId, version);
+    }
+
+    private long startLoad() {
+        loading++;
+        return version;
+    }
+
+    /**
+     * Сохранение загруженных фильмов, которые не изменялись после начала загрузки
+     */
+    private synchronized void finishLoad(List<Film> loaded, long loadVersion) {
+        if (loadVersion >= clearedAt) {
+            for (Film film : loaded) {
+                if (changedAt.getOrDefault(film.getId(), 0L) <= loadVersion)
+                    store(film);
+            }
+        }
+        if (--loading == 0)
+            changedAt.clear();
+    }
+
+    private void store(Film film) {
+        Film cachedFilm = copy(film);
+        CachedFilm cached = new CachedFilm(cachedFilm, weigh(cachedFilm));
+        if (cached.weight > maxWeight)
+            return;
+        CachedFilm previous = films.put(film.getId(), cached);
+        if (previous != null)
+            weight -= previous.weight;
+        weight += cached.weight;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<CachedFilm> iterator = films.values().iterator();
+        while ((films.size() > maxSize || weight > maxWeight) && iterator.hasNext()) {
+            CachedFilm eldest = iterator.next();
+            iterator.remove();
+            weight -= eldest.weight;
+            evictions++;
+        }
+    }
+
+    private static long weigh(Film film) {
+        return 1L + size(film.getAppraisers()) + size(film.getGenres()) + size(film.getDirectors());
+    }
+
+    private static int size(Collection<?> collection) {
+        return collection == null ? 0 : collection.size();
+    }
+
+    /**
+     * Копия фильма с собственными коллекциями
+     */
+    public static Film copy(Film film) {
+        RoaringIntSet appraisers;
+        if (film.getAppraisers() instanceof RoaringIntSet) {
+            appraisers = new RoaringIntSet((RoaringIntSet) film.getAppraisers());
+        } else {
+            appraisers = new RoaringIntSet();
+            if (film.getAppraisers() != null)
+                appraisers.addAll(film.getAppraisers());
+        }
+        return Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .mpa(film.getMpa())
+                .appraisers(appraisers)
+                .genres(film.getGenres() == null ? new ArrayList<>() : new ArrayList<>(film.getGenres()))
+                .directors(film.getDirectors() == null ? new ArrayList<>() : new ArrayList<>(film.getDirectors()))
+                .build();
+    }
+
+    private static class CachedFilm {
+        private final Film film;
+        private long weight;
+
+        CachedFilm(Film film, long weight) {
+            this.film = film;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.FeedListener;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Материализованные ленты друзей (push-часть гибридной рассылки).
+ * Событие пользователя, у которого не больше fanout-threshold подписчиков, при сохранении раскладывается
+ * в ленты всех его подписчиков. События популярных пользователей не рассылаются, их читает
+ * {@link ru.yandex.practicum.filmorate.service.FriendsFeedService} при запросе.
+ * Лента - кольцевой буфер на timeline-size событий, заполняется из базы при первом чтении.
+ * Количество пользователей с лентой ограничено timeline-users, вытесняются давно не читавшиеся (LRU).
+ */
+@Component
+public class FriendsTimelineCache implements FeedListener {
+
+    private final FriendshipGraph friendshipGraph;
+    private final int capacity;
+    private final int maxUsers;
+    @Getter
+    private final int fanoutThreshold;
+
+    private final LinkedHashMap<Integer, FeedRing> timelines = new LinkedHashMap<>(16, 0.75f, true);
+
+    public FriendsTimelineCache(FriendshipGraph friendshipGraph,
+                                @Value("${filmorate.feed.friends.timeline-size:200}") int capacity,
+                                @Value("${filmorate.feed.friends.timeline-users:10000}") int maxUsers,
+                                @Value("${filmorate.feed.friends.fanout-threshold:1000}") int fanoutThreshold) {
+        this.friendshipGraph = friendshipGraph;
+        this.capacity = capacity;
+        this.maxUsers = maxUsers;
+        this.fanoutThreshold = fanoutThreshold;
+    }
+
+    /**
+     * Рассылаются ли события пользователя в ленты подписчиков
+     */
+    public boolean isPushed(int userId) {
+        return friendshipGraph.getFollowers(userId).length <= fanoutThreshold;
+    }
+
+    /**
+     * Не больше limit событий друзей с рассылкой старше before по убыванию (timestamp, eventId)
+     * или null, если лента не может ответить и нужен запрос к базе
+     * @param loader - загрузка заданного количества последних событий друзей с рассылкой по убыванию,
+     *               вызывается при первом обращении к ленте
+     */
+    public List<Feed> getTimeline(int userId, long[] before, int limit, IntFunction<List<Feed>> loader) {
+        if (limit > capacity)
+            return null;
+        FeedRing ring;
+        synchronized (timelines) {
+            ring = timelines.computeIfAbsent(userId, id -> new FeedRing(capacity));
+            if (timelines.size() > maxUsers) {
+                Iterator<Map.Entry<Integer, FeedRing>> eldest = timelines.entrySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        synchronized (ring) {
+            if (!ring.loaded)
+                ring.load(loader.apply(capacity));
+            return ring.newest(before, limit);
+        }
+    }
+
+    /**
+     * Рассылка сохраненных событий по загруженным лентам подписчиков автора
+     */
+    @Override
+    public void onFeeds(List<Feed> feeds) {
+        if (capacity == 0)
+            return;
+        for (Feed feed : feeds) {
+            int[] followers = friendshipGraph.getFollowers(feed.getUserId());
+            if (followers.length == 0 || followers.length > fanoutThreshold)
+                continue;
+            List<FeedRing> rings = new ArrayList<>();
+            synchronized (timelines) {
+                for (int followerId : followers) {
+                    FeedRing ring = timelines.get(followerId);
+                    if (ring != null)
+                        rings.add(ring);
+                }
+            }
+            for (FeedRing ring : rings) {
+                synchronized (ring) {
+                    if (ring.loaded)
+                        ring.add(feed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Пользователь добавил друга: в ленте нет прошлых событий друга, она будет перечитана
+     */
+    public void onFriendAdded(int userId, int friendId) {
+        synchronized (timelines) {
+            timelines.remove(userId);
+        }
+    }
+
+    /**
+     * Пользователь удалил друга: события друга нужно убрать из ленты. Если друг при этом перестал быть
+     * популярным, его события не попадали в ленты подписчиков, и они перечитываются
+     */
+    public void onFriendRemoved(int userId, int friendId) {
+        synchronized (timelines) {
+            timelines.remove(userId);
+            int[] followers = friendshipGraph.getFollowers(friendId);
+            if (followers.length == fanoutThreshold) {
+                for (int followerId : followers) {
+                    timelines.remove(followerId);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (timelines) {
+            timelines.clear();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.FeedListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Последние события ленты пользователей в памяти: кольцевой буфер на buffer-size событий для каждого пользователя.
+ * Буфер заполняется из базы при первом чтении и затем дополняется новыми событиями,
+ * поэтому первая страница ленты размером не больше buffer-size отдается без запроса к базе.
+ * Количество пользователей с буфером ограничено buffer-users, вытесняются давно не читавшиеся (LRU).
+ */
+@Component
+public class RecentFeedBuffer implements FeedListener {
+
+    private final int capacity;
+    private final int maxUsers;
+
+    private final LinkedHashMap<Integer, FeedRing> users = new LinkedHashMap<>(16, 0.75f, true);
+
+    public RecentFeedBuffer(@Value("${filmorate.feed.buffer-size:100}") int capacity,
+                            @Value("${filmorate.feed.buffer-users:10000}") int maxUsers) {
+        this.capacity = capacity;
+        this.maxUsers = maxUsers;
+    }
+
+    /**
+     * Не больше limit последних событий пользователя по убыванию (timestamp, eventId)
+     * или null, если limit больше емкости буфера и нужно обращение к базе
+     * @param loader - загрузка заданного количества последних событий из базы по убыванию,
+     *               вызывается при первом обращении к пользователю
+     */
+    public List<Feed> getNewest(int userId, int limit, IntFunction<List<Feed>> loader) {
+        if (limit > capacity)
+            return null;
+        FeedRing ring;
+        synchronized (users) {
+            ring = users.computeIfAbsent(userId, id -> new FeedRing(capacity));
+            if (users.size() > maxUsers) {
+                Iterator<Map.Entry<Integer, FeedRing>> eldest = users.entrySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        synchronized (ring) {
+            if (!ring.loaded)
+                ring.load(loader.apply(capacity));
+            // Буфер хранит последние min(всего, capacity) событий, поэтому при limit <= capacity ответ есть всегда
+            return ring.newest(null, limit);
+        }
+    }
+
+    @Override
+    public void onFeeds(List<Feed> feeds) {
+        feeds.forEach(this::add);
+    }
+
+    /**
+     * Добавление сохраненного события. Пользователи без загруженного буфера пропускаются:
+     * их буфер будет прочитан из базы вместе с этим событием
+     */
+    public void add(Feed feed) {
+        if (capacity == 0)
+            return;
+        FeedRing ring;
+        synchronized (users) {
+            ring = users.get(feed.getUserId());
+        }
+        if (ring == null)
+            return;
+        synchronized (ring) {
+            if (ring.loaded)
+                ring.add(feed);
+        }
+    }
+
+    /**
+     * Удаление буфера пользователя, например после удаления пользователя вместе с его лентой
+     */
+    public void remove(int userId) {
+        synchronized (users) {
+            users.remove(userId);
+        }
+    }
+}
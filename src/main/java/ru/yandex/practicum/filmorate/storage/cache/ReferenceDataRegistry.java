@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MotionPictureAssociation;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Справочники жанров, рейтингов MPA и режиссеров в памяти.
+ * Каждый справочник хранится неизменяемым снимком, упорядоченным по id, и при записи заменяется
+ * новой копией (copy-on-write), поэтому чтение не требует блокировок. Экземпляры из снимка общие
+ * для всех фильмов и не должны изменяться вызывающим кодом.
+ * Если транзакция, в которой изменился справочник, откатывается, он перечитывается из базы.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReferenceDataRegistry {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private volatile Map<Integer, Genre> genres = Collections.emptyMap();
+    private volatile Map<Integer, MotionPictureAssociation> mpas = Collections.emptyMap();
+    private volatile Map<Integer, Director> directors = Collections.emptyMap();
+
+    @PostConstruct
+    public void reload() {
+        reloadGenres();
+        reloadMpas();
+        reloadDirectors();
+        log.info("Справочники загружены: {} жанр(ов), {} рейтинг(ов) MPA, {} режиссер(ов)",
+                genres.size(), mpas.size(), directors.size());
+    }
+
+    public synchronized void reloadGenres() {
+        genres = snapshot(jdbcTemplate.getJdbcTemplate().query("select genre_id, name from GENRES", (rs, i) -> {
+            Genre genre = new Genre();
+            genre.setId(rs.getInt("genre_id"));
+            genre.setName(rs.getString("name"));
+            return genre;
+        }), Genre::getId);
+    }
+
+    public synchronized void reloadMpas() {
+        mpas = snapshot(jdbcTemplate.getJdbcTemplate().query("select mpa_id, name from MOTION_PICTURE_ASSOCIATIONS",
+                (rs, i) -> MotionPictureAssociation.builder()
+                        .id(rs.getInt("mpa_id"))
+                        .name(rs.getString("name"))
+                        .build()), MotionPictureAssociation::getId);
+    }
+
+    public synchronized void reloadDirectors() {
+        directors = snapshot(jdbcTemplate.getJdbcTemplate().query("select director_id, name from DIRECTORS",
+                (rs, i) -> Director.builder()
+                        .id(rs.getInt("director_id"))
+                        .name(rs.getString("name"))
+                        .build()), Director::getId);
+    }
+
+    public Collection<Genre> getGenres() {
+        return genres.values();
+    }
+
+    public Genre getGenre(int id) {
+        return genres.get(id);
+    }
+
+    public Collection<MotionPictureAssociation> getMpas() {
+        return mpas.values();
+    }
+
+    public MotionPictureAssociation getMpa(int id) {
+        return mpas.get(id);
+    }
+
+    public Collection<Director> getDirectors() {
+        return directors.values();
+    }
+
+    public Director getDirector(int id) {
+        return directors.get(id);
+    }
+
+    public synchronized void putGenre(Genre genre) {
+        Genre copy = new Genre();
+        copy.setId(genre.getId());
+        copy.setName(genre.getName());
+        genres = withValue(genres, copy.getId(), copy);
+        rollbackWith(this::reloadGenres);
+    }
+
+    public synchronized void putDirector(Director director) {
+        Director copy = Director.builder()
+                .id(director.getId())
+                .name(director.getName())
+                .build();
+        directors = withValue(directors, copy.getId(), copy);
+        rollbackWith(this::reloadDirectors);
+    }
+
+    public synchronized void removeDirector(int id) {
+        directors = withValue(directors, id, null);
+        rollbackWith(this::reloadDirectors);
+    }
+
+    private static <T> Map<Integer, T> snapshot(List<T> values, Function<T, Integer> id) {
+        Map<Integer, T> map = new TreeMap<>();
+        values.forEach(value -> map.put(id.apply(value), value));
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static <T> Map<Integer, T> withValue(Map<Integer, T> source, int id, T value) {
+        Map<Integer, T> map = new TreeMap<>(source);
+        if (value == null)
+            map.remove(id);
+        else
+            map.put(id, value);
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static void rollbackWith(Runnable reload) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+            return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED)
+                    reload.run();
+            }
+        });
+    }
+}
@@ -2,7 +2,6 @@ package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
@@ -10,11 +9,13 @@ import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
 
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
@@ -23,18 +24,19 @@ public class DirectorDbStorage implements DirectorStorage {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private final ReferenceDataRegistry referenceDataRegistry;
+
     @Override
     public List<Director> getAll() {
-        return jdbcTemplate.query("select * from directors", DirectorDbStorage::createDirector);
+        return new ArrayList<>(referenceDataRegistry.getDirectors());
     }
 
     @Override
     public Director get(int id) {
-        try {
-            return jdbcTemplate.queryForObject("select * from directors where director_id = ?", DirectorDbStorage::createDirector, id);
-        } catch (EmptyResultDataAccessException e) {
+        Director director = referenceDataRegistry.getDirector(id);
+        if (director == null)
             throw new NotFoundException(String.format("В таблице нет одной записи с id = %s", id));
-        }
+        return director;
     }
 
     @Override
@@ -50,6 +52,7 @@ public class DirectorDbStorage implements DirectorStorage {
             return stmt;
         }, kayHolder);
         data.setId(kayHolder.getKey().intValue());
+        referenceDataRegistry.putDirector(data);
         log.info("Добавлен новый элемент: {}", data);
         return data;
     }
@@ -69,6 +72,7 @@ public class DirectorDbStorage implements DirectorStorage {
         jdbcTemplate.update(sqlQuery,
                 data.getName(),
                 id);
+        referenceDataRegistry.putDirector(data);
         log.info("Элемент обновлен: ", data);
         return data;
     }
@@ -81,6 +85,7 @@ public class DirectorDbStorage implements DirectorStorage {
                 "WHERE director_id = ?";
         jdbcTemplate.update(sqlQuery,
                 directorId);
+        referenceDataRegistry.removeDirector(directorId);
         log.info("Директор с id {} удален", directorId);
     }
 
@@ -103,19 +108,11 @@ public class DirectorDbStorage implements DirectorStorage {
     }
 
     public List<Director> getDirectorsForFilmId(int filmId) {
-        String sqlQuery = "SELECT d.director_id , d.NAME " +
-                "FROM film_directors fd " +
-                "LEFT JOIN FILMS f ON fd.FILM_ID = f.FILM_ID " +
-                "LEFT JOIN directors d ON fd.director_id =d.director_id " +
-                "WHERE f.FILM_ID = ?";
-
-        return jdbcTemplate.query(sqlQuery, DirectorDbStorage::createDirector, filmId);
-    }
+        String sqlQuery = "SELECT director_id FROM film_directors WHERE film_id = ?";
 
-    static Director createDirector(ResultSet rs, int rowNum) throws SQLException {
-        return Director.builder()
-                .id(rs.getInt("director_id"))
-                .name(rs.getString("name"))
-                .build();
+        return jdbcTemplate.queryForList(sqlQuery, Integer.class, filmId).stream()
+                .map(referenceDataRegistry::getDirector)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 }
@@ -1,38 +1,248 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.enums.EventType;
 import ru.yandex.practicum.filmorate.enums.Operation;
 import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.FeedListener;
 import ru.yandex.practicum.filmorate.storage.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.archive.FeedArchive;
+import ru.yandex.practicum.filmorate.storage.cache.RecentFeedBuffer;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Repository
 @RequiredArgsConstructor
 public class FeedDbStorage implements FeedStorage {
 
+    private static final Comparator<Feed> OLDEST_FIRST = Comparator.comparingLong(Feed::getTimestamp)
+            .thenComparingInt(Feed::getEventId);
+    private static final Comparator<Feed> NEWEST_FIRST = OLDEST_FIRST.reversed();
+
     private final JdbcTemplate jdbcTemplate;
 
+    private final RecentFeedBuffer recentFeedBuffer;
+
+    private final List<FeedListener> feedListeners;
+
+    private final FeedArchive feedArchive;
+
+    @Value("${filmorate.feed.insert-batch-size:200}")
+    private final int insertBatchSize;
+
     @Override
-    public Set<Feed> getFeeds(int id) {
-        String sqlQuery = "select * from FEEDS where user_id = ?";
+    public List<Feed> getFeeds(int id) {
+        String sqlQuery = "select * from FEEDS where user_id = ? order by times, feed_id";
+        List<Feed> hot = jdbcTemplate.query(sqlQuery, FeedDbStorage::makeFeed, id);
+        if (!feedArchive.contains(id))
+            return hot;
+        return combine(hot, feedArchive.getFeeds(id), OLDEST_FIRST, Integer.MAX_VALUE);
+    }
 
-        Set<Feed> feeds = new LinkedHashSet<>(jdbcTemplate.query(sqlQuery, FeedDbStorage::makeFeed, id));
-        return feeds;
+    @Override
+    public List<Feed> getFeedsBefore(int id, long[] before, int limit) {
+        if (before == null) {
+            List<Feed> buffered = recentFeedBuffer.getNewest(id, limit, count -> getNewest(id, null, count));
+            if (buffered != null)
+                return buffered;
+        }
+        return getNewest(id, before, limit);
+    }
+
+    @Override
+    public List<Feed> getFeedsBefore(Collection<Integer> ids, long[] before, int limit) {
+        if (ids.isEmpty())
+            return new ArrayList<>();
+        List<Object> args = new ArrayList<>(ids);
+        StringBuilder sqlQuery = new StringBuilder("select * from FEEDS where user_id in (")
+                .append(String.join(", ", Collections.nCopies(ids.size(), "?")))
+                .append(") ");
+        if (before != null) {
+            sqlQuery.append("and (times < ? or (times = ? and feed_id < ?)) ");
+            args.add(before[0]);
+            args.add(before[0]);
+            args.add(before[1]);
+        }
+        sqlQuery.append("order by times desc, feed_id desc limit ?");
+        args.add(limit);
+        List<Feed> hot = jdbcTemplate.query(sqlQuery.toString(), FeedDbStorage::makeFeed, args.toArray());
+        if (feedArchive.isEmpty() || isNewerThanArchive(hot, limit))
+            return hot;
+        List<Feed> cold = new ArrayList<>();
+        for (int id : ids) {
+            if (feedArchive.contains(id))
+                cold.addAll(feedArchive.getFeedsBefore(id, before, limit));
+        }
+        return combine(hot, cold, NEWEST_FIRST, limit);
+    }
+
+    @Override
+    public List<Feed> getFeedsAfter(int id, int afterEventId, int limit) {
+        String sqlQuery = "select * from FEEDS where user_id = ? and feed_id > ? order by feed_id limit ?";
+        List<Feed> hot = jdbcTemplate.query(sqlQuery, FeedDbStorage::makeFeed, id, afterEventId, limit);
+        if (!feedArchive.contains(id) || afterEventId >= feedArchive.getMaxFeedId())
+            return hot;
+        return combine(hot, feedArchive.getFeedsAfter(id, afterEventId, limit),
+                Comparator.comparingInt(Feed::getEventId), limit);
+    }
+
+    @Override
+    public int getMaxFeedId() {
+        Integer maxFeedId = jdbcTemplate.queryForObject("select max(feed_id) from FEEDS", Integer.class);
+        return maxFeedId == null ? 0 : maxFeedId;
+    }
+
+    @Override
+    public Map<Integer, Integer> countFeedsByUserRange(long before, int maxFeedId, int rangeSize) {
+        String range = "user_id / " + rangeSize;
+        String sqlQuery = "select " + range + " as range_id, count(*) as feeds from FEEDS " +
+                "where times < ? and feed_id <= ? group by " + range + " order by range_id";
+        Map<Integer, Integer> result = new LinkedHashMap<>();
+        jdbcTemplate.query(sqlQuery, rs -> {
+            result.put(rs.getInt("range_id"), rs.getInt("feeds"));
+        }, before, maxFeedId);
+        return result;
+    }
+
+    @Override
+    public void forEachFeedBefore(int userFrom, int userTo, long before, int maxFeedId, Consumer<Feed> consumer) {
+        String sqlQuery = "select * from FEEDS where user_id between ? and ? and times < ? and feed_id <= ? " +
+                "order by user_id, times, feed_id";
+        jdbcTemplate.query(sqlQuery, rs -> {
+            consumer.accept(makeFeed(rs, 0));
+        }, userFrom, userTo, before, maxFeedId);
+    }
+
+    @Override
+    public int deleteFeedsBefore(int userFrom, int userTo, long before, int maxFeedId) {
+        String sqlQuery = "delete from FEEDS where user_id between ? and ? and times < ? and feed_id <= ?";
+        return jdbcTemplate.update(sqlQuery, userFrom, userTo, before, maxFeedId);
+    }
+
+    private List<Feed> getNewest(int id, long[] before, int limit) {
+        List<Feed> hot;
+        if (before == null) {
+            String sqlQuery = "select * from FEEDS where user_id = ? order by times desc, feed_id desc limit ?";
+            hot = jdbcTemplate.query(sqlQuery, FeedDbStorage::makeFeed, id, limit);
+        } else {
+            String sqlQuery = "select * from FEEDS where user_id = ? and (times < ? or (times = ? and feed_id < ?)) " +
+                    "order by times desc, feed_id desc limit ?";
+            hot = jdbcTemplate.query(sqlQuery, FeedDbStorage::makeFeed, id, before[0], before[0], before[1], limit);
+        }
+        if (!feedArchive.contains(id) || isNewerThanArchive(hot, limit))
+            return hot;
+        return combine(hot, feedArchive.getFeedsBefore(id, before, limit), NEWEST_FIRST, limit);
+    }
+
+    /**
+     * Полная страница из базы новее всех событий архива, и архив читать не нужно
+     */
+    private boolean isNewerThanArchive(List<Feed> newestFirst, int limit) {
+        return newestFirst.size() == limit && newestFirst.get(limit - 1).getTimestamp() > feedArchive.getMaxTimes();
+    }
+
+    /**
+     * Слияние событий базы и архива в заданном порядке. Событие, уже записанное в архив,
+     * но еще не удаленное из FEEDS, попадает в результат один раз
+     */
+    private static List<Feed> combine(List<Feed> hot, List<Feed> cold, Comparator<Feed> order, int limit) {
+        if (cold.isEmpty())
+            return hot;
+        List<Feed> all = new ArrayList<>(hot.size() + cold.size());
+        all.addAll(hot);
+        all.addAll(cold);
+        all.sort(order);
+        List<Feed> result = new ArrayList<>(Math.min(limit, all.size()));
+        for (Feed feed : all) {
+            if (result.size() == limit)
+                break;
+            if (result.isEmpty() || result.get(result.size() - 1).getEventId() != feed.getEventId())
+                result.add(feed);
+        }
+        return result;
     }
 
     @Override
     public void createFeed(int userId, int entityId, EventType eventType, Operation operation, long timeStamp) {
-        String sqlQuery = "insert into FEEDS(user_id, entity_id, event_type, operation, times) " +
-                "values(?, ?, ?, ?, ?)";
+        createFeeds(Collections.singletonList(Feed.builder()
+                .userId(userId)
+                .entityId(entityId)
+                .eventType(eventType)
+                .operation(operation)
+                .timestamp(timeStamp)
+                .build()));
+    }
+
+    /**
+     * Сохранение многострочными insert по insert-batch-size строк в одной транзакции,
+     * чтобы повтор после ошибки не задвоил уже вставленные строки
+     */
+    @Override
+    @Transactional
+    public void createFeeds(List<Feed> feeds) {
+        for (int from = 0; from < feeds.size(); from += insertBatchSize) {
+            insert(feeds.subList(from, Math.min(from + insertBatchSize, feeds.size())));
+        }
+        // Внутри транзакции получатели узнают о событиях только после фиксации, чтобы откат не оставил их в лентах
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<Feed> saved = new ArrayList<>(feeds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notifyListeners(saved);
+                }
+            });
+        } else {
+            notifyListeners(feeds);
+        }
+    }
+
+    private void notifyListeners(List<Feed> feeds) {
+        for (FeedListener listener : feedListeners) {
+            listener.onFeeds(feeds);
+        }
+    }
 
-        jdbcTemplate.update(sqlQuery, userId, entityId, eventType.toString(), operation.toString(), timeStamp);
+    private void insert(List<Feed> feeds) {
+        StringBuilder sqlQuery = new StringBuilder("insert into FEEDS(user_id, entity_id, event_type, operation, times) values ");
+        for (int i = 0; i < feeds.size(); i++) {
+            sqlQuery.append(i == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sqlQuery.toString(), new String[]{"feed_id"});
+            int index = 1;
+            for (Feed feed : feeds) {
+                statement.setInt(index++, feed.getUserId());
+                statement.setInt(index++, feed.getEntityId());
+                statement.setString(index++, feed.getEventType().toString());
+                statement.setString(index++, feed.getOperation().toString());
+                statement.setLong(index++, feed.getTimestamp());
+            }
+            return statement;
+        }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < feeds.size(); i++) {
+            feeds.get(i).setEventId(((Number) keys.get(i).values().iterator().next()).intValue());
+        }
     }
 
     static Feed makeFeed(ResultSet rs, int rowNum) throws SQLException {
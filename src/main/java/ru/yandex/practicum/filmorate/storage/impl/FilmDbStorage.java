@@ -2,27 +2,34 @@ package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.enums.FilmField;
 import ru.yandex.practicum.filmorate.enums.SortingFilms;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MotionPictureAssociation;
-import ru.yandex.practicum.filmorate.storage.DirectorStorage;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.util.RoaringIntSet;
 
+import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static java.util.stream.Collectors.toList;
@@ -32,8 +39,6 @@ import static java.util.stream.Collectors.toList;
 @Slf4j
 public class FilmDbStorage implements FilmStorage {
 
-    @Qualifier("directorDbStorage")
-    private final DirectorStorage directorStorage;
     private static final String BASE_SELECT = "select" +
             " f.film_id as film_id," +
             " f.name as film_name," +
@@ -43,11 +48,15 @@ public class FilmDbStorage implements FilmStorage {
             " mpa.mpa_id as mpa_id," +
             " mpa.name as mpa_name";
 
-    private static final String LIKES_EXIST_QUERY = "SELECT COUNT(USER_ID) AS count " +
-            "FROM APPRAISERS a GROUP BY FILM_ID";
     private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final FilmHydrator filmHydrator;
+    private final ReferenceDataRegistry referenceDataRegistry;
 
+    /**
+     * Добавление фильма в одной транзакции за два обращения к базе: insert фильма и пакет вставки связей
+     */
     @Override
+    @Transactional
     public void addFilm(Film film) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
         String sqlQuery = "insert into FILMS(name, description, release_date, duration, mpa_id) " +
@@ -60,27 +69,67 @@ public class FilmDbStorage implements FilmStorage {
                         .addValue("releaseDate", film.getReleaseDate())
                         .addValue("duration", film.getDuration())
                         .addValue("mpaId", film.getMpa().getId()),
-                keyHolder
+                keyHolder,
+                new String[]{"film_id"}
         );
         film.setId(keyHolder.getKey().intValue());
-        if (film.getGenres() == null)
+        saveLinks(film.getId(), Collections.emptySet(), genreIds(film), Collections.emptySet(), directorIds(film));
+    }
+
+    @Override
+    @Transactional
+    public void addFilms(List<Film> films) {
+        if (films.isEmpty())
             return;
-        String genresUpdateQuery = "insert into FILM_GENRES (film_id, genre_id) VALUES (:filmId, :genreId)";
-        jdbcTemplate.batchUpdate(
-                genresUpdateQuery,
-                film.getGenres().stream()
-                        .map(genre -> new MapSqlParameterSource("genreId", genre.getId())
-                                .addValue("filmId", film.getId()))
-                        .toArray(SqlParameterSource[]::new)
-        );
-        saveDirectorByFilm(film);
+        String sqlQuery = "insert into FILMS(name, description, release_date, duration, mpa_id) values (?, ?, ?, ?, ?)";
+        jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sqlQuery, new String[]{"film_id"})) {
+                for (Film film : films) {
+                    statement.setString(1, film.getName());
+                    statement.setString(2, film.getDescription());
+                    statement.setObject(3, film.getReleaseDate());
+                    statement.setObject(4, film.getDuration(), Types.INTEGER);
+                    statement.setInt(5, film.getMpa().getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    int index = 0;
+                    while (keys.next()) {
+                        films.get(index++).setId(keys.getInt(1));
+                    }
+                    if (index != films.size())
+                        throw new SQLException(String.format("Получено %s id для %s фильмов", index, films.size()));
+                }
+            }
+            return null;
+        });
+        List<Object[]> genres = new ArrayList<>();
+        List<Object[]> directors = new ArrayList<>();
+        for (Film film : films) {
+            if (film.getGenres() != null)
+                film.getGenres().forEach(genre -> genres.add(new Object[]{film.getId(), genre.getId()}));
+            if (film.getDirectors() != null)
+                film.getDirectors().forEach(director -> directors.add(new Object[]{director.getId(), film.getId()}));
+        }
+        if (!genres.isEmpty())
+            jdbcTemplate.getJdbcTemplate().batchUpdate(
+                    "insert into FILM_GENRES (film_id, genre_id) values (?, ?)", genres);
+        if (!directors.isEmpty())
+            jdbcTemplate.getJdbcTemplate().batchUpdate(
+                    "insert into FILM_DIRECTORS (director_id, film_id) values (?, ?)", directors);
     }
 
+    /**
+     * Изменение фильма в одной транзакции не более чем за три обращения к базе:
+     * update фильма, чтение текущих жанров и режиссеров и один пакет удаления и вставки изменившихся связей
+     */
     @Override
+    @Transactional
     public void editFilm(Film film) {
         String sqlQuery = "update FILMS set name = :name, description = :description, release_date = :releaseDate, " +
                 "duration = :duration, mpa_id = :mpaId where film_id = :filmId";
-        jdbcTemplate.update(
+        int updated = jdbcTemplate.update(
                 sqlQuery,
                 new MapSqlParameterSource()
                         .addValue("name", film.getName())
@@ -90,114 +139,100 @@ public class FilmDbStorage implements FilmStorage {
                         .addValue("mpaId", film.getMpa().getId())
                         .addValue("filmId", film.getId())
         );
-        String getFilmGenresQuery = "select genre_id from FILM_GENRES where film_id = :filmId";
-        List<Integer> oldGenres = jdbcTemplate.query(
-                getFilmGenresQuery,
+        if (updated == 0)
+            throw new NotFoundException("Фильм с id %s не найден", film.getId());
+        Set<Integer> oldGenreIds = new HashSet<>();
+        Set<Integer> oldDirectorIds = new HashSet<>();
+        jdbcTemplate.query(
+                "select 'G' as link_type, genre_id as link_id from FILM_GENRES where film_id = :filmId " +
+                        "union all " +
+                        "select 'D' as link_type, director_id as link_id from FILM_DIRECTORS where film_id = :filmId",
                 new MapSqlParameterSource("filmId", film.getId()),
-                (rs, rowNum) -> rs.getInt("genre_id")
-        );
-        Set<Integer> actualGenreIds = film.getGenres().stream().map(Genre::getId).collect(Collectors.toSet());
-        oldGenres.removeIf(actualGenreIds::remove);
-        jdbcTemplate.update(
-                "delete from FILM_GENRES where film_id = :filmId and genre_id in (:removeIds)",
-                new MapSqlParameterSource("removeIds", oldGenres)
-                        .addValue("filmId", film.getId())
+                rs -> {
+                    Set<Integer> links = "G".equals(rs.getString("link_type")) ? oldGenreIds : oldDirectorIds;
+                    links.add(rs.getInt("link_id"));
+                }
         );
-        String updateGenresQuery = "insert into FILM_GENRES (film_id, genre_id) values (:filmId, :genreId)";
-        jdbcTemplate.batchUpdate(
-                updateGenresQuery,
-                actualGenreIds.stream().map(genreId -> new MapSqlParameterSource("genreId", genreId)
-                        .addValue("filmId", film.getId())).toArray(SqlParameterSource[]::new)
-        );
-        saveDirectorByFilm(film);
+        saveLinks(film.getId(), oldGenreIds, genreIds(film), oldDirectorIds, directorIds(film));
     }
 
-    private void saveDirectorByFilm(Film data) {
-        List<Director> directors = data.getDirectors();
-        directorStorage.deleteAllDirectorByFilm(data.getId());
-        if (directors != null) {
-            for (Director director : directors) {
-                directorStorage.createDirectorByFilm(director.getId(), data.getId());
-            }
-        }
+    /**
+     * Удаление лишних и вставка недостающих связей фильма одним пакетом SQL-команд.
+     * В команды подставляются только целочисленные id, поэтому они собираются без параметров
+     */
+    private void saveLinks(int filmId, Set<Integer> oldGenreIds, Set<Integer> newGenreIds,
+                           Set<Integer> oldDirectorIds, Set<Integer> newDirectorIds) {
+        List<String> statements = new ArrayList<>(4);
+        Set<Integer> removedGenres = difference(oldGenreIds, newGenreIds);
+        Set<Integer> addedGenres = difference(newGenreIds, oldGenreIds);
+        Set<Integer> removedDirectors = difference(oldDirectorIds, newDirectorIds);
+        Set<Integer> addedDirectors = difference(newDirectorIds, oldDirectorIds);
+        if (!removedGenres.isEmpty())
+            statements.add("delete from FILM_GENRES where film_id = " + filmId + " and genre_id in ("
+                    + join(removedGenres, id -> String.valueOf(id)) + ")");
+        if (!addedGenres.isEmpty())
+            statements.add("insert into FILM_GENRES (film_id, genre_id) values "
+                    + join(addedGenres, id -> "(" + filmId + ", " + id + ")"));
+        if (!removedDirectors.isEmpty())
+            statements.add("delete from FILM_DIRECTORS where film_id = " + filmId + " and director_id in ("
+                    + join(removedDirectors, id -> String.valueOf(id)) + ")");
+        if (!addedDirectors.isEmpty())
+            statements.add("insert into FILM_DIRECTORS (director_id, film_id) values "
+                    + join(addedDirectors, id -> "(" + id + ", " + filmId + ")"));
+        if (!statements.isEmpty())
+            jdbcTemplate.getJdbcTemplate().batchUpdate(statements.toArray(new String[0]));
+    }
+
+    private static Set<Integer> genreIds(Film film) {
+        if (film.getGenres() == null)
+            return Collections.emptySet();
+        return film.getGenres().stream().map(Genre::getId).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static Set<Integer> directorIds(Film film) {
+        if (film.getDirectors() == null)
+            return Collections.emptySet();
+        return film.getDirectors().stream().map(Director::getId).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static Set<Integer> difference(Set<Integer> from, Set<Integer> remove) {
+        Set<Integer> result = new LinkedHashSet<>(from);
+        result.removeAll(remove);
+        return result;
+    }
+
+    private static String join(Set<Integer> ids, Function<Integer, String> mapper) {
+        return ids.stream().map(mapper).collect(Collectors.joining(", "));
     }
 
     @Override
-    public Collection<Film> getAll() {
+    public Collection<Film> getAll(Set<FilmField> fields) {
         List<Film> films = jdbcTemplate.query(
                 BASE_SELECT + " from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id = f.mpa_id",
                 this::mapToFilm
         );
-        fillFilms(films);
+        fillFilms(films, fields);
         return films;
     }
 
-    private void fillFilms(List<Film> films) {
-        Map<Integer, Film> filmsMap = films.stream().collect(Collectors.toMap(Film::getId, film -> film, (t, t2) -> t));
-        List<Integer> filmIds = films.stream().map(Film::getId).collect(toList());
-
-        List<Map.Entry<Integer, Genre>> filmGenres = jdbcTemplate.query(
-                "select fg.film_id as film_id, g.genre_id as genre_id, g.name as genre_name from FILM_GENRES fg " +
-                        "join GENRES g on g.genre_id = fg.genre_id where fg.film_id in (:filmIds)",
-                new MapSqlParameterSource("filmIds", filmIds),
-                this::mapToFilmGenre
-        );
-        for (Map.Entry<Integer, Genre> entry : filmGenres) {
-            Film film = filmsMap.get(entry.getKey());
-            if (film.getGenres() == null) {
-                film.setGenres(new ArrayList<>());
-            }
-            film.getGenres().add(entry.getValue());
-        }
-
-        List<Map.Entry<Integer, Integer>> filmAppraisers = jdbcTemplate.query(
-                "select * from APPRAISERS where film_id in (:filmIds)",
-                new MapSqlParameterSource("filmIds", filmIds),
-                this::mapToFilmAppraiser
-        );
-        for (Map.Entry<Integer, Integer> entry : filmAppraisers) {
-            Film film = filmsMap.get(entry.getKey());
-            if (film.getAppraisers() == null) {
-                film.setAppraisers(new HashSet<>());
-            }
-            film.getAppraisers().add(entry.getValue());
-        }
-
-        List<Map.Entry<Integer, Director>> filmDirectors = jdbcTemplate.query(
-                "select fd.film_id as film_id, d.director_id as director_id, d.name as name from FILM_DIRECTORS fd " +
-                        "join DIRECTORS d on d.director_id = fd.director_id where fd.film_id in (:filmIds)",
-                new MapSqlParameterSource("filmIds", filmIds),
-                this::mapToFilmDirector
+    @Override
+    public List<Film> getPage(int afterId, int limit, Set<FilmField> fields) {
+        List<Film> films = jdbcTemplate.query(
+                BASE_SELECT + " from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id = f.mpa_id " +
+                        "where f.film_id > :afterId order by f.film_id limit :limit",
+                new MapSqlParameterSource("afterId", afterId).addValue("limit", limit),
+                this::mapToFilm
         );
-        for (Map.Entry<Integer, Director> entry : filmDirectors) {
-            Film film = filmsMap.get(entry.getKey());
-            if (film.getDirectors() == null) {
-                film.setDirectors(new ArrayList<>());
-            }
-            film.getDirectors().add(entry.getValue());
-        }
-    }
-
-    private Map.Entry<Integer, Integer> mapToFilmAppraiser(ResultSet rs, int i) throws SQLException {
-        int filmId = rs.getInt("film_id");
-        int appraiserId = rs.getInt("user_id");
-        return new AbstractMap.SimpleEntry<>(filmId, appraiserId);
+        fillFilms(films, fields);
+        return films;
     }
 
-    private Map.Entry<Integer, Genre> mapToFilmGenre(ResultSet rs, int i) throws SQLException {
-        int filmId = rs.getInt("film_id");
-        Genre genre = new Genre();
-        genre.setId(rs.getInt("genre_id"));
-        genre.setName(rs.getString("genre_name"));
-        return new AbstractMap.SimpleEntry<>(filmId, genre);
+    private void fillFilms(List<Film> films) {
+        fillFilms(films, FilmField.ALL);
     }
 
-    private Map.Entry<Integer, Director> mapToFilmDirector(ResultSet rs, int i) throws SQLException {
-        int filmId = rs.getInt("film_id");
-        Director director = new Director();
-        director.setId(rs.getInt("director_id"));
-        director.setName(rs.getString("name"));
-        return new AbstractMap.SimpleEntry<>(filmId, director);
+    private void fillFilms(List<Film> films, Set<FilmField> fields) {
+        filmHydrator.hydrate(films, fields);
     }
 
     private Film mapToFilm(ResultSet rs, int i) throws SQLException {
@@ -207,9 +242,12 @@ public class FilmDbStorage implements FilmStorage {
         film.setDescription(rs.getString("film_description"));
         film.setReleaseDate(rs.getObject("film_release_date", LocalDate.class));
         film.setDuration(rs.getInt("film_duration"));
-        MotionPictureAssociation mpa = new MotionPictureAssociation();
-        mpa.setName(rs.getString("mpa_name"));
-        mpa.setId(rs.getInt("mpa_id"));
+        MotionPictureAssociation mpa = referenceDataRegistry.getMpa(rs.getInt("mpa_id"));
+        if (mpa == null) {
+            mpa = new MotionPictureAssociation();
+            mpa.setName(rs.getString("mpa_name"));
+            mpa.setId(rs.getInt("mpa_id"));
+        }
         film.setMpa(mpa);
         return film;
     }
@@ -233,14 +271,33 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
-    public void addAppraiser(int filmId, int userId) {
-        String sqlQuery = "MERGE INTO APPRAISERS (user_id, film_id) values (:userId, :filmId)";
-        jdbcTemplate.update(
-                sqlQuery,
-                new MapSqlParameterSource()
-                        .addValue("userId", userId)
-                        .addValue("filmId", filmId)
+    public List<Film> getByIds(List<Integer> filmIds, Set<FilmField> fields) {
+        if (filmIds.isEmpty())
+            return new ArrayList<>();
+        List<Film> films = jdbcTemplate.query(
+                BASE_SELECT + " from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id = f.mpa_id " +
+                        "where f.film_id in (:filmIds)",
+                new MapSqlParameterSource("filmIds", filmIds),
+                this::mapToFilm
         );
+        fillFilms(films, fields);
+        Map<Integer, Film> filmsMap = films.stream().collect(Collectors.toMap(Film::getId, film -> film));
+        return filmIds.stream().map(filmsMap::get).filter(Objects::nonNull).collect(toList());
+    }
+
+    @Override
+    @Transactional
+    public boolean addAppraiser(int filmId, int userId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("filmId", filmId);
+        try {
+            jdbcTemplate.update("insert into APPRAISERS (user_id, film_id) values (:userId, :filmId)", params);
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+        jdbcTemplate.update("update FILMS set likes_count = likes_count + 1 where film_id = :filmId", params);
+        return true;
     }
 
     @Override
@@ -257,18 +314,32 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
-    public void removeAppraiser(int filmId, int userId) {
-        String sqlQuery = "delete from APPRAISERS where user_id = :userId and film_id = :filmId";
-        jdbcTemplate.update(
-                sqlQuery,
-                new MapSqlParameterSource()
-                        .addValue("userId", userId)
-                        .addValue("filmId", filmId)
-        );
+    @Transactional
+    public boolean removeAppraiser(int filmId, int userId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("filmId", filmId);
+        int deleted = jdbcTemplate.update("delete from APPRAISERS where user_id = :userId and film_id = :filmId", params);
+        if (deleted == 0)
+            return false;
+        jdbcTemplate.update("update FILMS set likes_count = likes_count - :deleted where film_id = :filmId",
+                params.addValue("deleted", deleted));
+        return true;
     }
 
     @Override
-    public List<Film> getSortDirectorsOfFilms(int directorId, SortingFilms sort) {
+    public RoaringIntSet getFilmIdsLikedByUser(int userId) {
+        RoaringIntSet filmIds = new RoaringIntSet();
+        jdbcTemplate.query("select film_id from APPRAISERS where user_id = :userId",
+                new MapSqlParameterSource("userId", userId),
+                rs -> {
+                    filmIds.add(rs.getInt("film_id"));
+                });
+        return filmIds;
+    }
+
+    @Override
+    public List<Film> getSortDirectorsOfFilms(int directorId, SortingFilms sort, Set<FilmField> fields) {
         String sortName = sort.name();
         if (sort.equals(SortingFilms.YEAR)) {
             sortName = sortName + "S";
@@ -305,11 +376,12 @@ public class FilmDbStorage implements FilmStorage {
 
                 directorId
         );
-        fillFilms(films);
+        fillFilms(films, fields);
         return films;
     }
 
-    public List<Film> searchMovieByTitleAndDirector(String query, List<String> by) {
+    @Override
+    public List<Film> searchMovieByTitleAndDirector(String query, List<String> by, Set<FilmField> fields) {
         List<Film> films;
         String querySyntax = "%" + query + "%";
         String sqlLastQuery = "SELECT \n" +
@@ -360,21 +432,24 @@ public class FilmDbStorage implements FilmStorage {
         } else {
             throw new NotFoundException("не верно заданы параметры поиска");
         }
-        fillFilms(films);
+        fillFilms(films, fields);
         return films;
     }
 
     @Override
-    public List<Film> moviesSharedWithFriend(int userId, int friendId) {
+    public List<Film> getCommonFilms(Collection<Integer> userIds, Set<FilmField> fields) {
+        if (userIds.isEmpty())
+            return new ArrayList<>();
         String sqlQuery = BASE_SELECT +
-                " FROM FILMS f JOIN MOTION_PICTURE_ASSOCIATIONS mpa ON f.MPA_ID=MPA.MPA_ID " +
-                "WHERE FILM_ID IN (SELECT FILM_ID FROM APPRAISERS a2" +
-                " WHERE USER_ID = :userId AND FILM_ID IN (SELECT FILM_ID  FROM APPRAISERS a " +
-                "WHERE USER_ID = :friendId ORDER BY FILM_ID DESC))";
+                " from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id = f.mpa_id " +
+                "where f.film_id in (select film_id from APPRAISERS where user_id in (:userIds) " +
+                "group by film_id having count(1) = :users) " +
+                "order by f.likes_count desc, f.film_id";
         List<Film> films = jdbcTemplate.query(sqlQuery,
                 new MapSqlParameterSource()
-                        .addValue("userId", userId)
-                        .addValue("friendId", friendId), this::mapToFilm);
+                        .addValue("userIds", userIds)
+                        .addValue("users", userIds.size()), this::mapToFilm);
+        fillFilms(films, fields);
         return films;
     }
 
@@ -385,133 +460,73 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
-    public List<Film> getPopularFilms(int count, int genreId, int year) {
-        String sqlQuery = null;
-        String genreIdExistQuery = "select count(name) from GENRES where genre_id = :genreId";
-
-        if (genreId == 0 && year == 0) {
-            log.info("Запрос на получение списка популярных фильмов count={}", count);
-            sqlQuery = BASE_SELECT + ",(select count(1) from APPRAISERS a where a.film_id = f.film_id)" +
-                    " as filmAppraisers from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id = f.mpa_id " +
-                    "order by filmAppraisers desc limit :count";
-        }
-
-        if (genreId != 0 && year == 0) {
-            log.info("Запрос на получение списка популярных фильмов по жанру={} : count={} ", genreId, count);
-            if (jdbcTemplate.queryForObject(genreIdExistQuery,
-                    Collections.singletonMap("genreId", genreId), Integer.class) != 1) {
+    public List<Film> getPopularFilms(int count, int genreId, int year, Set<FilmField> fields) {
+        log.info("Запрос на получение списка популярных фильмов по году={} и жанру={} : count={}",
+                year, genreId, count);
+        StringBuilder sqlQuery = new StringBuilder(BASE_SELECT)
+                .append(" from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id = f.mpa_id ");
+        if (genreId != 0) {
+            if (referenceDataRegistry.getGenre(genreId) == null)
                 throw new NotFoundException("Жанра с ID = %s не существует", genreId);
-            }
-            if ((jdbcTemplate.queryForList(LIKES_EXIST_QUERY, new MapSqlParameterSource(), Integer.class)).isEmpty()) {
-                sqlQuery = "SELECT m.*, fg.GENRE_ID " +
-                        "FROM FILM_GENRES fg " +
-                        "INNER JOIN (" + BASE_SELECT +
-                        " from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id = f.mpa_id) as m " +
-                        "ON fg.FILM_ID =m.FILM_ID " +
-                        "WHERE fg.GENRE_ID = :genreId " +
-                        "ORDER BY m.FILM_ID DESC " +
-                        "LIMIT :count";
-            } else {
-                sqlQuery = "SELECT m.*, fg.GENRE_ID, ab.count " +
-                        "FROM FILM_GENRES fg " +
-                        "INNER JOIN (SELECT FILM_ID, COUNT(USER_ID) AS count " +
-                        "FROM APPRAISERS a " +
-                        "GROUP BY FILM_ID) as ab ON fg.FILM_ID =ab.FILM_ID " +
-                        "INNER JOIN (" + BASE_SELECT +
-                        " from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id = f.mpa_id) as m " +
-                        "ON fg.FILM_ID =m.FILM_ID " +
-                        "WHERE fg.GENRE_ID = :genreId " +
-                        "ORDER BY ab.count DESC " +
-                        "LIMIT :count";
-            }
-        }
-
-        if (genreId == 0 && year != 0) {
-            log.info("Запрос на получение списка популярных фильмов по году={} : count={} ", year, count);
-            if ((jdbcTemplate.queryForList(LIKES_EXIST_QUERY, new MapSqlParameterSource(), Integer.class)).isEmpty()) {
-                sqlQuery = BASE_SELECT + " from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id= f.mpa_id " +
-                        "WHERE EXTRACT(YEAR FROM f.release_date)= :year " +
-                        "ORDER BY f.film_id " +
-                        "LIMIT :count";
-            } else {
-                sqlQuery = BASE_SELECT + ", ab.count from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa " +
-                        "on mpa.mpa_id = f.mpa_id " +
-                        "INNER JOIN (SELECT FILM_ID, COUNT(USER_ID) AS count FROM APPRAISERS a GROUP BY FILM_ID) " +
-                        "as ab ON f.FILM_ID =ab.FILM_ID WHERE EXTRACT(YEAR FROM f.release_date)= :year " +
-                        "ORDER BY f.FILM_ID LIMIT :count";
-            }
-        }
-
-        if (genreId != 0 && year != 0) {
-            log.info("Запрос на получение списка популярных фильмов по году={} и жанру={} : count={}",
-                    year, genreId, count);
-            if ((jdbcTemplate.queryForObject(genreIdExistQuery,
-                    Collections.singletonMap("genreId", genreId), Integer.class) == null) ||
-                    jdbcTemplate.queryForObject(genreIdExistQuery,
-                            Collections.singletonMap("genreId", genreId), Integer.class) == 0) {
-                throw new NotFoundException("Жанра с ID = %s не существует", genreId);
-            }
-            if ((jdbcTemplate.queryForList(LIKES_EXIST_QUERY, new MapSqlParameterSource(), Integer.class)).isEmpty()) {
-                sqlQuery = "SELECT m.*, fg.GENRE_ID " +
-                        "FROM FILM_GENRES fg " +
-                        "INNER JOIN (" + BASE_SELECT +
-                        " from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id = f.mpa_id) as m " +
-                        "ON fg.FILM_ID =m.FILM_ID " +
-                        "WHERE fg.GENRE_ID = :genreId AND EXTRACT(YEAR FROM m.film_release_date)= :year " +
-                        "ORDER BY m.FILM_ID, m.film_release_date DESC " +
-                        "LIMIT :count";
-            } else {
-                sqlQuery = "SELECT m.*, fg.GENRE_ID, ab.count " +
-                        "FROM FILM_GENRES fg " +
-                        "INNER JOIN (SELECT FILM_ID, COUNT(USER_ID) AS count " +
-                        "FROM APPRAISERS a " +
-                        "GROUP BY FILM_ID) as ab ON fg.FILM_ID =ab.FILM_ID " +
-                        "INNER JOIN (" + BASE_SELECT +
-                        " from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id = f.mpa_id) as m " +
-                        "ON fg.FILM_ID =m.FILM_ID " +
-                        "WHERE fg.GENRE_ID = :genreId AND EXTRACT(YEAR FROM m.film_release_date)= :year " +
-                        "ORDER BY ab.count DESC " +
-                        "LIMIT :count";
-            }
+            sqlQuery.append("join FILM_GENRES fg on fg.film_id = f.film_id and fg.genre_id = :genreId ");
         }
+        if (year != 0)
+            sqlQuery.append("where EXTRACT(YEAR FROM f.release_date) = :year ");
+        sqlQuery.append("order by f.likes_count desc, f.film_id limit :count");
         List<Film> films = jdbcTemplate.query(
-                sqlQuery, new MapSqlParameterSource()
+                sqlQuery.toString(), new MapSqlParameterSource()
                         .addValue("genreId", genreId)
                         .addValue("year", year)
                         .addValue("count", count),
                 this::mapToFilm
         );
-        fillFilms(films);
+        fillFilms(films, fields);
         return films;
     }
 
     @Override
-    public List<Film> getRecommendations(int userId) {
-        String sqlQuery = "select" +
-                " f.film_id as film_id," +
-                " f.name as film_name," +
-                " f.description as film_description," +
-                " f.release_date as film_release_date," +
-                " f.duration as film_duration," +
-                " mpa.mpa_id as mpa_id," +
-                " mpa.name as mpa_name " +
-                " from FILMS f join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id = f.mpa_id " +
-                " left join APPRAISERS ap on ap.film_id = f.film_id " +
-                " where  f.film_id in (select film_id from APPRAISERS where user_id in (" +
-                "select user_id from APPRAISERS where film_id in (" +
-                "select film_id from APPRAISERS where user_id = :userId) " +
-                "and user_id <> :userId " +
-                "group by user_id order by count(*) desc limit 1" +
-                ") " +
-                "except " +
-                "select film_id from APPRAISERS where user_id = :userId)";
+    public Map<Integer, Integer> getLikesCount(Collection<Integer> filmIds) {
+        Map<Integer, Integer> likes = new LinkedHashMap<>();
+        if (filmIds.isEmpty())
+            return likes;
+        jdbcTemplate.query(
+                "select film_id, likes_count from FILMS where film_id in (:filmIds)",
+                new MapSqlParameterSource("filmIds", filmIds),
+                rs -> {
+                    likes.put(rs.getInt("film_id"), rs.getInt("likes_count"));
+                }
+        );
+        return likes;
+    }
+
+    /**
+     * Пересчет денормализованного счетчика лайков по таблице APPRAISERS при старте приложения
+     */
+    @PostConstruct
+    public void recountLikes() {
+        int updated = jdbcTemplate.getJdbcTemplate().update(
+                "update FILMS f set likes_count = (select count(1) from APPRAISERS a where a.film_id = f.film_id) " +
+                        "where likes_count <> (select count(1) from APPRAISERS a where a.film_id = f.film_id)"
+        );
+        log.info("Пересчитаны счетчики лайков у {} фильм(ов)", updated);
+    }
+
+    /**
+     * Рекомендации, сохраненные фоновым пересчетом, в порядке убывания оценки
+     */
+    @Override
+    public List<Film> getRecommendations(int userId, Set<FilmField> fields) {
+        String sqlQuery = BASE_SELECT + " from USER_RECOMMENDATIONS r " +
+                "join FILMS f on f.film_id = r.film_id " +
+                "join MOTION_PICTURE_ASSOCIATIONS mpa on mpa.mpa_id = f.mpa_id " +
+                "where r.user_id = :userId order by r.position";
 
         List<Film> films = jdbcTemplate.query(
                 sqlQuery, new MapSqlParameterSource()
                         .addValue("userId", userId),
                 this::mapToFilm
         );
-        fillFilms(films);
+        fillFilms(films, fields);
         return films;
     }
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.enums.FilmField;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.util.RoaringIntSet;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Заполнение жанров, лайков и режиссеров у списка фильмов.
+ * Жанры и режиссеры не джойнятся: из связующих таблиц читаются только id,
+ * а фильмам присваиваются общие экземпляры из {@link ReferenceDataRegistry}.
+ * Список id режется на порции фиксированного размера, три запроса выполняются параллельно
+ * на разных соединениях пула, строки сразу раскладываются по объектам {@link Film}.
+ * Внутри транзакции запросы выполняются последовательно в текущем потоке,
+ * так как другие соединения не видят незафиксированных изменений.
+ */
+@Slf4j
+@Component
+public class FilmHydrator {
+
+    private static final String GENRES_QUERY = "select film_id, genre_id from FILM_GENRES where film_id in (:filmIds)";
+    private static final String APPRAISERS_QUERY = "select film_id, user_id from APPRAISERS where film_id in (:filmIds)";
+    private static final String DIRECTORS_QUERY = "select film_id, director_id from FILM_DIRECTORS " +
+            "where film_id in (:filmIds)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ReferenceDataRegistry referenceDataRegistry;
+    private final int chunkSize;
+    private final ExecutorService executor;
+
+    public FilmHydrator(NamedParameterJdbcTemplate jdbcTemplate,
+                        ReferenceDataRegistry referenceDataRegistry,
+                        @Value("${filmorate.hydration.chunk-size:500}") int chunkSize,
+                        @Value("${filmorate.hydration.threads:4}") int threads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.referenceDataRegistry = referenceDataRegistry;
+        this.chunkSize = chunkSize;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "film-hydrator-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void hydrate(List<Film> films) {
+        hydrate(films, FilmField.ALL);
+    }
+
+    /**
+     * Заполнение связанных данных фильмов
+     * @param fields - запрошенные поля, запросы для жанров, лайков и режиссеров выполняются только если они запрошены
+     */
+    public void hydrate(List<Film> films, Set<FilmField> fields) {
+        if (films.isEmpty())
+            return;
+        Map<Integer, Film> filmsMap = new HashMap<>(films.size() * 2);
+        for (Film film : films) {
+            filmsMap.putIfAbsent(film.getId(), film);
+            if (film.getGenres() == null)
+                film.setGenres(new ArrayList<>());
+            if (film.getAppraisers() == null)
+                film.setAppraisers(new RoaringIntSet());
+            if (film.getDirectors() == null)
+                film.setDirectors(new ArrayList<>());
+        }
+        List<List<Integer>> chunks = partition(new ArrayList<>(filmsMap.keySet()));
+
+        Runnable genres = () -> query(GENRES_QUERY, chunks, rs -> {
+            Genre genre = referenceDataRegistry.getGenre(rs.getInt("genre_id"));
+            if (genre != null)
+                filmsMap.get(rs.getInt("film_id")).getGenres().add(genre);
+        });
+        Runnable appraisers = () -> query(APPRAISERS_QUERY, chunks,
+                rs -> filmsMap.get(rs.getInt("film_id")).getAppraisers().add(rs.getInt("user_id")));
+        Runnable directors = () -> query(DIRECTORS_QUERY, chunks, rs -> {
+            Director director = referenceDataRegistry.getDirector(rs.getInt("director_id"));
+            if (director != null)
+                filmsMap.get(rs.getInt("film_id")).getDirectors().add(director);
+        });
+
+        List<Runnable> tasks = new ArrayList<>(3);
+        if (fields.contains(FilmField.GENRES))
+            tasks.add(genres);
+        if (fields.contains(FilmField.APPRAISERS))
+            tasks.add(appraisers);
+        if (fields.contains(FilmField.DIRECTORS))
+            tasks.add(directors);
+        if (tasks.isEmpty())
+            return;
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(tasks.size() - 1);
+        for (Runnable task : tasks.subList(1, tasks.size())) {
+            futures.add(executor.submit(task));
+        }
+        tasks.get(0).run();
+        futures.forEach(FilmHydrator::await);
+    }
+
+    private void query(String sqlQuery, List<List<Integer>> chunks, RowCallbackHandler handler) {
+        for (List<Integer> chunk : chunks) {
+            jdbcTemplate.query(sqlQuery, new MapSqlParameterSource("filmIds", chunk), handler);
+        }
+    }
+
+    private List<List<Integer>> partition(List<Integer> filmIds) {
+        List<List<Integer>> chunks = new ArrayList<>(filmIds.size() / chunkSize + 1);
+        for (int from = 0; from < filmIds.size(); from += chunkSize) {
+            chunks.add(filmIds.subList(from, Math.min(from + chunkSize, filmIds.size())));
+        }
+        return chunks;
+    }
+
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Заполнение фильмов прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Ошибка заполнения фильмов", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,7 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
@@ -9,12 +8,13 @@ import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
@@ -22,41 +22,26 @@ public class GenreDbStorage implements GenreStorage {
 
     private final NamedParameterJdbcTemplate jdbcTemplate;
 
+    private final ReferenceDataRegistry referenceDataRegistry;
+
     @Override
     public Collection<Genre> findAll() {
-        String sqlQuery = "select * from GENRES";
-        return jdbcTemplate.query(sqlQuery, this::mapToGenre);
+        return referenceDataRegistry.getGenres();
     }
 
     @Override
     public List<Genre> findAllById(Collection<Integer> ids) {
-        String sqlQuery = "select * from GENRES where genre_id in (:ids)";
-        return jdbcTemplate.query(
-                sqlQuery,
-                new MapSqlParameterSource("ids", ids),
-                this::mapToGenre
-        );
-    }
-
-    private Genre mapToGenre(ResultSet resultSet, int i) throws SQLException {
-        Genre genre = new Genre();
-        genre.setId(resultSet.getInt("genre_id"));
-        genre.setName(resultSet.getString("name"));
-        return genre;
+        return ids.stream()
+                .distinct()
+                .sorted()
+                .map(referenceDataRegistry::getGenre)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Override
     public Optional<Genre> findById(Integer id) {
-        String sqlQuery = "select * from GENRES where genre_id = :genreId";
-        try {
-            return Optional.ofNullable(jdbcTemplate.queryForObject(
-                    sqlQuery,
-                    new MapSqlParameterSource("genreId", id),
-                    this::mapToGenre
-            ));
-        } catch (EmptyResultDataAccessException e) {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(referenceDataRegistry.getGenre(id));
     }
 
     @Override
@@ -78,6 +63,7 @@ public class GenreDbStorage implements GenreStorage {
                             .addValue("genreId", genre.getId())
             );
         }
+        referenceDataRegistry.putGenre(genre);
         return genre;
     }
 }
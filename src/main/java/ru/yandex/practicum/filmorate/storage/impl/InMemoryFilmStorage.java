@@ -1,13 +1,19 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.enums.FilmField;
 import ru.yandex.practicum.filmorate.enums.SortingFilms;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.util.RoaringIntSet;
 
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -31,17 +37,31 @@ public class InMemoryFilmStorage implements FilmStorage {
     }
 
     @Override
-    public Collection<Film> getAll() {
+    public Collection<Film> getAll(Set<FilmField> fields) {
         return films.values();
     }
 
+    @Override
+    public List<Film> getPage(int afterId, int limit, Set<FilmField> fields) {
+        return films.values().stream()
+                .filter(film -> film.getId() > afterId)
+                .sorted(Comparator.comparing(Film::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Film getById(int filmId) {
         return films.get(filmId);
     }
 
     @Override
-    public List<Film> getPopularFilms(int count, int genreId, int year) {
+    public List<Film> getByIds(List<Integer> filmIds, Set<FilmField> fields) {
+        return filmIds.stream().map(films::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, int genreId, int year, Set<FilmField> fields) {
         return films.values().stream()
                 .sorted((o1, o2) -> Integer.compare(o2.getAppraisers().size(), o1.getAppraisers().size()))
                 .limit(count)
@@ -49,8 +69,16 @@ public class InMemoryFilmStorage implements FilmStorage {
     }
 
     @Override
-    public void addAppraiser(int filmId, int userId) {
-        films.get(filmId).getAppraisers().add(userId);
+    public Map<Integer, Integer> getLikesCount(Collection<Integer> filmIds) {
+        return filmIds.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(Film::getId, film -> film.getAppraisers().size(), (t, t2) -> t));
+    }
+
+    @Override
+    public boolean addAppraiser(int filmId, int userId) {
+        return films.get(filmId).getAppraisers().add(userId);
     }
 
     @Override
@@ -59,22 +87,31 @@ public class InMemoryFilmStorage implements FilmStorage {
     }
 
     @Override
-    public void removeAppraiser(int filmId, int userId) {
-        films.get(filmId).getAppraisers().remove(userId);
+    public boolean removeAppraiser(int filmId, int userId) {
+        return films.get(filmId).getAppraisers().remove(userId);
+    }
+
+    @Override
+    public RoaringIntSet getFilmIdsLikedByUser(int userId) {
+        RoaringIntSet filmIds = new RoaringIntSet();
+        films.values().stream()
+                .filter(film -> film.getAppraisers().contains(userId))
+                .forEach(film -> filmIds.add(film.getId().intValue()));
+        return filmIds;
     }
 
     @Override
-    public List<Film> getSortDirectorsOfFilms(int directorId, SortingFilms sort) {
+    public List<Film> getSortDirectorsOfFilms(int directorId, SortingFilms sort, Set<FilmField> fields) {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public Collection<Film> searchMovieByTitleAndDirector(String query, List<String> by) {
+    public List<Film> searchMovieByTitleAndDirector(String query, List<String> by, Set<FilmField> fields) {
         throw new UnsupportedOperationException("Функция пока не реализована");
     }
 
     @Override
-    public List<Film> moviesSharedWithFriend(int userId, int friendId) {
+    public List<Film> getCommonFilms(Collection<Integer> userIds, Set<FilmField> fields) {
         throw new UnsupportedOperationException("Функция пока не реализована");
     }
 
@@ -84,7 +121,7 @@ public class InMemoryFilmStorage implements FilmStorage {
     }
 
     @Override
-    public List<Film> getRecommendations(int userId) {
+    public List<Film> getRecommendations(int userId, Set<FilmField> fields) {
         throw new UnsupportedOperationException("Функция пока не реализована");
     }
 }
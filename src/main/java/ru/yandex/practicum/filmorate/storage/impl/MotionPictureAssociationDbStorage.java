@@ -1,15 +1,11 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.MotionPictureAssociation;
 import ru.yandex.practicum.filmorate.storage.MotionPictureAssociationStorage;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Optional;
 
@@ -17,32 +13,15 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class MotionPictureAssociationDbStorage implements MotionPictureAssociationStorage {
 
-    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ReferenceDataRegistry referenceDataRegistry;
 
     @Override
     public Collection<MotionPictureAssociation> findAll() {
-        String sqlQuery = "select * from MOTION_PICTURE_ASSOCIATIONS";
-        return jdbcTemplate.query(sqlQuery, this::mapToMpa);
-    }
-
-    private MotionPictureAssociation mapToMpa(ResultSet resultSet, int i) throws SQLException {
-        MotionPictureAssociation mpa = new MotionPictureAssociation();
-        mpa.setId(resultSet.getInt("mpa_id"));
-        mpa.setName(resultSet.getString("name"));
-        return mpa;
+        return referenceDataRegistry.getMpas();
     }
 
     @Override
     public Optional<MotionPictureAssociation> findById(Integer id) {
-        String sqlQuery = "select * from MOTION_PICTURE_ASSOCIATIONS where mpa_id = :mpaId";
-        try {
-            return Optional.ofNullable(jdbcTemplate.queryForObject(
-                    sqlQuery,
-                    new MapSqlParameterSource("mpaId", id),
-                    this::mapToMpa
-            ));
-        } catch (EmptyResultDataAccessException e) {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(referenceDataRegistry.getMpa(id));
     }
 }
@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dto.Recommendation;
+import ru.yandex.practicum.filmorate.storage.RecommendationStorage;
+
+import java.util.*;
+
+@Repository
+@RequiredArgsConstructor
+public class RecommendationDbStorage implements RecommendationStorage {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public void markDirty(int userId) {
+        jdbcTemplate.update("merge into RECOMMENDATION_DIRTY (user_id, version) key (user_id) " +
+                "values (:userId, next value for RECOMMENDATION_VERSIONS)", new MapSqlParameterSource("userId", userId));
+    }
+
+    @Override
+    public boolean isDirty(int userId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from RECOMMENDATION_DIRTY where user_id = :userId)",
+                new MapSqlParameterSource("userId", userId), Boolean.class));
+    }
+
+    @Override
+    public Map<Integer, Long> getDirtyUsers() {
+        Map<Integer, Long> dirty = new HashMap<>();
+        jdbcTemplate.getJdbcTemplate().query("select user_id, version from RECOMMENDATION_DIRTY",
+                rs -> {
+                    dirty.put(rs.getInt("user_id"), rs.getLong("version"));
+                });
+        return dirty;
+    }
+
+    @Override
+    public Set<Integer> getUsersWithNeighbours(Collection<Integer> neighbourIds) {
+        Set<Integer> userIds = new HashSet<>();
+        for (List<Integer> chunk : partition(neighbourIds)) {
+            jdbcTemplate.query("select distinct user_id from USER_RECOMMENDATION_NEIGHBOURS " +
+                            "where neighbour_id in (:neighbourIds)",
+                    new MapSqlParameterSource("neighbourIds", chunk),
+                    rs -> {
+                        userIds.add(rs.getInt("user_id"));
+                    });
+        }
+        return userIds;
+    }
+
+    @Override
+    public Map<Integer, int[]> getLikes(Collection<Integer> userIds) {
+        Map<Integer, List<Integer>> likes = new HashMap<>();
+        userIds.forEach(userId -> likes.put(userId, new ArrayList<>()));
+        for (List<Integer> chunk : partition(userIds)) {
+            jdbcTemplate.query("select user_id, film_id from APPRAISERS where user_id in (:userIds)",
+                    new MapSqlParameterSource("userIds", chunk),
+                    rs -> {
+                        likes.get(rs.getInt("user_id")).add(rs.getInt("film_id"));
+                    });
+        }
+        Map<Integer, int[]> result = new HashMap<>(likes.size() * 2);
+        likes.forEach((userId, filmIds) -> result.put(userId, filmIds.stream().mapToInt(Integer::intValue).sorted().toArray()));
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public void saveRecommendations(List<Recommendation> recommendations, Map<Integer, Long> dirtyVersions) {
+        if (recommendations.isEmpty())
+            return;
+        List<Integer> userIds = new ArrayList<>(recommendations.size());
+        List<MapSqlParameterSource> films = new ArrayList<>();
+        List<MapSqlParameterSource> neighbours = new ArrayList<>();
+        List<MapSqlParameterSource> versions = new ArrayList<>();
+        for (Recommendation recommendation : recommendations) {
+            int userId = recommendation.getUserId();
+            userIds.add(userId);
+            for (int i = 0; i < recommendation.getFilmIds().size(); i++) {
+                films.add(new MapSqlParameterSource()
+                        .addValue("userId", userId)
+                        .addValue("position", i)
+                        .addValue("filmId", recommendation.getFilmIds().get(i))
+                        .addValue("score", recommendation.getScores()[i]));
+            }
+            for (int neighbourId : recommendation.getNeighbourIds()) {
+                neighbours.add(new MapSqlParameterSource()
+                        .addValue("userId", userId)
+                        .addValue("neighbourId", neighbourId));
+            }
+            Long version = dirtyVersions.get(userId);
+            if (version != null)
+                versions.add(new MapSqlParameterSource()
+                        .addValue("userId", userId)
+                        .addValue("version", version));
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("userIds", userIds);
+        jdbcTemplate.update("delete from USER_RECOMMENDATIONS where user_id in (:userIds)", params);
+        jdbcTemplate.update("delete from USER_RECOMMENDATION_NEIGHBOURS where user_id in (:userIds)", params);
+        jdbcTemplate.batchUpdate("insert into USER_RECOMMENDATIONS (user_id, position, film_id, score) " +
+                "values (:userId, :position, :filmId, :score)", films.toArray(new MapSqlParameterSource[0]));
+        jdbcTemplate.batchUpdate("insert into USER_RECOMMENDATION_NEIGHBOURS (user_id, neighbour_id) " +
+                "values (:userId, :neighbourId)", neighbours.toArray(new MapSqlParameterSource[0]));
+        // Пометка, поставленная во время расчета, имеет другую версию и остается до следующего запуска
+        jdbcTemplate.batchUpdate("delete from RECOMMENDATION_DIRTY where user_id = :userId and version = :version",
+                versions.toArray(new MapSqlParameterSource[0]));
+    }
+
+    private static List<List<Integer>> partition(Collection<Integer> ids) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        List<Integer> chunk = new ArrayList<>();
+        for (Integer id : ids) {
+            chunk.add(id);
+            if (chunk.size() == 1000) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+        if (!chunk.isEmpty())
+            chunks.add(chunk);
+        return chunks;
+    }
+}
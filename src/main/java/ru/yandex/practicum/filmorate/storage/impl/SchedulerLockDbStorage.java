@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.storage.SchedulerLockStorage;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Блокировки в таблице SCHEDULER_LOCKS. Захват - условный update строки по истекшему locked_until,
+ * поэтому из нескольких узлов его выполняет ровно один
+ */
+@Slf4j
+@Repository
+public class SchedulerLockDbStorage implements SchedulerLockStorage {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String node;
+
+    public SchedulerLockDbStorage(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.node = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Override
+    public boolean tryLock(String name, Duration lockAtMostFor) {
+        Instant now = Instant.now();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("name", name)
+                .addValue("now", Timestamp.from(now))
+                .addValue("until", Timestamp.from(now.plus(lockAtMostFor)))
+                .addValue("node", node);
+        int updated = jdbcTemplate.update("update SCHEDULER_LOCKS set locked_until = :until, locked_by = :node " +
+                "where name = :name and locked_until <= :now", params);
+        if (updated > 0)
+            return true;
+        try {
+            jdbcTemplate.update("insert into SCHEDULER_LOCKS (name, locked_until, locked_by) " +
+                    "values (:name, :until, :node)", params);
+            return true;
+        } catch (DuplicateKeyException e) {
+            log.debug("Блокировка {} занята другим узлом", name);
+            return false;
+        }
+    }
+
+    @Override
+    public void unlock(String name, boolean completed) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("name", name)
+                .addValue("now", Timestamp.from(Instant.now()))
+                .addValue("node", node);
+        jdbcTemplate.update(completed
+                        ? "update SCHEDULER_LOCKS set locked_until = :now, last_completed = :now " +
+                        "where name = :name and locked_by = :node"
+                        : "update SCHEDULER_LOCKS set locked_until = :now where name = :name and locked_by = :node",
+                params);
+    }
+
+    @Override
+    public Optional<Instant> getLastCompleted(String name) {
+        List<Timestamp> completed = jdbcTemplate.queryForList(
+                "select last_completed from SCHEDULER_LOCKS where name = :name",
+                new MapSqlParameterSource("name", name), Timestamp.class);
+        return completed.stream().filter(Objects::nonNull).findFirst().map(Timestamp::toInstant);
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
@@ -56,6 +57,14 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sqlQuery, this::mapToUser);
     }
 
+    @Override
+    public List<User> getPage(int afterId, int limit) {
+        String sqlQuery = "select * from USERS where user_id > :afterId order by user_id limit :limit";
+        return jdbcTemplate.query(sqlQuery,
+                new MapSqlParameterSource("afterId", afterId).addValue("limit", limit),
+                this::mapToUser);
+    }
+
     private User mapToUser(ResultSet resultSet, int rowNum) throws SQLException {
         User user = new User();
         user.setId(resultSet.getInt("user_id"));
@@ -89,8 +98,12 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    @Transactional
     public void deleteUserById(int id) {
-        String sqlQuery = "delete from USERS where user_id = :userId";
-        jdbcTemplate.update(sqlQuery, new MapSqlParameterSource().addValue("userId", id));
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("userId", id);
+        // лайки пользователя удаляются каскадно, поэтому счетчики фильмов уменьшаются заранее
+        jdbcTemplate.update("update FILMS set likes_count = likes_count - 1 " +
+                "where film_id in (select film_id from APPRAISERS where user_id = :userId)", params);
+        jdbcTemplate.update("delete from USERS where user_id = :userId", params);
     }
 }
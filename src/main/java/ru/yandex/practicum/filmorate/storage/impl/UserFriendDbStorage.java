@@ -8,6 +8,7 @@ import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.UserFriend;
 import ru.yandex.practicum.filmorate.storage.UserFriendStorage;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -20,6 +21,8 @@ public class UserFriendDbStorage implements UserFriendStorage {
 
     private final NamedParameterJdbcTemplate jdbcTemplate;
 
+    private final FriendshipGraph friendshipGraph;
+
     @Override
     public void save(UserFriend userFriend) {
         String sqlQuery = "insert into USER_FRIENDS(user_id, friend_id, status) values (:userId, :friendId, :status)";
@@ -30,6 +33,7 @@ public class UserFriendDbStorage implements UserFriendStorage {
                         .addValue("friendId", userFriend.getFriendId())
                         .addValue("status", userFriend.getStatus())
         );
+        friendshipGraph.addFriend(userFriend.getUserId(), userFriend.getFriendId());
     }
 
     @Override
@@ -71,5 +75,6 @@ public class UserFriendDbStorage implements UserFriendStorage {
         String sqlQuery = "delete from USER_FRIENDS where user_id = :userId and friend_id = :friendId";
         jdbcTemplate.update(sqlQuery, new MapSqlParameterSource("userId", userFriend.getUserId())
                 .addValue("friendId", userFriend.getFriendId()));
+        friendshipGraph.removeFriend(userFriend.getUserId(), userFriend.getFriendId());
     }
 }
@@ -0,0 +1,206 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.enums.SortingFilms;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Фильмы режиссеров в памяти. Для каждого режиссера хранятся два упорядоченных множества:
+ * по дате выхода и по количеству лайков (оба по возрастанию, затем по id), как в прежнем SQL-запросе.
+ * Чтение страницы не выполняет агрегаций и обращений к базе.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DirectorFilmsIndex {
+
+    private static final Comparator<Entry> BY_YEAR = Comparator.comparingLong((Entry entry) -> entry.releaseDay)
+            .thenComparingInt(entry -> entry.filmId);
+    private static final Comparator<Entry> BY_LIKES = Comparator.comparingInt((Entry entry) -> entry.likes)
+            .thenComparingInt(entry -> entry.filmId);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final PopularFilmsIndex popularFilmsIndex;
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<Integer, DirectorFilms> directors = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Полное построение индекса по таблицам FILMS и FILM_DIRECTORS
+     */
+    @PostConstruct
+    public void rebuild() {
+        Map<Integer, Entry> loaded = new HashMap<>();
+        jdbcTemplate.getJdbcTemplate().query(
+                "select f.film_id, f.release_date, f.likes_count from FILMS f " +
+                        "where exists (select 1 from FILM_DIRECTORS fd where fd.film_id = f.film_id)",
+                rs -> {
+                    Entry entry = new Entry(rs.getInt("film_id"), rs.getDate("release_date").toLocalDate().toEpochDay());
+                    entry.likes = rs.getInt("likes_count");
+                    loaded.put(entry.filmId, entry);
+                }
+        );
+        Map<Integer, List<Integer>> links = new HashMap<>();
+        jdbcTemplate.getJdbcTemplate().query(
+                "select film_id, director_id from FILM_DIRECTORS",
+                rs -> {
+                    links.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>()).add(rs.getInt("director_id"));
+                }
+        );
+        links.forEach((filmId, directorIds) -> {
+            Entry entry = loaded.get(filmId);
+            if (entry != null)
+                entry.directorIds = directorIds.stream().distinct().mapToInt(Integer::intValue).toArray();
+        });
+
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            directors.clear();
+            loaded.values().forEach(this::link);
+            entries.putAll(loaded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Индекс фильмов режиссеров построен: {} фильм(ов), {} режиссер(ов)", loaded.size(), directors.size());
+    }
+
+    /**
+     * Добавление фильма или изменение его даты выхода и режиссеров, лайки берутся из индекса популярности
+     */
+    public void put(int filmId, LocalDate releaseDate, Collection<Integer> directorIds) {
+        int likes = popularFilmsIndex.getLikes(filmId);
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.remove(filmId);
+            if (previous != null)
+                unlink(previous);
+            if (directorIds == null || directorIds.isEmpty())
+                return;
+            Entry entry = new Entry(filmId, releaseDate.toEpochDay());
+            entry.likes = likes;
+            entry.directorIds = directorIds.stream().distinct().mapToInt(Integer::intValue).toArray();
+            link(entry);
+            entries.put(filmId, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int filmId) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(filmId);
+            if (entry != null)
+                unlink(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(int directorId) {
+        lock.writeLock().lock();
+        try {
+            DirectorFilms films = directors.remove(directorId);
+            if (films == null)
+                return;
+            for (Entry entry : films.byYear) {
+                entry.directorIds = Arrays.stream(entry.directorIds).filter(id -> id != directorId).toArray();
+                if (entry.directorIds.length == 0)
+                    entries.remove(entry.filmId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void changeLikes(int filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(filmId);
+            if (entry == null)
+                return;
+            for (int directorId : entry.directorIds) {
+                directors.get(directorId).byLikes.remove(entry);
+            }
+            entry.likes += delta;
+            for (int directorId : entry.directorIds) {
+                directors.get(directorId).byLikes.add(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Страница фильмов режиссера
+     * @param sort - YEAR: по дате выхода, LIKES: по количеству лайков
+     * @return id фильмов
+     */
+    public List<Integer> getFilms(int directorId, SortingFilms sort, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            DirectorFilms films = directors.get(directorId);
+            if (films == null)
+                return Collections.emptyList();
+            NavigableSet<Entry> ordered = sort == SortingFilms.LIKES ? films.byLikes : films.byYear;
+            List<Integer> filmIds = new ArrayList<>(Math.min(limit, Math.max(0, ordered.size() - offset)));
+            Iterator<Entry> iterator = ordered.iterator();
+            for (int i = 0; i < offset && iterator.hasNext(); i++) {
+                iterator.next();
+            }
+            while (filmIds.size() < limit && iterator.hasNext()) {
+                filmIds.add(iterator.next().filmId);
+            }
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void link(Entry entry) {
+        for (int directorId : entry.directorIds) {
+            DirectorFilms films = directors.computeIfAbsent(directorId, id -> new DirectorFilms());
+            films.byYear.add(entry);
+            films.byLikes.add(entry);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        for (int directorId : entry.directorIds) {
+            DirectorFilms films = directors.get(directorId);
+            if (films == null)
+                continue;
+            films.byYear.remove(entry);
+            films.byLikes.remove(entry);
+            if (films.byYear.isEmpty())
+                directors.remove(directorId);
+        }
+    }
+
+    private static class DirectorFilms {
+        private final NavigableSet<Entry> byYear = new TreeSet<>(BY_YEAR);
+        private final NavigableSet<Entry> byLikes = new TreeSet<>(BY_LIKES);
+    }
+
+    private static class Entry {
+        private final int filmId;
+        private final long releaseDay;
+        private int likes;
+        private int[] directorIds = new int[0];
+
+        Entry(int filmId, long releaseDay) {
+            this.filmId = filmId;
+            this.releaseDay = releaseDay;
+        }
+    }
+}
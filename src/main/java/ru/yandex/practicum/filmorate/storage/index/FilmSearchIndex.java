@@ -0,0 +1,338 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.enums.SearchSort;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.util.RoaringIntSet;
+import ru.yandex.practicum.filmorate.util.TextUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс для поиска фильмов по названию и имени режиссера.
+ * Тексты приводятся через {@link TextUtils#fold}, для каждой триграммы хранится множество id.
+ * Кандидаты находятся пересечением множеств триграмм запроса и проверяются поиском подстроки,
+ * поэтому результат совпадает с прежним LIKE '%query%' без учета регистра.
+ * Релевантность: совпадение в названии выше совпадения в имени режиссера, затем полное совпадение,
+ * совпадение с начала текста и с начала слова.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final int TITLE_BONUS = 4;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ReferenceDataRegistry referenceDataRegistry;
+    private final PopularFilmsIndex popularFilmsIndex;
+
+    private final Map<Integer, FilmDoc> films = new HashMap<>();
+    private final Map<Integer, String> directors = new HashMap<>();
+    private final Map<Integer, RoaringIntSet> filmsByDirector = new HashMap<>();
+    private final Map<Long, RoaringIntSet> titleGrams = new HashMap<>();
+    private final Map<Long, RoaringIntSet> directorGrams = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private List<Runnable> changesDuringRebuild;
+
+    /**
+     * Полное построение индекса по FILMS, FILM_DIRECTORS и справочнику режиссеров.
+     * База читается без блокировки, поэтому изменения, сделанные во время чтения, запоминаются
+     * и применяются повторно к построенному индексу перед его публикацией
+     */
+    @PostConstruct
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Map<Integer, String> titles = new HashMap<>();
+        Map<Integer, List<Integer>> links = new HashMap<>();
+        try {
+            jdbcTemplate.getJdbcTemplate().query("select film_id, name from FILMS",
+                    rs -> {
+                        titles.put(rs.getInt("film_id"), rs.getString("name"));
+                    });
+            jdbcTemplate.getJdbcTemplate().query("select film_id, director_id from FILM_DIRECTORS",
+                    rs -> {
+                        links.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>()).add(rs.getInt("director_id"));
+                    });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            films.clear();
+            directors.clear();
+            filmsByDirector.clear();
+            titleGrams.clear();
+            directorGrams.clear();
+            for (Director director : referenceDataRegistry.getDirectors()) {
+                linkDirector(director.getId(), director.getName());
+            }
+            titles.forEach((filmId, title) ->
+                    linkFilm(filmId, title, links.getOrDefault(filmId, Collections.emptyList())));
+            changesDuringRebuild.forEach(Runnable::run);
+            changesDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс построен: {} фильм(ов), {} режиссер(ов)", titles.size(), directors.size());
+    }
+
+    /**
+     * Добавление фильма или изменение его названия и режиссеров
+     */
+    public void putFilm(int filmId, String title, Collection<Integer> directorIds) {
+        List<Integer> directorIdsCopy = new ArrayList<>(directorIds);
+        change(() -> {
+            unlinkFilm(filmId);
+            linkFilm(filmId, title, directorIdsCopy);
+        });
+    }
+
+    public void removeFilm(int filmId) {
+        change(() -> unlinkFilm(filmId));
+    }
+
+    /**
+     * Добавление режиссера или изменение его имени, связи с фильмами сохраняются
+     */
+    public void putDirector(int directorId, String name) {
+        change(() -> {
+            String previous = directors.remove(directorId);
+            if (previous != null)
+                removeGrams(directorGrams, previous, directorId);
+            linkDirector(directorId, name);
+        });
+    }
+
+    public void removeDirector(int directorId) {
+        change(() -> {
+            String previous = directors.remove(directorId);
+            if (previous != null)
+                removeGrams(directorGrams, previous, directorId);
+            RoaringIntSet filmIds = filmsByDirector.remove(directorId);
+            if (filmIds != null) {
+                filmIds.forEachInt(filmId -> {
+                    FilmDoc doc = films.get(filmId);
+                    if (doc != null)
+                        doc.directorIds = Arrays.stream(doc.directorIds).filter(id -> id != directorId).toArray();
+                });
+            }
+        });
+    }
+
+    /**
+     * Применение изменения под блокировкой записи. Изменение повторяемо: повторное применение
+     * к индексу, где оно уже учтено, ничего не меняет
+     */
+    private void change(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (changesDuringRebuild != null)
+                changesDuringRebuild.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Поиск фильмов
+     * @param query - строка поиска, ищется как подстрока без учета регистра и диакритики
+     * @param byTitle - искать в названиях
+     * @param byDirector - искать в именах режиссеров
+     * @param sort - LIKES: по лайкам, затем по релевантности; RELEVANCE: по релевантности, затем по лайкам
+     * @return id фильмов страницы результата
+     */
+    public List<Integer> search(String query, boolean byTitle, boolean byDirector, SearchSort sort,
+                                int offset, int limit) {
+        String folded = TextUtils.fold(query);
+        Map<Integer, Integer> relevance = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            if (byTitle)
+                matchTitles(folded, relevance);
+            if (byDirector)
+                matchDirectors(folded, relevance);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Match> matches = new ArrayList<>(relevance.size());
+        relevance.forEach((filmId, score) -> matches.add(new Match(filmId, score, popularFilmsIndex.getLikes(filmId))));
+        Comparator<Match> byLikes = Comparator.comparingInt((Match match) -> -match.likes);
+        Comparator<Match> byRelevance = Comparator.comparingInt((Match match) -> -match.relevance);
+        Comparator<Match> order = sort == SearchSort.RELEVANCE ? byRelevance.thenComparing(byLikes)
+                : byLikes.thenComparing(byRelevance);
+        matches.sort(order.thenComparingInt(match -> match.filmId));
+
+        List<Integer> filmIds = new ArrayList<>();
+        for (int i = offset; i < matches.size() && filmIds.size() < limit; i++) {
+            filmIds.add(matches.get(i).filmId);
+        }
+        return filmIds;
+    }
+
+    private void matchTitles(String query, Map<Integer, Integer> relevance) {
+        RoaringIntSet candidates = candidates(titleGrams, query);
+        if (candidates == null) {
+            films.forEach((filmId, doc) -> matchTitle(filmId, doc, query, relevance));
+        } else {
+            candidates.forEachInt(filmId -> matchTitle(filmId, films.get(filmId), query, relevance));
+        }
+    }
+
+    private static void matchTitle(int filmId, FilmDoc doc, String query, Map<Integer, Integer> relevance) {
+        int score = score(doc.title, query);
+        if (score >= 0)
+            relevance.merge(filmId, score + TITLE_BONUS, Math::max);
+    }
+
+    private void matchDirectors(String query, Map<Integer, Integer> relevance) {
+        RoaringIntSet candidates = candidates(directorGrams, query);
+        if (candidates == null) {
+            directors.forEach((directorId, name) -> matchDirector(directorId, name, query, relevance));
+        } else {
+            candidates.forEachInt(directorId -> matchDirector(directorId, directors.get(directorId), query, relevance));
+        }
+    }
+
+    private void matchDirector(int directorId, String name, String query, Map<Integer, Integer> relevance) {
+        int score = score(name, query);
+        RoaringIntSet filmIds = filmsByDirector.get(directorId);
+        if (score < 0 || filmIds == null)
+            return;
+        filmIds.forEachInt(filmId -> relevance.merge(filmId, score, Math::max));
+    }
+
+    /**
+     * Релевантность совпадения: -1 - нет совпадения, 0 - внутри слова, 1 - с начала слова,
+     * 2 - с начала текста, 3 - полное совпадение
+     */
+    private static int score(String text, String query) {
+        int index = text.indexOf(query);
+        if (index < 0)
+            return -1;
+        if (text.equals(query))
+            return 3;
+        if (index == 0)
+            return 2;
+        for (; index >= 0; index = text.indexOf(query, index + 1)) {
+            if (TextUtils.isWordStart(text, index))
+                return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Пересечение множеств по всем триграммам запроса, null - запрос короче триграммы и нужен полный перебор
+     */
+    private static RoaringIntSet candidates(Map<Long, RoaringIntSet> grams, String query) {
+        if (query.length() < GRAM)
+            return null;
+        RoaringIntSet result = null;
+        for (int i = 0; i + GRAM <= query.length(); i++) {
+            RoaringIntSet ids = grams.get(gram(query, i));
+            if (ids == null)
+                return new RoaringIntSet();
+            result = result == null ? ids : result.and(ids);
+            if (result.isEmpty())
+                break;
+        }
+        return result;
+    }
+
+    private void linkFilm(int filmId, String title, Collection<Integer> directorIds) {
+        FilmDoc doc = new FilmDoc(TextUtils.fold(title),
+                directorIds == null ? new int[0] : directorIds.stream().distinct().mapToInt(Integer::intValue).toArray());
+        films.put(filmId, doc);
+        addGrams(titleGrams, doc.title, filmId);
+        for (int directorId : doc.directorIds) {
+            filmsByDirector.computeIfAbsent(directorId, id -> new RoaringIntSet()).add(filmId);
+        }
+    }
+
+    private void unlinkFilm(int filmId) {
+        FilmDoc doc = films.remove(filmId);
+        if (doc == null)
+            return;
+        removeGrams(titleGrams, doc.title, filmId);
+        for (int directorId : doc.directorIds) {
+            RoaringIntSet filmIds = filmsByDirector.get(directorId);
+            if (filmIds != null) {
+                filmIds.remove(filmId);
+                if (filmIds.isEmpty())
+                    filmsByDirector.remove(directorId);
+            }
+        }
+    }
+
+    private void linkDirector(int directorId, String name) {
+        String folded = TextUtils.fold(name);
+        directors.put(directorId, folded);
+        addGrams(directorGrams, folded, directorId);
+    }
+
+    private static void addGrams(Map<Long, RoaringIntSet> grams, String text, int id) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.computeIfAbsent(gram(text, i), key -> new RoaringIntSet()).add(id);
+        }
+    }
+
+    private static void removeGrams(Map<Long, RoaringIntSet> grams, String text, int id) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            long key = gram(text, i);
+            RoaringIntSet ids = grams.get(key);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty())
+                    grams.remove(key);
+            }
+        }
+    }
+
+    private static long gram(String text, int index) {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+
+    private static class FilmDoc {
+        private final String title;
+        private int[] directorIds;
+
+        FilmDoc(String title, int[] directorIds) {
+            this.title = title;
+            this.directorIds = directorIds;
+        }
+    }
+
+    private static class Match {
+        private final int filmId;
+        private final int relevance;
+        private final int likes;
+
+        Match(int filmId, int relevance, int likes) {
+            this.filmId = filmId;
+            this.relevance = relevance;
+            this.likes = likes;
+        }
+    }
+}
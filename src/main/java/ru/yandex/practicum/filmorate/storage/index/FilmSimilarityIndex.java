@@ -0,0 +1,472 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.IntArrays;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Похожие фильмы по совместным лайкам (item-to-item).
+ * Для каждого фильма хранится ограниченный набор счетчиков совместных лайков с другими фильмами,
+ * вытеснение по алгоритму Space-Saving: новый фильм при заполненном наборе заменяет фильм с наименьшим счетчиком.
+ * Лайк пользователя увеличивает счетчики пар с его остальными фильмами, снятие лайка - уменьшает.
+ * У пользователей с большим числом лайков учитывается детерминированная выборка из max-fanout фильмов
+ * (наименьшие значения хеша от пары пользователь-фильм), чтобы ограничить число обновлений на один лайк.
+ * Полное построение по {@link LikesMatrix} выполняется параллельно по фильмам в отдельном ForkJoinPool.
+ * Лайки меняются через индекс, который обновляет матрицу и счетчики вместе. Построение идет по снимку матрицы,
+ * изменения после снимка применяются к старым счетчикам, запоминаются и повторяются на построенных перед заменой.
+ */
+@Slf4j
+@Component
+public class FilmSimilarityIndex {
+
+    private final LikesMatrix likesMatrix;
+    private final int capacity;
+    private final int maxFanout;
+    private final boolean rebuildOnStartup;
+    private final ForkJoinPool pool;
+
+    private static final int[] EMPTY = new int[0];
+
+    private volatile Map<Integer, Counters> counters = new ConcurrentHashMap<>();
+
+    // Изменения выполняются под чтением и друг другу не мешают, снимок и замена счетчиков - под записью
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Изменения, сделанные после снимка матрицы, null вне построения
+    private List<Consumer<Map<Integer, Counters>>> changesDuringRebuild;
+
+    public FilmSimilarityIndex(LikesMatrix likesMatrix,
+                               @Value("${filmorate.similar.counters:40}") int capacity,
+                               @Value("${filmorate.similar.max-fanout:200}") int maxFanout,
+                               @Value("${filmorate.similar.parallelism:4}") int parallelism,
+                               @Value("${filmorate.similar.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.likesMatrix = likesMatrix;
+        this.capacity = capacity;
+        this.maxFanout = maxFanout;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (rebuildOnStartup)
+            rebuild();
+    }
+
+    /**
+     * Полное построение счетчиков по снимку матрицы лайков
+     */
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        Map<Integer, int[]> filmsByUser;
+        lock.writeLock().lock();
+        try {
+            filmsByUser = likesMatrix.getFilmsByUser();
+            changesDuringRebuild = Collections.synchronizedList(new ArrayList<>());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Map<Integer, Counters> built;
+        try {
+            built = build(filmsByUser);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach(change -> change.accept(built));
+            changesDuringRebuild = null;
+            counters = built;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Индекс похожих фильмов построен: {} фильм(ов) за {} мс", built.size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private Map<Integer, Counters> build(Map<Integer, int[]> filmsByUser) {
+        int[] userIds = filmsByUser.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        Map<Integer, int[]> samples = new HashMap<>();
+        int maxFilmId = 0;
+        for (int userId : userIds) {
+            int[] filmIds = filmsByUser.get(userId);
+            maxFilmId = Math.max(maxFilmId, filmIds[filmIds.length - 1]);
+            if (filmIds.length > maxFanout)
+                samples.put(userId, sample(userId, filmIds));
+        }
+        int counterSize = maxFilmId + 1;
+        // Пользователи фильмов по снимку, а не по текущей матрице
+        int[] degrees = new int[counterSize];
+        for (int[] filmIds : filmsByUser.values()) {
+            for (int filmId : filmIds) {
+                degrees[filmId]++;
+            }
+        }
+        int[][] usersByFilm = new int[counterSize][];
+        for (int filmId = 0; filmId < counterSize; filmId++) {
+            if (degrees[filmId] > 0)
+                usersByFilm[filmId] = new int[degrees[filmId]];
+            degrees[filmId] = 0;
+        }
+        for (int userId : userIds) {
+            for (int filmId : filmsByUser.get(userId)) {
+                usersByFilm[filmId][degrees[filmId]++] = userId;
+            }
+        }
+        int[] filmIds = IntStream.range(0, counterSize).filter(filmId -> usersByFilm[filmId] != null).toArray();
+
+        Map<Integer, Counters> built = new ConcurrentHashMap<>(filmIds.length * 2);
+        // Буфер счетчиков выделяется на задачу и освобождается вместе с ней
+        int tasks = Math.min(filmIds.length, pool.getParallelism() * 4);
+        pool.submit(() -> IntStream.range(0, tasks).parallel().forEach(task -> {
+            int[] counts = new int[counterSize];
+            IntList touched = new IntList();
+            for (int i = task; i < filmIds.length; i += tasks) {
+                int filmId = filmIds[i];
+                for (int userId : usersByFilm[filmId]) {
+                    int[] others = samples.get(userId);
+                    if (others == null) {
+                        others = filmsByUser.get(userId);
+                    } else if (Arrays.binarySearch(others, filmId) < 0) {
+                        continue;
+                    }
+                    for (int other : others) {
+                        if (other == filmId)
+                            continue;
+                        if (counts[other]++ == 0)
+                            touched.add(other);
+                    }
+                }
+                if (touched.size > 0)
+                    built.put(filmId, Counters.top(touched, counts, capacity));
+                for (int j = 0; j < touched.size; j++) {
+                    counts[touched.values[j]] = 0;
+                }
+                touched.size = 0;
+            }
+        })).join();
+        return built;
+    }
+
+    /**
+     * Лайк в матрице и учет его пар
+     * @return true - лайка не было и он добавлен
+     */
+    public boolean addLike(int userId, int filmId) {
+        lock.readLock().lock();
+        try {
+            if (!likesMatrix.addLike(userId, filmId))
+                return false;
+            int[] filmIds = likesMatrix.getFilms(userId);
+            int[] before = without(filmIds, filmId);
+            change(target -> update(target, userId, before, filmIds));
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Снятие лайка в матрице и его пар
+     * @return true - лайк был и он удален
+     */
+    public boolean removeLike(int userId, int filmId) {
+        lock.readLock().lock();
+        try {
+            if (!likesMatrix.removeLike(userId, filmId))
+                return false;
+            int[] filmIds = likesMatrix.getFilms(userId);
+            int[] before = with(filmIds, filmId);
+            change(target -> update(target, userId, before, filmIds));
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Удаление пользователя из матрицы и снятие пар всех его лайков
+     */
+    public void removeUser(int userId) {
+        lock.readLock().lock();
+        try {
+            int[] filmIds = likesMatrix.getFilms(userId);
+            likesMatrix.removeUser(userId);
+            change(target -> update(target, userId, filmIds, EMPTY));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Удаление фильма из матрицы и из счетчиков
+     */
+    public void removeFilm(int filmId) {
+        lock.readLock().lock();
+        try {
+            likesMatrix.removeFilm(filmId);
+            change(target -> removeFilm(target, filmId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void change(Consumer<Map<Integer, Counters>> change) {
+        change.accept(counters);
+        if (changesDuringRebuild != null)
+            changesDuringRebuild.add(change);
+    }
+
+    private static void removeFilm(Map<Integer, Counters> counters, int filmId) {
+        Counters removed = counters.remove(filmId);
+        if (removed == null)
+            return;
+        for (int other : removed.ids()) {
+            Counters otherCounters = counters.get(other);
+            if (otherCounters != null)
+                otherCounters.remove(filmId);
+        }
+    }
+
+    /**
+     * Фильмы, чаще всего лайкнутые вместе с filmId: по убыванию числа совместных лайков, затем по id
+     */
+    public List<Integer> getSimilar(int filmId, int count) {
+        Counters filmCounters = counters.get(filmId);
+        if (filmCounters == null)
+            return Collections.emptyList();
+        long[] ordered = filmCounters.ordered();
+        List<Integer> similar = new ArrayList<>(Math.min(count, ordered.length));
+        for (int i = 0; i < ordered.length && similar.size() < count; i++) {
+            int other = (int) ordered[i];
+            // Фильм мог быть удален или потерять все лайки после учета пары
+            if (likesMatrix.getUsers(other).length > 0)
+                similar.add(other);
+        }
+        return similar;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Переход от пар фильмов пользователя до изменения к парам после него. У пользователя с выборкой
+     * лайк может вытеснить из нее другой фильм, а снятие лайка - вернуть, поэтому снимаются все пары
+     * с выбывшими фильмами и добавляются все пары с новыми, как при полном построении
+     */
+    private void update(Map<Integer, Counters> counters, int userId, int[] before, int[] after) {
+        int[] oldPairs = pairFilms(userId, before);
+        int[] newPairs = pairFilms(userId, after);
+        for (int filmId : oldPairs) {
+            if (Arrays.binarySearch(newPairs, filmId) >= 0)
+                continue;
+            Counters filmCounters = counters.get(filmId);
+            for (int other : oldPairs) {
+                if (other == filmId)
+                    continue;
+                if (filmCounters != null)
+                    filmCounters.decrement(other);
+                // Пара двух выбывших фильмов снимается при обходе каждого из них
+                Counters otherCounters = Arrays.binarySearch(newPairs, other) >= 0 ? counters.get(other) : null;
+                if (otherCounters != null)
+                    otherCounters.decrement(filmId);
+            }
+        }
+        for (int filmId : newPairs) {
+            if (Arrays.binarySearch(oldPairs, filmId) >= 0)
+                continue;
+            Counters filmCounters = counters.computeIfAbsent(filmId, id -> new Counters());
+            for (int other : newPairs) {
+                if (other == filmId)
+                    continue;
+                filmCounters.increment(other, capacity);
+                if (Arrays.binarySearch(oldPairs, other) >= 0)
+                    counters.computeIfAbsent(other, id -> new Counters()).increment(filmId, capacity);
+            }
+        }
+    }
+
+    /**
+     * Фильмы пользователя, пары которых учитываются: все или выборка для пользователей с большим числом лайков
+     */
+    private int[] pairFilms(int userId, int[] filmIds) {
+        return filmIds.length > maxFanout ? sample(userId, filmIds) : filmIds;
+    }
+
+    /**
+     * Детерминированная выборка max-fanout фильмов пользователя: фильмы с наименьшим хешем пары,
+     * при добавлении новых лайков выборка меняется мало. Результат отсортирован по id
+     */
+    private int[] sample(int userId, int[] filmIds) {
+        long[] keyed = new long[filmIds.length];
+        for (int i = 0; i < filmIds.length; i++) {
+            keyed[i] = (hash(userId, filmIds[i]) & 0xFFFFFFFFL) << 32 | filmIds[i];
+        }
+        Arrays.sort(keyed);
+        int[] sample = new int[maxFanout];
+        for (int i = 0; i < maxFanout; i++) {
+            sample[i] = (int) keyed[i];
+        }
+        Arrays.sort(sample);
+        return sample;
+    }
+
+    private static int hash(int userId, int filmId) {
+        long h = ((long) userId << 32 | filmId & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 29;
+        return (int) h;
+    }
+
+    private static int[] without(int[] ids, int id) {
+        int[] result = IntArrays.without(ids, id);
+        return result == null ? new int[0] : result;
+    }
+
+    private static int[] with(int[] ids, int id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0)
+            return ids;
+        index = -index - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        result[index] = id;
+        System.arraycopy(ids, index, result, index + 1, ids.length - index);
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static final class IntList {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * Набор счетчиков совместных лайков одного фильма
+     */
+    private static final class Counters {
+        private int[] ids = new int[4];
+        private int[] counts = new int[4];
+        private int size;
+
+        static Counters top(IntList touched, int[] allCounts, int capacity) {
+            long[] keyed = new long[touched.size];
+            for (int i = 0; i < touched.size; i++) {
+                int id = touched.values[i];
+                keyed[i] = order(id, allCounts[id]);
+            }
+            Arrays.sort(keyed);
+            Counters result = new Counters();
+            int size = Math.min(capacity, keyed.length);
+            result.ids = new int[Math.max(size, 1)];
+            result.counts = new int[Math.max(size, 1)];
+            for (int i = 0; i < size; i++) {
+                int id = (int) keyed[i];
+                result.ids[i] = id;
+                result.counts[i] = allCounts[id];
+            }
+            result.size = size;
+            return result;
+        }
+
+        synchronized void increment(int id, int capacity) {
+            int index = indexOf(id);
+            if (index >= 0) {
+                counts[index]++;
+                return;
+            }
+            if (size < capacity) {
+                if (size == ids.length) {
+                    int length = Math.min(capacity, size * 2);
+                    ids = Arrays.copyOf(ids, length);
+                    counts = Arrays.copyOf(counts, length);
+                }
+                ids[size] = id;
+                counts[size++] = 1;
+                return;
+            }
+            // Space-Saving: новый фильм наследует счетчик вытесненного
+            int min = 0;
+            for (int i = 1; i < size; i++) {
+                if (counts[i] < counts[min])
+                    min = i;
+            }
+            ids[min] = id;
+            counts[min]++;
+        }
+
+        synchronized void decrement(int id) {
+            int index = indexOf(id);
+            if (index >= 0 && --counts[index] <= 0)
+                removeAt(index);
+        }
+
+        synchronized void remove(int id) {
+            int index = indexOf(id);
+            if (index >= 0)
+                removeAt(index);
+        }
+
+        synchronized int[] ids() {
+            return Arrays.copyOf(ids, size);
+        }
+
+        /**
+         * Фильмы по убыванию счетчика, затем по возрастанию id, id в младших 32 битах
+         */
+        synchronized long[] ordered() {
+            long[] keyed = new long[size];
+            for (int i = 0; i < size; i++) {
+                keyed[i] = order(ids[i], counts[i]);
+            }
+            Arrays.sort(keyed);
+            return keyed;
+        }
+
+        private static long order(int id, int count) {
+            return (long) (Integer.MAX_VALUE - count) << 32 | id;
+        }
+
+        private int indexOf(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id)
+                    return i;
+            }
+            return -1;
+        }
+
+        private void removeAt(int index) {
+            size--;
+            ids[index] = ids[size];
+            counts[index] = counts[size];
+        }
+    }
+}
@@ -0,0 +1,583 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.Suggestion;
+import ru.yandex.practicum.filmorate.enums.SuggestionType;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.util.TextUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс подсказок для строки поиска: сжатое префиксное дерево (radix tree) по названиям фильмов
+ * и именам режиссеров, приведенным через {@link TextUtils#fold}. В дерево попадает текст с начала каждого слова,
+ * поэтому "перез" находит "Матрица: Перезагрузка".
+ * Каждый узел хранит топ-N подсказок своего поддерева (лайки по убыванию), поиск проходит по дереву
+ * без выделения памяти и читает готовый топ. Вес фильма - количество лайков,
+ * вес режиссера - сумма лайков его фильмов.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSuggestIndex {
+
+    private static final int[] EMPTY = new int[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ReferenceDataRegistry referenceDataRegistry;
+    private final PopularFilmsIndex popularFilmsIndex;
+
+    @Value("${filmorate.suggest.top-size:10}")
+    private final int topSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node(new char[0]);
+
+    // Подсказки хранятся в параллельных массивах, узлы дерева ссылаются на номер подсказки
+    private SuggestionType[] types = new SuggestionType[1024];
+    private int[] refIds = new int[1024];
+    private String[] names = new String[1024];
+    private String[] keys = new String[1024];
+    private int[] weights = new int[1024];
+    private int entryCount;
+    private int[] freeEntries = new int[16];
+    private int freeCount;
+
+    private final Map<Integer, Integer> filmEntries = new HashMap<>();
+    private final Map<Integer, Integer> directorEntries = new HashMap<>();
+    private final Map<Integer, int[]> filmDirectors = new HashMap<>();
+    private final Map<Integer, Integer> directorLikes = new HashMap<>();
+
+    // Буферы пересчета топов, используются только под блокировкой записи
+    private final List<Node> path = new ArrayList<>();
+    private int[] candidates = new int[64];
+
+    /**
+     * Полное построение индекса по FILMS, FILM_DIRECTORS, справочнику режиссеров и индексу популярности
+     */
+    @PostConstruct
+    public void rebuild() {
+        Map<Integer, String> titles = new HashMap<>();
+        jdbcTemplate.getJdbcTemplate().query("select film_id, name from FILMS",
+                rs -> {
+                    titles.put(rs.getInt("film_id"), rs.getString("name"));
+                });
+        Map<Integer, List<Integer>> links = new HashMap<>();
+        jdbcTemplate.getJdbcTemplate().query("select film_id, director_id from FILM_DIRECTORS",
+                rs -> {
+                    links.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>()).add(rs.getInt("director_id"));
+                });
+
+        lock.writeLock().lock();
+        try {
+            root = new Node(new char[0]);
+            Arrays.fill(names, null);
+            Arrays.fill(keys, null);
+            entryCount = 0;
+            freeCount = 0;
+            filmEntries.clear();
+            directorEntries.clear();
+            filmDirectors.clear();
+            directorLikes.clear();
+            titles.forEach((filmId, title) -> {
+                int likes = popularFilmsIndex.getLikes(filmId);
+                int[] directorIds = distinct(links.getOrDefault(filmId, Collections.emptyList()));
+                filmEntries.put(filmId, insertEntry(SuggestionType.FILM, filmId, title, likes, false));
+                filmDirectors.put(filmId, directorIds);
+                for (int directorId : directorIds) {
+                    directorLikes.merge(directorId, likes, Integer::sum);
+                }
+            });
+            for (Director director : referenceDataRegistry.getDirectors()) {
+                directorEntries.put(director.getId(), insertEntry(SuggestionType.DIRECTOR, director.getId(),
+                        director.getName(), directorLikes.getOrDefault(director.getId(), 0), false));
+            }
+            computeTops(root);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Индекс подсказок построен: {} фильм(ов), {} режиссер(ов)", filmEntries.size(), directorEntries.size());
+    }
+
+    /**
+     * Подсказки, начинающиеся с prefix (с начала любого слова названия или имени)
+     * @param limit - не больше top-size
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String folded = TextUtils.fold(prefix).stripLeading();
+        lock.readLock().lock();
+        try {
+            Node node = find(folded);
+            if (node == null)
+                return Collections.emptyList();
+            int size = Math.min(limit, node.top.length);
+            List<Suggestion> suggestions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int entry = node.top[i];
+                suggestions.add(new Suggestion(types[entry], refIds[entry], names[entry], weights[entry]));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTopSize() {
+        return topSize;
+    }
+
+    /**
+     * Добавление фильма или изменение его названия и режиссеров с сохранением количества лайков
+     */
+    public void putFilm(int filmId, String title, Collection<Integer> directorIds) {
+        int likes = popularFilmsIndex.getLikes(filmId);
+        lock.writeLock().lock();
+        try {
+            removeFilmEntry(filmId);
+            filmEntries.put(filmId, insertEntry(SuggestionType.FILM, filmId, title, likes, true));
+            int[] ids = distinct(directorIds == null ? Collections.emptyList() : directorIds);
+            filmDirectors.put(filmId, ids);
+            for (int directorId : ids) {
+                changeDirectorLikes(directorId, likes);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFilmEntry(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавление режиссера или изменение его имени
+     */
+    public void putDirector(int directorId, String name) {
+        lock.writeLock().lock();
+        try {
+            Integer previous = directorEntries.remove(directorId);
+            if (previous != null)
+                removeEntry(previous);
+            directorEntries.put(directorId, insertEntry(SuggestionType.DIRECTOR, directorId, name,
+                    directorLikes.getOrDefault(directorId, 0), true));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(int directorId) {
+        lock.writeLock().lock();
+        try {
+            Integer previous = directorEntries.remove(directorId);
+            if (previous != null)
+                removeEntry(previous);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Изменение количества лайков фильма, вес его режиссеров меняется на ту же величину
+     */
+    public void changeLikes(int filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            Integer entry = filmEntries.get(filmId);
+            if (entry == null)
+                return;
+            changeWeight(entry, weights[entry] + delta);
+            for (int directorId : filmDirectors.getOrDefault(filmId, EMPTY)) {
+                changeDirectorLikes(directorId, delta);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeFilmEntry(int filmId) {
+        Integer entry = filmEntries.remove(filmId);
+        if (entry == null)
+            return;
+        int likes = weights[entry];
+        removeEntry(entry);
+        for (int directorId : Optional.ofNullable(filmDirectors.remove(filmId)).orElse(EMPTY)) {
+            changeDirectorLikes(directorId, -likes);
+        }
+    }
+
+    private void changeDirectorLikes(int directorId, int delta) {
+        if (delta == 0)
+            return;
+        Integer likes = directorLikes.merge(directorId, delta, (a, b) -> a + b == 0 ? null : a + b);
+        Integer entry = directorEntries.get(directorId);
+        if (entry != null)
+            changeWeight(entry, likes == null ? 0 : likes);
+    }
+
+    private int insertEntry(SuggestionType type, int refId, String name, int weight, boolean updateTops) {
+        int entry = allocate();
+        types[entry] = type;
+        refIds[entry] = refId;
+        names[entry] = name;
+        keys[entry] = TextUtils.fold(name);
+        weights[entry] = weight;
+        String key = keys[entry];
+        for (int from = 0; from < key.length(); from++) {
+            if (isKeyStart(key, from)) {
+                insert(entry, key, from);
+                if (updateTops)
+                    raisePath(entry);
+            }
+        }
+        return entry;
+    }
+
+    private void removeEntry(int entry) {
+        String key = keys[entry];
+        for (int from = 0; from < key.length(); from++) {
+            if (isKeyStart(key, from)) {
+                remove(entry, key, from);
+                refreshPath();
+            }
+        }
+        names[entry] = null;
+        keys[entry] = null;
+        types[entry] = null;
+        if (freeCount == freeEntries.length)
+            freeEntries = Arrays.copyOf(freeEntries, freeCount * 2);
+        freeEntries[freeCount++] = entry;
+    }
+
+    private void changeWeight(int entry, int weight) {
+        if (weights[entry] == weight)
+            return;
+        boolean raised = weight > weights[entry];
+        weights[entry] = weight;
+        String key = keys[entry];
+        for (int from = 0; from < key.length(); from++) {
+            if (isKeyStart(key, from) && walk(key, from) != null) {
+                if (raised)
+                    raisePath(entry);
+                else
+                    refreshPath();
+            }
+        }
+    }
+
+    private int allocate() {
+        if (freeCount > 0)
+            return freeEntries[--freeCount];
+        if (entryCount == weights.length) {
+            int capacity = entryCount * 2;
+            types = Arrays.copyOf(types, capacity);
+            refIds = Arrays.copyOf(refIds, capacity);
+            names = Arrays.copyOf(names, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+        }
+        return entryCount++;
+    }
+
+    private static boolean isKeyStart(String key, int index) {
+        return Character.isLetterOrDigit(key.charAt(index)) && TextUtils.isWordStart(key, index);
+    }
+
+    /**
+     * Узел, в котором заканчивается prefix или внутри ребра которого он заканчивается
+     */
+    private Node find(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int childIndex = findChild(node, prefix.charAt(i));
+            if (childIndex < 0)
+                return null;
+            Node child = node.children[childIndex];
+            int length = Math.min(child.label.length, prefix.length() - i);
+            for (int k = 1; k < length; k++) {
+                if (child.label[k] != prefix.charAt(i + k))
+                    return null;
+            }
+            node = child;
+            i += length;
+        }
+        return node;
+    }
+
+    /**
+     * Путь от корня до узла ключа key.substring(from) в буфер path, null - ключа нет в дереве
+     */
+    private Node walk(String key, int from) {
+        path.clear();
+        Node node = root;
+        path.add(node);
+        int i = from;
+        while (i < key.length()) {
+            int childIndex = findChild(node, key.charAt(i));
+            if (childIndex < 0)
+                return null;
+            Node child = node.children[childIndex];
+            if (commonLength(child.label, key, i) < child.label.length)
+                return null;
+            node = child;
+            path.add(node);
+            i += child.label.length;
+        }
+        return node;
+    }
+
+    private void insert(int entry, String key, int from) {
+        path.clear();
+        Node node = root;
+        path.add(node);
+        int i = from;
+        while (i < key.length()) {
+            int childIndex = findChild(node, key.charAt(i));
+            if (childIndex < 0) {
+                Node leaf = new Node(key.substring(i).toCharArray());
+                node.children = insertChild(node.children, -childIndex - 1, leaf);
+                node = leaf;
+                path.add(node);
+                break;
+            }
+            Node child = node.children[childIndex];
+            int common = commonLength(child.label, key, i);
+            if (common < child.label.length) {
+                // Разделение ребра: общий префикс становится отдельным узлом
+                Node middle = new Node(Arrays.copyOf(child.label, common));
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                middle.children = new Node[]{child};
+                middle.top = child.top.clone();
+                node.children[childIndex] = middle;
+                child = middle;
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+        node.terminals = append(node.terminals, entry);
+    }
+
+    private void remove(int entry, String key, int from) {
+        Node node = walk(key, from);
+        if (node == null)
+            return;
+        node.terminals = without(node.terminals, entry);
+        // Удаление пустых листьев и слияние узла с единственным потомком
+        for (int p = path.size() - 1; p > 0; p--) {
+            Node current = path.get(p);
+            if (current.terminals.length > 0 || current.children.length > 1)
+                break;
+            Node parent = path.get(p - 1);
+            int index = findChild(parent, current.label[0]);
+            if (current.children.length == 0) {
+                parent.children = removeChild(parent.children, index);
+                path.remove(p);
+            } else {
+                Node only = current.children[0];
+                char[] label = Arrays.copyOf(current.label, current.label.length + only.label.length);
+                System.arraycopy(only.label, 0, label, current.label.length, only.label.length);
+                only.label = label;
+                parent.children[index] = only;
+                path.set(p, only);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Пересчет топов узлов пути снизу вверх: топ узла выбирается из его подсказок и топов потомков
+     */
+    private void refreshPath() {
+        for (int p = path.size() - 1; p >= 0; p--) {
+            computeTop(path.get(p));
+        }
+    }
+
+    /**
+     * Подсказка стала выше в порядке (добавлена или получила лайк): достаточно поставить ее
+     * на место в уже посчитанных топах пути без пересбора из потомков
+     */
+    private void raisePath(int entry) {
+        for (int p = path.size() - 1; p >= 0; p--) {
+            Node node = path.get(p);
+            int[] top = node.top;
+            int position = 0;
+            while (position < top.length && top[position] != entry) {
+                position++;
+            }
+            if (position == top.length) {
+                if (top.length < topSize) {
+                    top = Arrays.copyOf(top, top.length + 1);
+                } else if (!before(entry, top[top.length - 1])) {
+                    continue;
+                }
+                position = top.length - 1;
+            }
+            while (position > 0 && before(entry, top[position - 1])) {
+                top[position] = top[position - 1];
+                position--;
+            }
+            top[position] = entry;
+            node.top = top;
+        }
+    }
+
+    private void computeTops(Node node) {
+        for (Node child : node.children) {
+            computeTops(child);
+        }
+        computeTop(node);
+    }
+
+    private void computeTop(Node node) {
+        if (node.children.length == 0 && node.terminals.length == 1) {
+            // Лист с одной подсказкой: топ совпадает со списком подсказок узла. Копия, потому что топ
+            // изменяется на месте при росте веса, а список подсказок - нет
+            node.top = node.terminals.clone();
+            return;
+        }
+        int count = collect(node.terminals, 0);
+        for (Node child : node.children) {
+            count = collect(child.top, count);
+        }
+        int[] top = new int[Math.min(topSize, count)];
+        int size = 0;
+        for (int c = 0; c < count; c++) {
+            int entry = candidates[c];
+            int position = size;
+            boolean duplicate = false;
+            for (int i = 0; i < size; i++) {
+                if (top[i] == entry) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (duplicate)
+                continue;
+            while (position > 0 && before(entry, top[position - 1])) {
+                position--;
+            }
+            if (position >= top.length)
+                continue;
+            int moved = Math.min(size, top.length - 1) - position;
+            System.arraycopy(top, position, top, position + 1, moved);
+            top[position] = entry;
+            size = Math.min(size + 1, top.length);
+        }
+        node.top = size == top.length ? top : Arrays.copyOf(top, size);
+    }
+
+    private int collect(int[] entries, int count) {
+        if (count + entries.length > candidates.length)
+            candidates = Arrays.copyOf(candidates, Math.max(candidates.length * 2, count + entries.length));
+        System.arraycopy(entries, 0, candidates, count, entries.length);
+        return count + entries.length;
+    }
+
+    /**
+     * Порядок подсказок: вес по убыванию, затем текст, затем номер подсказки
+     */
+    private boolean before(int first, int second) {
+        if (weights[first] != weights[second])
+            return weights[first] > weights[second];
+        int byKey = keys[first].compareTo(keys[second]);
+        return byKey != 0 ? byKey < 0 : first < second;
+    }
+
+    private static int findChild(Node node, char c) {
+        Node[] children = node.children;
+        int low = 0;
+        int high = children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = children[mid].label[0];
+            if (label < c)
+                low = mid + 1;
+            else if (label > c)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
+
+    private static int commonLength(char[] label, String key, int from) {
+        int length = Math.min(label.length, key.length() - from);
+        int i = 0;
+        while (i < length && label[i] == key.charAt(from + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static Node[] insertChild(Node[] children, int index, Node child) {
+        Node[] result = new Node[children.length + 1];
+        System.arraycopy(children, 0, result, 0, index);
+        result[index] = child;
+        System.arraycopy(children, index, result, index + 1, children.length - index);
+        return result;
+    }
+
+    private static Node[] removeChild(Node[] children, int index) {
+        if (children.length == 1)
+            return NO_CHILDREN;
+        Node[] result = new Node[children.length - 1];
+        System.arraycopy(children, 0, result, 0, index);
+        System.arraycopy(children, index + 1, result, index, children.length - index - 1);
+        return result;
+    }
+
+    private static int[] append(int[] entries, int entry) {
+        for (int existing : entries) {
+            if (existing == entry)
+                return entries;
+        }
+        int[] result = Arrays.copyOf(entries, entries.length + 1);
+        result[entries.length] = entry;
+        return result;
+    }
+
+    private static int[] without(int[] entries, int entry) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == entry) {
+                if (entries.length == 1)
+                    return EMPTY;
+                int[] result = new int[entries.length - 1];
+                System.arraycopy(entries, 0, result, 0, i);
+                System.arraycopy(entries, i + 1, result, i, entries.length - i - 1);
+                return result;
+            }
+        }
+        return entries;
+    }
+
+    private static int[] distinct(Collection<Integer> ids) {
+        return ids.stream().distinct().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static final class Node {
+        private char[] label;
+        private Node[] children = NO_CHILDREN;
+        private int[] terminals = EMPTY;
+        private int[] top = EMPTY;
+
+        private Node(char[] label) {
+            this.label = label;
+        }
+    }
+}
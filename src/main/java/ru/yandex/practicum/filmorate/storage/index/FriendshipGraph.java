@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.IntArrays;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Граф дружбы по таблице USER_FRIENDS в памяти.
+ * Для каждого пользователя хранятся отсортированные массивы id друзей (исходящие заявки)
+ * и подписчиков (входящие заявки), а также множество id существующих пользователей.
+ * Как и в {@link LikesMatrix}, массивы заменяются копиями, поэтому чтение выполняется без блокировок.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendshipGraph {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final Set<Integer> users = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, int[]> friendsByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> followersByUser = new ConcurrentHashMap<>();
+
+    /**
+     * Полное построение графа по таблицам USERS и USER_FRIENDS
+     */
+    @PostConstruct
+    public synchronized void rebuild() {
+        Set<Integer> userIds = new HashSet<>();
+        jdbcTemplate.getJdbcTemplate().query("select user_id from USERS",
+                rs -> {
+                    userIds.add(rs.getInt("user_id"));
+                });
+        int[][] edges = {new int[1024], new int[1024]};
+        int[] size = {0};
+        jdbcTemplate.getJdbcTemplate().query("select user_id, friend_id from USER_FRIENDS",
+                rs -> {
+                    if (size[0] == edges[0].length) {
+                        edges[0] = Arrays.copyOf(edges[0], size[0] * 2);
+                        edges[1] = Arrays.copyOf(edges[1], size[0] * 2);
+                    }
+                    edges[0][size[0]] = rs.getInt("user_id");
+                    edges[1][size[0]] = rs.getInt("friend_id");
+                    size[0]++;
+                });
+        Map<Integer, int[]> friends = group(edges[0], edges[1], size[0]);
+        Map<Integer, int[]> followers = group(edges[1], edges[0], size[0]);
+
+        users.clear();
+        friendsByUser.clear();
+        followersByUser.clear();
+        users.addAll(userIds);
+        friendsByUser.putAll(friends);
+        followersByUser.putAll(followers);
+        log.info("Граф дружбы построен: {} пользовател(ей), {} заяв(ок) в друзья", userIds.size(), size[0]);
+    }
+
+    public boolean containsUser(int userId) {
+        return users.contains(userId);
+    }
+
+    public void addUser(int userId) {
+        users.add(userId);
+    }
+
+    /**
+     * Удаление пользователя вместе со всеми его связями, в базе они удаляются каскадно
+     */
+    public void removeUser(int userId) {
+        users.remove(userId);
+        int[] friends = friendsByUser.remove(userId);
+        if (friends != null) {
+            for (int friendId : friends) {
+                followersByUser.computeIfPresent(friendId, (id, ids) -> IntArrays.without(ids, userId));
+            }
+        }
+        int[] followers = followersByUser.remove(userId);
+        if (followers != null) {
+            for (int followerId : followers) {
+                friendsByUser.computeIfPresent(followerId, (id, ids) -> IntArrays.without(ids, userId));
+            }
+        }
+    }
+
+    public void addFriend(int userId, int friendId) {
+        friendsByUser.compute(userId, (id, ids) -> IntArrays.with(ids, friendId));
+        followersByUser.compute(friendId, (id, ids) -> IntArrays.with(ids, userId));
+    }
+
+    public void removeFriend(int userId, int friendId) {
+        friendsByUser.computeIfPresent(userId, (id, ids) -> IntArrays.without(ids, friendId));
+        followersByUser.computeIfPresent(friendId, (id, ids) -> IntArrays.without(ids, userId));
+    }
+
+    /**
+     * Отсортированные id друзей пользователя (кому он отправил заявку). Массив нельзя изменять
+     */
+    public int[] getFriends(int userId) {
+        return friendsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    /**
+     * Отсортированные id пользователей, добавивших пользователя в друзья. Массив нельзя изменять
+     */
+    public int[] getFollowers(int userId) {
+        return followersByUser.getOrDefault(userId, EMPTY);
+    }
+
+    public boolean hasFriend(int userId, int friendId) {
+        return Arrays.binarySearch(getFriends(userId), friendId) >= 0;
+    }
+
+    /**
+     * Отсортированные id общих друзей пользователей
+     */
+    public int[] getCommonFriends(int userId, int otherId) {
+        int[] friends = getFriends(userId);
+        int[] otherFriends = getFriends(otherId);
+        return friends.length <= otherFriends.length ? IntArrays.intersect(friends, otherFriends)
+                : IntArrays.intersect(otherFriends, friends);
+    }
+
+    /**
+     * Группировка пар (key, value) в отсортированные массивы value по key
+     */
+    private static Map<Integer, int[]> group(int[] keys, int[] values, int size) {
+        Map<Integer, int[]> counts = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            counts.computeIfAbsent(keys[i], id -> new int[1])[0]++;
+        }
+        Map<Integer, int[]> groups = new HashMap<>(counts.size() * 2);
+        counts.forEach((key, count) -> {
+            groups.put(key, new int[count[0]]);
+            count[0] = 0;
+        });
+        for (int i = 0; i < size; i++) {
+            groups.get(keys[i])[counts.get(keys[i])[0]++] = values[i];
+        }
+        groups.values().forEach(Arrays::sort);
+        return groups;
+    }
+}
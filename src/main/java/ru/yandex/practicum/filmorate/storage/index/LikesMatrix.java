@@ -0,0 +1,197 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.IntArrays;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Разреженная матрица лайков пользователь x фильм в памяти.
+ * Для каждого пользователя хранится отсортированный массив id понравившихся фильмов,
+ * для каждого фильма - отсортированный массив id поставивших лайк пользователей.
+ * Массивы не изменяются после публикации: запись заменяет массив копией,
+ * поэтому чтение выполняется без блокировок.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikesMatrix {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final Map<Integer, int[]> filmsByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> usersByFilm = new ConcurrentHashMap<>();
+
+    /**
+     * Полное построение матрицы по таблице APPRAISERS
+     */
+    @PostConstruct
+    public synchronized void rebuild() {
+        Map<Integer, int[]> users = new HashMap<>();
+        int[][] buffer = {new int[16]};
+        int[] current = {-1, 0};
+        jdbcTemplate.getJdbcTemplate().query("select user_id, film_id from APPRAISERS order by user_id, film_id",
+                rs -> {
+                    int userId = rs.getInt("user_id");
+                    if (userId != current[0]) {
+                        if (current[1] > 0)
+                            users.put(current[0], Arrays.copyOf(buffer[0], current[1]));
+                        current[0] = userId;
+                        current[1] = 0;
+                    }
+                    if (current[1] == buffer[0].length)
+                        buffer[0] = Arrays.copyOf(buffer[0], current[1] * 2);
+                    buffer[0][current[1]++] = rs.getInt("film_id");
+                });
+        if (current[1] > 0)
+            users.put(current[0], Arrays.copyOf(buffer[0], current[1]));
+
+        // Обход пользователей по возрастанию id дает отсортированные массивы фильмов
+        int[] userIds = users.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        Map<Integer, int[]> counts = new HashMap<>();
+        for (int[] filmIds : users.values()) {
+            for (int filmId : filmIds) {
+                counts.computeIfAbsent(filmId, id -> new int[1])[0]++;
+            }
+        }
+        Map<Integer, int[]> films = new HashMap<>(counts.size() * 2);
+        counts.forEach((filmId, count) -> {
+            films.put(filmId, new int[count[0]]);
+            count[0] = 0;
+        });
+        long likes = 0;
+        for (int userId : userIds) {
+            for (int filmId : users.get(userId)) {
+                films.get(filmId)[counts.get(filmId)[0]++] = userId;
+                likes++;
+            }
+        }
+
+        filmsByUser.clear();
+        usersByFilm.clear();
+        filmsByUser.putAll(users);
+        usersByFilm.putAll(films);
+        log.info("Матрица лайков построена: {} пользовател(ей), {} фильм(ов), {} лайк(ов)",
+                users.size(), films.size(), likes);
+    }
+
+    /**
+     * Отсортированные id фильмов, понравившихся пользователю. Массив нельзя изменять
+     */
+    public int[] getFilms(int userId) {
+        return filmsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    /**
+     * Снимок лайков всех пользователей: копия карты пользователь - отсортированные id фильмов.
+     * Массивы общие с матрицей, их нельзя изменять
+     */
+    public Map<Integer, int[]> getFilmsByUser() {
+        return new HashMap<>(filmsByUser);
+    }
+
+    /**
+     * Отсортированные id пользователей, поставивших лайк фильму. Массив нельзя изменять
+     */
+    public int[] getUsers(int filmId) {
+        return usersByFilm.getOrDefault(filmId, EMPTY);
+    }
+
+    /**
+     * Отсортированные id фильмов, понравившихся всем указанным пользователям.
+     * Массивы пересекаются начиная с самого короткого, так что промежуточный результат не растет
+     */
+    public int[] getCommonFilms(int... userIds) {
+        if (userIds.length == 0)
+            return EMPTY;
+        int[][] arrays = new int[userIds.length][];
+        for (int i = 0; i < userIds.length; i++) {
+            arrays[i] = getFilms(userIds[i]);
+        }
+        Arrays.sort(arrays, Comparator.comparingInt(array -> array.length));
+        int[] result = arrays[0];
+        for (int i = 1; i < arrays.length && result.length > 0; i++) {
+            result = IntArrays.intersect(result, arrays[i]);
+        }
+        return result;
+    }
+
+    /**
+     * id пользователей, у которых есть хотя бы один лайк
+     */
+    public int[] getUserIds() {
+        return filmsByUser.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Замена лайков пользователя актуальными из базы, например измененными на другом узле
+     * @param filmIds - отсортированные id фильмов
+     */
+    public void replaceUser(int userId, int[] filmIds) {
+        int[] previous = filmIds.length == 0 ? filmsByUser.remove(userId) : filmsByUser.put(userId, filmIds);
+        int[] old = previous == null ? EMPTY : previous;
+        for (int filmId : old) {
+            if (Arrays.binarySearch(filmIds, filmId) < 0)
+                usersByFilm.computeIfPresent(filmId, (id, userIds) -> IntArrays.without(userIds, userId));
+        }
+        for (int filmId : filmIds) {
+            if (Arrays.binarySearch(old, filmId) < 0)
+                usersByFilm.compute(filmId, (id, userIds) -> IntArrays.with(userIds, userId));
+        }
+    }
+
+    /**
+     * @return true - лайка не было и он добавлен
+     */
+    public boolean addLike(int userId, int filmId) {
+        boolean[] changed = {false};
+        filmsByUser.compute(userId, (id, filmIds) -> {
+            int[] updated = IntArrays.with(filmIds, filmId);
+            changed[0] = updated != filmIds;
+            return updated;
+        });
+        if (changed[0])
+            usersByFilm.compute(filmId, (id, userIds) -> IntArrays.with(userIds, userId));
+        return changed[0];
+    }
+
+    /**
+     * @return true - лайк был и он удален
+     */
+    public boolean removeLike(int userId, int filmId) {
+        boolean[] changed = {false};
+        filmsByUser.computeIfPresent(userId, (id, filmIds) -> {
+            int[] updated = IntArrays.without(filmIds, filmId);
+            changed[0] = updated != filmIds;
+            return updated;
+        });
+        if (changed[0])
+            usersByFilm.computeIfPresent(filmId, (id, userIds) -> IntArrays.without(userIds, userId));
+        return changed[0];
+    }
+
+    public void removeUser(int userId) {
+        int[] filmIds = filmsByUser.remove(userId);
+        if (filmIds == null)
+            return;
+        for (int filmId : filmIds) {
+            usersByFilm.computeIfPresent(filmId, (id, userIds) -> IntArrays.without(userIds, userId));
+        }
+    }
+
+    public void removeFilm(int filmId) {
+        int[] userIds = usersByFilm.remove(filmId);
+        if (userIds == null)
+            return;
+        for (int userId : userIds) {
+            filmsByUser.computeIfPresent(userId, (id, filmIds) -> IntArrays.without(filmIds, filmId));
+        }
+    }
+}
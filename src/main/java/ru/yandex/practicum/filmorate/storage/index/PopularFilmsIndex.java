@@ -0,0 +1,215 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс популярности фильмов в памяти.
+ * Для всех фильмов, для каждого жанра, года и пары жанр+год хранится упорядоченное множество
+ * (лайки по убыванию, затем id по возрастанию), поэтому выборка топ-N не обращается к базе.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PopularFilmsIndex {
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt((Entry entry) -> -entry.likes)
+            .thenComparingInt(entry -> entry.filmId);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> all = new TreeSet<>(ORDER);
+    private final Map<Integer, NavigableSet<Entry>> byGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> byYear = new HashMap<>();
+    private final Map<Long, NavigableSet<Entry>> byGenreAndYear = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Полное построение индекса по таблицам FILMS и FILM_GENRES
+     */
+    @PostConstruct
+    public void rebuild() {
+        Map<Integer, Entry> loaded = new HashMap<>();
+        jdbcTemplate.getJdbcTemplate().query(
+                "select film_id, likes_count, EXTRACT(YEAR FROM release_date) as release_year from FILMS",
+                rs -> {
+                    Entry entry = new Entry(rs.getInt("film_id"), rs.getInt("release_year"), new int[0]);
+                    entry.likes = rs.getInt("likes_count");
+                    loaded.put(entry.filmId, entry);
+                }
+        );
+        Map<Integer, List<Integer>> genres = new HashMap<>();
+        jdbcTemplate.getJdbcTemplate().query(
+                "select film_id, genre_id from FILM_GENRES",
+                rs -> {
+                    genres.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>()).add(rs.getInt("genre_id"));
+                }
+        );
+        genres.forEach((filmId, genreIds) -> {
+            Entry entry = loaded.get(filmId);
+            if (entry != null)
+                entry.genreIds = toArray(genreIds);
+        });
+
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            all.clear();
+            byGenre.clear();
+            byYear.clear();
+            byGenreAndYear.clear();
+            loaded.values().forEach(this::link);
+            entries.putAll(loaded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Индекс популярности построен: {} фильм(ов)", loaded.size());
+    }
+
+    /**
+     * Добавление фильма или изменение его года и жанров с сохранением количества лайков
+     */
+    public void put(int filmId, int year, Collection<Integer> genreIds) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(filmId);
+            int likes = 0;
+            if (entry != null) {
+                unlink(entry);
+                likes = entry.likes;
+            }
+            entry = new Entry(filmId, year, toArray(genreIds));
+            entry.likes = likes;
+            link(entry);
+            entries.put(filmId, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int filmId) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(filmId);
+            if (entry != null)
+                unlink(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void changeLikes(int filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(filmId);
+            if (entry == null)
+                return;
+            unlink(entry);
+            entry.likes += delta;
+            link(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getLikes(int filmId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(filmId);
+            return entry == null ? 0 : entry.likes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Топ фильмов по количеству лайков
+     * @param count - размер выборки
+     * @param genreId - id жанра, 0 - все жанры
+     * @param year - год выпуска, 0 - все года
+     * @return id фильмов в порядке убывания популярности
+     */
+    public List<Integer> getTop(int count, int genreId, int year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> entries;
+            if (genreId != 0 && year != 0)
+                entries = byGenreAndYear.get(genreAndYear(genreId, year));
+            else if (genreId != 0)
+                entries = byGenre.get(genreId);
+            else if (year != 0)
+                entries = byYear.get(year);
+            else
+                entries = all;
+            if (entries == null)
+                return Collections.emptyList();
+            List<Integer> filmIds = new ArrayList<>(Math.min(count, entries.size()));
+            for (Entry entry : entries) {
+                if (filmIds.size() >= count)
+                    break;
+                filmIds.add(entry.filmId);
+            }
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void link(Entry entry) {
+        all.add(entry);
+        byYear.computeIfAbsent(entry.year, year -> new TreeSet<>(ORDER)).add(entry);
+        for (int genreId : entry.genreIds) {
+            byGenre.computeIfAbsent(genreId, id -> new TreeSet<>(ORDER)).add(entry);
+            byGenreAndYear.computeIfAbsent(genreAndYear(genreId, entry.year), key -> new TreeSet<>(ORDER)).add(entry);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        all.remove(entry);
+        removeFrom(byYear, entry.year, entry);
+        for (int genreId : entry.genreIds) {
+            removeFrom(byGenre, genreId, entry);
+            removeFrom(byGenreAndYear, genreAndYear(genreId, entry.year), entry);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, NavigableSet<Entry>> index, K key, Entry entry) {
+        NavigableSet<Entry> entries = index.get(key);
+        if (entries == null)
+            return;
+        entries.remove(entry);
+        if (entries.isEmpty())
+            index.remove(key);
+    }
+
+    private static long genreAndYear(int genreId, int year) {
+        return ((long) genreId << 32) | (year & 0xFFFFFFFFL);
+    }
+
+    private static int[] toArray(Collection<Integer> ids) {
+        if (ids == null)
+            return new int[0];
+        return ids.stream().distinct().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static class Entry {
+        private final int filmId;
+        private final int year;
+        private int[] genreIds;
+        private int likes;
+
+        Entry(int filmId, int year, int[] genreIds) {
+            this.filmId = filmId;
+            this.year = year;
+            this.genreIds = genreIds;
+        }
+    }
+}
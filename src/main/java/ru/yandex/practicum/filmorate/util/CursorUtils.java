@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.dto.CursorPage;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Непрозрачные курсоры для постраничной выдачи по ключу (keyset pagination).
+ * Курсор - base64 от значений ключа последней выданной записи.
+ */
+public class CursorUtils {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int MAX_LIMIT = 1000;
+
+    private static final String SEPARATOR = ":";
+
+    private CursorUtils() {
+    }
+
+    public static String encode(long... keys) {
+        StringBuilder sb = new StringBuilder();
+        for (long key : keys) {
+            if (sb.length() > 0)
+                sb.append(SEPARATOR);
+            sb.append(key);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static long[] decode(String cursor, int size) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR);
+            if (parts.length != size)
+                throw new ValidationException("Некорректный курсор %s", cursor);
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = Long.parseLong(parts[i]);
+            }
+            return keys;
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректный курсор %s", cursor);
+        }
+    }
+
+    public static void validateLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT)
+            throw new ValidationException("Размер страницы должен быть от 1 до %s", MAX_LIMIT);
+    }
+
+    public static <T> ResponseEntity<List<T>> toResponse(CursorPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null)
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        return response.body(page.getItems());
+    }
+
+    /**
+     * Формирование страницы из выборки размером limit + 1: лишняя запись означает, что есть следующая страница
+     */
+    public static <T> CursorPage<T> toPage(List<T> rows, int limit, Function<T, long[]> keyExtractor) {
+        if (rows.size() <= limit)
+            return new CursorPage<>(rows, null);
+        List<T> items = rows.subList(0, limit);
+        return new CursorPage<>(items, encode(keyExtractor.apply(items.get(limit - 1))));
+    }
+}
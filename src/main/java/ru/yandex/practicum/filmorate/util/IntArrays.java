@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.Arrays;
+
+/**
+ * Операции над отсортированными массивами id без повторов.
+ * Массивы не изменяются: изменение возвращает копию
+ */
+public class IntArrays {
+
+    private static final int GALLOP_RATIO = 32;
+
+    private IntArrays() {
+    }
+
+    /**
+     * Копия отсортированного массива с добавленным id, тот же массив - если id уже есть
+     */
+    public static int[] with(int[] ids, int id) {
+        if (ids == null)
+            return new int[]{id};
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0)
+            return ids;
+        index = -index - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        result[index] = id;
+        System.arraycopy(ids, index, result, index + 1, ids.length - index);
+        return result;
+    }
+
+    /**
+     * Копия отсортированного массива без id, тот же массив - если id нет, null - если массив станет пустым
+     */
+    public static int[] without(int[] ids, int id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0)
+            return ids;
+        if (ids.length == 1)
+            return null;
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        System.arraycopy(ids, index + 1, result, index, ids.length - index - 1);
+        return result;
+    }
+
+    /**
+     * Пересечение отсортированных массивов, small не длиннее large.
+     * При сопоставимых размерах - слияние за O(n + m), иначе галопирующий поиск за O(n log m)
+     */
+    public static int[] intersect(int[] small, int[] large) {
+        int[] result = new int[small.length];
+        int size = 0;
+        if ((long) small.length * GALLOP_RATIO < large.length) {
+            int from = 0;
+            for (int id : small) {
+                from = gallop(large, from, id);
+                if (from == large.length)
+                    break;
+                if (large[from] == id)
+                    result[size++] = id;
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < small.length && j < large.length) {
+                if (small[i] < large[j]) {
+                    i++;
+                } else if (small[i] > large[j]) {
+                    j++;
+                } else {
+                    result[size++] = small[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Индекс первого элемента не меньше id начиная с from: шаги удваиваются, затем бинарный поиск
+     */
+    private static int gallop(int[] ids, int from, int id) {
+        int step = 1;
+        int high = from;
+        while (high < ids.length && ids[high] < id) {
+            from = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        int index = Arrays.binarySearch(ids, from, Math.min(high + 1, ids.length), id);
+        return index >= 0 ? index : -index - 1;
+    }
+}
@@ -0,0 +1,635 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * Сжатое множество целых чисел по схеме roaring bitmap.
+ * Числа группируются по старшим 16 битам в блоки по 65536 значений. Блок хранится
+ * отсортированным массивом char, пока в нем не больше 4096 значений, иначе битовой картой из 1024 long.
+ * Лайк занимает 2 байта в разреженном блоке и не больше 1 бита в плотном вместо ~48 байт в HashSet.
+ * Класс не потокобезопасен.
+ */
+public class RoaringIntSet extends AbstractSet<Integer> {
+
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys;
+    private Container[] containers;
+    private int containersCount;
+    private int cardinality;
+
+    public RoaringIntSet() {
+        keys = new char[4];
+        containers = new Container[4];
+    }
+
+    public RoaringIntSet(RoaringIntSet other) {
+        keys = Arrays.copyOf(other.keys, Math.max(other.containersCount, 4));
+        containers = new Container[keys.length];
+        for (int i = 0; i < other.containersCount; i++) {
+            containers[i] = other.containers[i].copy();
+        }
+        containersCount = other.containersCount;
+        cardinality = other.cardinality;
+    }
+
+    public static RoaringIntSet of(int... values) {
+        RoaringIntSet set = new RoaringIntSet();
+        for (int value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    public boolean add(int value) {
+        char key = high(value);
+        int index = indexOfKey(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        container = container.add(low(value));
+        containers[index] = container;
+        if (container.cardinality() == before)
+            return false;
+        cardinality++;
+        return true;
+    }
+
+    public boolean remove(int value) {
+        int index = indexOfKey(high(value));
+        if (index < 0)
+            return false;
+        Container container = containers[index];
+        int before = container.cardinality();
+        container = container.remove(low(value));
+        if (container.cardinality() == before)
+            return false;
+        cardinality--;
+        if (container.cardinality() == 0)
+            removeContainer(index);
+        else
+            containers[index] = container;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        int index = indexOfKey(high(value));
+        return index >= 0 && containers[index].contains(low(value));
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Пересечение, исходные множества не изменяются
+     */
+    public RoaringIntSet and(RoaringIntSet other) {
+        RoaringIntSet result = new RoaringIntSet();
+        int i = 0;
+        int j = 0;
+        while (i < containersCount && j < other.containersCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0)
+                    result.appendContainer(keys[i], container);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Размер пересечения без построения результата
+     */
+    public int andCardinality(RoaringIntSet other) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < containersCount && j < other.containersCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Объединение, исходные множества не изменяются
+     */
+    public RoaringIntSet or(RoaringIntSet other) {
+        RoaringIntSet result = new RoaringIntSet();
+        int i = 0;
+        int j = 0;
+        while (i < containersCount || j < other.containersCount) {
+            if (j >= other.containersCount || (i < containersCount && keys[i] < other.keys[j])) {
+                result.appendContainer(keys[i], containers[i].copy());
+                i++;
+            } else if (i >= containersCount || keys[i] > other.keys[j]) {
+                result.appendContainer(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Разность: элементы этого множества, которых нет в other
+     */
+    public RoaringIntSet andNot(RoaringIntSet other) {
+        RoaringIntSet result = new RoaringIntSet();
+        for (int i = 0; i < containersCount; i++) {
+            int index = other.indexOfKey(keys[i]);
+            Container container = index < 0 ? containers[i].copy() : containers[i].andNot(other.containers[index]);
+            if (container.cardinality() > 0)
+                result.appendContainer(keys[i], container);
+        }
+        return result;
+    }
+
+    /**
+     * Обход элементов по возрастанию без упаковки в Integer
+     */
+    public void forEachInt(IntConsumer consumer) {
+        for (int i = 0; i < containersCount; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    public int[] toIntArray() {
+        int[] values = new int[cardinality];
+        int[] position = new int[1];
+        forEachInt(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    /**
+     * Оценка занимаемой памяти в байтах
+     */
+    public long sizeInBytes() {
+        long size = 16 + 2L * keys.length + 4L * containers.length + 16;
+        for (int i = 0; i < containersCount; i++) {
+            size += containers[i].sizeInBytes();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return add(value.intValue());
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        return value instanceof Integer && remove(((Integer) value).intValue());
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Integer && contains(((Integer) value).intValue());
+    }
+
+    @Override
+    public int size() {
+        return cardinality;
+    }
+
+    @Override
+    public void clear() {
+        keys = new char[4];
+        containers = new Container[4];
+        containersCount = 0;
+        cardinality = 0;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        int[] values = toIntArray();
+        return new Iterator<>() {
+            private int position;
+            private boolean removable;
+
+            @Override
+            public boolean hasNext() {
+                return position < values.length;
+            }
+
+            @Override
+            public Integer next() {
+                if (position >= values.length)
+                    throw new NoSuchElementException();
+                removable = true;
+                return values[position++];
+            }
+
+            @Override
+            public void remove() {
+                if (!removable)
+                    throw new IllegalStateException();
+                removable = false;
+                RoaringIntSet.this.remove(values[position - 1]);
+            }
+        };
+    }
+
+    private int indexOfKey(char key) {
+        return Arrays.binarySearch(keys, 0, containersCount, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (containersCount == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+            containers = Arrays.copyOf(containers, containers.length * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, containersCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containersCount - index);
+        keys[index] = key;
+        containers[index] = container;
+        containersCount++;
+    }
+
+    private void appendContainer(char key, Container container) {
+        insertContainer(containersCount, key, container);
+        cardinality += container.cardinality();
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, containersCount - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, containersCount - index - 1);
+        containersCount--;
+        containers[containersCount] = null;
+    }
+
+    private static char high(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract Container and(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract void forEach(int high, IntConsumer consumer);
+
+        abstract Container copy();
+
+        abstract long sizeInBytes();
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] content;
+        private int size;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] content, int size) {
+            this.content = content;
+            this.size = size;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(content, 0, size, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(content, 0, size, value);
+            if (index >= 0)
+                return this;
+            if (size >= ARRAY_MAX_SIZE)
+                return toBitmap().add(value);
+            index = -index - 1;
+            if (size == content.length)
+                content = Arrays.copyOf(content, Math.min(Math.max(size * 2, 4), ARRAY_MAX_SIZE));
+            System.arraycopy(content, index, content, index + 1, size - index);
+            content[index] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(content, 0, size, value);
+            if (index < 0)
+                return this;
+            System.arraycopy(content, index + 1, content, index, size - index - 1);
+            size--;
+            return this;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[size];
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < size && j < array.size) {
+                    if (content[i] < array.content[j]) {
+                        i++;
+                    } else if (content[i] > array.content[j]) {
+                        j++;
+                    } else {
+                        result[count++] = content[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(content[i]))
+                        result[count++] = content[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < size && j < array.size) {
+                    if (content[i] < array.content[j]) {
+                        i++;
+                    } else if (content[i] > array.content[j]) {
+                        j++;
+                    } else {
+                        count++;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(content[i]))
+                        count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer)
+                return other.or(this);
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[size + array.size];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < array.size) {
+                if (j >= array.size || (i < size && content[i] < array.content[j])) {
+                    result[count++] = content[i++];
+                } else if (i >= size || content[i] > array.content[j]) {
+                    result[count++] = array.content[j++];
+                } else {
+                    result[count++] = content[i];
+                    i++;
+                    j++;
+                }
+            }
+            ArrayContainer container = new ArrayContainer(result, count);
+            return count > ARRAY_MAX_SIZE ? container.toBitmap() : container;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (!other.contains(content[i]))
+                    result[count++] = content[i];
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(high | content[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(content, Math.max(size, 4)), size);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + 16 + 2L * content.length;
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < size; i++) {
+                bitmap.add(content[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int size;
+
+        BitmapContainer() {
+            this(new long[BITMAP_WORDS], 0);
+        }
+
+        BitmapContainer(long[] words, int size) {
+            this.words = words;
+            this.size = size;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                size++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            long after = before & ~(1L << value);
+            if (before == after)
+                return this;
+            words[value >>> 6] = after;
+            size--;
+            return size <= ARRAY_MAX_SIZE ? toArray() : this;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer)
+                return other.and(this);
+            BitmapContainer bitmap = (BitmapContainer) other;
+            long[] result = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & bitmap.words[i];
+                count += Long.bitCount(result[i]);
+            }
+            BitmapContainer container = new BitmapContainer(result, count);
+            return count <= ARRAY_MAX_SIZE ? container.toArray() : container;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer)
+                return other.andCardinality(this);
+            BitmapContainer bitmap = (BitmapContainer) other;
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                count += Long.bitCount(words[i] & bitmap.words[i]);
+            }
+            return count;
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer result = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.size; i++) {
+                    result.add(array.content[i]);
+                }
+                return result;
+            }
+            BitmapContainer bitmap = (BitmapContainer) other;
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result.words[i] |= bitmap.words[i];
+                count += Long.bitCount(result.words[i]);
+            }
+            result.size = count;
+            return result;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            BitmapContainer result = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.size; i++) {
+                    char value = array.content[i];
+                    long before = result.words[value >>> 6];
+                    long after = before & ~(1L << value);
+                    if (before != after) {
+                        result.words[value >>> 6] = after;
+                        result.size--;
+                    }
+                }
+            } else {
+                BitmapContainer bitmap = (BitmapContainer) other;
+                int count = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result.words[i] &= ~bitmap.words[i];
+                    count += Long.bitCount(result.words[i]);
+                }
+                result.size = count;
+            }
+            return result.size <= ARRAY_MAX_SIZE ? result.toArray() : result;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), size);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + 16 + 8L * BITMAP_WORDS;
+        }
+
+        private ArrayContainer toArray() {
+            char[] content = new char[Math.max(size, 4)];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    content[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(content, count);
+        }
+    }
+}
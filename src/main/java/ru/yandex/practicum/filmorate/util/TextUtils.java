@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+public class TextUtils {
+
+    private TextUtils() {
+    }
+
+    /**
+     * Приведение текста к виду для поиска: нижний регистр, без диакритики (é -> e, ё -> е), й сохраняется
+     */
+    public static String fold(String text) {
+        if (text == null || text.isEmpty())
+            return "";
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                // Кратка над и - часть буквы й, а не диакритика
+                if (c == '\u0306' && i > 0 && decomposed.charAt(i - 1) == 'и')
+                    sb.append(c);
+                continue;
+            }
+            sb.append(c);
+        }
+        return Normalizer.normalize(sb, Normalizer.Form.NFC);
+    }
+
+    /**
+     * Начинается ли слово в тексте с позиции index
+     */
+    public static boolean isWordStart(String folded, int index) {
+        return index == 0 || !Character.isLetterOrDigit(folded.charAt(index - 1));
+    }
+}
@@ -1,3 +1,8 @@
+DROP TABLE IF EXISTS USER_RECOMMENDATIONS;
+DROP TABLE IF EXISTS USER_RECOMMENDATION_NEIGHBOURS;
+DROP TABLE IF EXISTS RECOMMENDATION_DIRTY;
+DROP TABLE IF EXISTS SCHEDULER_LOCKS;
+DROP SEQUENCE IF EXISTS RECOMMENDATION_VERSIONS;
 DROP TABLE IF EXISTS FILM_DIRECTORS;
 DROP TABLE IF EXISTS DIRECTORS;
 DROP TABLE IF EXISTS APPRAISERS;
@@ -31,10 +36,13 @@ CREATE TABLE IF NOT EXISTS FILMS (
     release_date    DATE            NOT NULL,
     duration        INT             NOT NULL,
     mpa_id          INT             NOT NULL,
+    likes_count     INT             NOT NULL DEFAULT 0,
     CONSTRAINT FILMS_MPA_FK FOREIGN KEY (mpa_id) REFERENCES MOTION_PICTURE_ASSOCIATIONS
     ON DELETE CASCADE ON UPDATE CASCADE
 );
 
+CREATE INDEX IF NOT EXISTS FILMS_LIKES_COUNT_IDX ON FILMS (likes_count DESC, film_id);
+
 CREATE TABLE IF NOT EXISTS USER_FRIENDS (
     user_id             INT     NOT NULL,
     friend_id           INT     NOT NULL,
@@ -117,3 +125,46 @@ CREATE TABLE IF NOT EXISTS FEEDS (
     operation       VARCHAR(6)      NOT NULL,
     times           BIGINT          NOT NULL
 );
+
+CREATE INDEX IF NOT EXISTS FEEDS_USER_TIMES_IDX ON FEEDS (user_id, times, feed_id);
+CREATE INDEX IF NOT EXISTS FEEDS_USER_ID_IDX ON FEEDS (user_id, feed_id);
+
+CREATE TABLE IF NOT EXISTS USER_RECOMMENDATIONS (
+    user_id         INT     NOT NULL,
+    position        INT     NOT NULL,
+    film_id         INT     NOT NULL,
+    score           DOUBLE  NOT NULL,
+    PRIMARY KEY (user_id, position),
+    CONSTRAINT USER_RECOMMENDATIONS_USER_FK FOREIGN KEY (user_id) REFERENCES USERS
+    ON DELETE CASCADE ON UPDATE CASCADE,
+    CONSTRAINT USER_RECOMMENDATIONS_FILM_FK FOREIGN KEY (film_id) REFERENCES FILMS
+    ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS USER_RECOMMENDATION_NEIGHBOURS (
+    user_id         INT     NOT NULL,
+    neighbour_id    INT     NOT NULL,
+    PRIMARY KEY (user_id, neighbour_id),
+    CONSTRAINT USER_RECOMMENDATION_NEIGHBOURS_USER_FK FOREIGN KEY (user_id) REFERENCES USERS
+    ON DELETE CASCADE ON UPDATE CASCADE,
+    CONSTRAINT USER_RECOMMENDATION_NEIGHBOURS_NEIGHBOUR_FK FOREIGN KEY (neighbour_id) REFERENCES USERS
+    ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS USER_RECOMMENDATION_NEIGHBOURS_NEIGHBOUR_IDX ON USER_RECOMMENDATION_NEIGHBOURS (neighbour_id);
+
+CREATE SEQUENCE IF NOT EXISTS RECOMMENDATION_VERSIONS;
+
+CREATE TABLE IF NOT EXISTS RECOMMENDATION_DIRTY (
+    user_id         INT     PRIMARY KEY,
+    version         BIGINT  NOT NULL,
+    CONSTRAINT RECOMMENDATION_DIRTY_USER_FK FOREIGN KEY (user_id) REFERENCES USERS
+    ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS SCHEDULER_LOCKS (
+    name            VARCHAR(64)     PRIMARY KEY,
+    locked_until    TIMESTAMP       NOT NULL,
+    locked_by       VARCHAR(255)    NOT NULL,
+    last_completed  TIMESTAMP
+);
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.enums.FilmField;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.impl.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FilmControllerStreamTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final List<Integer> pageRequests = new ArrayList<>();
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage() {
+        @Override
+        public List<Film> getPage(int afterId, int limit, Set<FilmField> fields) {
+            pageRequests.add(afterId);
+            return super.getPage(afterId, limit, fields);
+        }
+    };
+    private final FilmController filmController;
+
+    public FilmControllerStreamTest() {
+        FilmService filmService = new FilmService(filmStorage, null, null, null, null, null, null, null, null,
+                null, null, null, null, true, true, true, true, false, 100, 2);
+        this.filmController = new FilmController(filmService, null, objectMapper);
+        for (int i = 0; i < 5; i++) {
+            filmStorage.addFilm(RandomUtils.getRandomFilm());
+        }
+    }
+
+    private String body(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testNdjson() throws IOException {
+        ResponseEntity<StreamingResponseBody> response = filmController.streamAll("ndjson");
+        String[] lines = body(response).split("\n");
+
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.parseMediaType("application/x-ndjson"));
+        assertThat(lines).hasSize(5);
+        for (int i = 0; i < lines.length; i++) {
+            assertThat(objectMapper.readTree(lines[i]).get("id").asInt()).isEqualTo(i + 1);
+        }
+        // Порции по 2 фильма читаются отдельными запросами от последнего выданного id
+        assertThat(pageRequests).containsExactly(0, 2, 4);
+    }
+
+    @Test
+    public void testJsonArray() throws IOException {
+        ResponseEntity<StreamingResponseBody> response = filmController.streamAll("json");
+        JsonNode films = objectMapper.readTree(body(response));
+
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(films.isArray()).isTrue();
+        assertThat(films.size()).isEqualTo(5);
+        assertThat(films.get(4).get("name").asText()).isEqualTo(filmStorage.getById(5).getName());
+    }
+
+    @Test
+    public void testUnknownFormat() {
+        assertThrows(ValidationException.class, () -> filmController.streamAll("xml"));
+    }
+}
@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.enums.Operation;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.archive.FeedArchive;
+import ru.yandex.practicum.filmorate.storage.cache.RecentFeedBuffer;
+import ru.yandex.practicum.filmorate.storage.impl.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+@ActiveProfiles("test")
+public class FeedArchiveJobTest {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserDbStorage userStorage;
+
+    @TempDir
+    Path archiveDir;
+
+    @Autowired
+    public FeedArchiveJobTest(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userStorage = new UserDbStorage(namedParameterJdbcTemplate);
+    }
+
+    private int user() {
+        User user = RandomUtils.getRandomUser();
+        userStorage.addUser(user);
+        return user.getId();
+    }
+
+    private int hotFeeds(int userId) {
+        return jdbcTemplate.queryForObject("select count(*) from FEEDS where user_id = ?", Integer.class, userId);
+    }
+
+    private static List<Integer> entityIds(List<Feed> feeds) {
+        return feeds.stream().map(Feed::getEntityId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testArchivedFeedsStayReadable() {
+        // Блоки по 2 события, чтобы чтение проходило через несколько блоков сегмента
+        FeedArchive feedArchive = new FeedArchive(archiveDir.toString(), true, true, 2);
+        RecentFeedBuffer recentFeedBuffer = new RecentFeedBuffer(3, 10);
+        FeedDbStorage feedStorage = new FeedDbStorage(jdbcTemplate, recentFeedBuffer, List.of(recentFeedBuffer),
+                feedArchive, 2);
+        FeedArchiveJob job = new FeedArchiveJob(feedStorage, feedArchive, true, 1, 1_000_000, 1);
+        int first = user();
+        int second = user();
+        for (int i = 1; i <= 5; i++) {
+            feedStorage.createFeed(first, i, EventType.LIKE, Operation.ADD, i * 10L);
+            feedStorage.createFeed(second, i, EventType.FRIEND, Operation.ADD, i * 10L + 5);
+        }
+        List<Feed> feeds = feedStorage.getFeeds(first);
+
+        assertThat(job.run(40)).isEqualTo(6L);
+        assertThat(hotFeeds(first)).isEqualTo(2);
+        assertThat(hotFeeds(second)).isEqualTo(2);
+        assertThat(job.run(40)).isZero();
+
+        assertThat(feedStorage.getFeeds(first)).isEqualTo(feeds);
+        List<Feed> pages = new ArrayList<>();
+        long[] before = null;
+        for (int page = 0; page < 3; page++) {
+            List<Feed> items = feedStorage.getFeedsBefore(first, before, 2);
+            pages.addAll(items);
+            Feed last = items.get(items.size() - 1);
+            before = new long[]{last.getTimestamp(), last.getEventId()};
+        }
+        assertThat(entityIds(pages)).containsExactly(5, 4, 3, 2, 1);
+        assertThat(entityIds(feedStorage.getFeedsAfter(first, 0, 4))).containsExactly(1, 2, 3, 4);
+        assertThat(entityIds(feedStorage.getFeedsBefore(List.of(first, second), new long[]{30, 0}, 3)))
+                .containsExactly(2, 2, 1);
+    }
+
+    @Test
+    public void testSegmentsReloadedFromDisk() {
+        FeedArchive feedArchive = new FeedArchive(archiveDir.toString(), true, true, 2);
+        FeedDbStorage feedStorage = new FeedDbStorage(jdbcTemplate, new RecentFeedBuffer(3, 10), List.of(),
+                feedArchive, 2);
+        int user = user();
+        for (int i = 1; i <= 3; i++) {
+            feedStorage.createFeed(user, i, EventType.REVIEW, Operation.UPDATE, i);
+        }
+        new FeedArchiveJob(feedStorage, feedArchive, true, 1, 1_000_000, 1).run(10);
+
+        FeedArchive reloaded = new FeedArchive(archiveDir.toString(), false, false, 2);
+        reloaded.load();
+        assertThat(entityIds(reloaded.getFeeds(user))).containsExactly(1, 2, 3);
+
+        FeedArchive cleared = new FeedArchive(archiveDir.toString(), true, true, 2);
+        cleared.load();
+        assertThat(cleared.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testSameRangeArchivedTwice() {
+        FeedArchive feedArchive = new FeedArchive(archiveDir.toString(), true, false, 2);
+        FeedDbStorage feedStorage = new FeedDbStorage(jdbcTemplate, new RecentFeedBuffer(3, 10), List.of(),
+                feedArchive, 2);
+        FeedArchiveJob job = new FeedArchiveJob(feedStorage, feedArchive, true, 1, 1_000_000, 1);
+        int user = user();
+        for (int i = 1; i <= 4; i++) {
+            feedStorage.createFeed(user, i, EventType.LIKE, Operation.ADD, i * 10L);
+        }
+
+        // Новых событий между запусками нет, максимальный feed_id у обоих сегментов одинаковый
+        assertThat(job.run(25)).isEqualTo(2L);
+        assertThat(job.run(45)).isEqualTo(2L);
+        assertThat(hotFeeds(user)).isZero();
+        List<Long> cutoffs = new ArrayList<>();
+        feedArchive.forEachSegment((userFrom, userTo, cutoff, maxFeedId) -> cutoffs.add(cutoff));
+        assertThat(cutoffs).containsExactlyInAnyOrder(25L, 45L);
+        assertThat(entityIds(feedStorage.getFeeds(user))).containsExactly(1, 2, 3, 4);
+
+        FeedArchive reloaded = new FeedArchive(archiveDir.toString(), false, false, 2);
+        reloaded.load();
+        assertThat(entityIds(reloaded.getFeeds(user))).containsExactly(1, 2, 3, 4);
+
+        // Сегмент с теми же границами уже есть и не перезаписывается
+        Feed feed = Feed.builder().eventId(1).userId(user).entityId(1).eventType(EventType.LIKE)
+                .operation(Operation.ADD).timestamp(10).build();
+        int maxFeedId = feedArchive.getMaxFeedId();
+        assertThrows(UncheckedIOException.class, () -> feedArchive.write(0, 999_999, 25, maxFeedId,
+                consumer -> consumer.accept(feed)));
+        assertThat(entityIds(feedArchive.getFeeds(user))).containsExactly(1, 2, 3, 4);
+    }
+}
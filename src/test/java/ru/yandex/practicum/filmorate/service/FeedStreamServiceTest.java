@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.dto.FeedStreamStats;
+import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.enums.Operation;
+import ru.yandex.practicum.filmorate.exception.UnavailableException;
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FeedStreamServiceTest {
+
+    private final FeedStreamService feedStreamService = new FeedStreamService(60000, 2, 2, 10, 1, 5000);
+    private final List<RecordingEmitter> emitters = Collections.synchronizedList(new ArrayList<>());
+    // Один поток отправки на все подписки, время отправки ограничено 50 мс
+    private final FeedStreamService recordingService = new FeedStreamService(60000, 10, 10, 10, 1, 50) {
+        @Override
+        protected SseEmitter createEmitter(long timeoutMs) {
+            RecordingEmitter emitter = new RecordingEmitter(timeoutMs);
+            emitters.add(emitter);
+            return emitter;
+        }
+    };
+
+    @AfterEach
+    public void shutdown() {
+        feedStreamService.shutdown();
+        recordingService.shutdown();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static Feed feed(int eventId, int userId) {
+        return Feed.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .entityId(eventId)
+                .eventType(EventType.LIKE)
+                .operation(Operation.ADD)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    @Test
+    public void testSlowConsumerIsDropped() {
+        // Подписки не запущены, поэтому события только копятся в буферах
+        feedStreamService.subscribe(1);
+        feedStreamService.subscribe(2);
+        feedStreamService.onFeeds(List.of(feed(1, 1), feed(2, 1), feed(3, 2)));
+
+        FeedStreamStats stats = feedStreamService.getStats();
+        assertThat(stats.getConnections()).isEqualTo(2);
+        assertThat(stats.getBufferedEvents()).isEqualTo(3L);
+        assertThat(stats.getMaxBufferedEvents()).isEqualTo(2);
+
+        feedStreamService.onFeeds(List.of(feed(4, 1)));
+        stats = feedStreamService.getStats();
+        assertThat(stats.getConnections()).isEqualTo(1);
+        assertThat(stats.getSlowConsumerDrops()).isEqualTo(1L);
+        assertThat(stats.getBufferedEvents()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testConnectionLimit() {
+        FeedStreamService.Subscription subscription = feedStreamService.subscribe(1);
+        feedStreamService.subscribe(1);
+        assertThrows(UnavailableException.class, () -> feedStreamService.subscribe(2));
+
+        feedStreamService.unsubscribe(subscription);
+        feedStreamService.unsubscribe(subscription);
+        feedStreamService.subscribe(2);
+        assertThat(feedStreamService.getStats().getConnections()).isEqualTo(2);
+        assertThat(feedStreamService.getStats().getConnectionsTotal()).isEqualTo(3L);
+    }
+
+    @Test
+    public void testReplayThenBufferedWithoutDuplicates() throws InterruptedException {
+        FeedStreamService.Subscription subscription = recordingService.subscribe(1);
+        // Сохранены между подпиской и чтением пропущенных: событие 3 есть и в буфере, и в replay
+        recordingService.onFeeds(List.of(feed(3, 1), feed(4, 1)));
+        recordingService.start(subscription, List.of(feed(1, 1), feed(2, 1), feed(3, 1)), false);
+        RecordingEmitter emitter = emitters.get(0);
+        await(() -> emitter.sent().size() == 4);
+
+        recordingService.onFeeds(List.of(feed(5, 1), feed(6, 2)));
+        await(() -> emitter.sent().size() == 5);
+
+        assertThat(emitter.sent()).containsExactly(1, 2, 3, 4, 5);
+        assertThat(recordingService.getStats().getEventsSent()).isEqualTo(5L);
+        assertThat(recordingService.getStats().getConnections()).isEqualTo(1);
+    }
+
+    @Test
+    public void testIncompleteReplayClosesConnection() throws InterruptedException {
+        FeedStreamService.Subscription subscription = recordingService.subscribe(1);
+        recordingService.onFeeds(List.of(feed(3, 1)));
+        recordingService.start(subscription, List.of(feed(1, 1), feed(2, 1)), true);
+        await(() -> recordingService.getStats().getConnections() == 0);
+
+        // Клиент переподключится с Last-Event-ID 2 и получит событие 3 из базы
+        assertThat(emitters.get(0).sent()).containsExactly(1, 2);
+        assertThat(recordingService.getStats().getConnections()).isEqualTo(0);
+    }
+
+    @Test
+    public void testStalledSendIsClosed() throws InterruptedException {
+        FeedStreamService.Subscription stalled = recordingService.subscribe(1);
+        recordingService.start(stalled, Collections.emptyList(), false);
+        RecordingEmitter stalledEmitter = emitters.get(0);
+        stalledEmitter.stall = new CountDownLatch(1);
+        recordingService.onFeeds(List.of(feed(1, 1)));
+        await(() -> stalledEmitter.sending);
+        Thread.sleep(100);
+
+        // Единственный поток отправки занят зависшим клиентом, пока его соединение не закрыто
+        FeedStreamService.Subscription other = recordingService.subscribe(2);
+        recordingService.start(other, Collections.emptyList(), false);
+        recordingService.onFeeds(List.of(feed(2, 2)));
+        recordingService.closeStalled();
+        await(() -> emitters.get(1).sent().size() == 1);
+
+        assertThat(emitters.get(1).sent()).containsExactly(2);
+        assertThat(stalledEmitter.sent()).isEmpty();
+        assertThat(recordingService.getStats().getStalledSends()).isEqualTo(1L);
+        assertThat(recordingService.getStats().getConnections()).isEqualTo(1);
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<Integer> sent = Collections.synchronizedList(new ArrayList<>());
+        private volatile CountDownLatch stall;
+        private volatile boolean sending;
+
+        RecordingEmitter(long timeout) {
+            super(timeout);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            CountDownLatch latch = stall;
+            if (latch != null) {
+                sending = true;
+                try {
+                    // Клиент не читает, запись висит до прерывания
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new IOException("Запись прервана", e);
+                }
+            }
+            builder.build().stream()
+                    .filter(data -> data.getData() instanceof Feed)
+                    .forEach(data -> sent.add(((Feed) data.getData()).getEventId()));
+        }
+
+        List<Integer> sent() {
+            synchronized (sent) {
+                return new ArrayList<>(sent);
+            }
+        }
+    }
+}
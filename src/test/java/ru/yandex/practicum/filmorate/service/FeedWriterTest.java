@@ -0,0 +1,218 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.enums.Operation;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FeedWriterTest {
+
+    private final RecordingFeedStorage feedStorage = new RecordingFeedStorage();
+    private final List<FeedWriter> writers = new ArrayList<>();
+
+    private FeedWriter writer(int queueCapacity, int batchSize, long maxDelayMs) {
+        FeedWriter writer = new FeedWriter(feedStorage, true, queueCapacity, batchSize, maxDelayMs, 10, 5000);
+        writers.add(writer);
+        return writer;
+    }
+
+    @AfterEach
+    public void shutdown() {
+        writers.forEach(FeedWriter::shutdown);
+    }
+
+    @Test
+    public void testFlushWritesQueuedEvents() {
+        FeedWriter writer = writer(100, 10, 50);
+        for (int i = 1; i <= 25; i++) {
+            writer.createFeed(1, i, EventType.LIKE, Operation.ADD, i);
+        }
+        writer.flush(1);
+
+        assertThat(feedStorage.entityIds()).hasSize(25);
+        assertThat(feedStorage.maxBatch()).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    public void testFlushWaitsOnlyForOwnEvents() {
+        feedStorage.blocked = true;
+        FeedWriter writer = writer(100, 10, 0);
+        writer.createFeed(1, 1, EventType.LIKE, Operation.ADD, 1);
+
+        // Поток записи занят событием пользователя 1, читатель без событий в очереди не ждет
+        long start = System.currentTimeMillis();
+        writer.flush(2);
+        assertThat(System.currentTimeMillis() - start).isLessThan(1000);
+
+        feedStorage.blocked = false;
+        writer.flush(1);
+        assertThat(feedStorage.entityIds()).containsExactly(1);
+    }
+
+    @Test
+    public void testReadersDoNotSplitBatch() {
+        FeedWriter writer = writer(100, 10, 300);
+        for (int i = 1; i <= 3; i++) {
+            writer.createFeed(1, i, EventType.LIKE, Operation.ADD, i);
+            writer.flush(2);
+        }
+        writer.flush(1);
+
+        assertThat(feedStorage.entityIds()).containsExactly(1, 2, 3);
+        assertThat(feedStorage.batchCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testShutdownLosesNothing() {
+        FeedWriter writer = writer(10_000, 100, 50);
+        int threads = 4;
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int userId = t;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    writer.createFeed(userId, i, EventType.FRIEND, Operation.ADD, i);
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        producers.forEach(producer -> {
+            try {
+                producer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        writer.shutdown();
+
+        assertThat(feedStorage.entityIds()).hasSize(threads * 1000);
+    }
+
+    @Test
+    public void testEventsCreatedDuringShutdownAreWritten() throws InterruptedException {
+        FeedWriter writer = writer(10_000, 100, 50);
+        int threads = 4;
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int userId = t;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    writer.createFeed(userId, i, EventType.FRIEND, Operation.ADD, i);
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        // Остановка посреди записи: события, поставленные после нее, сохраняются синхронно
+        Thread.sleep(5);
+        writer.shutdown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertThat(feedStorage.entityIds()).hasSize(threads * 5000);
+        assertThat(writer.getQueueSize()).isZero();
+    }
+
+    @Test
+    public void testFullQueueFallsBackToSynchronousWrite() {
+        feedStorage.blocked = true;
+        FeedWriter writer = writer(1, 1, 0);
+        for (int i = 1; i <= 5; i++) {
+            writer.createFeed(1, i, EventType.LIKE, Operation.ADD, i);
+        }
+        feedStorage.blocked = false;
+        writer.flush(1);
+        writer.shutdown();
+
+        assertThat(feedStorage.entityIds()).containsExactlyInAnyOrder(1, 2, 3, 4, 5);
+    }
+
+    private static class RecordingFeedStorage implements FeedStorage {
+        private final List<List<Feed>> batches = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean blocked;
+
+        @Override
+        public List<Feed> getFeeds(int id) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Feed> getFeedsBefore(int id, long[] before, int limit) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Feed> getFeedsBefore(Collection<Integer> ids, long[] before, int limit) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Feed> getFeedsAfter(int id, int afterEventId, int limit) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int getMaxFeedId() {
+            return 0;
+        }
+
+        @Override
+        public Map<Integer, Integer> countFeedsByUserRange(long before, int maxFeedId, int rangeSize) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void forEachFeedBefore(int userFrom, int userTo, long before, int maxFeedId, Consumer<Feed> consumer) {
+        }
+
+        @Override
+        public int deleteFeedsBefore(int userFrom, int userTo, long before, int maxFeedId) {
+            return 0;
+        }
+
+        @Override
+        public void createFeed(int userId, int entityId, EventType eventType, Operation operation, long timeStamp) {
+            createFeeds(Collections.singletonList(Feed.builder().userId(userId).entityId(entityId)
+                    .eventType(eventType).operation(operation).timestamp(timeStamp).build()));
+        }
+
+        @Override
+        public void createFeeds(List<Feed> feeds) {
+            // Поток записи ждет, пока тест держит хранилище занятым, чтобы очередь заполнилась
+            while (blocked && Thread.currentThread().getName().equals("feed-writer")) {
+                Thread.onSpinWait();
+            }
+            batches.add(new ArrayList<>(feeds));
+        }
+
+        List<Integer> entityIds() {
+            synchronized (batches) {
+                return batches.stream().flatMap(List::stream).map(Feed::getEntityId).collect(Collectors.toList());
+            }
+        }
+
+        int batchCount() {
+            return batches.size();
+        }
+
+        int maxBatch() {
+            synchronized (batches) {
+                return batches.stream().mapToInt(List::size).max().orElse(0);
+            }
+        }
+    }
+}
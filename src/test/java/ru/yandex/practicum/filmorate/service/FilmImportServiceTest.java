@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.filmorate.dto.ImportError;
+import ru.yandex.practicum.filmorate.dto.ImportReport;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MotionPictureAssociation;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.impl.InMemoryFilmStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FilmImportServiceTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final List<Integer> batches = new ArrayList<>();
+    private final List<String> indexed = new ArrayList<>();
+    private final List<FilmImportService> services = new ArrayList<>();
+
+    // Фильм с названием "broken" проходит проверку, но не принимается базой
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage() {
+        @Override
+        public void addFilms(List<Film> films) {
+            batches.add(films.size());
+            if (films.stream().anyMatch(film -> film.getName().equals("broken")))
+                throw new DataIntegrityViolationException("Нарушено ограничение");
+            super.addFilms(films);
+        }
+    };
+
+    private final FilmService filmService = new FilmService(filmStorage, null, null, null, null, null, null, null,
+            null, null, null, null, null, true, true, true, true, false, 100, 2) {
+        @Override
+        public void indexFilms(Collection<Film> films) {
+            films.forEach(film -> indexed.add(film.getName()));
+        }
+    };
+
+    private final ReferenceDataRegistry referenceDataRegistry = new ReferenceDataRegistry(null) {
+        @Override
+        public MotionPictureAssociation getMpa(int id) {
+            return id == 1 ? MotionPictureAssociation.builder().id(1).name("G").build() : null;
+        }
+
+        @Override
+        public Genre getGenre(int id) {
+            Genre genre = new Genre();
+            genre.setId(id);
+            genre.setName("Комедия");
+            return id == 1 ? genre : null;
+        }
+
+        @Override
+        public Director getDirector(int id) {
+            return null;
+        }
+    };
+
+    @AfterEach
+    public void shutdown() {
+        services.forEach(FilmImportService::shutdown);
+    }
+
+    private ImportReport importFilms(int batchSize, int maxErrors, String... lines) throws IOException {
+        FilmImportService service = new FilmImportService(filmStorage, filmService, referenceDataRegistry,
+                objectMapper, batchSize, 2, maxErrors);
+        services.add(service);
+        byte[] content = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+        return service.importFilms(new ByteArrayInputStream(content));
+    }
+
+    private static String film(String name) {
+        return "{\"name\":\"" + name + "\",\"description\":\"описание\",\"releaseDate\":\"2000-01-01\"," +
+                "\"duration\":100,\"mpa\":{\"id\":1},\"genres\":[{\"id\":1},{\"id\":1}]}";
+    }
+
+    private static List<Long> errorLines(ImportReport report) {
+        return report.getErrors().stream().map(ImportError::getLine).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testErrorsArePerLine() throws IOException {
+        ImportReport report = importFilms(4, 10,
+                film("first"),
+                "",
+                "{not json",
+                film("second"),
+                "{\"name\":\"no duration\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\",\"mpa\":{\"id\":1}}",
+                "{\"name\":\"unknown mpa\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\",\"duration\":1," +
+                        "\"mpa\":{\"id\":7}}",
+                film("third"),
+                film("broken"),
+                film("fourth"));
+
+        // Пустая строка не считается записью
+        assertThat(report.getTotal()).isEqualTo(8L);
+        assertThat(report.getImported()).isEqualTo(4L);
+        assertThat(report.getFailed()).isEqualTo(4L);
+        assertThat(report.isErrorsTruncated()).isFalse();
+        assertThat(errorLines(report)).containsExactly(3L, 5L, 6L, 8L);
+        assertThat(report.getErrors().get(0).getMessage()).startsWith("Некорректный JSON");
+        assertThat(report.getErrors().get(1).getMessage()).isEqualTo("Не указана продолжительность");
+        assertThat(report.getErrors().get(3).getMessage()).startsWith("Ошибка сохранения");
+
+        // Строка, не принятая базой, не мешает сохранить соседние
+        assertThat(indexed).containsExactly("first", "second", "third", "fourth");
+        assertThat(filmStorage.getAll()).extracting(Film::getName)
+                .containsExactlyInAnyOrder("first", "second", "third", "fourth");
+        // Повторяющийся жанр сохраняется один раз
+        assertThat(filmStorage.getAll()).extracting((Film film) -> film.getGenres().size())
+                .containsExactly(1, 1, 1, 1);
+        assertThat(batches).containsExactly(2, 2, 1, 1, 1);
+    }
+
+    @Test
+    public void testErrorsTruncated() throws IOException {
+        ImportReport report = importFilms(2, 1, "[]", "{\"name\":\"\"}", film("ok"), "{");
+
+        assertThat(report.getTotal()).isEqualTo(4L);
+        assertThat(report.getImported()).isEqualTo(1L);
+        assertThat(report.getFailed()).isEqualTo(3L);
+        assertThat(errorLines(report)).containsExactly(1L);
+        assertThat(report.isErrorsTruncated()).isTrue();
+    }
+}
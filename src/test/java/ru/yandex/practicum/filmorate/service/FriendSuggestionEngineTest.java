@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FriendSuggestionEngineTest {
+
+    private final FriendshipGraph friendshipGraph = new FriendshipGraph(null);
+
+    private FriendSuggestionEngine engine(int maxFanout) {
+        return new FriendSuggestionEngine(friendshipGraph, 10, 100, maxFanout, 100);
+    }
+
+    private void friends(int userId, int... friendIds) {
+        for (int friendId : friendIds) {
+            friendshipGraph.addFriend(userId, friendId);
+        }
+    }
+
+    @Test
+    public void testOrderByMutualFriends() {
+        friends(1, 10, 11, 12);
+        friends(2, 10, 11, 12);
+        friends(3, 10);
+        friends(4, 11, 12);
+        friends(5, 20);
+        FriendSuggestionEngine engine = engine(100);
+
+        assertThat(engine.suggest(1, 10)).containsExactly(2, 4, 3);
+        assertThat(engine.suggest(1, 2)).containsExactly(2, 4);
+        assertThat(engine.suggest(5, 10)).isEmpty();
+    }
+
+    @Test
+    public void testConnectedUsersAreExcluded() {
+        friends(1, 10);
+        friends(2, 10);
+        friends(3, 10, 1);
+        friends(4, 10);
+        friends(1, 4);
+        FriendSuggestionEngine engine = engine(100);
+
+        assertThat(engine.suggest(1, 10)).containsExactly(2);
+    }
+
+    @Test
+    public void testInvalidation() {
+        friends(1, 10);
+        friends(2, 10);
+        FriendSuggestionEngine engine = engine(100);
+        assertThat(engine.suggest(1, 10)).containsExactly(2);
+
+        friends(3, 10);
+        assertThat(engine.suggest(1, 10)).containsExactly(2);
+        engine.invalidate(3, 10);
+        assertThat(engine.suggest(1, 10)).containsExactly(2, 3);
+
+        friendshipGraph.removeFriend(2, 10);
+        engine.invalidate(2, 10);
+        assertThat(engine.suggest(1, 10)).containsExactly(3);
+    }
+
+    @Test
+    public void testFanoutIsBounded() {
+        for (int userId = 100; userId < 200; userId++) {
+            friends(userId, 10);
+        }
+        friends(1, 10);
+
+        // Просматриваются первые 5 добавивших, включая самого пользователя
+        assertThat(engine(5).suggest(1, 10)).containsExactly(100, 101, 102, 103);
+    }
+
+    @Test
+    public void testInvalidationDuringComputeDiscardsOnlyThatUser() {
+        int[] reads = {0};
+        Runnable[] onRead = {() -> { }};
+        FriendshipGraph graph = new FriendshipGraph(null) {
+            @Override
+            public int[] getFriends(int userId) {
+                reads[0]++;
+                onRead[0].run();
+                return super.getFriends(userId);
+            }
+        };
+        graph.addFriend(1, 10);
+        graph.addFriend(2, 10);
+        FriendSuggestionEngine engine = new FriendSuggestionEngine(graph, 10, 100, 100, 100);
+
+        // Сброс других пользователей во время вычисления не мешает сохранить результат
+        onRead[0] = () -> engine.invalidate(5, 6);
+        assertThat(engine.suggest(1, 10)).containsExactly(2);
+        onRead[0] = () -> { };
+        assertThat(engine.suggest(1, 10)).containsExactly(2);
+        assertThat(reads[0]).isEqualTo(1);
+
+        // Результат, посчитанный до сброса своего пользователя, не кэшируется
+        onRead[0] = () -> engine.invalidate(2, 10);
+        assertThat(engine.suggest(2, 10)).containsExactly(1);
+        onRead[0] = () -> { };
+        assertThat(engine.suggest(2, 10)).containsExactly(1);
+        assertThat(reads[0]).isEqualTo(3);
+    }
+}
@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.enums.Operation;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.cache.FriendsTimelineCache;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FriendsFeedServiceTest {
+
+    private final FriendshipGraph friendshipGraph = new FriendshipGraph(null);
+    private final FriendsTimelineCache friendsTimelineCache = new FriendsTimelineCache(friendshipGraph, 3, 10, 1);
+    private final InMemoryFeedStorage feedStorage = new InMemoryFeedStorage();
+    private final FriendsFeedService friendsFeedService =
+            new FriendsFeedService(friendshipGraph, friendsTimelineCache, feedStorage);
+
+    private static Feed feed(int eventId, int userId, long timestamp) {
+        return Feed.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .entityId(eventId)
+                .eventType(EventType.LIKE)
+                .operation(Operation.ADD)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static List<Integer> eventIds(List<Feed> feeds) {
+        return feeds.stream().map(Feed::getEventId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testMergeKeepsOrderAndDropsDuplicates() {
+        List<Feed> first = List.of(feed(6, 10, 60), feed(4, 10, 40), feed(1, 10, 10));
+        List<Feed> second = List.of(feed(5, 11, 50), feed(4, 10, 40), feed(2, 11, 20));
+        // Одинаковое время, порядок задает eventId
+        List<Feed> third = List.of(feed(7, 12, 40), feed(3, 12, 30));
+
+        assertThat(eventIds(FriendsFeedService.merge(List.of(first, second, third), 10)))
+                .containsExactly(6, 5, 7, 4, 3, 2, 1);
+        assertThat(eventIds(FriendsFeedService.merge(List.of(first, second, third), 4)))
+                .containsExactly(6, 5, 7, 4);
+        assertThat(eventIds(FriendsFeedService.merge(List.of(first, List.of()), 2))).containsExactly(6, 4);
+        assertThat(FriendsFeedService.merge(List.of(List.of(), List.of()), 2)).isEmpty();
+        assertThat(FriendsFeedService.merge(List.of(), 2)).isEmpty();
+    }
+
+    @Test
+    public void testMergeSingleSource() {
+        List<Feed> source = List.of(feed(3, 10, 30), feed(2, 10, 20), feed(1, 10, 10));
+
+        assertThat(eventIds(FriendsFeedService.merge(List.of(source), 2))).containsExactly(3, 2);
+        assertThat(eventIds(FriendsFeedService.merge(List.of(source), 5))).containsExactly(3, 2, 1);
+    }
+
+    @Test
+    public void testPushedFriendsAreReadWithOneQuery() {
+        friendshipGraph.addFriend(1, 10);
+        friendshipGraph.addFriend(1, 11);
+        friendshipGraph.addFriend(1, 12);
+        // У друга 12 больше подписчиков, чем fanout-threshold, его события читаются отдельно
+        friendshipGraph.addFriend(2, 12);
+        feedStorage.feeds.addAll(List.of(feed(1, 10, 10), feed(2, 11, 20), feed(3, 12, 30),
+                feed(4, 10, 40), feed(5, 11, 50), feed(6, 12, 60), feed(7, 3, 70)));
+
+        // Лимит больше ленты в памяти: друзья с рассылкой читаются одним запросом с before
+        List<Feed> page = friendsFeedService.getFeedsBefore(1, new long[]{60, 6}, 4);
+        assertThat(eventIds(page)).containsExactly(5, 4, 3, 2);
+        assertThat(feedStorage.multiQueries).containsExactly(List.of(10, 11));
+        assertThat(feedStorage.singleQueries).containsExactly(12);
+
+        // Лента в памяти загружается тем же запросом без before
+        feedStorage.multiQueries.clear();
+        feedStorage.singleQueries.clear();
+        assertThat(eventIds(friendsFeedService.getFeedsBefore(1, null, 3))).containsExactly(6, 5, 4);
+        assertThat(feedStorage.multiQueries).containsExactly(List.of(10, 11));
+        assertThat(feedStorage.singleQueries).containsExactly(12);
+    }
+
+    private static class InMemoryFeedStorage implements FeedStorage {
+        private static final Comparator<Feed> NEWEST_FIRST = Comparator.comparingLong(Feed::getTimestamp)
+                .thenComparingInt(Feed::getEventId)
+                .reversed();
+
+        private final List<Feed> feeds = new ArrayList<>();
+        private final List<List<Integer>> multiQueries = new ArrayList<>();
+        private final List<Integer> singleQueries = new ArrayList<>();
+
+        private List<Feed> newest(Collection<Integer> ids, long[] before, int limit) {
+            return feeds.stream()
+                    .filter(feed -> ids.contains(feed.getUserId()))
+                    .filter(feed -> before == null || feed.getTimestamp() < before[0]
+                            || feed.getTimestamp() == before[0] && feed.getEventId() < before[1])
+                    .sorted(NEWEST_FIRST)
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public List<Feed> getFeeds(int id) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Feed> getFeedsBefore(int id, long[] before, int limit) {
+            singleQueries.add(id);
+            return newest(List.of(id), before, limit);
+        }
+
+        @Override
+        public List<Feed> getFeedsBefore(Collection<Integer> ids, long[] before, int limit) {
+            multiQueries.add(new ArrayList<>(ids));
+            return newest(ids, before, limit);
+        }
+
+        @Override
+        public List<Feed> getFeedsAfter(int id, int afterEventId, int limit) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int getMaxFeedId() {
+            return 0;
+        }
+
+        @Override
+        public Map<Integer, Integer> countFeedsByUserRange(long before, int maxFeedId, int rangeSize) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void forEachFeedBefore(int userFrom, int userTo, long before, int maxFeedId, Consumer<Feed> consumer) {
+        }
+
+        @Override
+        public int deleteFeedsBefore(int userFrom, int userTo, long before, int maxFeedId) {
+            return 0;
+        }
+
+        @Override
+        public void createFeed(int userId, int entityId, EventType eventType, Operation operation, long timeStamp) {
+        }
+
+        @Override
+        public void createFeeds(List<Feed> feeds) {
+        }
+    }
+}
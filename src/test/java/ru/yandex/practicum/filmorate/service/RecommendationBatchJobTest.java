@@ -0,0 +1,190 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dto.Recommendation;
+import ru.yandex.practicum.filmorate.dto.RecommendationJobStats;
+import ru.yandex.practicum.filmorate.storage.RecommendationStorage;
+import ru.yandex.practicum.filmorate.storage.SchedulerLockStorage;
+import ru.yandex.practicum.filmorate.storage.index.LikesMatrix;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecommendationBatchJobTest {
+
+    private final InMemoryRecommendationStorage recommendationStorage = new InMemoryRecommendationStorage();
+    private final InMemorySchedulerLockStorage schedulerLockStorage = new InMemorySchedulerLockStorage();
+    private final LikesMatrix likesMatrix = new LikesMatrix(null);
+    private final RecommendationEngine recommendationEngine = new RecommendationEngine(likesMatrix, 1, "overlap", 1);
+    private final RecommendationBatchJob job = new RecommendationBatchJob(recommendationEngine, recommendationStorage,
+            schedulerLockStorage, likesMatrix, true, 2, 2, 1);
+
+    @AfterEach
+    public void shutdown() {
+        job.shutdown();
+        recommendationEngine.shutdown();
+    }
+
+    private void likes(int userId, int... filmIds) {
+        recommendationStorage.likes.put(userId, filmIds);
+        likesMatrix.replaceUser(userId, filmIds);
+    }
+
+    @Test
+    public void testFirstRunIsFullAndNextOnesIncremental() {
+        likes(1, 10, 11);
+        likes(2, 10, 11, 12);
+        likes(3, 13);
+
+        RecommendationJobStats stats = job.run(false);
+        assertThat(stats.getMode()).isEqualTo("FULL");
+        assertThat(stats.getUsersProcessed()).isEqualTo(3);
+        assertThat(stats.getPartitionsTotal()).isEqualTo(2);
+        assertThat(recommendationStorage.saved.get(1).getFilmIds()).containsExactly(12);
+        assertThat(recommendationStorage.saved.get(3).getFilmIds()).isEmpty();
+
+        // Лайк сохранен на другом узле: матрица этого узла узнает о нем из базы при пересчете
+        recommendationStorage.likes.put(2, new int[]{10, 11, 12, 14});
+        recommendationStorage.markDirty(2);
+        recommendationStorage.saved.clear();
+
+        stats = job.run(false);
+        assertThat(stats.getMode()).isEqualTo("INCREMENTAL");
+        // Пересчитываются помеченный пользователь и те, у кого он среди соседей
+        assertThat(recommendationStorage.saved.keySet()).containsExactly(1, 2);
+        assertThat(recommendationStorage.saved.get(1).getFilmIds()).containsExactly(12, 14);
+        assertThat(likesMatrix.getFilms(2)).containsExactly(10, 11, 12, 14);
+        assertThat(recommendationStorage.getDirtyUsers()).isEmpty();
+
+        assertThat(job.run(false).getUsersTotal()).isZero();
+    }
+
+    @Test
+    public void testRunIsSkippedWhileLockedByOtherNode() {
+        likes(1, 10);
+        schedulerLockStorage.tryLock("recommendations", Duration.ofMinutes(1));
+
+        RecommendationJobStats stats = job.run(true);
+        assertThat(stats.getSkippedLocked()).isEqualTo(1);
+        assertThat(stats.getRuns()).isZero();
+        assertThat(recommendationStorage.saved).isEmpty();
+
+        schedulerLockStorage.unlock("recommendations", false);
+        stats = job.run(true);
+        assertThat(stats.getRuns()).isEqualTo(1);
+        assertThat(schedulerLockStorage.locked).isFalse();
+        assertThat(schedulerLockStorage.lastCompleted).isNotNull();
+    }
+
+    @Test
+    public void testFallbackUntilRecomputed() {
+        likes(1, 10, 11);
+        likes(2, 10, 11, 12);
+
+        // Пока пересчет ни разу не завершился, рекомендации считаются на лету
+        assertThat(job.hasFreshRecommendations(1)).isFalse();
+        job.run(false);
+        assertThat(job.hasFreshRecommendations(1)).isTrue();
+
+        recommendationStorage.markDirty(1);
+        assertThat(job.hasFreshRecommendations(1)).isFalse();
+        assertThat(job.hasFreshRecommendations(2)).isTrue();
+
+        // Незавершенный пересчет оставляет пометки
+        recommendationStorage.failSave = true;
+        RecommendationJobStats stats = job.run(false);
+        assertThat(stats.getPartitionsFailed()).isEqualTo(1);
+        assertThat(stats.getLastError()).isNotNull();
+        assertThat(job.hasFreshRecommendations(1)).isFalse();
+
+        recommendationStorage.failSave = false;
+        job.run(false);
+        assertThat(job.hasFreshRecommendations(1)).isTrue();
+    }
+
+    private static class InMemoryRecommendationStorage implements RecommendationStorage {
+        private final Map<Integer, int[]> likes = new HashMap<>();
+        private final Map<Integer, Long> dirty = new HashMap<>();
+        private final Map<Integer, int[]> neighbours = new HashMap<>();
+        private final Map<Integer, Recommendation> saved = new TreeMap<>();
+        private long version;
+        private boolean failSave;
+
+        @Override
+        public synchronized void markDirty(int userId) {
+            dirty.put(userId, ++version);
+        }
+
+        @Override
+        public synchronized boolean isDirty(int userId) {
+            return dirty.containsKey(userId);
+        }
+
+        @Override
+        public synchronized Map<Integer, Long> getDirtyUsers() {
+            return new HashMap<>(dirty);
+        }
+
+        @Override
+        public synchronized Set<Integer> getUsersWithNeighbours(Collection<Integer> neighbourIds) {
+            Set<Integer> result = new TreeSet<>();
+            neighbours.forEach((userId, ids) -> {
+                for (int id : ids) {
+                    if (neighbourIds.contains(id))
+                        result.add(userId);
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public synchronized Map<Integer, int[]> getLikes(Collection<Integer> userIds) {
+            Map<Integer, int[]> result = new HashMap<>();
+            userIds.forEach(userId -> result.put(userId, likes.getOrDefault(userId, new int[0])));
+            return result;
+        }
+
+        @Override
+        public synchronized void saveRecommendations(List<Recommendation> recommendations,
+                                                     Map<Integer, Long> dirtyVersions) {
+            if (failSave)
+                throw new IllegalStateException("Ошибка записи");
+            for (Recommendation recommendation : recommendations) {
+                saved.put(recommendation.getUserId(), recommendation);
+                neighbours.put(recommendation.getUserId(), recommendation.getNeighbourIds());
+                Long version = dirtyVersions.get(recommendation.getUserId());
+                if (version != null)
+                    dirty.remove(recommendation.getUserId(), version);
+            }
+        }
+    }
+
+    private static class InMemorySchedulerLockStorage implements SchedulerLockStorage {
+        private boolean locked;
+        private Instant lastCompleted;
+
+        @Override
+        public synchronized boolean tryLock(String name, Duration lockAtMostFor) {
+            if (locked)
+                return false;
+            locked = true;
+            return true;
+        }
+
+        @Override
+        public synchronized void unlock(String name, boolean completed) {
+            locked = false;
+            if (completed)
+                lastCompleted = Instant.now();
+        }
+
+        @Override
+        public synchronized Optional<Instant> getLastCompleted(String name) {
+            return Optional.ofNullable(lastCompleted);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.enums.Similarity;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmHydrator;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.LikesMatrix;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@ActiveProfiles("test")
+public class RecommendationEngineTest {
+
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final LikesMatrix likesMatrix;
+    private final RecommendationEngine recommendationEngine;
+
+    @Autowired
+    public RecommendationEngineTest(NamedParameterJdbcTemplate jdbcTemplate) {
+        ReferenceDataRegistry referenceDataRegistry = new ReferenceDataRegistry(jdbcTemplate);
+        referenceDataRegistry.reload();
+        this.filmDbStorage = new FilmDbStorage(jdbcTemplate,
+                new FilmHydrator(jdbcTemplate, referenceDataRegistry, 500, 1), referenceDataRegistry);
+        this.userDbStorage = new UserDbStorage(jdbcTemplate);
+        this.likesMatrix = new LikesMatrix(jdbcTemplate);
+        this.recommendationEngine = new RecommendationEngine(likesMatrix, 1, "overlap", 2);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        recommendationEngine.shutdown();
+    }
+
+    private List<User> users(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = RandomUtils.getRandomUser();
+            userDbStorage.addUser(user);
+            users.add(user);
+        }
+        return users;
+    }
+
+    private List<Film> films(int count) {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Film film = RandomUtils.getRandomFilm();
+            filmDbStorage.addFilm(film);
+            films.add(film);
+        }
+        return films;
+    }
+
+    private void like(User user, Film... films) {
+        for (Film film : films) {
+            filmDbStorage.addAppraiser(film.getId(), user.getId());
+        }
+    }
+
+    @Test
+    public void testSingleNeighbour() {
+        List<User> users = users(3);
+        List<Film> films = films(5);
+        like(users.get(0), films.get(0), films.get(1));
+        like(users.get(1), films.get(0), films.get(1), films.get(2), films.get(3));
+        like(users.get(2), films.get(0), films.get(4));
+        likesMatrix.rebuild();
+
+        assertThat(recommendationEngine.recommend(users.get(0).getId()))
+                .containsExactly(films.get(2).getId(), films.get(3).getId());
+    }
+
+    @Test
+    public void testSeveralNeighbours() {
+        List<User> users = users(3);
+        List<Film> films = films(4);
+        like(users.get(0), films.get(0), films.get(1));
+        like(users.get(1), films.get(0), films.get(1), films.get(2));
+        like(users.get(2), films.get(0), films.get(2), films.get(3));
+        likesMatrix.rebuild();
+
+        int userId = users.get(0).getId();
+        assertThat(recommendationEngine.recommend(userId, 2, Similarity.JACCARD))
+                .containsExactly(films.get(2).getId(), films.get(3).getId());
+
+        likesMatrix.removeLike(users.get(1).getId(), films.get(2).getId());
+        likesMatrix.addLike(users.get(1).getId(), films.get(3).getId());
+        assertThat(recommendationEngine.recommend(userId, 2, Similarity.COSINE))
+                .containsExactly(films.get(3).getId(), films.get(2).getId());
+
+        likesMatrix.removeUser(users.get(1).getId());
+        likesMatrix.removeUser(users.get(2).getId());
+        assertThat(recommendationEngine.recommend(userId)).isEmpty();
+    }
+}
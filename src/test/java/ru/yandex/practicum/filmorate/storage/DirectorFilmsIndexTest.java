@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.enums.SortingFilms;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.impl.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmHydrator;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.DirectorFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@ActiveProfiles("test")
+public class DirectorFilmsIndexTest {
+
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final DirectorDbStorage directorDbStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final DirectorFilmsIndex directorFilmsIndex;
+
+    @Autowired
+    public DirectorFilmsIndexTest(NamedParameterJdbcTemplate jdbcTemplate) {
+        ReferenceDataRegistry referenceDataRegistry = new ReferenceDataRegistry(jdbcTemplate);
+        referenceDataRegistry.reload();
+        this.filmDbStorage = new FilmDbStorage(jdbcTemplate,
+                new FilmHydrator(jdbcTemplate, referenceDataRegistry, 500, 1), referenceDataRegistry);
+        this.userDbStorage = new UserDbStorage(jdbcTemplate);
+        this.directorDbStorage = new DirectorDbStorage(jdbcTemplate.getJdbcTemplate(), referenceDataRegistry);
+        this.popularFilmsIndex = new PopularFilmsIndex(jdbcTemplate);
+        this.directorFilmsIndex = new DirectorFilmsIndex(jdbcTemplate, popularFilmsIndex);
+    }
+
+    private Film film(LocalDate releaseDate, Director director) {
+        Film film = RandomUtils.getRandomFilm();
+        film.setReleaseDate(releaseDate);
+        film.setDirectors(List.of(director));
+        filmDbStorage.addFilm(film);
+        return film;
+    }
+
+    private Director director() {
+        return directorDbStorage.create(Director.builder().name(RandomUtils.getRandomString(10)).build());
+    }
+
+    @Test
+    public void testOrderByYearAndLikes() {
+        Director director = director();
+        Film old = film(LocalDate.of(1995, 1, 1), director);
+        Film recent = film(LocalDate.of(2015, 1, 1), director);
+        Film middle = film(LocalDate.of(2005, 1, 1), director);
+        User user = RandomUtils.getRandomUser();
+        userDbStorage.addUser(user);
+        filmDbStorage.addAppraiser(old.getId(), user.getId());
+        popularFilmsIndex.rebuild();
+        directorFilmsIndex.rebuild();
+
+        assertThat(directorFilmsIndex.getFilms(director.getId(), SortingFilms.YEAR, 0, 10))
+                .containsExactly(old.getId(), middle.getId(), recent.getId());
+        assertThat(directorFilmsIndex.getFilms(director.getId(), SortingFilms.LIKES, 0, 10))
+                .containsExactly(recent.getId(), middle.getId(), old.getId());
+        assertThat(directorFilmsIndex.getFilms(director.getId(), SortingFilms.YEAR, 1, 1))
+                .containsExactly(middle.getId());
+
+        directorFilmsIndex.changeLikes(recent.getId(), 2);
+        assertThat(directorFilmsIndex.getFilms(director.getId(), SortingFilms.LIKES, 0, 10))
+                .containsExactly(middle.getId(), old.getId(), recent.getId());
+    }
+
+    @Test
+    public void testPutAndRemove() {
+        Director director = director();
+        Director other = director();
+        Film first = film(LocalDate.of(2000, 1, 1), director);
+        Film second = film(LocalDate.of(2010, 1, 1), director);
+        popularFilmsIndex.rebuild();
+        directorFilmsIndex.rebuild();
+
+        directorFilmsIndex.put(first.getId(), LocalDate.of(2020, 1, 1), List.of(director.getId(), other.getId()));
+        assertThat(directorFilmsIndex.getFilms(director.getId(), SortingFilms.YEAR, 0, 10))
+                .containsExactly(second.getId(), first.getId());
+        assertThat(directorFilmsIndex.getFilms(other.getId(), SortingFilms.YEAR, 0, 10))
+                .containsExactly(first.getId());
+
+        directorFilmsIndex.remove(second.getId());
+        directorFilmsIndex.removeDirector(other.getId());
+        assertThat(directorFilmsIndex.getFilms(director.getId(), SortingFilms.YEAR, 0, 10))
+                .containsExactly(first.getId());
+        assertThat(directorFilmsIndex.getFilms(other.getId(), SortingFilms.YEAR, 0, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,125 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.enums.Operation;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.archive.FeedArchive;
+import ru.yandex.practicum.filmorate.storage.cache.RecentFeedBuffer;
+import ru.yandex.practicum.filmorate.storage.impl.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@ActiveProfiles("test")
+public class FeedDbStorageTest {
+
+    private final FeedDbStorage feedDbStorage;
+    private final UserDbStorage userStorage;
+
+    @Autowired
+    public FeedDbStorageTest(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        RecentFeedBuffer recentFeedBuffer = new RecentFeedBuffer(3, 10);
+        this.feedDbStorage = new FeedDbStorage(jdbcTemplate, recentFeedBuffer, List.of(recentFeedBuffer),
+                new FeedArchive("./build/feed-archive-unused", false, true, 256), 2);
+        this.userStorage = new UserDbStorage(namedParameterJdbcTemplate);
+    }
+
+    private int user() {
+        User user = RandomUtils.getRandomUser();
+        userStorage.addUser(user);
+        return user.getId();
+    }
+
+    private static List<Integer> entityIds(List<Feed> feeds) {
+        return feeds.stream().map(Feed::getEntityId).collect(Collectors.toList());
+    }
+
+    private static long[] key(Feed feed) {
+        return new long[]{feed.getTimestamp(), feed.getEventId()};
+    }
+
+    @Test
+    public void testGetFeedsOrdered() {
+        int user = user();
+        feedDbStorage.createFeed(user, 2, EventType.LIKE, Operation.ADD, 200);
+        feedDbStorage.createFeed(user, 1, EventType.LIKE, Operation.ADD, 100);
+        feedDbStorage.createFeed(user, 3, EventType.LIKE, Operation.REMOVE, 200);
+        feedDbStorage.createFeed(user(), 4, EventType.LIKE, Operation.ADD, 150);
+
+        assertThat(entityIds(feedDbStorage.getFeeds(user))).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void testGetFeedsBefore() {
+        int user = user();
+        for (int i = 1; i <= 5; i++) {
+            feedDbStorage.createFeed(user, i, EventType.FRIEND, Operation.ADD, i * 10L);
+        }
+
+        // Первая страница помещается в буфер, следующие читаются из базы по курсору
+        List<Feed> first = feedDbStorage.getFeedsBefore(user, null, 2);
+        List<Feed> second = feedDbStorage.getFeedsBefore(user, key(first.get(1)), 2);
+        List<Feed> last = feedDbStorage.getFeedsBefore(user, key(second.get(1)), 2);
+        assertThat(entityIds(first)).containsExactly(5, 4);
+        assertThat(entityIds(second)).containsExactly(3, 2);
+        assertThat(entityIds(last)).containsExactly(1);
+        assertThat(entityIds(feedDbStorage.getFeedsBefore(user, null, 2))).containsExactly(5, 4);
+    }
+
+    @Test
+    public void testFirstPageLargerThanBuffer() {
+        int user = user();
+        for (int i = 1; i <= 5; i++) {
+            feedDbStorage.createFeed(user, i, EventType.REVIEW, Operation.UPDATE, 10);
+        }
+
+        assertThat(entityIds(feedDbStorage.getFeedsBefore(user, null, 4))).containsExactly(5, 4, 3, 2);
+    }
+
+    @Test
+    public void testCreateFeedsInBatches() {
+        int user = user();
+        List<Feed> feeds = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            feeds.add(Feed.builder()
+                    .userId(user)
+                    .entityId(i)
+                    .eventType(EventType.LIKE)
+                    .operation(Operation.ADD)
+                    .timestamp(i)
+                    .build());
+        }
+        feedDbStorage.createFeeds(feeds);
+
+        List<Feed> fromDb = feedDbStorage.getFeeds(user);
+        assertThat(fromDb).isEqualTo(feeds);
+        assertThat(feeds.stream().map(Feed::getEventId).distinct().count()).isEqualTo(5);
+    }
+
+    @Test
+    public void testGetFeedsAfter() {
+        int user = user();
+        feedDbStorage.createFeed(user, 1, EventType.LIKE, Operation.ADD, 300);
+        feedDbStorage.createFeed(user(), 2, EventType.LIKE, Operation.ADD, 200);
+        feedDbStorage.createFeed(user, 3, EventType.LIKE, Operation.REMOVE, 100);
+        feedDbStorage.createFeed(user, 4, EventType.FRIEND, Operation.ADD, 400);
+        List<Feed> all = feedDbStorage.getFeedsAfter(user, 0, 10);
+
+        assertThat(entityIds(all)).containsExactly(1, 3, 4);
+        assertThat(entityIds(feedDbStorage.getFeedsAfter(user, all.get(0).getEventId(), 1))).containsExactly(3);
+        assertThat(feedDbStorage.getFeedsAfter(user, all.get(2).getEventId(), 10)).isEmpty();
+    }
+}
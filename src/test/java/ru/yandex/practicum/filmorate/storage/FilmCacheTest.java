@@ -0,0 +1,135 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dto.CacheStats;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.cache.FilmCache;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FilmCacheTest {
+
+    private final Map<Integer, Film> storage = new HashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Film load(int filmId) {
+        loads.incrementAndGet();
+        Film film = storage.get(filmId);
+        return film == null ? null : FilmCache.copy(film);
+    }
+
+    private List<Film> loadAll(List<Integer> ids) {
+        return ids.stream().map(this::load).filter(film -> film != null).collect(Collectors.toList());
+    }
+
+    private Film addFilm(int id) {
+        Film film = RandomUtils.getRandomFilm();
+        film.setId(id);
+        storage.put(id, film);
+        return film;
+    }
+
+    @Test
+    public void testReadThroughAndCopies() {
+        FilmCache cache = new FilmCache(true, 10, 1000);
+        addFilm(1);
+
+        Film first = cache.get(1, this::load);
+        first.setName("changed");
+        first.getAppraisers().add(5);
+        Film second = cache.get(1, this::load);
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(second.getName()).isEqualTo(storage.get(1).getName());
+        assertThat(second.getAppraisers()).isEmpty();
+        assertThat(cache.get(2, this::load)).isNull();
+        CacheStats stats = cache.getStats();
+        assertThat(stats.getHits()).isEqualTo(1);
+        assertThat(stats.getMisses()).isEqualTo(2);
+        assertThat(stats.getSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUpdateAndInvalidate() {
+        FilmCache cache = new FilmCache(true, 10, 1000);
+        addFilm(1);
+        cache.get(1, this::load);
+
+        cache.update(1, film -> film.getAppraisers().add(7));
+        assertThat(cache.get(1, this::load).getAppraisers()).containsExactly(7);
+        assertThat(cache.getStats().getWeight()).isEqualTo(2);
+
+        storage.get(1).setName("edited");
+        cache.invalidate(1);
+        assertThat(cache.get(1, this::load).getName()).isEqualTo("edited");
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(cache.getStats().getInvalidations()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEvictionBySizeAndWeight() {
+        FilmCache cache = new FilmCache(true, 2, 1000);
+        addFilm(1);
+        addFilm(2);
+        addFilm(3);
+        cache.getAll(List.of(1, 2), this::loadAll);
+        cache.get(1, this::load);
+        cache.get(3, this::load);
+
+        assertThat(cache.getStats().getSize()).isEqualTo(2);
+        assertThat(cache.getStats().getEvictions()).isEqualTo(1);
+        loads.set(0);
+        assertThat(cache.getAll(List.of(3, 1, 2), this::loadAll))
+                .extracting(Film::getId).containsExactly(3, 1, 2);
+        assertThat(loads.get()).isEqualTo(1);
+
+        FilmCache small = new FilmCache(true, 10, 3);
+        storage.get(1).getAppraisers().add(1);
+        storage.get(1).getAppraisers().add(2);
+        small.get(1, this::load);
+        small.get(2, this::load);
+        assertThat(small.getStats().getSize()).isEqualTo(1);
+        assertThat(small.getStats().getWeight()).isEqualTo(1);
+    }
+
+    @Test
+    public void testWriteDuringLoadDiscardsOnlyThatFilm() {
+        FilmCache cache = new FilmCache(true, 10, 1000);
+        addFilm(1);
+        addFilm(2);
+
+        // Изменение другого фильма во время загрузки не мешает положить загруженный фильм в кэш
+        cache.get(1, filmId -> {
+            Film film = load(filmId);
+            cache.invalidate(2);
+            return film;
+        });
+        assertThat(cache.getStats().getSize()).isEqualTo(1);
+
+        // Фильм, измененный во время своей загрузки, не кэшируется: загрузчик мог прочитать его до изменения
+        cache.getAll(List.of(2), ids -> {
+            List<Film> films = loadAll(ids);
+            cache.update(2, film -> film.getAppraisers().add(3));
+            return films;
+        });
+        assertThat(cache.getStats().getSize()).isEqualTo(1);
+        loads.set(0);
+        cache.get(2, this::load);
+        assertThat(loads.get()).isEqualTo(1);
+
+        addFilm(3);
+        cache.get(3, filmId -> {
+            Film film = load(filmId);
+            cache.invalidateAll();
+            return film;
+        });
+        assertThat(cache.getStats().getSize()).isZero();
+    }
+}
@@ -5,15 +5,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.enums.FilmField;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.storage.impl.DirectorDbStorage;
 import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmHydrator;
 import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
 import ru.yandex.practicum.filmorate.util.RandomUtils;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
@@ -27,8 +36,11 @@ public class FilmDbStorageTest {
 
     @Autowired
     public FilmDbStorageTest(NamedParameterJdbcTemplate jdbcTemplate) {
-        this.directorStorage = new DirectorDbStorage(jdbcTemplate.getJdbcTemplate());
-        this.filmDbStorage = new FilmDbStorage(directorStorage, jdbcTemplate);
+        ReferenceDataRegistry referenceDataRegistry = new ReferenceDataRegistry(jdbcTemplate);
+        referenceDataRegistry.reload();
+        this.directorStorage = new DirectorDbStorage(jdbcTemplate.getJdbcTemplate(), referenceDataRegistry);
+        this.filmDbStorage = new FilmDbStorage(jdbcTemplate,
+                new FilmHydrator(jdbcTemplate, referenceDataRegistry, 500, 1), referenceDataRegistry);
         this.userDbStorage = new UserDbStorage(jdbcTemplate);
     }
 
@@ -111,4 +123,104 @@ public class FilmDbStorageTest {
                 .isEqualTo(Collections.singletonList(film));
     }
 
+    @Test
+    public void testGetLikesCount() {
+        Film film = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilm(film);
+        Film otherFilm = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilm(otherFilm);
+        User user = RandomUtils.getRandomUser();
+        userDbStorage.addUser(user);
+        User otherUser = RandomUtils.getRandomUser();
+        userDbStorage.addUser(otherUser);
+        filmDbStorage.addAppraiser(film.getId(), user.getId());
+        filmDbStorage.addAppraiser(film.getId(), user.getId());
+        filmDbStorage.addAppraiser(film.getId(), otherUser.getId());
+        filmDbStorage.removeAppraiser(film.getId(), otherUser.getId());
+        filmDbStorage.removeAppraiser(film.getId(), otherUser.getId());
+        Map<Integer, Integer> likes = filmDbStorage.getLikesCount(Arrays.asList(film.getId(), otherFilm.getId(), -1));
+        assertThat(likes.size()).isEqualTo(2);
+        assertThat(likes.get(film.getId())).isEqualTo(1);
+        assertThat(likes.get(otherFilm.getId())).isEqualTo(0);
+    }
+
+    @Test
+    public void testGetPage() {
+        Film first = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilm(first);
+        Film second = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilm(second);
+        List<Film> page = filmDbStorage.getPage(first.getId() - 1, 1);
+        List<Film> nextPage = filmDbStorage.getPage(page.get(0).getId(), 1);
+        assertThat(page).usingRecursiveComparison().ignoringFields("mpa.name")
+                .isEqualTo(Collections.singletonList(first));
+        assertThat(nextPage).usingRecursiveComparison().ignoringFields("mpa.name")
+                .isEqualTo(Collections.singletonList(second));
+    }
+
+    @Test
+    public void testGetByIdsWithFields() {
+        Film film = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilm(film);
+        User user = RandomUtils.getRandomUser();
+        userDbStorage.addUser(user);
+        filmDbStorage.addAppraiser(film.getId(), user.getId());
+        List<Film> withoutLikes = filmDbStorage.getByIds(Collections.singletonList(film.getId()),
+                EnumSet.of(FilmField.NAME, FilmField.GENRES));
+        List<Film> withLikes = filmDbStorage.getByIds(Collections.singletonList(film.getId()),
+                EnumSet.of(FilmField.APPRAISERS));
+        assertThat(withoutLikes.get(0).getName()).isEqualTo(film.getName());
+        assertThat(withoutLikes.get(0).getAppraisers().isEmpty()).isEqualTo(true);
+        assertThat(withLikes.get(0).getAppraisers()).isEqualTo(Collections.singleton(user.getId()));
+    }
+
+    @Test
+    public void testAddFilms() {
+        Director director = directorStorage.create(Director.builder().name(RandomUtils.getRandomString(10)).build());
+        Genre genre = new Genre();
+        genre.setId(1);
+        Film first = RandomUtils.getRandomFilm();
+        first.setGenres(List.of(genre));
+        first.setDirectors(List.of(director));
+        Film second = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilms(Arrays.asList(first, second));
+        assertThat(first.getId()).isNotNull();
+        assertThat(second.getId()).isGreaterThan(first.getId());
+        Film firstFromDB = filmDbStorage.getById(first.getId());
+        assertThat(firstFromDB.getName()).isEqualTo(first.getName());
+        assertThat(firstFromDB.getGenres().get(0).getId()).isEqualTo(1);
+        assertThat(firstFromDB.getDirectors().get(0).getId()).isEqualTo(director.getId());
+        assertThat(filmDbStorage.getById(second.getId()).getGenres().isEmpty()).isEqualTo(true);
+    }
+
+    @Test
+    public void testGetCommonFilms() {
+        Film rare = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilm(rare);
+        Film popular = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilm(popular);
+        Film single = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilm(single);
+        User user = RandomUtils.getRandomUser();
+        userDbStorage.addUser(user);
+        User friend = RandomUtils.getRandomUser();
+        userDbStorage.addUser(friend);
+        User other = RandomUtils.getRandomUser();
+        userDbStorage.addUser(other);
+        filmDbStorage.addAppraiser(rare.getId(), user.getId());
+        filmDbStorage.addAppraiser(rare.getId(), friend.getId());
+        filmDbStorage.addAppraiser(popular.getId(), user.getId());
+        filmDbStorage.addAppraiser(popular.getId(), friend.getId());
+        filmDbStorage.addAppraiser(popular.getId(), other.getId());
+        filmDbStorage.addAppraiser(single.getId(), user.getId());
+
+        List<Film> common = filmDbStorage.getCommonFilms(List.of(user.getId(), friend.getId()), FilmField.ALL);
+        List<Film> groupCommon = filmDbStorage.getCommonFilms(
+                List.of(user.getId(), friend.getId(), other.getId()), FilmField.ALL);
+        assertThat(common.size()).isEqualTo(2);
+        assertThat(common.get(0).getId()).isEqualTo(popular.getId());
+        assertThat(common.get(1).getId()).isEqualTo(rare.getId());
+        assertThat(groupCommon.size()).isEqualTo(1);
+        assertThat(groupCommon.get(0).getId()).isEqualTo(popular.getId());
+    }
 }
@@ -0,0 +1,153 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.enums.SearchSort;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.impl.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmHydrator;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@ActiveProfiles("test")
+public class FilmSearchIndexTest {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ReferenceDataRegistry referenceDataRegistry;
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final DirectorDbStorage directorDbStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final FilmSearchIndex filmSearchIndex;
+
+    @Autowired
+    public FilmSearchIndexTest(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.referenceDataRegistry = new ReferenceDataRegistry(jdbcTemplate);
+        referenceDataRegistry.reload();
+        this.filmDbStorage = new FilmDbStorage(jdbcTemplate,
+                new FilmHydrator(jdbcTemplate, referenceDataRegistry, 500, 1), referenceDataRegistry);
+        this.userDbStorage = new UserDbStorage(jdbcTemplate);
+        this.directorDbStorage = new DirectorDbStorage(jdbcTemplate.getJdbcTemplate(), referenceDataRegistry);
+        this.popularFilmsIndex = new PopularFilmsIndex(jdbcTemplate);
+        this.filmSearchIndex = new FilmSearchIndex(jdbcTemplate, referenceDataRegistry, popularFilmsIndex);
+    }
+
+    private Film film(String name, Director... directors) {
+        Film film = RandomUtils.getRandomFilm();
+        film.setName(name);
+        film.setDirectors(List.of(directors));
+        filmDbStorage.addFilm(film);
+        return film;
+    }
+
+    private List<Integer> search(String query, boolean byTitle, boolean byDirector, SearchSort sort) {
+        return filmSearchIndex.search(query, byTitle, byDirector, sort, 0, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testSearchBySubstring() {
+        Film first = film("Крадущийся тигр, затаившийся дракон");
+        Film second = film("Тигр и дракон");
+        Film other = film("Ёжик в тумане");
+        filmSearchIndex.rebuild();
+
+        assertThat(search("ДРАК", true, false, SearchSort.LIKES)).containsExactlyInAnyOrder(first.getId(), second.getId());
+        assertThat(search("ежик", true, false, SearchSort.LIKES)).containsExactly(other.getId());
+        assertThat(search("ур", true, false, SearchSort.LIKES)).isEmpty();
+        assertThat(search("ур", false, true, SearchSort.LIKES)).isEmpty();
+    }
+
+    @Test
+    public void testSearchByDirector() {
+        Director director = directorDbStorage.create(Director.builder().name("Pedro Almodóvar").build());
+        Film film = film(RandomUtils.getRandomString(10), director);
+        filmSearchIndex.rebuild();
+
+        assertThat(search("almodovar", false, true, SearchSort.LIKES)).containsExactly(film.getId());
+        assertThat(search("almodovar", true, false, SearchSort.LIKES)).doesNotContain(film.getId());
+
+        filmSearchIndex.putDirector(director.getId(), "Луис Бунюэль");
+        assertThat(search("almodovar", false, true, SearchSort.LIKES)).isEmpty();
+        assertThat(search("бунюэль", false, true, SearchSort.LIKES)).containsExactly(film.getId());
+
+        filmSearchIndex.removeDirector(director.getId());
+        assertThat(search("бунюэль", false, true, SearchSort.LIKES)).isEmpty();
+    }
+
+    @Test
+    public void testSearchOrder() {
+        User user = RandomUtils.getRandomUser();
+        userDbStorage.addUser(user);
+        Film exact = film("Матрица");
+        Film prefix = film("Матрица: Перезагрузка");
+        Film infix = film("Аниматрица");
+        filmDbStorage.addAppraiser(infix.getId(), user.getId());
+        popularFilmsIndex.rebuild();
+        filmSearchIndex.rebuild();
+
+        assertThat(search("матрица", true, false, SearchSort.LIKES))
+                .containsExactly(infix.getId(), exact.getId(), prefix.getId());
+        assertThat(search("матрица", true, false, SearchSort.RELEVANCE))
+                .containsExactly(exact.getId(), prefix.getId(), infix.getId());
+        assertThat(filmSearchIndex.search("матрица", true, false, SearchSort.RELEVANCE, 1, 1))
+                .containsExactly(prefix.getId());
+    }
+
+    @Test
+    public void testEditAndRemoveFilm() {
+        Film film = film("Сталкер");
+        filmSearchIndex.rebuild();
+
+        filmSearchIndex.putFilm(film.getId(), "Солярис", List.of());
+        assertThat(search("сталкер", true, false, SearchSort.LIKES)).isEmpty();
+        assertThat(search("солярис", true, false, SearchSort.LIKES)).containsExactly(film.getId());
+
+        filmSearchIndex.removeFilm(film.getId());
+        assertThat(search("солярис", true, false, SearchSort.LIKES)).isEmpty();
+    }
+
+    @Test
+    public void testChangesDuringRebuildAreKept() {
+        Film stalker = film("Сталкер");
+        Film[] added = new Film[1];
+        FilmSearchIndex[] index = new FilmSearchIndex[1];
+        // Изменения приходят после того, как перестроение прочитало FILMS, но до замены индекса
+        JdbcTemplate hooked = new JdbcTemplate(jdbcTemplate.getJdbcTemplate().getDataSource()) {
+            @Override
+            public void query(String sql, RowCallbackHandler rch) {
+                super.query(sql, rch);
+                if (sql.contains("from FILMS") && added[0] == null) {
+                    added[0] = film("Солярис");
+                    index[0].putFilm(added[0].getId(), added[0].getName(), List.of());
+                    index[0].removeFilm(stalker.getId());
+                }
+            }
+        };
+        index[0] = new FilmSearchIndex(new NamedParameterJdbcTemplate(hooked), referenceDataRegistry, popularFilmsIndex);
+        index[0].rebuild();
+
+        assertThat(index[0].search("солярис", true, false, SearchSort.LIKES, 0, 10)).containsExactly(added[0].getId());
+        assertThat(index[0].search("сталкер", true, false, SearchSort.LIKES, 0, 10)).isEmpty();
+
+        // Запомненные изменения применяются только к одному перестроению: фильм по-прежнему есть в базе
+        index[0].rebuild();
+        assertThat(index[0].search("сталкер", true, false, SearchSort.LIKES, 0, 10)).containsExactly(stalker.getId());
+    }
+}
@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikesMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FilmSimilarityIndexTest {
+
+    private final LikesMatrix likesMatrix = new LikesMatrix(null);
+    private final List<FilmSimilarityIndex> indexes = new ArrayList<>();
+
+    private FilmSimilarityIndex index(int capacity, int maxFanout) {
+        FilmSimilarityIndex index = new FilmSimilarityIndex(likesMatrix, capacity, maxFanout, 2, false);
+        indexes.add(index);
+        return index;
+    }
+
+    @AfterEach
+    public void shutdown() {
+        indexes.forEach(FilmSimilarityIndex::shutdown);
+    }
+
+    private void like(FilmSimilarityIndex index, int userId, int... filmIds) {
+        for (int filmId : filmIds) {
+            index.addLike(userId, filmId);
+        }
+    }
+
+    @Test
+    public void testOrderByCoOccurrence() {
+        FilmSimilarityIndex index = index(10, 100);
+        like(index, 1, 1, 2, 3);
+        like(index, 2, 1, 2);
+        like(index, 3, 1, 4);
+        like(index, 4, 2, 4);
+
+        assertThat(index.getSimilar(1, 10)).containsExactly(2, 3, 4);
+        assertThat(index.getSimilar(1, 1)).containsExactly(2);
+
+        assertThat(index.removeLike(2, 2)).isTrue();
+        assertThat(index.removeLike(2, 2)).isFalse();
+        assertThat(likesMatrix.getFilms(2)).containsExactly(1);
+        assertThat(index.getSimilar(1, 10)).containsExactly(2, 3, 4);
+        index.removeLike(1, 2);
+        assertThat(index.getSimilar(1, 10)).containsExactly(3, 4);
+
+        index.removeFilm(3);
+        assertThat(likesMatrix.getUsers(3)).isEmpty();
+        assertThat(index.getSimilar(1, 10)).containsExactly(4);
+    }
+
+    @Test
+    public void testIncrementalMatchesRebuild() {
+        assertIncrementalMatchesRebuild(1000, 100, 50);
+    }
+
+    @Test
+    public void testIncrementalMatchesRebuildWithSampling() {
+        // Лайки и снятия лайков меняют состав выборки, счетчики должны совпасть с полным построением
+        assertIncrementalMatchesRebuild(5, 10, 30);
+    }
+
+    private void assertIncrementalMatchesRebuild(int maxFanout, int users, int films) {
+        FilmSimilarityIndex incremental = index(1000, maxFanout);
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            int userId = random.nextInt(users);
+            int filmId = random.nextInt(films);
+            // Повторный лайк не меняет матрицу и не учитывается в индексе
+            incremental.addLike(userId, filmId);
+            if (random.nextInt(4) == 0)
+                incremental.removeLike(userId, filmId);
+        }
+        incremental.removeUser(5);
+
+        FilmSimilarityIndex rebuilt = index(1000, maxFanout);
+        rebuilt.rebuild();
+        for (int filmId = 0; filmId < films; filmId++) {
+            assertThat(incremental.getSimilar(filmId, 1000)).isEqualTo(rebuilt.getSimilar(filmId, 1000));
+        }
+    }
+
+    @Test
+    public void testChangesDuringRebuildAreKept() throws InterruptedException {
+        FilmSimilarityIndex index = index(1000, 20);
+        Random random = new Random(1);
+        for (int i = 0; i < 20_000; i++) {
+            index.addLike(random.nextInt(500), random.nextInt(200));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            Random writes = new Random(2);
+            while (running.get()) {
+                int userId = writes.nextInt(500);
+                int filmId = writes.nextInt(200);
+                if (writes.nextBoolean())
+                    index.addLike(userId, filmId);
+                else
+                    index.removeLike(userId, filmId);
+                if (writes.nextInt(1000) == 0)
+                    index.removeUser(userId);
+            }
+        });
+        writer.start();
+        // Лайки продолжают меняться, пока идут построения
+        for (int i = 0; i < 10; i++) {
+            index.rebuild();
+        }
+        running.set(false);
+        writer.join();
+
+        FilmSimilarityIndex rebuilt = index(1000, 20);
+        rebuilt.rebuild();
+        for (int filmId = 0; filmId < 200; filmId++) {
+            assertThat(index.getSimilar(filmId, 1000)).isEqualTo(rebuilt.getSimilar(filmId, 1000));
+        }
+    }
+
+    @Test
+    public void testHeavyUserIsSampled() {
+        FilmSimilarityIndex index = index(10, 5);
+        int[] filmIds = new int[50];
+        for (int i = 0; i < filmIds.length; i++) {
+            filmIds[i] = i + 1;
+        }
+        like(index, 1, filmIds);
+
+        int pairs = 0;
+        for (int filmId : filmIds) {
+            pairs += index.getSimilar(filmId, 10).size();
+        }
+        assertThat(pairs).isLessThanOrEqualTo(filmIds.length * 5);
+    }
+}
@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.dto.Suggestion;
+import ru.yandex.practicum.filmorate.enums.SuggestionType;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.impl.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmHydrator;
+import ru.yandex.practicum.filmorate.storage.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@ActiveProfiles("test")
+public class FilmSuggestIndexTest {
+
+    private final FilmDbStorage filmDbStorage;
+    private final DirectorDbStorage directorDbStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final FilmSuggestIndex filmSuggestIndex;
+
+    @Autowired
+    public FilmSuggestIndexTest(NamedParameterJdbcTemplate jdbcTemplate) {
+        ReferenceDataRegistry referenceDataRegistry = new ReferenceDataRegistry(jdbcTemplate);
+        referenceDataRegistry.reload();
+        this.filmDbStorage = new FilmDbStorage(jdbcTemplate,
+                new FilmHydrator(jdbcTemplate, referenceDataRegistry, 500, 1), referenceDataRegistry);
+        this.directorDbStorage = new DirectorDbStorage(jdbcTemplate.getJdbcTemplate(), referenceDataRegistry);
+        this.popularFilmsIndex = new PopularFilmsIndex(jdbcTemplate);
+        this.filmSuggestIndex = new FilmSuggestIndex(jdbcTemplate, referenceDataRegistry, popularFilmsIndex, 3);
+    }
+
+    private Film film(String name, Director... directors) {
+        Film film = RandomUtils.getRandomFilm();
+        film.setName(name);
+        film.setDirectors(List.of(directors));
+        filmDbStorage.addFilm(film);
+        return film;
+    }
+
+    private void like(Film film, int count) {
+        popularFilmsIndex.changeLikes(film.getId(), count);
+        filmSuggestIndex.changeLikes(film.getId(), count);
+    }
+
+    private List<Integer> suggestedFilmIds(String prefix) {
+        return filmSuggestIndex.suggest(prefix, 3).stream()
+                .filter(suggestion -> suggestion.getType() == SuggestionType.FILM)
+                .map(Suggestion::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSuggestByWordPrefix() {
+        Film matrix = film("Матрица");
+        Film reloaded = film("Матрица: Перезагрузка");
+        Film other = film("Мастер и Маргарита");
+        popularFilmsIndex.rebuild();
+        filmSuggestIndex.rebuild();
+
+        assertThat(suggestedFilmIds("МАТР")).containsExactly(matrix.getId(), reloaded.getId());
+        assertThat(suggestedFilmIds("перез")).containsExactly(reloaded.getId());
+        assertThat(suggestedFilmIds("марг")).containsExactly(other.getId());
+        assertThat(suggestedFilmIds("атрица")).isEmpty();
+    }
+
+    @Test
+    public void testSuggestOrderFollowsLikes() {
+        Film first = film("Звездные войны");
+        Film second = film("Звездная пыль");
+        Film third = film("Звездный путь");
+        Film fourth = film("Звездочет");
+        popularFilmsIndex.rebuild();
+        filmSuggestIndex.rebuild();
+
+        like(fourth, 3);
+        like(second, 2);
+        assertThat(suggestedFilmIds("звезд")).containsExactly(fourth.getId(), second.getId(), first.getId());
+
+        like(fourth, -3);
+        like(third, 1);
+        assertThat(suggestedFilmIds("звезд")).containsExactly(second.getId(), third.getId(), first.getId());
+
+        filmSuggestIndex.removeFilm(second.getId());
+        assertThat(suggestedFilmIds("звезд")).containsExactly(third.getId(), first.getId(), fourth.getId());
+    }
+
+    @Test
+    public void testSuggestDirector() {
+        Director director = directorDbStorage.create(Director.builder().name("Андрей Тарковский").build());
+        Film film = film("Солярис", director);
+        popularFilmsIndex.rebuild();
+        filmSuggestIndex.rebuild();
+        like(film, 2);
+
+        List<Suggestion> suggestions = filmSuggestIndex.suggest("тарк", 3);
+        assertThat(suggestions).hasSize(1);
+        assertThat(suggestions.get(0).getType()).isEqualTo(SuggestionType.DIRECTOR);
+        assertThat(suggestions.get(0).getId()).isEqualTo(director.getId());
+        assertThat(suggestions.get(0).getLikes()).isEqualTo(2);
+
+        filmSuggestIndex.putDirector(director.getId(), "Андрей Кончаловский");
+        assertThat(filmSuggestIndex.suggest("тарк", 3)).isEmpty();
+        assertThat(filmSuggestIndex.suggest("конч", 3).get(0).getLikes()).isEqualTo(2);
+    }
+}
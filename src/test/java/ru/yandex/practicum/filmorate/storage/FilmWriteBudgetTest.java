@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.impl.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmHydrator;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+import ru.yandex.practicum.filmorate.util.StatementCountingDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Запись фильма должна укладываться в три обращения к базе
+ */
+@JdbcTest
+@ActiveProfiles("test")
+public class FilmWriteBudgetTest {
+
+    private static final int WRITE_BUDGET = 3;
+
+    private final StatementCountingDataSource dataSource;
+    private final FilmDbStorage filmDbStorage;
+    private final DirectorDbStorage directorStorage;
+
+    @Autowired
+    public FilmWriteBudgetTest(DataSource dataSource) {
+        this.dataSource = new StatementCountingDataSource(dataSource);
+        NamedParameterJdbcTemplate jdbcTemplate = new NamedParameterJdbcTemplate(this.dataSource);
+        ReferenceDataRegistry referenceDataRegistry = new ReferenceDataRegistry(jdbcTemplate);
+        referenceDataRegistry.reload();
+        this.directorStorage = new DirectorDbStorage(jdbcTemplate.getJdbcTemplate(), referenceDataRegistry);
+        this.filmDbStorage = new FilmDbStorage(jdbcTemplate,
+                new FilmHydrator(jdbcTemplate, referenceDataRegistry, 500, 1), referenceDataRegistry);
+    }
+
+    private static Genre genre(int id) {
+        Genre genre = new Genre();
+        genre.setId(id);
+        return genre;
+    }
+
+    private Director director() {
+        return directorStorage.create(Director.builder().name(RandomUtils.getRandomString(10)).build());
+    }
+
+    private static List<Integer> genreIds(Film film) {
+        return film.getGenres().stream().map(Genre::getId).sorted().collect(Collectors.toList());
+    }
+
+    private static List<Integer> directorIds(Film film) {
+        return film.getDirectors().stream().map(Director::getId).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    public void testAddFilmBudget() {
+        Director director = director();
+        Film film = RandomUtils.getRandomFilm();
+        film.setGenres(List.of(genre(1), genre(2)));
+        film.setDirectors(List.of(director));
+
+        dataSource.assertBudget(WRITE_BUDGET, () -> filmDbStorage.addFilm(film));
+
+        Film filmFromDB = filmDbStorage.getById(film.getId());
+        assertThat(genreIds(filmFromDB)).containsExactly(1, 2);
+        assertThat(directorIds(filmFromDB)).containsExactly(director.getId());
+    }
+
+    @Test
+    public void testEditFilmBudget() {
+        Director first = director();
+        Director second = director();
+        Film film = RandomUtils.getRandomFilm();
+        film.setGenres(List.of(genre(1), genre(2)));
+        film.setDirectors(List.of(first));
+        filmDbStorage.addFilm(film);
+
+        film.setName(RandomUtils.getRandomString(10));
+        film.setGenres(List.of(genre(2), genre(3)));
+        film.setDirectors(List.of(second));
+        dataSource.assertBudget(WRITE_BUDGET, () -> filmDbStorage.editFilm(film));
+
+        Film filmFromDB = filmDbStorage.getById(film.getId());
+        assertThat(filmFromDB.getName()).isEqualTo(film.getName());
+        assertThat(genreIds(filmFromDB)).containsExactly(2, 3);
+        assertThat(directorIds(filmFromDB)).containsExactly(second.getId());
+    }
+
+    @Test
+    public void testEditFilmWithoutLinkChanges() {
+        Film film = RandomUtils.getRandomFilm();
+        film.setGenres(List.of(genre(1)));
+        filmDbStorage.addFilm(film);
+
+        film.setDescription(RandomUtils.getRandomString(20));
+        dataSource.assertBudget(2, () -> filmDbStorage.editFilm(film));
+        assertThat(genreIds(filmDbStorage.getById(film.getId()))).containsExactly(1);
+    }
+
+    @Test
+    public void testEditUnknownFilm() {
+        Film film = RandomUtils.getRandomFilm();
+        film.setId(-1);
+        assertThatThrownBy(() -> filmDbStorage.editFilm(film)).isInstanceOf(NotFoundException.class);
+    }
+}
@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.enums.Operation;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.cache.FriendsTimelineCache;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FriendsTimelineCacheTest {
+
+    private final FriendshipGraph friendshipGraph = new FriendshipGraph(null);
+    private final FriendsTimelineCache cache = new FriendsTimelineCache(friendshipGraph, 3, 10, 2);
+
+    private static Feed feed(int eventId, int userId, long timestamp) {
+        return Feed.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .entityId(eventId)
+                .eventType(EventType.LIKE)
+                .operation(Operation.ADD)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private List<Integer> timeline(int userId, long[] before, int limit) {
+        List<Feed> feeds = cache.getTimeline(userId, before, limit, count -> {
+            throw new AssertionError("Лента уже загружена");
+        });
+        return feeds == null ? null : feeds.stream().map(Feed::getEventId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testPushToLoadedTimelines() {
+        friendshipGraph.addFriend(1, 10);
+        friendshipGraph.addFriend(2, 10);
+        List<Integer> loads = new ArrayList<>();
+        cache.getTimeline(1, null, 3, count -> {
+            loads.add(count);
+            return List.of(feed(1, 10, 10));
+        });
+        cache.onFeeds(List.of(feed(2, 10, 20), feed(2, 10, 20), feed(3, 10, 30)));
+
+        assertThat(loads).containsExactly(3);
+        assertThat(timeline(1, null, 3)).containsExactly(3, 2, 1);
+        assertThat(timeline(1, new long[]{30, 3}, 3)).containsExactly(2, 1);
+        assertThat(timeline(1, null, 4)).isNull();
+    }
+
+    @Test
+    public void testFanoutThreshold() {
+        friendshipGraph.addFriend(1, 10);
+        friendshipGraph.addFriend(2, 10);
+        assertThat(cache.isPushed(10)).isTrue();
+
+        friendshipGraph.addFriend(3, 10);
+        assertThat(cache.isPushed(10)).isFalse();
+        cache.getTimeline(1, null, 3, count -> List.of());
+        cache.onFeeds(List.of(feed(1, 10, 10)));
+        assertThat(timeline(1, null, 3)).isEmpty();
+    }
+
+    @Test
+    public void testTruncatedTimelineFallsBack() {
+        friendshipGraph.addFriend(1, 10);
+        cache.getTimeline(1, null, 3, count -> List.of(feed(3, 10, 30), feed(2, 10, 20), feed(1, 10, 10)));
+
+        assertThat(timeline(1, new long[]{20, 2}, 1)).containsExactly(1);
+        assertThat(timeline(1, new long[]{20, 2}, 2)).isNull();
+    }
+
+    @Test
+    public void testInvalidationOnFriendship() {
+        friendshipGraph.addFriend(1, 10);
+        cache.getTimeline(1, null, 3, count -> List.of(feed(1, 10, 10)));
+
+        friendshipGraph.addFriend(1, 11);
+        cache.onFriendAdded(1, 11);
+        List<Integer> loads = new ArrayList<>();
+        cache.getTimeline(1, null, 3, count -> {
+            loads.add(count);
+            return List.of(feed(2, 11, 20), feed(1, 10, 10));
+        });
+        assertThat(loads).containsExactly(3);
+        assertThat(timeline(1, null, 3)).containsExactly(2, 1);
+
+        // Популярный 12 после удаления подписчика становится рассылаемым: ленты его подписчиков перечитываются
+        friendshipGraph.addFriend(2, 12);
+        friendshipGraph.addFriend(3, 12);
+        friendshipGraph.addFriend(4, 12);
+        cache.getTimeline(2, null, 3, count -> List.of());
+        friendshipGraph.removeFriend(4, 12);
+        cache.onFriendRemoved(4, 12);
+        loads.clear();
+        cache.getTimeline(2, null, 3, count -> {
+            loads.add(count);
+            return List.of();
+        });
+        assertThat(loads).containsExactly(3);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserFriend;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserFriendDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@ActiveProfiles("test")
+public class FriendshipGraphTest {
+
+    private final FriendshipGraph friendshipGraph;
+    private final UserFriendDbStorage userFriendDbStorage;
+    private final UserDbStorage userStorage;
+
+    @Autowired
+    public FriendshipGraphTest(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.friendshipGraph = new FriendshipGraph(jdbcTemplate);
+        this.userFriendDbStorage = new UserFriendDbStorage(jdbcTemplate, friendshipGraph);
+        this.userStorage = new UserDbStorage(jdbcTemplate);
+    }
+
+    private int user() {
+        User user = RandomUtils.getRandomUser();
+        userStorage.addUser(user);
+        friendshipGraph.addUser(user.getId());
+        return user.getId();
+    }
+
+    @Test
+    public void testFriendsFollowSaveAndDelete() {
+        int user = user();
+        int friend = user();
+        int other = user();
+        userFriendDbStorage.save(new UserFriend(user, other));
+        userFriendDbStorage.save(new UserFriend(user, friend));
+        userFriendDbStorage.save(new UserFriend(other, friend));
+
+        assertThat(friendshipGraph.getFriends(user)).containsExactly(friend, other);
+        assertThat(friendshipGraph.getFollowers(friend)).containsExactly(user, other);
+        assertThat(friendshipGraph.hasFriend(user, friend)).isTrue();
+        assertThat(friendshipGraph.hasFriend(friend, user)).isFalse();
+
+        userFriendDbStorage.delete(new UserFriend(user, friend));
+        assertThat(friendshipGraph.getFriends(user)).containsExactly(other);
+        assertThat(friendshipGraph.getFollowers(friend)).containsExactly(other);
+    }
+
+    @Test
+    public void testCommonFriends() {
+        int user = user();
+        int other = user();
+        int common = user();
+        int single = user();
+        userFriendDbStorage.save(new UserFriend(user, common));
+        userFriendDbStorage.save(new UserFriend(user, single));
+        userFriendDbStorage.save(new UserFriend(other, common));
+        userFriendDbStorage.save(new UserFriend(single, user));
+
+        assertThat(friendshipGraph.getCommonFriends(user, other)).containsExactly(common);
+        assertThat(friendshipGraph.getCommonFriends(other, user)).containsExactly(common);
+        assertThat(friendshipGraph.getCommonFriends(user, single)).isEmpty();
+    }
+
+    @Test
+    public void testRebuildMatchesIncrementalUpdates() {
+        int user = user();
+        int friend = user();
+        int other = user();
+        userFriendDbStorage.save(new UserFriend(user, friend));
+        userFriendDbStorage.save(new UserFriend(other, user));
+        int[] friends = friendshipGraph.getFriends(user);
+        int[] followers = friendshipGraph.getFollowers(user);
+
+        friendshipGraph.rebuild();
+        assertThat(friendshipGraph.containsUser(user)).isTrue();
+        assertThat(friendshipGraph.getFriends(user)).isEqualTo(friends);
+        assertThat(friendshipGraph.getFollowers(user)).isEqualTo(followers);
+    }
+
+    @Test
+    public void testRemoveUser() {
+        int user = user();
+        int friend = user();
+        int follower = user();
+        userFriendDbStorage.save(new UserFriend(user, friend));
+        userFriendDbStorage.save(new UserFriend(follower, user));
+
+        friendshipGraph.removeUser(user);
+        assertThat(friendshipGraph.containsUser(user)).isFalse();
+        assertThat(friendshipGraph.getFriends(user)).isEmpty();
+        assertThat(friendshipGraph.getFollowers(friend)).isEmpty();
+        assertThat(friendshipGraph.getFriends(follower)).isEmpty();
+    }
+}
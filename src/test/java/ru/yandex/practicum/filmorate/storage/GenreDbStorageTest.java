@@ -6,6 +6,7 @@ import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.storage.impl.GenreDbStorage;
 import ru.yandex.practicum.filmorate.util.RandomUtils;
 
@@ -20,7 +21,9 @@ public class GenreDbStorageTest {
 
     @Autowired
     public GenreDbStorageTest(NamedParameterJdbcTemplate jdbcTemplate) {
-        this.genreDbStorage = new GenreDbStorage(jdbcTemplate);
+        ReferenceDataRegistry referenceDataRegistry = new ReferenceDataRegistry(jdbcTemplate);
+        referenceDataRegistry.reload();
+        this.genreDbStorage = new GenreDbStorage(jdbcTemplate, referenceDataRegistry);
     }
 
     @Test
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.index.LikesMatrix;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LikesMatrixTest {
+
+    private final LikesMatrix likesMatrix = new LikesMatrix(null);
+
+    private void like(int userId, int... filmIds) {
+        for (int filmId : filmIds) {
+            likesMatrix.addLike(userId, filmId);
+        }
+    }
+
+    @Test
+    public void testCommonFilms() {
+        like(1, 5, 1, 3, 7);
+        like(2, 3, 7, 9, 1);
+        like(3, 7, 1);
+
+        assertThat(likesMatrix.getCommonFilms(1, 2)).containsExactly(1, 3, 7);
+        assertThat(likesMatrix.getCommonFilms(1, 2, 3)).containsExactly(1, 7);
+        assertThat(likesMatrix.getCommonFilms(1, 4)).isEmpty();
+    }
+
+    @Test
+    public void testCommonFilmsOfSkewedUsers() {
+        like(1, IntStream.rangeClosed(1, 10_000).toArray());
+        like(2, 0, 2, 5_000, 9_999, 10_000, 10_001);
+
+        assertThat(likesMatrix.getCommonFilms(1, 2)).containsExactly(2, 5_000, 9_999, 10_000);
+        assertThat(likesMatrix.getCommonFilms(2, 1)).containsExactly(2, 5_000, 9_999, 10_000);
+    }
+
+    @Test
+    public void testCommonFilmsAfterRemoval() {
+        like(1, 1, 2, 3);
+        like(2, 1, 2, 3);
+        likesMatrix.removeLike(2, 2);
+        likesMatrix.removeFilm(3);
+
+        assertThat(likesMatrix.getCommonFilms(1, 2)).containsExactly(1);
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import ru.yandex.practicum.filmorate.model.MotionPictureAssociation;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.storage.impl.MotionPictureAssociationDbStorage;
 
 import java.util.Collection;
@@ -20,7 +21,9 @@ public class MotionPictureAssociationDbStorageTest {
 
     @Autowired
     public MotionPictureAssociationDbStorageTest(NamedParameterJdbcTemplate jdbcTemplate) {
-        this.motionPictureAssociationDbStorage = new MotionPictureAssociationDbStorage(jdbcTemplate);
+        ReferenceDataRegistry referenceDataRegistry = new ReferenceDataRegistry(jdbcTemplate);
+        referenceDataRegistry.reload();
+        this.motionPictureAssociationDbStorage = new MotionPictureAssociationDbStorage(referenceDataRegistry);
     }
 
 
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmHydrator;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+@JdbcTest
+@ActiveProfiles("test")
+public class PopularFilmsIndexTest {
+
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+
+    @Autowired
+    public PopularFilmsIndexTest(NamedParameterJdbcTemplate jdbcTemplate) {
+        ReferenceDataRegistry referenceDataRegistry = new ReferenceDataRegistry(jdbcTemplate);
+        referenceDataRegistry.reload();
+        this.filmDbStorage = new FilmDbStorage(jdbcTemplate,
+                new FilmHydrator(jdbcTemplate, referenceDataRegistry, 500, 1), referenceDataRegistry);
+        this.userDbStorage = new UserDbStorage(jdbcTemplate);
+        this.popularFilmsIndex = new PopularFilmsIndex(jdbcTemplate);
+    }
+
+    @Test
+    public void testIndexMatchesSql() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            User user = RandomUtils.getRandomUser();
+            userDbStorage.addUser(user);
+            users.add(user);
+        }
+        for (int i = 0; i < 30; i++) {
+            Film film = RandomUtils.getRandomFilm();
+            Genre genre = new Genre();
+            genre.setId(RandomUtils.getRandomIntNumber(1, 7));
+            film.setGenres(new ArrayList<>(Collections.singletonList(genre)));
+            filmDbStorage.addFilm(film);
+            int likes = RandomUtils.getRandomIntNumber(0, users.size());
+            for (int j = 0; j < likes; j++) {
+                filmDbStorage.addAppraiser(film.getId(), users.get(j).getId());
+            }
+        }
+        popularFilmsIndex.rebuild();
+
+        assertSameOrder(100, 0, 0);
+        for (int genreId = 1; genreId <= 6; genreId++) {
+            assertSameOrder(5, genreId, 0);
+            assertSameOrder(5, genreId, 2000);
+        }
+        for (int year = 1990; year < 2025; year++) {
+            assertSameOrder(3, 0, year);
+        }
+    }
+
+    @Test
+    public void testChangeLikes() {
+        Film film = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilm(film);
+        Film otherFilm = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilm(otherFilm);
+        popularFilmsIndex.rebuild();
+
+        popularFilmsIndex.changeLikes(otherFilm.getId(), 1);
+        assertThat(popularFilmsIndex.getTop(1, 0, 0)).isEqualTo(Collections.singletonList(otherFilm.getId()));
+        popularFilmsIndex.remove(otherFilm.getId());
+        assertThat(popularFilmsIndex.getTop(100, 0, 0).contains(otherFilm.getId())).isEqualTo(false);
+        assertThat(popularFilmsIndex.getTop(100, 0, film.getReleaseDate().getYear()).contains(film.getId()))
+                .isEqualTo(true);
+    }
+
+    private void assertSameOrder(int count, int genreId, int year) {
+        List<Integer> fromSql = filmDbStorage.getPopularFilms(count, genreId, year).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+        assertThat(popularFilmsIndex.getTop(count, genreId, year)).isEqualTo(fromSql);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.enums.EventType;
+import ru.yandex.practicum.filmorate.enums.Operation;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.cache.RecentFeedBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecentFeedBufferTest {
+
+    private final RecentFeedBuffer buffer = new RecentFeedBuffer(3, 10);
+
+    private static Feed feed(int eventId, long timestamp) {
+        return Feed.builder()
+                .eventId(eventId)
+                .userId(1)
+                .entityId(eventId)
+                .eventType(EventType.LIKE)
+                .operation(Operation.ADD)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private List<Integer> newest(int limit) {
+        return buffer.getNewest(1, limit, count -> {
+            throw new AssertionError("Буфер уже загружен");
+        }).stream().map(Feed::getEventId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testLoadThenAppend() {
+        List<Integer> loads = new ArrayList<>();
+        buffer.getNewest(1, 3, count -> {
+            loads.add(count);
+            return List.of(feed(2, 20), feed(1, 10));
+        });
+        buffer.add(feed(3, 30));
+        buffer.add(feed(3, 30));
+        buffer.add(feed(4, 40));
+
+        assertThat(loads).containsExactly(3);
+        assertThat(newest(3)).containsExactly(4, 3, 2);
+        assertThat(newest(1)).containsExactly(4);
+    }
+
+    @Test
+    public void testOutOfOrderEvents() {
+        buffer.getNewest(1, 1, count -> List.of());
+        buffer.add(feed(1, 10));
+        buffer.add(feed(3, 30));
+        buffer.add(feed(2, 20));
+        buffer.add(feed(4, 5));
+        buffer.add(feed(5, 25));
+
+        assertThat(newest(3)).containsExactly(3, 5, 2);
+    }
+
+    @Test
+    public void testNotLoadedUserAndLargeLimit() {
+        buffer.add(feed(1, 10));
+
+        assertThat(buffer.getNewest(1, 4, count -> List.of())).isNull();
+        assertThat(buffer.getNewest(1, 2, count -> List.of(feed(1, 10)))).hasSize(1);
+    }
+
+    @Test
+    public void testRemovedUserIsReloaded() {
+        buffer.getNewest(1, 3, count -> List.of(feed(1, 10)));
+        buffer.remove(1);
+        buffer.add(feed(2, 20));
+
+        // После удаления буфер не дополняется и читается из базы заново
+        assertThat(buffer.getNewest(1, 3, count -> List.of())).isEmpty();
+    }
+}
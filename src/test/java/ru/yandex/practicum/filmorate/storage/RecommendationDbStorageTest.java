@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.dto.Recommendation;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmHydrator;
+import ru.yandex.practicum.filmorate.storage.impl.RecommendationDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.SchedulerLockDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@ActiveProfiles("test")
+public class RecommendationDbStorageTest {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final RecommendationDbStorage recommendationDbStorage;
+
+    @Autowired
+    public RecommendationDbStorageTest(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        ReferenceDataRegistry referenceDataRegistry = new ReferenceDataRegistry(jdbcTemplate);
+        referenceDataRegistry.reload();
+        this.filmDbStorage = new FilmDbStorage(jdbcTemplate,
+                new FilmHydrator(jdbcTemplate, referenceDataRegistry, 500, 1), referenceDataRegistry);
+        this.userDbStorage = new UserDbStorage(jdbcTemplate);
+        this.recommendationDbStorage = new RecommendationDbStorage(jdbcTemplate);
+    }
+
+    @Test
+    public void testSaveAndReadRecommendations() {
+        User user = RandomUtils.getRandomUser();
+        userDbStorage.addUser(user);
+        User neighbour = RandomUtils.getRandomUser();
+        userDbStorage.addUser(neighbour);
+        Film first = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilm(first);
+        Film second = RandomUtils.getRandomFilm();
+        filmDbStorage.addFilm(second);
+
+        recommendationDbStorage.markDirty(user.getId());
+        Map<Integer, Long> dirty = recommendationDbStorage.getDirtyUsers();
+        assertThat(recommendationDbStorage.isDirty(user.getId())).isTrue();
+
+        recommendationDbStorage.saveRecommendations(List.of(new Recommendation(user.getId(),
+                new int[]{neighbour.getId()}, List.of(second.getId(), first.getId()), new double[]{2, 1})), dirty);
+
+        assertThat(recommendationDbStorage.isDirty(user.getId())).isFalse();
+        assertThat(filmDbStorage.getRecommendations(user.getId()).stream().map(Film::getId).collect(Collectors.toList()))
+                .containsExactly(second.getId(), first.getId());
+        assertThat(recommendationDbStorage.getUsersWithNeighbours(List.of(neighbour.getId())))
+                .containsExactly(user.getId());
+    }
+
+    @Test
+    public void testMarkDuringRecomputeIsKept() {
+        User user = RandomUtils.getRandomUser();
+        userDbStorage.addUser(user);
+        recommendationDbStorage.markDirty(user.getId());
+        Map<Integer, Long> dirty = recommendationDbStorage.getDirtyUsers();
+
+        recommendationDbStorage.markDirty(user.getId());
+        recommendationDbStorage.saveRecommendations(List.of(new Recommendation(user.getId(),
+                new int[0], List.of(), new double[0])), dirty);
+
+        assertThat(recommendationDbStorage.isDirty(user.getId())).isTrue();
+    }
+
+    @Test
+    public void testSchedulerLock() {
+        SchedulerLockDbStorage node = new SchedulerLockDbStorage(jdbcTemplate);
+        SchedulerLockDbStorage otherNode = new SchedulerLockDbStorage(jdbcTemplate);
+
+        assertThat(node.tryLock("test", Duration.ofMinutes(5))).isTrue();
+        assertThat(otherNode.tryLock("test", Duration.ofMinutes(5))).isFalse();
+        assertThat(node.getLastCompleted("test")).isEmpty();
+
+        node.unlock("test", true);
+        assertThat(node.getLastCompleted("test")).isPresent();
+        assertThat(otherNode.tryLock("test", Duration.ofMinutes(5))).isTrue();
+    }
+}
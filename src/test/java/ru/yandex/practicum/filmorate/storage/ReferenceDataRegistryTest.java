@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MotionPictureAssociation;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.impl.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmHydrator;
+import ru.yandex.practicum.filmorate.storage.impl.GenreDbStorage;
+import ru.yandex.practicum.filmorate.util.RandomUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@ActiveProfiles("test")
+public class ReferenceDataRegistryTest {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ReferenceDataRegistry referenceDataRegistry;
+    private final DirectorDbStorage directorDbStorage;
+    private final FilmDbStorage filmDbStorage;
+
+    @Autowired
+    public ReferenceDataRegistryTest(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.referenceDataRegistry = new ReferenceDataRegistry(jdbcTemplate);
+        referenceDataRegistry.reload();
+        this.directorDbStorage = new DirectorDbStorage(jdbcTemplate.getJdbcTemplate(), referenceDataRegistry);
+        this.filmDbStorage = new FilmDbStorage(jdbcTemplate,
+                new FilmHydrator(jdbcTemplate, referenceDataRegistry, 500, 1), referenceDataRegistry);
+    }
+
+    private Director director(String name) {
+        return directorDbStorage.create(Director.builder().name(name).build());
+    }
+
+    private List<String> directorNames() {
+        return referenceDataRegistry.getDirectors().stream().map(Director::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testLoad() {
+        assertThat(referenceDataRegistry.getMpas()).extracting(MotionPictureAssociation::getName)
+                .containsExactly("G", "PG", "PG-13", "R", "NC-17");
+        assertThat(referenceDataRegistry.getMpa(4).getName()).isEqualTo("R");
+        assertThat(referenceDataRegistry.getGenres()).hasSize(6);
+        assertThat(referenceDataRegistry.getGenre(1).getName()).isEqualTo("Комедия");
+        assertThat(referenceDataRegistry.getGenre(100)).isNull();
+
+        // Записи, добавленные в обход хранилища, появляются только после перечитывания
+        jdbcTemplate.getJdbcTemplate().update("insert into DIRECTORS (name) values ('direct')");
+        assertThat(directorNames()).isEmpty();
+        referenceDataRegistry.reloadDirectors();
+        assertThat(directorNames()).containsExactly("direct");
+    }
+
+    @Test
+    public void testDirectorEditAndDelete() {
+        Director first = director("first");
+        Director second = director("second");
+        assertThat(directorNames()).containsExactly("first", "second");
+
+        Film film = RandomUtils.getRandomFilm();
+        film.setDirectors(List.of(first));
+        filmDbStorage.addFilm(film);
+
+        directorDbStorage.update(Director.builder().id(first.getId()).name("renamed").build());
+        assertThat(referenceDataRegistry.getDirector(first.getId()).getName()).isEqualTo("renamed");
+        assertThat(filmDbStorage.getById(film.getId()).getDirectors())
+                .extracting(Director::getName).containsExactly("renamed");
+
+        directorDbStorage.delete(second.getId());
+        assertThat(referenceDataRegistry.getDirector(second.getId())).isNull();
+        assertThat(directorNames()).containsExactly("renamed");
+
+        // Снимок в памяти совпадает с базой
+        referenceDataRegistry.reloadDirectors();
+        assertThat(directorNames()).containsExactly("renamed");
+    }
+
+    @Test
+    public void testPutGenre() {
+        Genre genre = new GenreDbStorage(jdbcTemplate, referenceDataRegistry).save(RandomUtils.getRandomGenre());
+        genre.setName("changed");
+
+        // В реестр кладется копия, изменения переданного объекта на нее не влияют
+        assertThat(referenceDataRegistry.getGenre(genre.getId()).getName()).isNotEqualTo("changed");
+        assertThat(referenceDataRegistry.getGenres()).hasSize(7);
+    }
+}
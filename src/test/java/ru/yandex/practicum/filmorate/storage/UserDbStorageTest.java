@@ -69,4 +69,19 @@ public class UserDbStorageTest {
         assertThat(users.isEmpty()).isEqualTo(false);
     }
 
+    @Test
+    public void testGetPage() {
+        List<User> users = Arrays.asList(
+                RandomUtils.getRandomUser(),
+                RandomUtils.getRandomUser(),
+                RandomUtils.getRandomUser()
+        );
+        for (User user : users)
+            userStorage.addUser(user);
+        int beforeId = users.get(0).getId() - 1;
+        List<User> firstPage = userStorage.getPage(beforeId, 2);
+        List<User> secondPage = userStorage.getPage(firstPage.get(1).getId(), 2);
+        assertThat(firstPage).usingRecursiveComparison().isEqualTo(users.subList(0, 2));
+        assertThat(secondPage).usingRecursiveComparison().isEqualTo(users.subList(2, 3));
+    }
 }
@@ -7,6 +7,7 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.UserFriend;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
 import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
 import ru.yandex.practicum.filmorate.storage.impl.UserFriendDbStorage;
 import ru.yandex.practicum.filmorate.util.RandomUtils;
@@ -25,7 +26,7 @@ public class UserFriendDbStorageTest {
 
     @Autowired
     public UserFriendDbStorageTest(NamedParameterJdbcTemplate jdbcTemplate) {
-        this.userFriendDbStorage = new UserFriendDbStorage(jdbcTemplate);
+        this.userFriendDbStorage = new UserFriendDbStorage(jdbcTemplate, new FriendshipGraph(jdbcTemplate));
         this.userStorage = new UserDbStorage(jdbcTemplate);
     }
 
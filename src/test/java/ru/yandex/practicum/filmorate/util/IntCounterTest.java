@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IntCounterTest {
+
+    @Test
+    public void testCountsLikeHashMap() {
+        Random random = new Random(11);
+        // Маленькая начальная емкость, чтобы таблица несколько раз расширялась
+        IntCounter counter = new IntCounter(4);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(50_000) - 25_000;
+            counter.increment(key);
+            expected.merge(key, 1, Integer::sum);
+        }
+        assertThat(counter.size()).isEqualTo(expected.size());
+        expected.forEach((key, count) -> assertThat(counter.get(key)).isEqualTo(count));
+        assertThat(counter.get(30_000)).isEqualTo(0);
+
+        Map<Integer, Integer> visited = new HashMap<>();
+        counter.forEach(visited::put);
+        assertThat(visited).isEqualTo(expected);
+    }
+}
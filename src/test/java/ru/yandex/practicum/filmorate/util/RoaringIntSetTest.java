@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoaringIntSetTest {
+
+    @Test
+    public void testAddRemoveContainsLikeHashSet() {
+        Random random = new Random(7);
+        RoaringIntSet set = new RoaringIntSet();
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            // Плотный диапазон чтобы блоки переходили из массива в битовую карту и обратно
+            int value = random.nextInt(3 * 65536);
+            if (random.nextInt(3) == 0) {
+                assertThat(set.remove(value)).isEqualTo(expected.remove(value));
+            } else {
+                assertThat(set.add(value)).isEqualTo(expected.add(value));
+            }
+        }
+        assertThat(set.size()).isEqualTo(expected.size());
+        assertThat(set).containsExactlyElementsOf(new TreeSet<>(expected));
+        assertThat(set.contains(3 * 65536 + 1)).isFalse();
+    }
+
+    @Test
+    public void testSetOperations() {
+        Random random = new Random(11);
+        RoaringIntSet first = new RoaringIntSet();
+        RoaringIntSet second = new RoaringIntSet();
+        Set<Integer> firstExpected = new TreeSet<>();
+        Set<Integer> secondExpected = new TreeSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            int value = random.nextInt(200_000);
+            first.add(value);
+            firstExpected.add(value);
+        }
+        for (int i = 0; i < 3_000; i++) {
+            int value = random.nextInt(200_000);
+            second.add(value);
+            secondExpected.add(value);
+        }
+
+        Set<Integer> and = new TreeSet<>(firstExpected);
+        and.retainAll(secondExpected);
+        Set<Integer> or = new TreeSet<>(firstExpected);
+        or.addAll(secondExpected);
+        Set<Integer> andNot = new TreeSet<>(firstExpected);
+        andNot.removeAll(secondExpected);
+
+        assertThat(first.and(second)).containsExactlyElementsOf(and);
+        assertThat(second.and(first)).containsExactlyElementsOf(and);
+        assertThat(first.andCardinality(second)).isEqualTo(and.size());
+        assertThat(first.or(second)).containsExactlyElementsOf(or);
+        assertThat(first.or(second).size()).isEqualTo(or.size());
+        assertThat(first.andNot(second)).containsExactlyElementsOf(andNot);
+        assertThat(first).containsExactlyElementsOf(firstExpected);
+    }
+
+    @Test
+    public void testEqualsHashSet() {
+        RoaringIntSet set = RoaringIntSet.of(5, 1, 70000);
+        assertThat(set).isEqualTo(Set.of(1, 5, 70000));
+        assertThat(set.hashCode()).isEqualTo(Set.of(1, 5, 70000).hashCode());
+        assertThat(new RoaringIntSet(set)).isEqualTo(set);
+    }
+
+    @Test
+    public void testMemoryFootprint() {
+        RoaringIntSet dense = new RoaringIntSet();
+        for (int i = 1; i <= 1_000_000; i++) {
+            dense.add(i);
+        }
+        assertThat(dense.sizeInBytes()).isLessThan(hashSetBytes(1_000_000) / 50);
+
+        RoaringIntSet sparse = new RoaringIntSet();
+        for (int i = 1; i <= 100_000; i++) {
+            sparse.add(i * 97);
+        }
+        assertThat(sparse.sizeInBytes()).isLessThan(hashSetBytes(100_000) / 5);
+    }
+
+    /**
+     * Нижняя оценка размера HashSet<Integer>: узел HashMap (32 байта) и объект Integer (16 байт) на элемент
+     * при сжатых указателях, без учета таблицы бакетов
+     */
+    private static long hashSetBytes(int count) {
+        return count * (32L + 16L);
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * DataSource для тестов, считающий обращения к базе (вызовы execute* у Statement).
+ * Соединения берутся из транзакции исходного DataSource, поэтому тестовая транзакция откатывает изменения
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    private final AtomicInteger executions = new AtomicInteger();
+    private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+    public StatementCountingDataSource(DataSource dataSource) {
+        super(new TransactionAwareDataSourceProxy(dataSource));
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    public int getExecutions() {
+        return executions.get();
+    }
+
+    public void reset() {
+        executions.set(0);
+        statements.clear();
+    }
+
+    /**
+     * Выполнение операции с проверкой, что она уложилась в заданное количество обращений к базе
+     */
+    public void assertBudget(int budget, Runnable operation) {
+        reset();
+        operation.run();
+        assertThat(executions.get())
+                .as("Обращений к базе больше %s: %s", budget, statements)
+                .isLessThanOrEqualTo(budget);
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                        return wrap((Statement) result, sql);
+                    }
+                    return result;
+                });
+    }
+
+    private Statement wrap(Statement statement, String sql) {
+        List<Class<?>> interfaces = new ArrayList<>();
+        for (Class<?> type = statement.getClass(); type != null; type = type.getSuperclass()) {
+            for (Class<?> statementInterface : type.getInterfaces()) {
+                if (Statement.class.isAssignableFrom(statementInterface))
+                    interfaces.add(statementInterface);
+            }
+        }
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), interfaces.toArray(new Class<?>[0]),
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute")) {
+                        executions.incrementAndGet();
+                        statements.add(args != null && args.length > 0 && args[0] instanceof String
+                                ? (String) args[0] : sql);
+                    }
+                    return invoke(statement, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}